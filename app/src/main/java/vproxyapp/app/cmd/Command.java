@@ -8,6 +8,7 @@ import vproxyapp.app.Application;
 import vproxyapp.app.cmd.handle.resource.*;
 import vproxybase.Config;
 import vproxybase.dns.Cache;
+import vproxybase.dns.DNSClient;
 import vproxybase.util.Callback;
 import vproxybase.util.LogType;
 import vproxybase.util.Logger;
@@ -576,6 +577,20 @@ public class Command {
                         throw new Exception("unsupported action " + cmd.action.fullname + " for " + cmd.resource.type.fullname);
                 }
                 break;
+            case dnsnameserver:
+                switch (cmd.action) {
+                    case a:
+                    case r:
+                    case R:
+                        throw new Exception("cannot run " + cmd.action.fullname + " on " + cmd.resource.type.fullname);
+                    case L:
+                    case l:
+                        DnsNameServerHandle.checkDnsNameServerParent(targetResource);
+                        break;
+                    default:
+                        throw new Exception("unsupported action " + cmd.action.fullname + " for " + cmd.resource.type.fullname);
+                }
+                break;
             case ups: // upstream
             case tl: // tcp lb
             case socks5: // socks5 server
@@ -891,9 +906,12 @@ public class Command {
             case el: // can only be retrieved from event loop group
                 switch (action) {
                     case l:
-                    case L:
                         List<String> elNames = EventLoopHandle.names(targetResource);
                         return new CmdResult(elNames, elNames, utilJoinList(elNames));
+                    case L:
+                        List<EventLoopHandle.EventLoopRef> elRefs = EventLoopHandle.details(targetResource);
+                        List<String> elRefStrList = elRefs.stream().map(EventLoopHandle.EventLoopRef::toString).collect(Collectors.toList());
+                        return new CmdResult(elRefs, elRefStrList, utilJoinList(elRefStrList));
                     case a:
                         EventLoopHandle.add(this);
                         return new CmdResult();
@@ -1062,6 +1080,24 @@ public class Command {
                         DnsCacheHandle.remove(this);
                         return new CmdResult();
                 }
+            case dnsnameserver:
+                switch (action) {
+                    case l:
+                        List<String> nsNames = DnsNameServerHandle.names();
+                        return new CmdResult(nsNames, nsNames, utilJoinList(nsNames));
+                    case L:
+                        List<DNSClient.NameServerStats> nsStats = DnsNameServerHandle.detail();
+                        List<Object> nsStrList = nsStats.stream().map(ns -> Arrays.asList(
+                            ns.address.formatToIPPortString(),
+                            ns.getQueries(),
+                            ns.getAnswers(),
+                            ns.getFailures(),
+                            String.format("%.3f", ns.getSrtt())
+                        )).collect(Collectors.toList());
+                        return new CmdResult(nsStats, nsStrList, utilJoinList(nsStats));
+                    default:
+                        throw new Exception("unsupported action " + action.fullname + " for " + resource.type.fullname);
+                }
             case vpc:
                 switch (action) {
                     case l:
@@ -8,6 +8,10 @@ public enum Flag {
     denynonbackend("deny-non-backend"),
 
     noswitchflag("no-switch-flag"),
+
+    timingwheel("timing-wheel"),
+
+    fastopen("fast-open"),
     ;
     public final String fullname;
 
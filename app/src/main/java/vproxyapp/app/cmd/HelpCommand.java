@@ -414,6 +414,13 @@ public class HelpCommand {
         certkey("cert-key", "ck", "cert-key resource"),
         cert("cert", null, "the certificate file path"),
         key("key", null, "the key file path"),
+        poolminidle("pool-min-idle", null, "minimum pre-established connections kept for each server on each event loop"),
+        poolmaxidle("pool-max-idle", null, "maximum pre-established connections kept for each server on each event loop"),
+        poolmaxage("pool-max-age", null, "max age of pre-established connections"),
+        slowstart("slow-start", null, "the period for a server to ramp up to its full weight after it becomes UP"),
+        outliererrors("outlier-errors", null, "consecutive errors on real traffic to eject a server"),
+        outliererrorrate("outlier-error-rate", null, "percentage of errors on real traffic to eject a server"),
+        outlierejecttime("outlier-eject-time", null, "the time for a server to be ejected"),
         ttl("ttl", null, "time to live"),
         mactabletimeout("mac-table-timeout", null, "timeout of mac table in a switch"),
         arptabletimeout("arp-table-timeout", null, "timeout of arp table in a switch"),
@@ -439,6 +446,8 @@ public class HelpCommand {
         allownonbackend("allow-non-backend", null, "allow to access non backend endpoints"),
         denynonbackend("deny-non-backend", null, "only able to access backend endpoints"),
         noswitchflag("no-switch-flag", null, "do not add switch flag on vxlan packet"),
+        timingwheel("timing-wheel", null, "use the timing wheel for timers instead of the priority queue"),
+        fastopen("fast-open", null, "enable tcp fast open"),
         ;
         public final String flag;
         public final String shortVer;
@@ -466,9 +475,16 @@ public class HelpCommand {
                     , new ResActParamMan(ParamMan.securitygroup, "specify a security group for the lb", "allow any")
                 ),
                 Collections.singletonList(
+                    new ResActFlagMan(FlagMan.fastopen, "enable TCP_FASTOPEN on the listening sockets, clients which have a cookie can send data with SYN", false)
+                ),
+                Arrays.asList(
                     new Tuple<>(
                         "add tcp-lb lb0 acceptor-elg elg0 event-loop-group elg0 address 127.0.0.1:18080 upstream ups0 in-buffer-size 16384 out-buffer-size 16384",
                         "\"OK\""
+                    ),
+                    new Tuple<>(
+                        "add tcp-lb lb1 address 127.0.0.1:18081 upstream ups0 fast-open",
+                        "\"OK\""
                     )
                 ))
             , new ResActMan(ActMan.list, "retrieve names of all tcp-loadbalancers",
@@ -692,14 +708,40 @@ public class HelpCommand {
                         new ResActParamMan(ParamMan.up, "set server status to UP after succeeded for `${up}` times"),
                         new ResActParamMan(ParamMan.down, "set server status to DOWN after failed for `${down}` times"),
                         new ResActParamMan(ParamMan.protocol, "the protocol used for checking the servers, you may choose `tcp`, `none`", "tcp"),
-                        new ResActParamMan(ParamMan.method, "loadbalancing algorithm, you can choose `wrr`, `wlc`, `source`", "wrr"),
+                        new ResActParamMan(ParamMan.method, "loadbalancing algorithm, you can choose `wrr`, `wlc`, `p2c`, `ewma`, `source`, `sourcebl`", "wrr"),
                         new ResActParamMan(ParamMan.annotations, "extra info for the server-group, such as host info, health check url. Must be a json and values must be strings", "{}"),
-                        new ResActParamMan(ParamMan.eventloopgroup, "choose a event-loop-group for the server group. health check operations will be performed on the event loop group", Application.DEFAULT_CONTROL_EVENT_LOOP_GROUP_NAME)
+                        new ResActParamMan(ParamMan.eventloopgroup, "choose a event-loop-group for the server group. health check operations will be performed on the event loop group", Application.DEFAULT_CONTROL_EVENT_LOOP_GROUP_NAME),
+                        new ResActParamMan(ParamMan.poolminidle, "keep at least `${pool-min-idle}` established connections to each healthy server on each event loop which handles client connections", "0"),
+                        new ResActParamMan(ParamMan.poolmaxidle, "keep at most `${pool-max-idle}` established connections to each server on each event loop, 0 means pooling is disabled", "0, or the same as pool-min-idle if it's specified"),
+                        new ResActParamMan(ParamMan.poolmaxage, "pooled connections older than `${pool-max-age}` milliseconds are closed instead of being used, 0 means never expire", "0"),
+                        new ResActParamMan(ParamMan.slowstart, "in `${slow-start}` milliseconds after a server becomes UP, its weight grows linearly from 10% to the configured weight, 0 means disabled", "0"),
+                        new ResActParamMan(ParamMan.outliererrors, "eject a server when `${outlier-errors}` consecutive connect failures, resets or 5xx responses are found on real traffic, 0 means disabled", "0"),
+                        new ResActParamMan(ParamMan.outliererrorrate, "eject a server when `${outlier-error-rate}` percent of its connections or responses fail in 10 seconds (at least 20 of them), 0 means disabled", "0"),
+                        new ResActParamMan(ParamMan.outlierejecttime, "a server is ejected for `${outlier-eject-time}` milliseconds, doubled for each successive ejection, at most 300000", "30000")
                     ),
                     Collections.singletonList(
+                        new ResActFlagMan(FlagMan.fastopen, "connect to the servers with MSG_FASTOPEN, bytes already received from the client are sent with SYN", false)
+                    ),
+                    Arrays.asList(
                         new Tuple<>(
                             "add server-group sg0 timeout 500 period 800 up 4 down 5 method wrr elg elg0",
                             "\"OK\""
+                        ),
+                        new Tuple<>(
+                            "add server-group sg1 timeout 500 period 800 up 4 down 5 fast-open",
+                            "\"OK\""
+                        ),
+                        new Tuple<>(
+                            "add server-group sg2 timeout 500 period 800 up 4 down 5 pool-min-idle 4 pool-max-idle 32 pool-max-age 60000",
+                            "\"OK\""
+                        ),
+                        new Tuple<>(
+                            "add server-group sg3 timeout 500 period 800 up 4 down 5 method wlc slow-start 30000",
+                            "\"OK\""
+                        ),
+                        new Tuple<>(
+                            "add server-group sg4 timeout 500 period 800 up 4 down 5 outlier-errors 5 outlier-error-rate 50 outlier-eject-time 10000",
+                            "\"OK\""
                         )
                     )),
                 new ResActMan(ActMan.addto, "attach an existing server group into an `upstream` resource",
@@ -749,9 +791,16 @@ public class HelpCommand {
                         new ResActParamMan(ParamMan.down, "set server status to DOWN after failed for `${down}` times", "not changed"),
                         new ResActParamMan(ParamMan.protocol, "the protocol used for checking the servers, you may choose `tcp`, `none`. " +
                             "Note: this field will be set to `tcp` as default when updating other hc options", "not changed"),
-                        new ResActParamMan(ParamMan.method, "loadbalancing algorithm, you can choose `wrr`, `wlc`, `source`", "not changed"),
+                        new ResActParamMan(ParamMan.method, "loadbalancing algorithm, you can choose `wrr`, `wlc`, `p2c`, `ewma`, `source`, `sourcebl`", "not changed"),
                         new ResActParamMan(ParamMan.weight, "the weight of group in the upstream resource (only available for server-group in upstream)", "not changed"),
-                        new ResActParamMan(ParamMan.annotations, "annotation of the group itself, or the group in the upstream", "not changed")
+                        new ResActParamMan(ParamMan.annotations, "annotation of the group itself, or the group in the upstream", "not changed"),
+                        new ResActParamMan(ParamMan.poolminidle, "minimum pre-established connections kept for each server on each event loop", "not changed"),
+                        new ResActParamMan(ParamMan.poolmaxidle, "maximum pre-established connections kept for each server on each event loop, set to 0 to disable pooling", "not changed"),
+                        new ResActParamMan(ParamMan.poolmaxage, "max age (ms) of pre-established connections", "not changed"),
+                        new ResActParamMan(ParamMan.slowstart, "the period (ms) for a server to ramp up to its full weight after it becomes UP, set to 0 to disable", "not changed"),
+                        new ResActParamMan(ParamMan.outliererrors, "consecutive errors on real traffic to eject a server, set to 0 to disable", "not changed"),
+                        new ResActParamMan(ParamMan.outliererrorrate, "percentage of errors on real traffic to eject a server, set to 0 to disable", "not changed"),
+                        new ResActParamMan(ParamMan.outlierejecttime, "the time (ms) for a server to be ejected for the first time", "not changed")
                     ),
                     Arrays.asList(
                         new Tuple<>(
@@ -762,6 +811,10 @@ public class HelpCommand {
                             "update server-group sg0 method wlc",
                             "\"OK\""
                         ),
+                        new Tuple<>(
+                            "update server-group sg0 pool-min-idle 8 pool-max-idle 64",
+                            "\"OK\""
+                        ),
                         new Tuple<>(
                             "update server-group sg0 in upstream ups0 weight 5",
                             "\"OK\""
@@ -789,9 +842,16 @@ public class HelpCommand {
                 new ResActMan(ActMan.addto, "specify a name, a event loop group, and create a new event loop in the specified group",
                     Collections.emptyList(),
                     Collections.singletonList(
+                        new ResActFlagMan(FlagMan.timingwheel, "use the hierarchical timing wheel for timers of the event loop, O(1) for adding and canceling timers", false)
+                    ),
+                    Arrays.asList(
                         new Tuple<>(
                             "add event-loop el0 to elg elg0",
                             "\"OK\""
+                        ),
+                        new Tuple<>(
+                            "add event-loop el1 to elg elg0 timing-wheel",
+                            "\"OK\""
                         )
                     )),
                 new ResActMan(ActMan.list, "retrieve names of all event loops in a event loop group",
@@ -1017,6 +1077,43 @@ public class HelpCommand {
                         )
                     ))
             )),
+        dnsnameserver("dns-nameserver", null, "The nameservers used by the dns resolver and their statistics. It can only be accessed from the (default) dns resolver",
+            Arrays.asList(
+                new ResActMan(ActMan.list, "get the nameserver list",
+                    Collections.emptyList(),
+                    Collections.singletonList(
+                        new Tuple<>(
+                            "list dns-nameserver in resolver (default)",
+                            "1) \"8.8.8.8:53\"\n" +
+                                "2) \"8.8.4.4:53\""
+                        )
+                    )),
+                new ResActMan(ActMan.listdetail, "list the statistics of the nameservers.\n" +
+                    "\n" +
+                    "The return values are:\n" +
+                    "\n" +
+                    "nameserver address.\n" +
+                    "queries sent.\n" +
+                    "valid answers received.\n" +
+                    "failures (timeout or invalid answer).\n" +
+                    "smoothed round trip time in milliseconds",
+                    Collections.emptyList(),
+                    Collections.singletonList(
+                        new Tuple<>(
+                            "list-detail dns-nameserver in resolver (default)",
+                            "1) 1) \"8.8.8.8:53\"\n" +
+                                "   2) (integer) 12\n" +
+                                "   3) (integer) 11\n" +
+                                "   4) (integer) 1\n" +
+                                "   5) \"35.127\"\n" +
+                                "2) 1) \"8.8.4.4:53\"\n" +
+                                "   2) (integer) 12\n" +
+                                "   3) (integer) 12\n" +
+                                "   4) (integer) 0\n" +
+                                "   5) \"41.003\""
+                        )
+                    ))
+            )),
         serversock("server-sock", "ss", "represents a `ServerSocketChannel`, which binds an ip:port",
             Arrays.asList(
                 new ResActMan(ActMan.list, "count server-socks",
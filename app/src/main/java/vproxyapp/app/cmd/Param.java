@@ -25,6 +25,13 @@ public enum Param {
     sg("server-group"),
     ttl("ttl"),
     anno("annotations"),
+    poolminidle("pool-min-idle"),
+    poolmaxidle("pool-max-idle"),
+    poolmaxage("pool-max-age"),
+    slowstart("slow-start"),
+    outliererrors("outlier-errors"),
+    outliererrorrate("outlier-error-rate"),
+    outlierejecttime("outlier-eject-time"),
 
     service("service"),
     zone("zone"),
@@ -19,6 +19,7 @@ public enum ResourceType {
     secgr("security-group-rule"),
     resolver("resolver"),
     dnscache("dns-cache"),
+    dnsnameserver("dns-nameserver"),
     ck("cert-key"),
 
     sw("switch"),
@@ -0,0 +1,55 @@
+package vproxyapp.app.cmd.handle.param;
+
+import vproxyapp.app.cmd.Command;
+import vproxyapp.app.cmd.Param;
+import vproxybase.component.svrgroup.ServerGroup;
+import vproxybase.util.exception.XException;
+
+public class OutlierHandle {
+    private OutlierHandle() {
+    }
+
+    public static boolean present(Command cmd) {
+        return cmd.args.containsKey(Param.outliererrors)
+            || cmd.args.containsKey(Param.outliererrorrate)
+            || cmd.args.containsKey(Param.outlierejecttime);
+    }
+
+    public static void check(Command cmd) throws Exception {
+        int[] outlier;
+        try {
+            outlier = get(cmd, 0, 0, 1);
+        } catch (Exception e) {
+            throw new XException("invalid outlier detection config");
+        }
+        if (outlier[0] < 0 || outlier[1] < 0 || outlier[2] < 0)
+            throw new XException("invalid outlier detection config");
+        if (outlier[1] > 100)
+            throw new XException(Param.outliererrorrate.fullname + " should not be greater than 100");
+        if (cmd.args.containsKey(Param.outlierejecttime) && outlier[2] == 0)
+            throw new XException(Param.outlierejecttime.fullname + " should be positive");
+    }
+
+    // the missing args are taken from the current settings
+    private static int[] get(Command cmd, int errors, int errorRate, int ejectTime) {
+        if (cmd.args.containsKey(Param.outliererrors)) {
+            errors = Integer.parseInt(cmd.args.get(Param.outliererrors));
+        }
+        if (cmd.args.containsKey(Param.outliererrorrate)) {
+            errorRate = Integer.parseInt(cmd.args.get(Param.outliererrorrate));
+        }
+        if (cmd.args.containsKey(Param.outlierejecttime)) {
+            ejectTime = Integer.parseInt(cmd.args.get(Param.outlierejecttime));
+        }
+        return new int[]{errors, errorRate, ejectTime};
+    }
+
+    public static void set(Command cmd, ServerGroup g) throws Exception {
+        int[] outlier = get(cmd, g.getOutlierErrors(), g.getOutlierErrorRate(), g.getOutlierEjectTime());
+        try {
+            g.setOutlierDetection(outlier[0], outlier[1], outlier[2]);
+        } catch (IllegalArgumentException e) {
+            throw new XException(e.getMessage());
+        }
+    }
+}
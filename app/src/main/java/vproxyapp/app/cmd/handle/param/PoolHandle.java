@@ -0,0 +1,57 @@
+package vproxyapp.app.cmd.handle.param;
+
+import vproxyapp.app.cmd.Command;
+import vproxyapp.app.cmd.Param;
+import vproxybase.component.svrgroup.ServerGroup;
+import vproxybase.util.exception.XException;
+
+public class PoolHandle {
+    private PoolHandle() {
+    }
+
+    public static boolean present(Command cmd) {
+        return cmd.args.containsKey(Param.poolminidle)
+            || cmd.args.containsKey(Param.poolmaxidle)
+            || cmd.args.containsKey(Param.poolmaxage);
+    }
+
+    public static void check(Command cmd) throws Exception {
+        int[] pool;
+        try {
+            pool = get(cmd, 0, 0, 0);
+        } catch (Exception e) {
+            throw new XException("invalid pool config");
+        }
+        if (pool[0] < 0 || pool[1] < 0 || pool[2] < 0)
+            throw new XException("invalid pool config");
+        if (pool[0] > pool[1])
+            throw new XException(Param.poolminidle.fullname + " should not be greater than " + Param.poolmaxidle.fullname);
+    }
+
+    // the missing args are taken from the current settings
+    // max-idle grows with min-idle if it's not specified
+    private static int[] get(Command cmd, int minIdle, int maxIdle, int maxAge) {
+        if (cmd.args.containsKey(Param.poolminidle)) {
+            minIdle = Integer.parseInt(cmd.args.get(Param.poolminidle));
+            if (!cmd.args.containsKey(Param.poolmaxidle)) {
+                maxIdle = Math.max(maxIdle, minIdle);
+            }
+        }
+        if (cmd.args.containsKey(Param.poolmaxidle)) {
+            maxIdle = Integer.parseInt(cmd.args.get(Param.poolmaxidle));
+        }
+        if (cmd.args.containsKey(Param.poolmaxage)) {
+            maxAge = Integer.parseInt(cmd.args.get(Param.poolmaxage));
+        }
+        return new int[]{minIdle, maxIdle, maxAge};
+    }
+
+    public static void set(Command cmd, ServerGroup g) throws Exception {
+        int[] pool = get(cmd, g.getPoolMinIdle(), g.getPoolMaxIdle(), g.getPoolMaxAge());
+        try {
+            g.setPool(pool[0], pool[1], pool[2]);
+        } catch (IllegalArgumentException e) {
+            throw new XException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package vproxyapp.app.cmd.handle.resource;
+
+import vproxyapp.app.cmd.Resource;
+import vproxyapp.app.cmd.ResourceType;
+import vproxybase.dns.DNSClient;
+import vproxybase.dns.Resolver;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class DnsNameServerHandle {
+    private DnsNameServerHandle() {
+    }
+
+    public static void checkDnsNameServerParent(Resource parent) throws Exception {
+        if (parent == null)
+            throw new Exception("cannot find " + ResourceType.dnsnameserver.fullname + " on top level");
+        ResolverHandle.checkResolver(parent);
+    }
+
+    public static List<String> names() {
+        return detail().stream().map(ns -> ns.address.formatToIPPortString()).collect(Collectors.toList());
+    }
+
+    public static List<DNSClient.NameServerStats> detail() {
+        return Resolver.getDefault().getNameServerStats();
+    }
+}
@@ -2,6 +2,7 @@ package vproxyapp.app.cmd.handle.resource;
 
 import vproxyapp.app.Application;
 import vproxyapp.app.cmd.Command;
+import vproxyapp.app.cmd.Flag;
 import vproxyapp.app.cmd.Resource;
 import vproxyapp.app.cmd.ResourceType;
 import vproxybase.component.elgroup.EventLoopGroup;
@@ -9,6 +10,7 @@ import vproxybase.component.elgroup.EventLoopWrapper;
 import vproxybase.util.exception.XException;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class EventLoopHandle {
     private EventLoopHandle() {
@@ -32,11 +34,20 @@ public class EventLoopHandle {
         return g.names();
     }
 
+    public static List<EventLoopRef> details(Resource targetResource) throws Exception {
+        EventLoopGroup g = EventLoopGroupHandle.get(targetResource);
+        return g.list().stream().map(EventLoopRef::new).collect(Collectors.toList());
+    }
+
     public static void add(Command cmd) throws Exception {
         EventLoopGroup g = EventLoopGroupHandle.get(cmd.prepositionResource);
         if (Application.isDefaultEventLoopGroupName(g.alias))
             throw new XException("cannot modify the default event loop group " + g.alias);
-        g.add(cmd.resource.alias);
+        if (cmd.flags.contains(Flag.timingwheel)) {
+            g.add(cmd.resource.alias, true);
+        } else {
+            g.add(cmd.resource.alias);
+        }
     }
 
     public static void forceRemove(Command cmd) throws Exception {
@@ -45,4 +56,18 @@ public class EventLoopHandle {
             throw new XException("cannot modify the default event loop group " + g.alias);
         g.remove(cmd.resource.alias);
     }
+
+    public static class EventLoopRef {
+        private final EventLoopWrapper el;
+
+        public EventLoopRef(EventLoopWrapper el) {
+            this.el = el;
+        }
+
+        @Override
+        public String toString() {
+            return el.alias + " -> timing-wheel " + el.getSelectorEventLoop().isUsingTimingWheel()
+                + " buffer-pool " + el.getSelectorEventLoop().getBufferPool();
+        }
+    }
 }
@@ -5,12 +5,16 @@ import vproxy.component.svrgroup.Upstream;
 import vproxyapp.app.Application;
 import vproxyapp.app.ServerGroupHolder;
 import vproxyapp.app.cmd.Command;
+import vproxyapp.app.cmd.Flag;
 import vproxyapp.app.cmd.Param;
 import vproxyapp.app.cmd.Resource;
 import vproxyapp.app.cmd.ResourceType;
 import vproxyapp.app.cmd.handle.param.AnnotationsHandle;
 import vproxyapp.app.cmd.handle.param.HealthCheckHandle;
 import vproxyapp.app.cmd.handle.param.MethHandle;
+import vproxyapp.app.cmd.handle.param.OutlierHandle;
+import vproxyapp.app.cmd.handle.param.PoolHandle;
+import vproxyapp.app.cmd.handle.param.TimeoutHandle;
 import vproxyapp.app.cmd.handle.param.WeightHandle;
 import vproxybase.component.check.HealthCheckConfig;
 import vproxybase.component.elgroup.EventLoopGroup;
@@ -82,6 +86,15 @@ public class ServerGroupHandle {
         if (cmd.args.containsKey(Param.anno)) {
             AnnotationsHandle.check(cmd);
         }
+        if (PoolHandle.present(cmd)) {
+            PoolHandle.check(cmd);
+        }
+        if (cmd.args.containsKey(Param.slowstart)) {
+            TimeoutHandle.check(cmd, Param.slowstart);
+        }
+        if (OutlierHandle.present(cmd)) {
+            OutlierHandle.check(cmd);
+        }
     }
 
     public static void checkUpdateServerGroup(Command cmd) throws Exception {
@@ -110,6 +123,15 @@ public class ServerGroupHandle {
             if (cmd.args.containsKey(Param.anno)) {
                 AnnotationsHandle.check(cmd);
             }
+            if (PoolHandle.present(cmd)) {
+                PoolHandle.check(cmd);
+            }
+            if (cmd.args.containsKey(Param.slowstart)) {
+                TimeoutHandle.check(cmd, Param.slowstart);
+            }
+            if (OutlierHandle.present(cmd)) {
+                OutlierHandle.check(cmd);
+            }
         } else {
             // can modify the weight in a upstream
             if (cmd.resource.parentResource.type != ResourceType.ups)
@@ -167,7 +189,17 @@ public class ServerGroupHandle {
             if (cmd.args.containsKey(Param.anno)) {
                 anno = AnnotationsHandle.get(cmd);
             }
-            Application.get().serverGroupHolder.add(alias, elg, c, MethHandle.get(cmd), anno);
+            ServerGroup g = Application.get().serverGroupHolder.add(alias, elg, c, MethHandle.get(cmd), anno);
+            g.setFastOpen(cmd.flags.contains(Flag.fastopen));
+            if (PoolHandle.present(cmd)) {
+                PoolHandle.set(cmd, g);
+            }
+            if (cmd.args.containsKey(Param.slowstart)) {
+                g.setSlowStart(TimeoutHandle.get(cmd, Param.slowstart));
+            }
+            if (OutlierHandle.present(cmd)) {
+                OutlierHandle.set(cmd, g);
+            }
         } else {
             // add into upstream
             int weight = WeightHandle.get(cmd);
@@ -217,6 +249,15 @@ public class ServerGroupHandle {
             if (cmd.args.containsKey(Param.anno)) {
                 g.setAnnotations(AnnotationsHandle.get(cmd));
             }
+            if (PoolHandle.present(cmd)) {
+                PoolHandle.set(cmd, g);
+            }
+            if (cmd.args.containsKey(Param.slowstart)) {
+                g.setSlowStart(TimeoutHandle.get(cmd, Param.slowstart));
+            }
+            if (OutlierHandle.present(cmd)) {
+                OutlierHandle.set(cmd, g);
+            }
         } else {
             Upstream.ServerGroupHandle h = getHandle(cmd.resource);
             if (cmd.args.containsKey(Param.w)) {
@@ -253,7 +294,17 @@ public class ServerGroupHandle {
                 " method " + g.getMethod() +
                 " event-loop-group " + g.eventLoopGroup.alias +
                 " annotations " + formatAnno() +
-                (h == null ? "" : " weight " + h.getWeight());
+                (h == null ? "" : " weight " + h.getWeight()) +
+                (g.isFastOpen() ? " fast-open" : "") +
+                (g.getPoolMaxIdle() == 0 ? "" :
+                    " pool-min-idle " + g.getPoolMinIdle() +
+                        " pool-max-idle " + g.getPoolMaxIdle() +
+                        " pool-max-age " + g.getPoolMaxAge()) +
+                (g.getSlowStart() == 0 ? "" : " slow-start " + g.getSlowStart()) +
+                (g.getOutlierErrors() == 0 && g.getOutlierErrorRate() == 0 ? "" :
+                    " outlier-errors " + g.getOutlierErrors() +
+                        " outlier-error-rate " + g.getOutlierErrorRate() +
+                        " outlier-eject-time " + g.getOutlierEjectTime());
         }
 
         private String formatAnno() {
@@ -7,6 +7,7 @@ import vproxy.component.ssl.CertKey;
 import vproxy.component.svrgroup.Upstream;
 import vproxyapp.app.Application;
 import vproxyapp.app.cmd.Command;
+import vproxyapp.app.cmd.Flag;
 import vproxyapp.app.cmd.Param;
 import vproxyapp.app.cmd.Resource;
 import vproxyapp.app.cmd.handle.param.AddrHandle;
@@ -119,7 +120,8 @@ public class TcpLBHandle {
             }
         }
         Application.get().tcpLBHolder.add(
-            alias, acceptor, worker, addr, backend, timeout, inBufferSize, outBufferSize, protocol, certKeys, secg
+            alias, acceptor, worker, addr, backend, timeout, inBufferSize, outBufferSize, protocol, certKeys, secg,
+            cmd.flags.contains(Flag.fastopen)
         );
     }
 
@@ -172,7 +174,8 @@ public class TcpLBHandle {
                 + " timeout " + tcpLB.getTimeout()
                 + " in-buffer-size " + tcpLB.getInBufferSize() + " out-buffer-size " + tcpLB.getOutBufferSize()
                 + " protocol " + tcpLB.protocol
-                + " security-group " + tcpLB.securityGroup.alias;
+                + " security-group " + tcpLB.securityGroup.alias
+                + (tcpLB.isFastOpen() ? " fast-open" : "");
         }
     }
 }
@@ -87,6 +87,7 @@ public class HttpController {
                 .put("outBufferSize", 16384)
                 .putArray("listOfCertKey", arr -> arr.add("alias of the cert-key to be used"))
                 .put("securityGroup", "alias of the security group, default: (allow-all)")
+                .put("fastOpen", false)
                 .build(),
             "name", "address", "backend"));
         server.put(moduleBase + "/tcp-lb/:tl", wrapAsync(this::updateTcpLb, new ObjectBuilder()
@@ -143,6 +144,7 @@ public class HttpController {
         server.get(moduleBase + "/event-loop-group/:elg/event-loop", wrapAsync(this::listEventLoop));
         server.pst(moduleBase + "/event-loop-group/:elg/event-loop", wrapAsync(this::createEventLoop, new ObjectBuilder()
                 .put("name", "alias of the event loop")
+                .put("timingWheel", false)
                 .build(),
             "name"));
         server.del(moduleBase + "/event-loop-group/:elg/event-loop/:el", wrapAsync(this::deleteEventLoop));
@@ -207,6 +209,14 @@ public class HttpController {
                 .put("method", "load balancing method")
                 .putInst("annotations", new ObjectBuilder().put("key", "value").build())
                 .put("eventLoopGroup", "choose a event-loop-group for the server group. health check operations will be performed on the event loop group")
+                .put("fastOpen", false)
+                .put("poolMinIdle", 0)
+                .put("poolMaxIdle", 0)
+                .put("poolMaxAge", 0)
+                .put("slowStart", 0)
+                .put("outlierErrors", 0)
+                .put("outlierErrorRate", 0)
+                .put("outlierEjectTime", 30000)
                 .build(),
             "name", "timeout", "period", "up", "down"));
         server.put(moduleBase + "/server-group/:sg", wrapAsync(this::updateServerGroup, new ObjectBuilder()
@@ -217,6 +227,13 @@ public class HttpController {
             .put("protocol", "the protocol used to do health check")
             .put("method", "load balancing method")
             .putInst("annotations", new ObjectBuilder().put("key", "value").build())
+            .put("poolMinIdle", 0)
+            .put("poolMaxIdle", 0)
+            .put("poolMaxAge", 0)
+            .put("slowStart", 0)
+            .put("outlierErrors", 0)
+            .put("outlierErrorRate", 0)
+            .put("outlierEjectTime", 30000)
             .build()));
         server.del(moduleBase + "/server-group/:sg", wrapAsync(this::deleteServerGroup));
         // security-group-rule
@@ -401,6 +418,9 @@ public class HttpController {
             options.add("security-group");
             options.add(body.getString("securityGroup"));
         }
+        if (bodyContainsKey(body, "fastOpen") && body.getBool("fastOpen")) {
+            options.add("fast-open");
+        }
         utils.execute(cb, options);
     }
 
@@ -630,8 +650,17 @@ public class HttpController {
     private void createEventLoop(RoutingContext rctx, Callback<JSON.Instance, Throwable> cb) {
         var body = (JSON.Object) rctx.get(Tool.bodyJson);
         var name = body.getString("name");
-        utils.execute(cb,
-            "add", "event-loop", name, "to", "event-loop-group", rctx.param("elg"));
+        List<String> options = new LinkedList<>();
+        options.add("add");
+        options.add("event-loop");
+        options.add(name);
+        options.add("to");
+        options.add("event-loop-group");
+        options.add(rctx.param("elg"));
+        if (bodyContainsKey(body, "timingWheel") && body.getBool("timingWheel")) {
+            options.add("timing-wheel");
+        }
+        utils.execute(cb, options);
     }
 
     private void deleteEventLoop(RoutingContext rctx, Callback<JSON.Instance, Throwable> cb) {
@@ -880,6 +909,37 @@ public class HttpController {
             options.add("annotations");
             options.add(body.getObject("annotations").stringify());
         }
+        if (bodyContainsKey(body, "fastOpen") && body.getBool("fastOpen")) {
+            options.add("fast-open");
+        }
+        if (bodyContainsKey(body, "poolMinIdle")) {
+            options.add("pool-min-idle");
+            options.add("" + body.getInt("poolMinIdle"));
+        }
+        if (bodyContainsKey(body, "poolMaxIdle")) {
+            options.add("pool-max-idle");
+            options.add("" + body.getInt("poolMaxIdle"));
+        }
+        if (bodyContainsKey(body, "poolMaxAge")) {
+            options.add("pool-max-age");
+            options.add("" + body.getInt("poolMaxAge"));
+        }
+        if (bodyContainsKey(body, "slowStart")) {
+            options.add("slow-start");
+            options.add("" + body.getInt("slowStart"));
+        }
+        if (bodyContainsKey(body, "outlierErrors")) {
+            options.add("outlier-errors");
+            options.add("" + body.getInt("outlierErrors"));
+        }
+        if (bodyContainsKey(body, "outlierErrorRate")) {
+            options.add("outlier-error-rate");
+            options.add("" + body.getInt("outlierErrorRate"));
+        }
+        if (bodyContainsKey(body, "outlierEjectTime")) {
+            options.add("outlier-eject-time");
+            options.add("" + body.getInt("outlierEjectTime"));
+        }
         utils.execute(cb, options);
     }
 
@@ -924,6 +984,34 @@ public class HttpController {
             options.add("annotations");
             options.add(body.getObject("annotations").stringify());
         }
+        if (bodyContainsKey(body, "poolMinIdle")) {
+            options.add("pool-min-idle");
+            options.add("" + body.getInt("poolMinIdle"));
+        }
+        if (bodyContainsKey(body, "poolMaxIdle")) {
+            options.add("pool-max-idle");
+            options.add("" + body.getInt("poolMaxIdle"));
+        }
+        if (bodyContainsKey(body, "poolMaxAge")) {
+            options.add("pool-max-age");
+            options.add("" + body.getInt("poolMaxAge"));
+        }
+        if (bodyContainsKey(body, "slowStart")) {
+            options.add("slow-start");
+            options.add("" + body.getInt("slowStart"));
+        }
+        if (bodyContainsKey(body, "outlierErrors")) {
+            options.add("outlier-errors");
+            options.add("" + body.getInt("outlierErrors"));
+        }
+        if (bodyContainsKey(body, "outlierErrorRate")) {
+            options.add("outlier-error-rate");
+            options.add("" + body.getInt("outlierErrorRate"));
+        }
+        if (bodyContainsKey(body, "outlierEjectTime")) {
+            options.add("outlier-eject-time");
+            options.add("" + body.getInt("outlierEjectTime"));
+        }
 
         utils.execute(cb, options);
     }
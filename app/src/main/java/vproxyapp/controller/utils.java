@@ -24,6 +24,7 @@ import vproxybase.component.svrgroup.ServerGroup;
 import vproxybase.connection.Connection;
 import vproxybase.connection.ServerSock;
 import vproxybase.util.Callback;
+import vproxybase.util.DirectBufferPool;
 import vproxybase.util.LogType;
 import vproxybase.util.Logger;
 import vproxybase.util.Utils;
@@ -406,6 +407,19 @@ class utils {
     static JSON.Object formatEventLoop(EventLoopWrapper el) {
         return new ObjectBuilder()
             .put("name", el.alias)
+            .put("timingWheel", el.getSelectorEventLoop().isUsingTimingWheel())
+            .putInst("bufferPool", formatDirectBufferPool(el.getSelectorEventLoop().getBufferPool()))
+            .build();
+    }
+
+    static JSON.Object formatDirectBufferPool(DirectBufferPool pool) {
+        return new ObjectBuilder()
+            .put("hit", pool.getHit())
+            .put("miss", pool.getMiss())
+            .put("returned", pool.getReturned())
+            .put("dropped", pool.getDropped())
+            .put("size", pool.getCachedCount())
+            .put("bytes", pool.getCachedBytes())
             .build();
     }
 
@@ -360,6 +360,9 @@ public class Shutdown {
                     }
 
                     String cmd = "add event-loop " + eventLoopWrapper.alias + " to event-loop-group " + elg.alias;
+                    if (eventLoopWrapper.getSelectorEventLoop().isUsingTimingWheel()) {
+                        cmd += " timing-wheel";
+                    }
                     commands.add(cmd);
                 }
             }
@@ -390,6 +393,18 @@ public class Shutdown {
                 if (!anno.isEmpty()) {
                     cmd += " annotations " + toAnnotation(anno);
                 }
+                if (sg.isFastOpen()) {
+                    cmd += " fast-open";
+                }
+                if (sg.getPoolMaxIdle() != 0) {
+                    cmd += " pool-min-idle " + sg.getPoolMinIdle() + " pool-max-idle " + sg.getPoolMaxIdle() + " pool-max-age " + sg.getPoolMaxAge();
+                }
+                if (sg.getSlowStart() != 0) {
+                    cmd += " slow-start " + sg.getSlowStart();
+                }
+                if (sg.getOutlierErrors() != 0 || sg.getOutlierErrorRate() != 0) {
+                    cmd += " outlier-errors " + sg.getOutlierErrors() + " outlier-error-rate " + sg.getOutlierErrorRate() + " outlier-eject-time " + sg.getOutlierEjectTime();
+                }
                 commands.add(cmd);
                 serverGroupList.add(sg);
                 upstreamNames.add(name);
@@ -514,6 +529,9 @@ public class Shutdown {
                         cmd.append(",").append(tl.getCertKeys()[i].alias);
                     }
                 }
+                if (tl.isFastOpen()) {
+                    cmd.append(" fast-open");
+                }
                 commands.add(cmd.toString());
             }
         }
@@ -89,12 +89,18 @@
         #define v_close       ff_close
         #define v_read        ff_read
         #define v_write       ff_write
+        #define v_readv       ff_readv
+        #define v_writev      ff_writev
     #else
         #define v_close       close
         #define v_read        read
         #define v_write       write
+        #define v_readv       readv
+        #define v_writev      writev
         #define v_pipe        pipe
     #endif
+    #include <sys/uio.h>
+    typedef struct iovec v_iovec;
     typedef struct sockaddr_in  v_sockaddr_in;
     typedef struct sockaddr_in6 v_sockaddr_in6;
     #include <sys/un.h>
@@ -161,6 +167,41 @@
 
     #include <fcntl.h>
 
+    // for zero copy forwarding
+    #if defined(__linux__) && !defined(FSTACK)
+        #define V_SPLICE_SUPPORTED 1
+        #define V_SPLICE_F_MOVE     SPLICE_F_MOVE
+        #define V_SPLICE_F_NONBLOCK SPLICE_F_NONBLOCK
+        #define v_splice splice
+        #define v_pipe2  pipe2
+    #endif
+
+    // tcp fast open
+    #if defined(__linux__) && !defined(FSTACK) && defined(MSG_FASTOPEN) && defined(TCP_FASTOPEN)
+        #define V_TCP_FASTOPEN_SUPPORTED 1
+        #define V_TCP_FASTOPEN TCP_FASTOPEN
+        #define V_MSG_FASTOPEN MSG_FASTOPEN
+    #endif
+
+    // accept and set flags in one call
+    #if defined(__linux__) && !defined(FSTACK)
+        #define V_ACCEPT4_SUPPORTED 1
+        #define v_accept4 accept4
+        #define V_SOCK_NONBLOCK SOCK_NONBLOCK
+        #define V_SOCK_CLOEXEC  SOCK_CLOEXEC
+    #endif
+
+    // for steering connections among SO_REUSEPORT sockets
+    #if defined(__linux__) && !defined(FSTACK)
+        #include <linux/filter.h>
+        #ifdef SO_ATTACH_REUSEPORT_CBPF
+            #define V_REUSEPORT_CBPF_SUPPORTED 1
+            #define V_SO_ATTACH_REUSEPORT_CBPF SO_ATTACH_REUSEPORT_CBPF
+            typedef struct sock_filter v_sock_filter;
+            typedef struct sock_fprog  v_sock_fprog;
+        #endif
+    #endif
+
     // for tap support
     #ifdef __linux__
       #include <string.h>
@@ -1,8 +1,12 @@
+#ifdef __linux__
+    #define _GNU_SOURCE // for splice(2) and pipe2(2)
+#endif
 #include "vfd_posix_GeneralPosix.h"
 #include "vfd_posix.h"
 #include "exception.h"
 
 #define MAX_EVENTS 512
+#define MAX_IOVEC_COUNT 64
 
 JNIEXPORT jboolean JNICALL Java_vfd_posix_GeneralPosix_pipeFDSupported
   (JNIEnv* env, jobject self) {
@@ -108,6 +112,34 @@ JNIEXPORT jobjectArray JNICALL Java_vfd_posix_GeneralPosix_aeApiPoll
     return ret;
 }
 
+// the fd and mask of each fired event are written into the direct buffer as two ints (native byte order)
+// the clientData are set into the attachments array at the same index
+// return count of fired events stored in the buffer
+JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_aeApiPollIntoBuffer
+  (JNIEnv* env, jobject self, jlong aex, jlong wait, jobject directBuffer, jobjectArray attachments) {
+    aeEventLoop* ae = (aeEventLoop*) aex;
+    v_timeval tv;
+    v_timeval* tvp = &tv;
+    tvp->tv_sec = wait/1000;
+    tvp->tv_usec = (wait % 1000)*1000;
+    int numevents = aePoll(ae, tvp);
+
+    jint* buf = (*env)->GetDirectBufferAddress(env, directBuffer);
+    int capacity = (*env)->GetArrayLength(env, attachments);
+    if (numevents > capacity) {
+      // the events are level triggered
+      // those not stored will be fired again in the next poll
+      numevents = capacity;
+    }
+    for (int j = 0; j < numevents; j++) {
+      aeFileEvent* fe = &(ae->events[ae->fired[j].fd]);
+      buf[j * 2] = ae->fired[j].fd;
+      buf[j * 2 + 1] = ae->fired[j].mask;
+      (*env)->SetObjectArrayElement(env, attachments, j, (jobject) fe->clientData);
+    }
+    return numevents;
+}
+
 // return FDInfo[]
 JNIEXPORT jobjectArray JNICALL Java_vfd_posix_GeneralPosix_aeAllFDs
   (JNIEnv* env, jobject self, jlong aex) {
@@ -227,6 +259,32 @@ JNIEXPORT void JNICALL Java_vfd_posix_GeneralPosix_setReusePort
     // do nothing for FSTACK
 }
 
+JNIEXPORT void JNICALL Java_vfd_posix_GeneralPosix_setReusePortCPUSteering
+  (JNIEnv* env, jobject self, jint fd, jint groupSize) {
+    #ifdef V_REUSEPORT_CBPF_SUPPORTED
+        if (groupSize <= 0) {
+            throwIOException(env, "invalid group size");
+            return;
+        }
+        // select socket[cpu % groupSize] in the reuseport group
+        v_sock_filter code[] = {
+            { BPF_LD  | BPF_W | BPF_ABS, 0, 0, SKF_AD_OFF + SKF_AD_CPU },
+            { BPF_ALU | BPF_MOD | BPF_K, 0, 0, groupSize },
+            { BPF_RET | BPF_A,           0, 0, 0 },
+        };
+        v_sock_fprog prog = {
+            .len = sizeof(code) / sizeof(code[0]),
+            .filter = code,
+        };
+        int res = v_setsockopt(fd, V_SOL_SOCKET, V_SO_ATTACH_REUSEPORT_CBPF, &prog, sizeof(prog));
+        if (res < 0) {
+            throwIOExceptionBasedOnErrno(env);
+        }
+    #else
+        throwUnsupportedOperationException(env, "SO_ATTACH_REUSEPORT_CBPF is not supported");
+    #endif
+}
+
 JNIEXPORT void JNICALL Java_vfd_posix_GeneralPosix_setRcvBuf
   (JNIEnv* env, jobject self, jint fd, jint v) {
     int val = v;
@@ -421,6 +479,135 @@ JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_accept
     return ret;
 }
 
+JNIEXPORT jboolean JNICALL Java_vfd_posix_GeneralPosix_tcpFastOpenSupported
+  (JNIEnv* env, jobject self) {
+    #ifdef V_TCP_FASTOPEN_SUPPORTED
+        return JNI_TRUE;
+    #else
+        return JNI_FALSE;
+    #endif
+}
+
+JNIEXPORT void JNICALL Java_vfd_posix_GeneralPosix_setTcpFastOpen
+  (JNIEnv* env, jobject self, jint fd, jint queueLength) {
+    #ifdef V_TCP_FASTOPEN_SUPPORTED
+        int qlen = queueLength;
+        int res = v_setsockopt(fd, V_IPPROTO_TCP, V_TCP_FASTOPEN, &qlen, sizeof(int));
+        if (res < 0) {
+            throwIOExceptionBasedOnErrno(env);
+        }
+    #else
+        throwUnsupportedOperationException(env, "TCP_FASTOPEN is not supported");
+    #endif
+}
+
+#ifdef V_TCP_FASTOPEN_SUPPORTED
+jint handleFastOpenResult(JNIEnv* env, int res) {
+    if (res < 0) {
+        if (errno == V_EINPROGRESS || errno == V_EAGAIN || errno == V_EWOULDBLOCK) {
+            // no cookie yet or the data cannot be sent in SYN
+            // the connection is still in progress and data should be sent later
+            return 0;
+        }
+        if (errno == EOPNOTSUPP) {
+            // the client side fast open is disabled in the kernel
+            // the fd is not connected yet, so the caller may fall back to connect()
+            throwUnsupportedOperationException(env, "MSG_FASTOPEN is disabled");
+            return 0;
+        }
+        throwIOExceptionBasedOnErrno(env);
+        return 0;
+    }
+    return res;
+}
+#endif
+
+JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_connectFastOpenIPv4
+  (JNIEnv* env, jobject self, jint fd, jobject directBuffer, jint off, jint len, jint addrHostOrder, jint port) {
+    #ifdef V_TCP_FASTOPEN_SUPPORTED
+        byte* buf = (*env)->GetDirectBufferAddress(env, directBuffer);
+        v_sockaddr_in name;
+        j2cSockAddrIPv4(&name, addrHostOrder, port);
+        int res = v_sendto(fd, buf + off, len, V_MSG_FASTOPEN, (v_sockaddr*) &name, sizeof(v_sockaddr_in));
+        return handleFastOpenResult(env, res);
+    #else
+        throwUnsupportedOperationException(env, "MSG_FASTOPEN is not supported");
+        return 0;
+    #endif
+}
+
+JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_connectFastOpenIPv6
+  (JNIEnv* env, jobject self, jint fd, jobject directBuffer, jint off, jint len, jstring fullAddr, jint port) {
+    #ifdef V_TCP_FASTOPEN_SUPPORTED
+        byte* buf = (*env)->GetDirectBufferAddress(env, directBuffer);
+        v_sockaddr_in6 name;
+        int res = j2cSockAddrIPv6(env, &name, fullAddr, port);
+        if (res < 0) {
+            throwIOExceptionBasedOnErrno(env);
+            return 0;
+        }
+        res = v_sendto(fd, buf + off, len, V_MSG_FASTOPEN, (v_sockaddr*) &name, sizeof(v_sockaddr_in6));
+        return handleFastOpenResult(env, res);
+    #else
+        throwUnsupportedOperationException(env, "MSG_FASTOPEN is not supported");
+        return 0;
+    #endif
+}
+
+int acceptNonBlocking(int fd, v_sockaddr* addr, unsigned int* addrLen) {
+    #ifdef V_ACCEPT4_SUPPORTED
+        return v_accept4(fd, addr, addrLen, V_SOCK_NONBLOCK | V_SOCK_CLOEXEC);
+    #else
+        int ret = v_accept(fd, addr, addrLen);
+        if (ret < 0) {
+            return ret;
+        }
+        int on = 1;
+        if (v_ioctl(ret, V_FIONBIO, &on) == -1) {
+            int err = errno;
+            v_close(ret);
+            errno = err;
+            return -1;
+        }
+        return ret;
+    #endif
+}
+
+// fdAndPort: [fd0, port0, fd1, port1, ...]
+// addrs: 16 bytes for each accepted socket, ipv4 address only uses the first 4 bytes
+JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_acceptBatch
+  (JNIEnv* env, jobject self, jint fd, jint max, jintArray fdAndPort, jbyteArray addrs) {
+    int n = 0;
+    while (n < max) {
+        v_sockaddr_in6 name; // large enough for both ipv4 and ipv6
+        unsigned int nameLen = sizeof(v_sockaddr_in6);
+        int ret = acceptNonBlocking(fd, (v_sockaddr*) &name, &nameLen);
+        if (ret < 0) {
+            if (errno == V_EAGAIN || errno == V_EWOULDBLOCK) {
+                break;
+            }
+            if (n == 0) {
+                throwIOExceptionBasedOnErrno(env);
+            }
+            // return already accepted sockets, the error will be raised in the next call
+            break;
+        }
+        jint fdPort[2];
+        fdPort[0] = ret;
+        if (((v_sockaddr*) &name)->sa_family == V_AF_INET) {
+            v_sockaddr_in* v4 = (v_sockaddr_in*) &name;
+            fdPort[1] = v_ntohs(v4->sin_port);
+            (*env)->SetByteArrayRegion(env, addrs, n * 16, 4, (jbyte*) &(v4->sin_addr));
+        } else {
+            fdPort[1] = v_ntohs(name.sin6_port);
+            (*env)->SetByteArrayRegion(env, addrs, n * 16, 16, (jbyte*) &(name.sin6_addr));
+        }
+        (*env)->SetIntArrayRegion(env, fdAndPort, n * 2, 2, fdPort);
+        ++n;
+    }
+    return n;
+}
+
 JNIEXPORT void JNICALL Java_vfd_posix_GeneralPosix_connectIPv4
   (JNIEnv* env, jobject self, jint fd, jint addrHostOrder, jint port) {
     v_sockaddr_in name;
@@ -626,6 +813,52 @@ JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_write
     return handleWriteIOOperationResult(env, res);
 }
 
+// posAndLen: [pos0, len0, pos1, len1, ...] for directBuffers[off] ~ directBuffers[off + count - 1]
+// at most MAX_IOVEC_COUNT buffers are operated in one call
+int buildIOVec(JNIEnv* env, jobjectArray directBuffers, jint off, jint count, jintArray posAndLen, v_iovec* iov) {
+    if (count > MAX_IOVEC_COUNT) {
+        count = MAX_IOVEC_COUNT;
+    }
+    jint arr[MAX_IOVEC_COUNT * 2];
+    (*env)->GetIntArrayRegion(env, posAndLen, 0, count * 2, arr);
+    int n = 0;
+    for (int i = 0; i < count; ++i) {
+        jint len = arr[i * 2 + 1];
+        if (len == 0) {
+            continue;
+        }
+        jobject buf = (*env)->GetObjectArrayElement(env, directBuffers, off + i);
+        byte* addr = (*env)->GetDirectBufferAddress(env, buf);
+        (*env)->DeleteLocalRef(env, buf);
+        iov[n].iov_base = addr + arr[i * 2];
+        iov[n].iov_len = len;
+        ++n;
+    }
+    return n;
+}
+
+JNIEXPORT jlong JNICALL Java_vfd_posix_GeneralPosix_readv
+  (JNIEnv* env, jobject self, jint fd, jobjectArray directBuffers, jint off, jint count, jintArray posAndLen) {
+    v_iovec iov[MAX_IOVEC_COUNT];
+    int n = buildIOVec(env, directBuffers, off, count, posAndLen, iov);
+    if (n == 0) {
+        return 0;
+    }
+    ssize_t res = v_readv(fd, iov, n);
+    return handleReadIOOperationResult(env, res);
+}
+
+JNIEXPORT jlong JNICALL Java_vfd_posix_GeneralPosix_writev
+  (JNIEnv* env, jobject self, jint fd, jobjectArray directBuffers, jint off, jint count, jintArray posAndLen) {
+    v_iovec iov[MAX_IOVEC_COUNT];
+    int n = buildIOVec(env, directBuffers, off, count, posAndLen, iov);
+    if (n == 0) {
+        return 0;
+    }
+    ssize_t res = v_writev(fd, iov, n);
+    return handleWriteIOOperationResult(env, res);
+}
+
 JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_sendtoIPv4
   (JNIEnv* env, jobject self, jint fd, jobject directBuffer, jint off, jint len, jint addrHostOrder, jint port) {
     if (len == 0) {
@@ -699,6 +932,60 @@ JNIEXPORT jobject JNICALL Java_vfd_posix_GeneralPosix_recvfromIPv6
     return ret;
 }
 
+JNIEXPORT jboolean JNICALL Java_vfd_posix_GeneralPosix_spliceSupported
+  (JNIEnv* env, jobject self) {
+    #ifdef V_SPLICE_SUPPORTED
+        return JNI_TRUE;
+    #else
+        return JNI_FALSE;
+    #endif
+}
+
+JNIEXPORT jintArray JNICALL Java_vfd_posix_GeneralPosix_openSplicePipe
+  (JNIEnv* env, jobject self, jint size) {
+    #ifdef V_SPLICE_SUPPORTED
+        int pipes[2];
+        int res = v_pipe2(pipes, O_NONBLOCK | O_CLOEXEC);
+        if (res < 0) {
+            throwIOExceptionBasedOnErrno(env);
+            return NULL;
+        }
+        if (size > 0) {
+            // ignore the error, e.g. the size exceeds /proc/sys/fs/pipe-max-size
+            // the default size will be used
+            fcntl(pipes[1], F_SETPIPE_SZ, size);
+        }
+        int cap = fcntl(pipes[1], F_GETPIPE_SZ);
+        if (cap < 0) {
+            throwIOExceptionBasedOnErrno(env);
+            v_close(pipes[0]);
+            v_close(pipes[1]);
+            return NULL;
+        }
+        jintArray ret = (*env)->NewIntArray(env, 3);
+        jint elems[] = { pipes[0], pipes[1], cap };
+        (*env)->SetIntArrayRegion(env, ret, 0, 3, elems);
+        return ret;
+    #else
+        throwIOException(env, "splice is not supported on current platform");
+        return NULL;
+    #endif
+}
+
+JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_splice
+  (JNIEnv* env, jobject self, jint fdIn, jint fdOut, jint len) {
+    #ifdef V_SPLICE_SUPPORTED
+        if (len == 0) {
+            return 0;
+        }
+        int res = v_splice(fdIn, NULL, fdOut, NULL, len, V_SPLICE_F_MOVE | V_SPLICE_F_NONBLOCK);
+        return handleReadIOOperationResult(env, res);
+    #else
+        throwIOException(env, "splice is not supported on current platform");
+        return 0;
+    #endif
+}
+
 JNIEXPORT jlong JNICALL Java_vfd_posix_GeneralPosix_currentTimeMillis
   (JNIEnv* env, jobject self) {
     v_timeval tv;
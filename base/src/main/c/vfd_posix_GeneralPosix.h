@@ -63,6 +63,14 @@ JNIEXPORT jlong JNICALL Java_vfd_posix_GeneralPosix_aeCreateEventLoop
 JNIEXPORT jobjectArray JNICALL Java_vfd_posix_GeneralPosix_aeApiPoll
   (JNIEnv *, jobject, jlong, jlong);
 
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    aeApiPollIntoBuffer
+ * Signature: (JJLjava/nio/ByteBuffer;[Ljava/lang/Object;)I
+ */
+JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_aeApiPollIntoBuffer
+  (JNIEnv *, jobject, jlong, jlong, jobject, jobjectArray);
+
 /*
  * Class:     vfd_posix_GeneralPosix
  * Method:    aeAllFDs
@@ -143,6 +151,14 @@ JNIEXPORT void JNICALL Java_vfd_posix_GeneralPosix_setSoLinger
 JNIEXPORT void JNICALL Java_vfd_posix_GeneralPosix_setReusePort
   (JNIEnv *, jobject, jint, jboolean);
 
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    setReusePortCPUSteering
+ * Signature: (II)V
+ */
+JNIEXPORT void JNICALL Java_vfd_posix_GeneralPosix_setReusePortCPUSteering
+  (JNIEnv *, jobject, jint, jint);
+
 /*
  * Class:     vfd_posix_GeneralPosix
  * Method:    setRcvBuf
@@ -247,6 +263,46 @@ JNIEXPORT void JNICALL Java_vfd_posix_GeneralPosix_bindUnixDomainSocket
 JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_accept
   (JNIEnv *, jobject, jint);
 
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    tcpFastOpenSupported
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_vfd_posix_GeneralPosix_tcpFastOpenSupported
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    setTcpFastOpen
+ * Signature: (II)V
+ */
+JNIEXPORT void JNICALL Java_vfd_posix_GeneralPosix_setTcpFastOpen
+  (JNIEnv *, jobject, jint, jint);
+
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    connectFastOpenIPv4
+ * Signature: (ILjava/nio/ByteBuffer;IIII)I
+ */
+JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_connectFastOpenIPv4
+  (JNIEnv *, jobject, jint, jobject, jint, jint, jint, jint);
+
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    connectFastOpenIPv6
+ * Signature: (ILjava/nio/ByteBuffer;IILjava/lang/String;I)I
+ */
+JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_connectFastOpenIPv6
+  (JNIEnv *, jobject, jint, jobject, jint, jint, jstring, jint);
+
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    acceptBatch
+ * Signature: (II[I[B)I
+ */
+JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_acceptBatch
+  (JNIEnv *, jobject, jint, jint, jintArray, jbyteArray);
+
 /*
  * Class:     vfd_posix_GeneralPosix
  * Method:    connectIPv4
@@ -343,6 +399,22 @@ JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_read
 JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_write
   (JNIEnv *, jobject, jint, jobject, jint, jint);
 
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    readv
+ * Signature: (I[Ljava/nio/ByteBuffer;II[I)J
+ */
+JNIEXPORT jlong JNICALL Java_vfd_posix_GeneralPosix_readv
+  (JNIEnv *, jobject, jint, jobjectArray, jint, jint, jintArray);
+
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    writev
+ * Signature: (I[Ljava/nio/ByteBuffer;II[I)J
+ */
+JNIEXPORT jlong JNICALL Java_vfd_posix_GeneralPosix_writev
+  (JNIEnv *, jobject, jint, jobjectArray, jint, jint, jintArray);
+
 /*
  * Class:     vfd_posix_GeneralPosix
  * Method:    sendtoIPv4
@@ -375,6 +447,30 @@ JNIEXPORT jobject JNICALL Java_vfd_posix_GeneralPosix_recvfromIPv4
 JNIEXPORT jobject JNICALL Java_vfd_posix_GeneralPosix_recvfromIPv6
   (JNIEnv *, jobject, jint, jobject, jint, jint);
 
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    spliceSupported
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_vfd_posix_GeneralPosix_spliceSupported
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    openSplicePipe
+ * Signature: (I)[I
+ */
+JNIEXPORT jintArray JNICALL Java_vfd_posix_GeneralPosix_openSplicePipe
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     vfd_posix_GeneralPosix
+ * Method:    splice
+ * Signature: (III)I
+ */
+JNIEXPORT jint JNICALL Java_vfd_posix_GeneralPosix_splice
+  (JNIEnv *, jobject, jint, jint, jint);
+
 /*
  * Class:     vfd_posix_GeneralPosix
  * Method:    currentTimeMillis
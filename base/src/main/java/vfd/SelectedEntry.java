@@ -3,11 +3,21 @@ package vfd;
 import java.util.Objects;
 
 public class SelectedEntry {
-    public final FD fd;
-    public final EventSet ready;
-    public final Object attachment;
+    // the fields are not final
+    // selectors may reuse the entry objects between polls to avoid allocation
+    // so the entries should not be retained after the next select call
+    public FD fd;
+    public EventSet ready;
+    public Object attachment;
+
+    public SelectedEntry() {
+    }
 
     public SelectedEntry(FD fd, EventSet ready, Object attachment) {
+        set(fd, ready, attachment);
+    }
+
+    public void set(FD fd, EventSet ready, Object attachment) {
         this.fd = fd;
         this.ready = ready;
         this.attachment = attachment;
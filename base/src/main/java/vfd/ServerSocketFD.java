@@ -10,5 +10,30 @@ public interface ServerSocketFD extends FD {
      */
     SocketFD accept() throws IOException;
 
+    /**
+     * accept at most `max` sockets and store them into the array from index 0
+     *
+     * @return count of accepted sockets
+     */
+    default int accept(SocketFD[] accepted, int max) throws IOException {
+        int n = 0;
+        while (n < max) {
+            SocketFD sock;
+            try {
+                sock = accept();
+            } catch (IOException e) {
+                if (n == 0) {
+                    throw e;
+                }
+                break; // return already accepted sockets
+            }
+            if (sock == null) {
+                break;
+            }
+            accepted[n++] = sock;
+        }
+        return n;
+    }
+
     void bind(IPPort l4addr) throws IOException;
 }
@@ -1,13 +1,86 @@
 package vfd;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 
-public interface SocketFD extends FD, NetworkFD<IPPort> {
+public interface SocketFD extends FD, NetworkFD<IPPort>, ScatteringByteChannel, GatheringByteChannel {
     void connect(IPPort l4addr) throws IOException;
 
+    /**
+     * start connecting and try to send the data with SYN (tcp fast open).
+     * the default implementation only connects,
+     * implementations should override it if fast open is supported
+     *
+     * @return bytes sent with SYN, the position of data is moved forward accordingly.
+     * 0 means nothing is sent and the data should be written after connected
+     */
+    default int connectFastOpen(IPPort l4addr, ByteBuffer data) throws IOException {
+        connect(l4addr);
+        return 0;
+    }
+
     boolean isConnected();
 
     void shutdownOutput() throws IOException;
 
     boolean finishConnect() throws IOException;
+
+    /**
+     * the default implementation reads into the buffers one by one,
+     * implementations should override it if vectored io is supported
+     */
+    @Override
+    default long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            ByteBuffer dst = dsts[i];
+            int rem = dst.remaining();
+            if (rem == 0) {
+                continue;
+            }
+            int n = read(dst);
+            if (n < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += n;
+            if (n < rem) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    default long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    /**
+     * the default implementation writes the buffers one by one,
+     * implementations should override it if vectored io is supported
+     */
+    @Override
+    default long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            ByteBuffer src = srcs[i];
+            int rem = src.remaining();
+            if (rem == 0) {
+                continue;
+            }
+            int n = write(src);
+            total += n;
+            if (n < rem) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    default long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
 }
@@ -4,6 +4,10 @@ import java.net.SocketOption;
 
 public class SocketOptions {
     public static final SocketOption<Boolean> IP_TRANSPARENT = new SpecialSocketOption<>("IP_TRANSPARENT", Boolean.class);
+    // the value is size of the reuseport group, connections are steered to socket[cpu % size]
+    public static final SocketOption<Integer> REUSEPORT_CPU_STEERING = new SpecialSocketOption<>("REUSEPORT_CPU_STEERING", Integer.class);
+    // the value is the fast open queue length of a listening socket
+    public static final SocketOption<Integer> TCP_FASTOPEN = new SpecialSocketOption<>("TCP_FASTOPEN", Integer.class);
 
     private static class SpecialSocketOption<T> implements SocketOption<T> {
         private final String name;
@@ -60,6 +60,16 @@ public class SocketChannelFD extends ChannelFD implements SocketFD {
         return channel.write(src);
     }
 
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        return channel.read(dsts, offset, length);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        return channel.write(srcs, offset, length);
+    }
+
     @Override
     public SocketChannel getChannel() {
         return channel;
@@ -6,11 +6,14 @@ import vproxybase.util.Utils;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
 import java.util.*;
 
 public class AESelector implements FDSelector {
+    private static final int POLL_CAPACITY = 4096; // max events retrieved in one poll, the rest will fire in the next poll
+
     private final Posix posix;
     private final long ae;
     private final int[] pipefd; // null, or pipefd[read][write], might be the same if using linux eventfd
@@ -21,6 +24,12 @@ public class AESelector implements FDSelector {
     private final int aeWritable;
     private final boolean onlySelectNow;
 
+    // the following fields are reused in every poll, so that no object would be allocated for each fired event
+    private final ByteBuffer pollBuffer; // [fd, events] pairs written by the native poll
+    private final Object[] pollAttachments; // clientData of the fired fds
+    private final SelectedEntry[] entries = new SelectedEntry[POLL_CAPACITY];
+    private final ArrayList<SelectedEntry> selected = new ArrayList<>(POLL_CAPACITY);
+
     public AESelector(Posix posix, long ae, int[] pipefd) {
         this.posix = posix;
         this.ae = ae;
@@ -34,6 +43,8 @@ public class AESelector implements FDSelector {
             posix.aeCreateFileEvent(ae, pipefd[0], this.aeReadable, new Att(null, null));
         }
         onlySelectNow = posix.onlySelectNow();
+        pollBuffer = ByteBuffer.allocateDirect(POLL_CAPACITY * 8).order(ByteOrder.nativeOrder());
+        pollAttachments = new Object[POLL_CAPACITY];
     }
 
     private static class Att {
@@ -89,20 +100,31 @@ public class AESelector implements FDSelector {
         }
     }
 
-    private Collection<SelectedEntry> handleSelectResult(FDInfo[] results) {
+    private Collection<SelectedEntry> handleSelectResult(int count) {
         clearPipeFD();
-        if (results.length == 0) {
-            return Collections.emptyList();
-        }
-        List<SelectedEntry> ret = new ArrayList<>(results.length);
-        for (FDInfo res : results) {
-            Att att = (Att) res.attachment;
+        int lastSize = selected.size();
+        selected.clear();
+        for (int i = 0; i < count; ++i) {
+            Att att = (Att) pollAttachments[i];
+            pollAttachments[i] = null; // release the reference
             if (att.fd == null) // for the internal pipe fds
                 continue;
-            int ev = res.events;
-            ret.add(new SelectedEntry(att.fd, getJavaEvents(ev), att.att));
+            int ev = pollBuffer.getInt(i * 8 + 4);
+
+            int idx = selected.size();
+            SelectedEntry entry = entries[idx];
+            if (entry == null) {
+                entry = new SelectedEntry();
+                entries[idx] = entry;
+            }
+            entry.set(att.fd, getJavaEvents(ev), att.att);
+            selected.add(entry);
         }
-        return ret;
+        // release references held by entries not used in this round
+        for (int i = selected.size(); i < lastSize; ++i) {
+            entries[i].set(null, null, null);
+        }
+        return selected;
     }
 
     private void checkOpen() {
@@ -117,15 +139,15 @@ public class AESelector implements FDSelector {
             throw new UnsupportedOperationException("only selectNow supported");
         }
         checkOpen();
-        var res = posix.aeApiPoll(ae, 24 * 60 * 60 * 1000);
-        return handleSelectResult(res);
+        int n = posix.aeApiPollIntoBuffer(ae, 24 * 60 * 60 * 1000, pollBuffer, pollAttachments);
+        return handleSelectResult(n);
     }
 
     @Override
     public Collection<SelectedEntry> selectNow() throws IOException {
         checkOpen();
-        var res = posix.aeApiPoll(ae, 0);
-        return handleSelectResult(res);
+        int n = posix.aeApiPollIntoBuffer(ae, 0, pollBuffer, pollAttachments);
+        return handleSelectResult(n);
     }
 
     @Override
@@ -134,8 +156,8 @@ public class AESelector implements FDSelector {
             throw new UnsupportedOperationException("only selectNow supported");
         }
         checkOpen();
-        var res = posix.aeApiPoll(ae, millis);
-        return handleSelectResult(res);
+        int n = posix.aeApiPollIntoBuffer(ae, millis, pollBuffer, pollAttachments);
+        return handleSelectResult(n);
     }
 
     @Override
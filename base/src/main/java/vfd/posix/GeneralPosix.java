@@ -27,6 +27,9 @@ public class GeneralPosix implements Posix {
     @Override
     native public FDInfo[] aeApiPoll(long ae, long wait) throws IOException;
 
+    @Override
+    native public int aeApiPollIntoBuffer(long ae, long wait, ByteBuffer directBuffer, Object[] attachments) throws IOException;
+
     @Override
     native public FDInfo[] aeAllFDs(long ae);
 
@@ -57,9 +60,18 @@ public class GeneralPosix implements Posix {
     @Override
     native public void setReusePort(int fd, boolean v) throws IOException;
 
+    @Override
+    native public void setReusePortCPUSteering(int fd, int groupSize) throws IOException;
+
     @Override
     native public void setRcvBuf(int fd, int buflen) throws IOException;
 
+    @Override
+    native public boolean tcpFastOpenSupported();
+
+    @Override
+    native public void setTcpFastOpen(int fd, int queueLength) throws IOException;
+
     @Override
     native public void setTcpNoDelay(int fd, boolean v) throws IOException;
 
@@ -96,12 +108,21 @@ public class GeneralPosix implements Posix {
     @Override
     native public int accept(int fd) throws IOException;
 
+    @Override
+    native public int acceptBatch(int fd, int max, int[] fdAndPort, byte[] addrs) throws IOException;
+
     @Override
     native public void connectIPv4(int fd, int addrHostOrder, int port) throws IOException;
 
     @Override
     native public void connectIPv6(int fd, String fullAddr, int port) throws IOException;
 
+    @Override
+    native public int connectFastOpenIPv4(int fd, ByteBuffer directBuffer, int off, int len, int addrHostOrder, int port) throws IOException;
+
+    @Override
+    native public int connectFastOpenIPv6(int fd, ByteBuffer directBuffer, int off, int len, String fullAddr, int port) throws IOException;
+
     @Override
     native public void finishConnect(int fd) throws IOException;
 
@@ -132,6 +153,12 @@ public class GeneralPosix implements Posix {
     @Override
     native public int write(int fd, ByteBuffer directBuffer, int off, int len) throws IOException;
 
+    @Override
+    native public long readv(int fd, ByteBuffer[] directBuffers, int off, int count, int[] posAndLen) throws IOException;
+
+    @Override
+    native public long writev(int fd, ByteBuffer[] directBuffers, int off, int count, int[] posAndLen) throws IOException;
+
     @Override
     native public int sendtoIPv4(int fd, ByteBuffer directBuffer, int off, int len, int addrHostOrder, int port) throws IOException;
 
@@ -144,6 +171,15 @@ public class GeneralPosix implements Posix {
     @Override
     native public UDPRecvResult recvfromIPv6(int fd, ByteBuffer directBuffer, int off, int len) throws IOException;
 
+    @Override
+    native public boolean spliceSupported();
+
+    @Override
+    native public int[] openSplicePipe(int size) throws IOException;
+
+    @Override
+    native public int splice(int fdIn, int fdOut, int len) throws IOException;
+
     @Override
     native public long currentTimeMillis();
 
@@ -20,6 +20,8 @@ public interface Posix {
 
     FDInfo[] aeApiPoll(long ae, long wait) throws IOException;
 
+    int aeApiPollIntoBuffer(long ae, long wait, ByteBuffer directBuffer, Object[] attachments) throws IOException;
+
     FDInfo[] aeAllFDs(long ae);
 
     void aeCreateFileEvent(long ae, int fd, int mask, Object clientData);
@@ -40,8 +42,23 @@ public interface Posix {
 
     void setReusePort(int fd, boolean v) throws IOException;
 
+    /**
+     * attach a bpf program to the reuseport group of the fd,
+     * which selects the socket whose index equals to `current cpu % groupSize`
+     */
+    void setReusePortCPUSteering(int fd, int groupSize) throws IOException;
+
     void setRcvBuf(int fd, int buflen) throws IOException;
 
+    boolean tcpFastOpenSupported();
+
+    /**
+     * enable tcp fast open on a listening socket
+     *
+     * @param queueLength max pending fast open requests which are not yet accepted
+     */
+    void setTcpFastOpen(int fd, int queueLength) throws IOException;
+
     void setTcpNoDelay(int fd, boolean v) throws IOException;
 
     void setIpTransparent(int fd, boolean v) throws IOException;
@@ -66,10 +83,29 @@ public interface Posix {
 
     int accept(int fd) throws IOException;
 
+    /**
+     * accept at most `max` connections, the accepted fds are already set to non-blocking
+     *
+     * @param fdAndPort [fd, remote port] pairs of the accepted connections
+     * @param addrs     16 bytes for each accepted connection, ipv4 remote address only uses the first 4 bytes
+     * @return count of accepted connections, 0 when it would block
+     */
+    int acceptBatch(int fd, int max, int[] fdAndPort, byte[] addrs) throws IOException;
+
     void connectIPv4(int fd, int addrHostOrder, int port) throws IOException;
 
     void connectIPv6(int fd, String fullAddr, int port) throws IOException;
 
+    /**
+     * start connecting and carry the data in SYN if the kernel has a fast open cookie for the remote
+     *
+     * @return bytes sent with the SYN, 0 when nothing is sent and the data should be written after connected
+     * @throws UnsupportedOperationException fast open is disabled, the fd is not connected and connect() can still be called
+     */
+    int connectFastOpenIPv4(int fd, ByteBuffer directBuffer, int off, int len, int addrHostOrder, int port) throws IOException;
+
+    int connectFastOpenIPv6(int fd, ByteBuffer directBuffer, int off, int len, String fullAddr, int port) throws IOException;
+
     void finishConnect(int fd) throws IOException;
 
     void shutdownOutput(int fd) throws IOException;
@@ -90,6 +126,18 @@ public interface Posix {
 
     int write(int fd, ByteBuffer directBuffer, int off, int len) throws IOException;
 
+    /**
+     * @param posAndLen [pos, len] pairs for directBuffers[off] ~ directBuffers[off + count - 1]
+     * @return bytes read, 0 when it would block, -1 for EOF
+     */
+    long readv(int fd, ByteBuffer[] directBuffers, int off, int count, int[] posAndLen) throws IOException;
+
+    /**
+     * @param posAndLen [pos, len] pairs for directBuffers[off] ~ directBuffers[off + count - 1]
+     * @return bytes written, 0 when it would block
+     */
+    long writev(int fd, ByteBuffer[] directBuffers, int off, int count, int[] posAndLen) throws IOException;
+
     int sendtoIPv4(int fd, ByteBuffer directBuffer, int off, int len, int addrHostOrder, int port) throws IOException;
 
     int sendtoIPv6(int fd, ByteBuffer directBuffer, int off, int len, String fullAddr, int port) throws IOException;
@@ -98,6 +146,19 @@ public interface Posix {
 
     UDPRecvResult recvfromIPv6(int fd, ByteBuffer directBuffer, int off, int len) throws IOException;
 
+    boolean spliceSupported();
+
+    /**
+     * @param size expected capacity of the pipe, 0 to use the default size
+     * @return [read end, write end, actual capacity of the pipe]
+     */
+    int[] openSplicePipe(int size) throws IOException;
+
+    /**
+     * @return bytes moved, 0 when it would block, -1 when fdIn reaches EOF
+     */
+    int splice(int fdIn, int fdOut, int len) throws IOException;
+
     long currentTimeMillis();
 
     boolean tapNonBlockingSupported() throws IOException;
@@ -15,6 +15,7 @@ public class PosixFD extends AbstractBaseFD implements FD {
     private boolean closed = false;
     protected int fd = -1;
     private Boolean blocking = null;
+    protected Boolean currentBlocking = null; // the blocking mode set on the fd, null if unknown
     private Map<SocketOption, Object> opts = new HashMap<>();
 
     protected PosixFD(Posix posix) {
@@ -39,7 +40,11 @@ public class PosixFD extends AbstractBaseFD implements FD {
         if (fd == -1) {
             blocking = b;
         } else {
+            if (currentBlocking != null && currentBlocking == b) {
+                return;
+            }
             posix.setBlocking(fd, b);
+            currentBlocking = b;
         }
     }
 
@@ -61,7 +66,9 @@ public class PosixFD extends AbstractBaseFD implements FD {
                 && name != StandardSocketOptions.SO_REUSEPORT
                 && name != StandardSocketOptions.TCP_NODELAY
                 && name != StandardSocketOptions.SO_RCVBUF
-                && name != SocketOptions.IP_TRANSPARENT) {
+                && name != SocketOptions.IP_TRANSPARENT
+                && name != SocketOptions.REUSEPORT_CPU_STEERING
+                && name != SocketOptions.TCP_FASTOPEN) {
                 throw new IOException("not supported " + name);
             }
             opts.put(name, value);
@@ -76,6 +83,10 @@ public class PosixFD extends AbstractBaseFD implements FD {
                 posix.setTcpNoDelay(fd, (Boolean) value);
             } else if (name == SocketOptions.IP_TRANSPARENT) {
                 posix.setIpTransparent(fd, (Boolean) value);
+            } else if (name == SocketOptions.REUSEPORT_CPU_STEERING) {
+                posix.setReusePortCPUSteering(fd, (Integer) value);
+            } else if (name == SocketOptions.TCP_FASTOPEN) {
+                posix.setTcpFastOpen(fd, (Integer) value);
             } else {
                 throw new IOException("not supported " + name);
             }
@@ -52,6 +52,12 @@ public class PosixInetNetworkFD extends PosixNetworkFD {
         remote = l4addr;
     }
 
+    // record addresses already known, e.g. retrieved when accepting
+    protected void setAddresses(IPPort local, IPPort remote) {
+        this.local = local;
+        this.remote = remote;
+    }
+
     public IPPort getLocalAddress() throws IOException {
         checkFD();
         if (local == null) {
@@ -5,6 +5,7 @@ import java.nio.ByteBuffer;
 
 public class PosixNetworkFD extends PosixFD {
     protected boolean connected = false;
+    private int[] posAndLen = new int[4]; // reused for vectored io
 
     protected PosixNetworkFD(Posix posix) {
         super(posix);
@@ -35,4 +36,138 @@ public class PosixNetworkFD extends PosixFD {
 
         return utilWrite(src, (buf, off, len) -> posix.write(fd, buf, off, len));
     }
+
+    private int[] fillPosAndLen(ByteBuffer[] bufs, int offset, int length) {
+        for (int i = 0; i < length; ++i) {
+            if (!bufs[offset + i].isDirect()) {
+                return null;
+            }
+        }
+        if (posAndLen.length < length * 2) {
+            posAndLen = new int[length * 2];
+        }
+        for (int i = 0; i < length; ++i) {
+            ByteBuffer b = bufs[offset + i];
+            posAndLen[i * 2] = b.position();
+            posAndLen[i * 2 + 1] = b.limit() - b.position();
+        }
+        return posAndLen;
+    }
+
+    private static void forward(ByteBuffer[] bufs, int offset, int length, long n) {
+        for (int i = offset; i < offset + length && n > 0; ++i) {
+            ByteBuffer b = bufs[i];
+            int step = (int) Math.min(n, b.limit() - b.position());
+            b.position(b.position() + step);
+            n -= step;
+        }
+    }
+
+    /**
+     * read into the buffers with one readv call if all buffers are direct,
+     * otherwise read into them one by one
+     *
+     * @return bytes read, 0 if nothing read, -1 for EOF
+     */
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        checkFD();
+        checkConnected();
+        checkNotClosed();
+
+        int[] posAndLen = fillPosAndLen(dsts, offset, length);
+        if (posAndLen == null) {
+            long total = 0;
+            for (int i = offset; i < offset + length; ++i) {
+                int rem = dsts[i].remaining();
+                if (rem == 0) {
+                    continue;
+                }
+                int n = read(dsts[i]);
+                if (n < 0) {
+                    return total == 0 ? -1 : total;
+                }
+                total += n;
+                if (n < rem) {
+                    break;
+                }
+            }
+            return total;
+        }
+        long n = posix.readv(fd, dsts, offset, length, posAndLen);
+        if (n > 0) {
+            forward(dsts, offset, length, n);
+        }
+        return n;
+    }
+
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    /**
+     * write the buffers with one writev call if all buffers are direct,
+     * otherwise write them one by one
+     *
+     * @return bytes written, 0 if nothing written
+     */
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        checkFD();
+        checkConnected();
+        checkNotClosed();
+
+        int[] posAndLen = fillPosAndLen(srcs, offset, length);
+        if (posAndLen == null) {
+            long total = 0;
+            for (int i = offset; i < offset + length; ++i) {
+                int rem = srcs[i].remaining();
+                if (rem == 0) {
+                    continue;
+                }
+                int n = write(srcs[i]);
+                total += n;
+                if (n < rem) {
+                    break;
+                }
+            }
+            return total;
+        }
+        long n = posix.writev(fd, srcs, offset, length, posAndLen);
+        if (n > 0) {
+            forward(srcs, offset, length, n);
+        }
+        return n;
+    }
+
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    /**
+     * move bytes from this fd into the pipe without copying into the user space
+     *
+     * @return bytes moved, 0 if nothing moved, -1 for EOF
+     */
+    public int spliceTo(SplicePipe pipe, int len) throws IOException {
+        checkFD();
+        checkConnected();
+        checkNotClosed();
+        pipe.checkNotClosed();
+
+        return pipe.splice(fd, pipe.writeFD, len);
+    }
+
+    /**
+     * move bytes from the pipe into this fd without copying into the user space
+     *
+     * @return bytes moved, 0 if nothing moved
+     */
+    public int spliceFrom(SplicePipe pipe, int len) throws IOException {
+        checkFD();
+        checkConnected();
+        checkNotClosed();
+        pipe.checkNotClosed();
+
+        int n = pipe.splice(pipe.readFD, fd, len);
+        return Math.max(n, 0); // the write end of the pipe is never closed before the read end
+    }
 }
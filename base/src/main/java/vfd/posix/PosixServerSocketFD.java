@@ -3,14 +3,33 @@ package vfd.posix;
 import vfd.*;
 
 import java.io.IOException;
+import java.net.SocketOption;
+import java.util.Arrays;
 
 public class PosixServerSocketFD extends PosixFD implements ServerSocketFD {
     private IPPort local;
+    private boolean transparent;
+    private boolean localIsAccurate; // whether the accepted sockets have the same local address as the server
+
+    // reused by acceptBatch
+    private int[] fdAndPort = new int[0];
+    private byte[] addrs = new byte[0];
 
     protected PosixServerSocketFD(Posix posix) {
         super(posix);
     }
 
+    @Override
+    public <T> void setOption(SocketOption<T> name, T value) throws IOException {
+        super.setOption(name, value);
+        if (name == SocketOptions.IP_TRANSPARENT) {
+            transparent = (Boolean) value;
+            if (transparent) {
+                localIsAccurate = false;
+            }
+        }
+    }
+
     @Override
     public IPPort getLocalAddress() {
         return local;
@@ -27,6 +46,31 @@ public class PosixServerSocketFD extends PosixFD implements ServerSocketFD {
         return new PosixSocketFD(posix, subFd, local.getAddress() instanceof IPv4);
     }
 
+    /**
+     * accept in batch, the fds, non-blocking flags and remote addresses are retrieved with only one jni call
+     */
+    @Override
+    public int accept(SocketFD[] accepted, int max) throws IOException {
+        checkFD();
+        checkNotClosed();
+        if (fdAndPort.length < max * 2) {
+            fdAndPort = new int[max * 2];
+            addrs = new byte[max * 16];
+        }
+        int n = posix.acceptBatch(fd, max, fdAndPort, addrs);
+        boolean ipv4 = local.getAddress() instanceof IPv4;
+        IPPort acceptedLocal = localIsAccurate ? local : null;
+        for (int i = 0; i < n; ++i) {
+            int off = i * 16;
+            IP ip = ipv4
+                ? IP.fromIPv4(Arrays.copyOfRange(addrs, off, off + 4))
+                : IP.fromIPv6(Arrays.copyOfRange(addrs, off, off + 16));
+            IPPort remote = new IPPort(ip, fdAndPort[i * 2 + 1]);
+            accepted[i] = new PosixSocketFD(posix, fdAndPort[i * 2], ipv4, acceptedLocal, remote);
+        }
+        return n;
+    }
+
     @Override
     public void bind(IPPort l4addr) throws IOException {
         checkNotClosed();
@@ -48,5 +92,8 @@ public class PosixServerSocketFD extends PosixFD implements ServerSocketFD {
             throw new IOException("unknown l3addr " + l4addr.getAddress());
         }
         this.local = l4addr;
+        // the local address of accepted sockets cannot be known if bond to a wildcard address or a random port,
+        // and for transparent listeners, it's the original destination of each connection
+        this.localIsAccurate = !transparent && !l4addr.getAddress().isAnyLocalAddress() && l4addr.getPort() != 0;
     }
 }
@@ -1,10 +1,21 @@
 package vfd.posix;
 
+import vfd.IP;
+import vfd.IPPort;
+import vfd.IPv4;
+import vfd.IPv6;
 import vfd.SocketFD;
+import vproxybase.util.LogType;
+import vproxybase.util.Logger;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class PosixSocketFD extends PosixInetNetworkFD implements SocketFD {
+    // set when the kernel refuses MSG_FASTOPEN, e.g. the client bit of net.ipv4.tcp_fastopen is off
+    // the sysctl is global, so later connections skip fast open
+    private static volatile boolean fastOpenDisabled = false;
+
     public PosixSocketFD(Posix posix) {
         super(posix);
     }
@@ -16,6 +27,63 @@ public class PosixSocketFD extends PosixInetNetworkFD implements SocketFD {
         connected = true;
     }
 
+    // the fd is accepted in non-blocking mode
+    PosixSocketFD(Posix posix, int fd, boolean ipv4, IPPort local, IPPort remote) {
+        this(posix, fd, ipv4);
+        currentBlocking = false;
+        setAddresses(local, remote);
+    }
+
+    @Override
+    public int connectFastOpen(IPPort l4addr, ByteBuffer data) throws IOException {
+        if (fastOpenDisabled || !posix.tcpFastOpenSupported()) {
+            return SocketFD.super.connectFastOpen(l4addr, data);
+        }
+        checkNotClosed();
+        if (fd != -1) {
+            throw new IOException("cannot call connect()");
+        }
+        int port = l4addr.getPort();
+        int n;
+        if (l4addr.getAddress() instanceof IPv4) {
+            fd = createIPv4FD();
+            finishConfigAfterFDCreated();
+            ipv4 = true;
+            int addr = IP.ipv4Bytes2Int(l4addr.getAddress().getAddress());
+            try {
+                n = utilWrite(data, (buf, off, len) -> posix.connectFastOpenIPv4(fd, buf, off, len, addr, port));
+            } catch (UnsupportedOperationException e) {
+                disableFastOpen(e);
+                posix.connectIPv4(fd, addr, port);
+                n = 0;
+            }
+        } else if (l4addr.getAddress() instanceof IPv6) {
+            fd = createIPv6FD();
+            finishConfigAfterFDCreated();
+            ipv4 = false;
+            String addr = l4addr.getAddress().formatToIPString();
+            try {
+                n = utilWrite(data, (buf, off, len) -> posix.connectFastOpenIPv6(fd, buf, off, len, addr, port));
+            } catch (UnsupportedOperationException e) {
+                disableFastOpen(e);
+                posix.connectIPv6(fd, addr, port);
+                n = 0;
+            }
+        } else {
+            throw new IOException("unknown l3addr " + l4addr.getAddress());
+        }
+        // record the remote addr
+        setAddresses(null, l4addr);
+        return n;
+    }
+
+    private static void disableFastOpen(UnsupportedOperationException e) {
+        if (!fastOpenDisabled) {
+            fastOpenDisabled = true;
+            Logger.warn(LogType.SYS_ERROR, "tcp fast open is disabled for clients, fall back to connect(): " + e.getMessage());
+        }
+    }
+
     @Override
     public void shutdownOutput() throws IOException {
         checkFD();
@@ -0,0 +1,117 @@
+package vfd.posix;
+
+import vfd.FDProvider;
+import vfd.FDs;
+import vproxybase.util.Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A non-blocking kernel pipe, bytes can be moved between socket fds and the pipe using splice(2).
+ * Only supported on linux.
+ */
+public class SplicePipe {
+    private final Posix posix;
+    final int readFD;
+    final int writeFD;
+    public final int capacity;
+    private boolean closed = false;
+
+    private SplicePipe(Posix posix, int readFD, int writeFD, int capacity) {
+        this.posix = posix;
+        this.readFD = readFD;
+        this.writeFD = writeFD;
+        this.capacity = capacity;
+    }
+
+    private static Posix getPosix() {
+        FDs fds = FDProvider.get().getProvided();
+        if (fds instanceof PosixFDs) {
+            return ((PosixFDs) fds).posix;
+        }
+        return null;
+    }
+
+    private static volatile Boolean supported = null;
+
+    public static boolean isSupported() {
+        Boolean supported = SplicePipe.supported;
+        if (supported == null) {
+            Posix posix = getPosix();
+            supported = posix != null && posix.spliceSupported();
+            SplicePipe.supported = supported;
+        }
+        return supported;
+    }
+
+    /**
+     * @param size expected capacity of the pipe, the actual capacity might be different
+     * @return the opened pipe
+     * @throws IOException failed to open the pipe, or not supported
+     */
+    public static SplicePipe open(int size) throws IOException {
+        Posix posix = getPosix();
+        if (posix == null || !posix.spliceSupported()) {
+            throw new IOException("splice is not supported");
+        }
+        int[] ret = posix.openSplicePipe(size);
+        return new SplicePipe(posix, ret[0], ret[1], ret[2]);
+    }
+
+    void checkNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException("closed");
+        }
+    }
+
+    int splice(int fdIn, int fdOut, int len) throws IOException {
+        return posix.splice(fdIn, fdOut, len);
+    }
+
+    /**
+     * read and drop bytes from the pipe
+     *
+     * @param len max bytes to drop
+     * @return bytes dropped
+     */
+    public int discard(int len) throws IOException {
+        checkNotClosed();
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuffer buf = ByteBuffer.allocateDirect(Math.min(len, capacity));
+        try {
+            int n = posix.read(readFD, buf, 0, buf.capacity());
+            return Math.max(n, 0);
+        } finally {
+            Utils.clean(buf);
+        }
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            posix.close(readFD);
+        } finally {
+            posix.close(writeFD);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SplicePipe{" +
+            "readFD=" + readFD +
+            ", writeFD=" + writeFD +
+            ", capacity=" + capacity +
+            ", closed=" + closed +
+            '}';
+    }
+}
@@ -107,6 +107,45 @@ public class Config {
     // -DmirrorConf=...
     public static final String mirrorConfigPath;
 
+    // whether event loops use the timing wheel instead of the priority queue for timers by default
+    // -DtimeQueue=timing-wheel
+    public static final boolean useTimingWheel;
+
+    // max bytes of direct buffers cached by the buffer pool of each event loop, 0 to disable caching
+    // -DdirectBufferPoolMaxBytes=...
+    public static final long directBufferPoolMaxBytes;
+
+    // whether direct ring buffers return their memory to the pool when they become empty
+    // useful when holding many idle connections
+    // -DreleaseEmptyBuffers=true
+    public static final boolean releaseEmptyBuffers;
+
+    // whether tcp-lb uses splice(2) to forward bytes of plain tcp connections, only works on linux with posix fds
+    // -DtcpSplice=true
+    public static final boolean tcpSplice;
+
+    // whether tcp-lb listens on every worker event loop with SO_REUSEPORT
+    // the accepted connections are handled on the same loop instead of being dispatched from the acceptor loops
+    // -DtcpLBAcceptOnWorkers=true
+    public static final boolean tcpLBAcceptOnWorkers;
+
+    // whether to steer new connections to the listening socket whose index equals to `current cpu % listener count`
+    // only works on linux with posix fds, best used with tcpLBAcceptOnWorkers
+    // note: vproxy does not pin event loop threads to cpus, pin them externally (e.g. taskset with one loop per cpu)
+    // otherwise the listener chosen by cpu is not guaranteed to be handled on the same cpu
+    // -DreusePortCPUSteering=true
+    public static final boolean reusePortCPUSteering;
+
+    // max connections accepted from one listening socket in one loop round
+    // pending connections will be accepted in the next round, so other events on the loop won't starve
+    // -DacceptBudget=...
+    public static final int acceptBudget;
+
+    // how many nameservers the resolver queries at the same time, the fastest valid answer wins
+    // the nameservers are ranked by their latency and failures, 1 means querying one by one
+    // -DdnsParallelQueries=...
+    public static final int dnsParallelQueries;
+
     static {
         appClass = System.getProperty("eploy"); // -Deploy
         String probeConf = System.getProperty("probe", "");
@@ -117,6 +156,14 @@ public class Config {
         }
         domainWhichShouldResolve = System.getProperty("omainWhichShouldResolve", "www.qq.com");
         mirrorConfigPath = System.getProperty("mirrorConf", "");
+        useTimingWheel = System.getProperty("timeQueue", "").equals("timing-wheel");
+        directBufferPoolMaxBytes = Long.parseLong(System.getProperty("directBufferPoolMaxBytes", "" + (64 * 1024 * 1024)));
+        releaseEmptyBuffers = Boolean.parseBoolean(System.getProperty("releaseEmptyBuffers", "false"));
+        tcpSplice = Boolean.parseBoolean(System.getProperty("tcpSplice", "false"));
+        tcpLBAcceptOnWorkers = Boolean.parseBoolean(System.getProperty("tcpLBAcceptOnWorkers", "false"));
+        reusePortCPUSteering = Boolean.parseBoolean(System.getProperty("reusePortCPUSteering", "false"));
+        acceptBudget = Math.max(1, Integer.parseInt(System.getProperty("acceptBudget", "64")));
+        dnsParallelQueries = Math.max(1, Integer.parseInt(System.getProperty("dnsParallelQueries", "1")));
     }
 
     public static boolean supportReusePortLB() {
@@ -44,6 +44,16 @@ public class AnnotatedHcConfig {
         dnsDomain = map.get(AnnotationKeys.ServerGroup_HCDnsDomain);
     }
 
+    public AnnotatedHcConfig copy() {
+        AnnotatedHcConfig c = new AnnotatedHcConfig();
+        c.httpMethod = httpMethod;
+        c.httpUrl = httpUrl;
+        c.httpHost = httpHost;
+        c.httpStatus = httpStatus;
+        c.dnsDomain = dnsDomain;
+        return c;
+    }
+
     public String getHttpMethod() {
         return httpMethod == null ? "GET" : httpMethod;
     }
@@ -63,4 +73,15 @@ public class AnnotatedHcConfig {
     public String getDnsDomain() {
         return dnsDomain == null ? Config.domainWhichShouldResolve : dnsDomain;
     }
+
+    @Override
+    public String toString() {
+        return "AnnotatedHcConfig{" +
+            "httpMethod=" + httpMethod +
+            ", httpUrl=" + httpUrl +
+            ", httpHost=" + httpHost +
+            ", httpStatus=" + httpStatus +
+            ", dnsDomain=" + dnsDomain +
+            '}';
+    }
 }
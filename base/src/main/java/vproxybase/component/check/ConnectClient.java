@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.function.Consumer;
 
 // connect to target address and send/receive some data then close the connection
+// (the http connection is kept alive and reused by the next check)
 // it's useful when running health check
 public class ConnectClient {
     abstract class BaseHealthCheckConnectableConnectionHandler implements ConnectableConnectionHandler {
@@ -137,21 +138,46 @@ public class ConnectClient {
         }
     }
 
-    class HttpHCConnectableConnectionHandler extends BaseHealthCheckConnectableConnectionHandler {
-        private final HttpRespParser parser;
+    // the http health check keeps the connection alive
+    // and sends the next probe on the same connection
+    class HttpKeepAliveConnectableConnectionHandler implements ConnectableConnectionHandler {
+        private final ConnectableConnection conn;
+        private Callback<Void, IOException> callback;
+        private TimerEvent timeoutEvent;
+        private HttpRespParser parser;
+        private boolean head;
+        private boolean reused; // whether the current probe is sent on a reused connection
+        private boolean gotData; // whether the current probe received any data
+
+        HttpKeepAliveConnectableConnectionHandler(ConnectableConnection conn) {
+            this.conn = conn;
+        }
 
-        HttpHCConnectableConnectionHandler(Callback<Void, IOException> callback, TimerEvent timeoutEvent) {
-            super(callback, timeoutEvent);
-            parser = new HttpRespParser(false);
+        void probe(Callback<Void, IOException> callback, TimerEvent timeoutEvent, boolean head, boolean reused) {
+            this.callback = callback;
+            this.timeoutEvent = timeoutEvent;
+            this.head = head;
+            this.reused = reused;
+            this.gotData = false;
+            // the body of a HEAD response is never sent
+            this.parser = new HttpRespParser(!head);
         }
 
         @Override
         public void connected(ConnectableConnectionHandlerContext ctx) {
-            // ignore event, data will flush
+            // measure the request, not the handshake
+            measureFrom = FDProvider.get().currentTimeMillis();
+            measureFromNanos = System.nanoTime();
         }
 
         @Override
         public void readable(ConnectionHandlerContext ctx) {
+            if (callback == null) {
+                // no probe running, the data is not expected
+                closeAndCallFail("unexpected data");
+                return;
+            }
+            gotData = true;
             RingBuffer inBuf = ctx.connection.getInBuffer();
             int res = parser.feed(inBuf);
             if (res == -1) {
@@ -162,50 +188,125 @@ public class ConnectClient {
                     return;
                 }
                 // got error
-                cancelTimers();
-                closeAndCallFail(ctx, "response not http: " + err);
+                closeAndCallFail("response not http: " + err);
                 return;
             }
             Response resp = parser.getResult();
             assert resp != null;
             int status = resp.statusCode;
-            cancelTimers();
-            if (status < 100 || status >= 600) {
-                closeAndCallFail(ctx, "unexpected http response status " + status);
+            if (status < 100 || status >= 600 || !isExpectedStatus(status)) {
+                closeAndCallFail("unexpected http response status " + status);
                 return;
             }
-            String expectedStatus = annotatedHcConfig.getHttpStatus();
-            if (status < 200) {
-                if (expectedStatus.contains("1xx")) {
-                    closeAndCallSucc(ctx);
-                    return;
-                }
-            } else if (status < 300) {
-                if (expectedStatus.contains("2xx")) {
-                    closeAndCallSucc(ctx);
-                    return;
-                }
-            } else if (status < 400) {
-                if (expectedStatus.contains("3xx")) {
-                    closeAndCallSucc(ctx);
-                    return;
-                }
-            } else if (status < 500) {
-                if (expectedStatus.contains("4xx")) {
-                    closeAndCallSucc(ctx);
-                }
-            } else {
-                if (expectedStatus.contains("5xx")) {
-                    closeAndCallSucc(ctx);
+            Callback<Void, IOException> cb = finish();
+            if (inBuf.used() != 0 || !canKeepAlive(resp)) {
+                closeConnection();
+            }
+            if (!cb.isCalled() && !stopped) cb.succeeded(null);
+        }
+
+        private boolean canKeepAlive(Response resp) {
+            boolean bodyKnown = head || resp.statusCode < 200 || resp.statusCode == 204 || resp.statusCode == 304;
+            if (resp.headers != null) {
+                for (Header h : resp.headers) {
+                    String key = h.key.trim().toLowerCase();
+                    String value = h.value.trim().toLowerCase();
+                    if (key.equals("connection") && value.equals("close")) {
+                        return false;
+                    }
+                    if (key.equals("content-length") || (key.equals("transfer-encoding") && value.equals("chunked"))) {
+                        bodyKnown = true;
+                    }
                 }
             }
-            closeAndCallFail(ctx, "unexpected http response status " + status);
+            // the body ends when the connection closes, cannot be reused
+            return bodyKnown;
         }
 
         @Override
         public void writable(ConnectionHandlerContext ctx) {
             // ignore event, data will flush
         }
+
+        @Override
+        public void exception(ConnectionHandlerContext ctx, IOException err) {
+            assert Logger.lowLevelDebug("exception when doing http health check, conn = " + ctx.connection + ", err = " + err);
+            lost(err);
+        }
+
+        @Override
+        public void remoteClosed(ConnectionHandlerContext ctx) {
+            lost(new IOException("remote closed"));
+        }
+
+        @Override
+        public void closed(ConnectionHandlerContext ctx) {
+            lost(new IOException("remote closed"));
+        }
+
+        @Override
+        public void removed(ConnectionHandlerContext ctx) {
+            lost(new IOException("removed from event loop"));
+        }
+
+        private void lost(IOException err) {
+            Callback<Void, IOException> cb = callback;
+            if (cb == null) {
+                // idle connection closed, will reconnect on next probe
+                closeConnection();
+                return;
+            }
+            if (reused && !gotData && !stopped) {
+                // the remote may close the idle connection at any time
+                // so it's not considered a failure, retry with a new connection
+                assert Logger.lowLevelDebug("reused connection " + conn + " is lost, retry with a new connection");
+                TimerEvent timer = timeoutEvent;
+                callback = null;
+                timeoutEvent = null;
+                parser = null;
+                closeConnection();
+                httpProbe(cb, timer);
+                return;
+            }
+            finish();
+            closeConnection();
+            if (!cb.isCalled() && !stopped) cb.failed(err);
+        }
+
+        void timeout() {
+            assert Logger.lowLevelDebug("timeout when doing http health check " + conn);
+            closeAndCallFail(null);
+        }
+
+        private void closeConnection() {
+            conn.close(true);
+            if (httpHandler == this) {
+                httpHandler = null;
+            }
+        }
+
+        private void closeAndCallFail(String err) {
+            if (callback == null) {
+                closeConnection();
+                return;
+            }
+            Callback<Void, IOException> cb = finish();
+            closeConnection();
+            if (!cb.isCalled() && !stopped) {
+                cb.failed(err == null ? new InterruptedByTimeoutException() : new IOException(err));
+            }
+        }
+
+        private Callback<Void, IOException> finish() {
+            Callback<Void, IOException> cb = callback;
+            callback = null;
+            if (timeoutEvent != null) {
+                timeoutEvent.cancel();
+                timeoutEvent = null;
+            }
+            parser = null;
+            return cb;
+        }
     }
 
     public final NetEventLoop eventLoop;
@@ -214,11 +315,15 @@ public class ConnectClient {
     public final int timeout;
     public final AnnotatedHcConfig annotatedHcConfig;
     private boolean stopped = false;
+    private long measureFrom; // the result cost is calculated from this timestamp
+    private long measureFromNanos; // same as measureFrom, but in System.nanoTime()
     private final Consumer<Callback<Void, IOException>> handleFunc;
 
     private DatagramFD dnsSocket = null;
     private DNSClient dnsClient = null;
 
+    private HttpKeepAliveConnectableConnectionHandler httpHandler = null; // the kept-alive http connection
+
     public ConnectClient(NetEventLoop eventLoop,
                          IPPort remote,
                          CheckProtocol checkProtocol,
@@ -310,6 +415,20 @@ public class ConnectClient {
     }
 
     private void handleHttp(Callback<Void, IOException> cb) {
+        // create a timer handling the timeout of the whole probe
+        TimerEvent[] timer = new TimerEvent[1];
+        timer[0] = eventLoop.getSelectorEventLoop().delay(timeout, () -> {
+            HttpKeepAliveConnectableConnectionHandler h = httpHandler;
+            if (h != null && h.timeoutEvent == timer[0]) {
+                h.timeout();
+            } else if (!cb.isCalled() && !stopped) {
+                cb.failed(new InterruptedByTimeoutException());
+            }
+        });
+        httpProbe(cb, timer[0]);
+    }
+
+    private void httpProbe(Callback<Void, IOException> cb, TimerEvent timer) {
         // http request
         Request req = new Request();
         req.method = annotatedHcConfig.getHttpMethod();
@@ -322,41 +441,77 @@ public class ConnectClient {
         } else {
             req.headers.add(new Header("Host", host));
         }
+        boolean head = req.method.equalsIgnoreCase("HEAD");
         ByteArray bytes = req.toByteArray();
-        RingBuffer sendBuffer = RingBuffer.allocate(bytes.length());
-        sendBuffer.storeBytesFrom(ByteArrayChannel.fromFull(bytes));
         // expecting response HTTP/1.? ??? ......
+
+        HttpKeepAliveConnectableConnectionHandler handler = httpHandler;
+        if (handler != null) {
+            RingBuffer out = handler.conn.getOutBuffer();
+            if (handler.conn.isClosed() || out.free() < bytes.length()) {
+                handler.closeConnection();
+                handler = null;
+            }
+        }
+        if (handler != null) {
+            // send the probe on the kept-alive connection
+            measureFrom = FDProvider.get().currentTimeMillis();
+            measureFromNanos = System.nanoTime();
+            handler.probe(cb, timer, head, true);
+            handler.conn.getOutBuffer().storeBytesFrom(ByteArrayChannel.fromFull(bytes));
+            return;
+        }
+
         // connect to remote
+        RingBuffer sendBuffer = RingBuffer.allocate(bytes.length());
+        sendBuffer.storeBytesFrom(ByteArrayChannel.fromFull(bytes));
         ConnectableConnection conn;
         try {
             conn = ConnectableConnection.create(remote, ConnectionOpts.getDefault(),
                 RingBuffer.allocate(128), sendBuffer);
         } catch (IOException e) {
+            timer.cancel();
             if (!stopped) cb.failed(e);
             return;
         }
-        // create a timer handling the connecting timeout
-        TimerEvent timer = eventLoop.getSelectorEventLoop().delay(timeout, () -> {
-            assert Logger.lowLevelDebug("timeout when doing http health check " + conn);
-            conn.close(true);
-            if (!cb.isCalled() /*called by connection*/ && !stopped) cb.failed(new InterruptedByTimeoutException());
-        });
+        handler = new HttpKeepAliveConnectableConnectionHandler(conn);
+        handler.probe(cb, timer, head, false);
         try {
-            eventLoop.addConnectableConnection(conn, null, new HttpHCConnectableConnectionHandler(cb, timer));
+            eventLoop.addConnectableConnection(conn, null, handler);
         } catch (IOException e) {
-            if (!stopped) cb.failed(e);
+            conn.close(true);
             // exception occurred, so ignore timeout
             timer.cancel();
+            if (!stopped) cb.failed(e);
+            return;
+        }
+        httpHandler = handler;
+    }
+
+    private boolean isExpectedStatus(int status) {
+        String expectedStatus = annotatedHcConfig.getHttpStatus();
+        if (status < 200) {
+            return expectedStatus.contains("1xx");
+        } else if (status < 300) {
+            return expectedStatus.contains("2xx");
+        } else if (status < 400) {
+            return expectedStatus.contains("3xx");
+        } else if (status < 500) {
+            return expectedStatus.contains("4xx");
+        } else {
+            return expectedStatus.contains("5xx");
         }
     }
 
     public void handle(Callback<ConnectResult, IOException> cb) {
-        long start = FDProvider.get().currentTimeMillis(); // need precise time, so do not use time recorded in Config
+        measureFrom = FDProvider.get().currentTimeMillis(); // need precise time, so do not use time recorded in Config
+        measureFromNanos = System.nanoTime();
         this.handleFunc.accept(new Callback<>() {
             @Override
             protected void onSucceeded(Void value) {
                 cb.succeeded(new ConnectResult(
-                    FDProvider.get().currentTimeMillis() - start
+                    FDProvider.get().currentTimeMillis() - measureFrom,
+                    System.nanoTime() - measureFromNanos
                 ));
             }
 
@@ -369,6 +524,10 @@ public class ConnectClient {
 
     public void stop() {
         stopped = true;
+        if (httpHandler != null) {
+            httpHandler.closeConnection();
+            httpHandler = null;
+        }
         if (dnsClient != null) {
             dnsClient.close();
             dnsClient = null;
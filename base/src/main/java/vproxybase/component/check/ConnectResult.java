@@ -2,8 +2,10 @@ package vproxybase.component.check;
 
 public class ConnectResult {
     public final long cost; // ms
+    public final long costNanos; // the same cost in ns, for latency tracking
 
-    public ConnectResult(long cost) {
+    public ConnectResult(long cost, long costNanos) {
         this.cost = cost;
+        this.costNanos = costNanos;
     }
 }
@@ -7,8 +7,12 @@ import vproxybase.util.Callback;
 import vproxybase.util.Logger;
 
 import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class HealthCheckClient {
+    // milliseconds, the first checks are spread over this window
+    private static final int FIRST_CHECK_WINDOW = 1000;
+
     class ConnectResultHandler {
         void onSucceeded(ConnectResult result) {
             handler.upOnce(connectClient.remote, result);
@@ -68,7 +72,7 @@ public class HealthCheckClient {
 
     private int currentUp = 0;
     private int currentDown = 0;
-    private boolean nowIsUp;
+    private volatile boolean nowIsUp;
 
     private TimerEvent periodTimer;
 
@@ -97,11 +101,25 @@ public class HealthCheckClient {
         return stopped;
     }
 
+    // whether the active check considers the remote UP
+    public boolean isUp() {
+        return nowIsUp;
+    }
+
     public void start() {
         if (!stopped)
             return;
         stopped = false;
-        doCheck(this::periodic);
+        // the first check runs within a short window instead of a whole period,
+        // so new servers are brought UP quickly, while the checks started together
+        // (e.g. on launching) do not probe in the same instant.
+        // the following periods are jittered as well
+        int delay = jitter(Math.min(period, FIRST_CHECK_WINDOW));
+        periodTimer = connectClient.eventLoop.getSelectorEventLoop().delay(delay, () -> doCheck(this::periodic));
+    }
+
+    private static int jitter(int bound) {
+        return bound <= 1 ? 0 : ThreadLocalRandom.current().nextInt(bound);
     }
 
     private void doCheck(Runnable cb) {
@@ -131,7 +149,11 @@ public class HealthCheckClient {
     }
 
     private void periodic() {
-        periodTimer = connectClient.eventLoop.getSelectorEventLoop().delay(period, () -> doCheck(this::periodic));
+        // +-5% of the period, so that checks started at the same time (e.g. on launching)
+        // will drift apart instead of firing in lock-step
+        int delta = period / 10;
+        int delay = period - delta / 2 + jitter(delta);
+        periodTimer = connectClient.eventLoop.getSelectorEventLoop().delay(delay, () -> doCheck(this::periodic));
     }
 
     public void stop() {
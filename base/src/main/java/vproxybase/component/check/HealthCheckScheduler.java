@@ -0,0 +1,252 @@
+package vproxybase.component.check;
+
+import vfd.IPPort;
+import vfd.SockAddr;
+import vproxybase.component.elgroup.EventLoopAttach;
+import vproxybase.component.elgroup.EventLoopWrapper;
+import vproxybase.selector.SelectorEventLoop;
+import vproxybase.util.Logger;
+import vproxybase.util.exception.AlreadyExistException;
+import vproxybase.util.exception.ClosedException;
+import vproxybase.util.exception.NotFoundException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Run health checks shared by all subscribers checking the same target.<br>
+ * The same remote with the same health check config and annotations will only be checked once,
+ * and the results are dispatched to every subscriber on the subscriber's own event loop.
+ */
+public class HealthCheckScheduler {
+    private static final HealthCheckScheduler instance = new HealthCheckScheduler();
+
+    public static HealthCheckScheduler getInstance() {
+        return instance;
+    }
+
+    private final Map<String, SharedCheck> checks = new HashMap<>();
+
+    private HealthCheckScheduler() {
+    }
+
+    private static String key(IPPort remote, HealthCheckConfig config, AnnotatedHcConfig annotatedHcConfig) {
+        return remote.formatToIPPortString() + "/" + config + "/" + annotatedHcConfig;
+    }
+
+    /**
+     * subscribe to the health check of the remote
+     *
+     * @param loop        the event loop of the subscriber, the handler will be called on this loop
+     * @param initialIsUp the initial state, only used when the check is not running yet
+     * @return the subscription, call {@link Subscription#stop()} to unsubscribe
+     */
+    public synchronized Subscription subscribe(EventLoopWrapper loop,
+                                               IPPort remote,
+                                               HealthCheckConfig config,
+                                               AnnotatedHcConfig annotatedHcConfig,
+                                               boolean initialIsUp,
+                                               HealthCheckHandler handler) {
+        String key = key(remote, config, annotatedHcConfig);
+        Subscription sub = new Subscription(loop, handler);
+        SharedCheck check = checks.get(key);
+        if (check == null) {
+            check = new SharedCheck(key, remote, new HealthCheckConfig(config), annotatedHcConfig.copy());
+            sub.check = check;
+            check.subscriptions.add(sub);
+            checks.put(key, check);
+            check.start(loop, initialIsUp);
+            return sub;
+        }
+        sub.check = check;
+        check.subscriptions.add(sub);
+        if (check.client == null) {
+            // the loop running the check is gone, run it on the new subscriber's loop
+            check.start(loop, check.lastIsUp);
+        }
+        // tell the subscriber the current state
+        boolean isUp = check.isUp();
+        if (isUp != initialIsUp) {
+            if (isUp) {
+                sub.dispatch(h -> h.up(remote));
+            } else {
+                sub.dispatch(h -> h.down(remote, "shared health check is DOWN"));
+            }
+        }
+        assert Logger.lowLevelDebug("health check " + key + " now has " + check.subscriptions.size() + " subscriber(s)");
+        return sub;
+    }
+
+    private synchronized void unsubscribe(Subscription sub) {
+        SharedCheck check = sub.check;
+        if (!check.subscriptions.remove(sub))
+            return;
+        if (check.subscriptions.isEmpty()) {
+            check.stop();
+            checks.remove(check.key);
+            assert Logger.lowLevelDebug("health check " + check.key + " is stopped");
+        }
+    }
+
+    private synchronized void loopClosed(SharedCheck check) {
+        if (check.loop == null)
+            return; // already stopped
+        check.stop();
+        // move the check to another subscriber's loop
+        for (Subscription sub : check.subscriptions) {
+            if (!sub.loop.getSelectorEventLoop().isClosed()) {
+                check.start(sub.loop, check.lastIsUp);
+                return;
+            }
+        }
+        // all subscribers are on closed loops, they will subscribe again when restarting
+        // keep the entry, the next subscriber will start the check
+        assert Logger.lowLevelDebug("no running loop for health check " + check.key);
+    }
+
+    public int size() {
+        return checks.size();
+    }
+
+    private class SharedCheck implements EventLoopAttach, HealthCheckHandler {
+        final String key;
+        final IPPort remote;
+        final HealthCheckConfig config;
+        final AnnotatedHcConfig annotatedHcConfig;
+        final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+        EventLoopWrapper loop;
+        HealthCheckClient client;
+        boolean lastIsUp; // the state when the check stopped
+
+        SharedCheck(String key, IPPort remote, HealthCheckConfig config, AnnotatedHcConfig annotatedHcConfig) {
+            this.key = key;
+            this.remote = remote;
+            this.config = config;
+            this.annotatedHcConfig = annotatedHcConfig;
+        }
+
+        void start(EventLoopWrapper loop, boolean initialIsUp) {
+            try {
+                loop.attachResource(this);
+            } catch (AlreadyExistException e) {
+                Logger.shouldNotHappen("the shared health check " + key + " should not have attached");
+                return;
+            } catch (ClosedException e) {
+                assert Logger.lowLevelDebug("the loop " + loop.alias + " is closed, health check " + key + " waits for the next subscriber");
+                return;
+            }
+            this.loop = loop;
+            client = new HealthCheckClient(loop, remote, config, annotatedHcConfig, initialIsUp, this);
+            client.start();
+            assert Logger.lowLevelDebug("health check " + key + " is started on loop " + loop.alias);
+        }
+
+        void stop() {
+            if (loop == null)
+                return;
+            try {
+                loop.detachResource(this);
+            } catch (NotFoundException e) {
+                // the loop is closing
+            }
+            client.stop();
+            lastIsUp = client.isUp();
+            loop = null;
+            client = null;
+        }
+
+        boolean isUp() {
+            HealthCheckClient client = this.client;
+            return client == null ? lastIsUp : client.isUp();
+        }
+
+        @Override
+        public String id() {
+            return "SharedHealthCheck(" + key + ")";
+        }
+
+        @Override
+        public void onClose() {
+            loopClosed(this);
+        }
+
+        @Override
+        public void up(SockAddr remote) {
+            for (Subscription sub : subscriptions) {
+                sub.dispatch(h -> h.up(remote));
+            }
+        }
+
+        @Override
+        public void down(SockAddr remote, String reason) {
+            for (Subscription sub : subscriptions) {
+                sub.dispatch(h -> h.down(remote, reason));
+            }
+        }
+
+        @Override
+        public void upOnce(SockAddr remote, ConnectResult cost) {
+            for (Subscription sub : subscriptions) {
+                sub.dispatch(h -> h.upOnce(remote, cost));
+            }
+        }
+
+        @Override
+        public void downOnce(SockAddr remote, String reason) {
+            for (Subscription sub : subscriptions) {
+                sub.dispatch(h -> h.downOnce(remote, reason));
+            }
+        }
+    }
+
+    public class Subscription {
+        private final EventLoopWrapper loop;
+        private final HealthCheckHandler handler;
+        private SharedCheck check;
+        private volatile boolean stopped = false;
+
+        private Subscription(EventLoopWrapper loop, HealthCheckHandler handler) {
+            this.loop = loop;
+            this.handler = handler;
+        }
+
+        private void dispatch(Consumer<HealthCheckHandler> code) {
+            SelectorEventLoop sel = loop.getSelectorEventLoop();
+            if (SelectorEventLoop.current() == sel) {
+                if (!stopped) {
+                    code.accept(handler);
+                }
+            } else {
+                sel.runOnLoop(() -> {
+                    if (!stopped) {
+                        code.accept(handler);
+                    }
+                });
+            }
+        }
+
+        // whether the shared check considers the remote UP
+        public boolean isUp() {
+            return check.isUp();
+        }
+
+        // the down count of the shared check will +1
+        public void manuallyDownOnce() {
+            HealthCheckClient client = check.client;
+            if (client != null) {
+                client.manuallyDownOnce();
+            }
+        }
+
+        public void stop() {
+            if (stopped)
+                return;
+            stopped = true;
+            unsubscribe(this);
+        }
+    }
+}
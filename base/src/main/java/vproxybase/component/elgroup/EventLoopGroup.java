@@ -1,5 +1,6 @@
 package vproxybase.component.elgroup;
 
+import vproxybase.Config;
 import vproxybase.connection.NetEventLoop;
 import vproxybase.selector.SelectorEventLoop;
 import vproxybase.util.*;
@@ -62,7 +63,12 @@ public class EventLoopGroup {
     }
 
     @ThreadSafe
-    public synchronized void add(String alias) throws AlreadyExistException, IOException, ClosedException {
+    public void add(String alias) throws AlreadyExistException, IOException, ClosedException {
+        add(alias, Config.useTimingWheel);
+    }
+
+    @ThreadSafe
+    public synchronized void add(String alias, boolean timingWheel) throws AlreadyExistException, IOException, ClosedException {
         if (closed) {
             throw new ClosedException();
         }
@@ -71,7 +77,7 @@ public class EventLoopGroup {
             if (w.alias.equals(alias))
                 throw new AlreadyExistException("event-loop in event-loop-group " + this.alias, alias);
         }
-        SelectorEventLoop selectorEventLoop = SelectorEventLoop.open();
+        SelectorEventLoop selectorEventLoop = SelectorEventLoop.open(timingWheel);
         EventLoopWrapper el = new EventLoopWrapper(alias, selectorEventLoop);
         ArrayList<EventLoopWrapper> newLs = new ArrayList<>(ls.size() + 1);
         newLs.addAll(ls);
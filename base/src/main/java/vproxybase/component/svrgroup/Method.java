@@ -3,5 +3,8 @@ package vproxybase.component.svrgroup;
 public enum Method {
     wrr,
     wlc,
+    p2c, // power of two choices of weighted least connection
+    ewma, // p2c on peak ewma latency * (connections + 1)
     source, // consistent hashing with source ip address
+    sourcebl, // consistent hashing with source ip address, and bounded load for each server
 }
@@ -1,6 +1,7 @@
 package vproxybase.component.svrgroup;
 
 import vfd.*;
+import vproxybase.Config;
 import vproxybase.GlobalEvents;
 import vproxybase.component.check.*;
 import vproxybase.component.elgroup.EventLoopAttach;
@@ -9,7 +10,11 @@ import vproxybase.component.elgroup.EventLoopGroupAttach;
 import vproxybase.component.elgroup.EventLoopWrapper;
 import vproxybase.connection.ConnCloseHandler;
 import vproxybase.connection.Connection;
+import vproxybase.connection.ConnectionOpts;
+import vproxybase.connection.NetEventLoop;
 import vproxybase.connection.NetFlowRecorder;
+import vproxybase.selector.SelectorEventLoop;
+import vproxybase.selector.TimerEvent;
 import vproxybase.util.ConcurrentHashSet;
 import vproxybase.util.LogType;
 import vproxybase.util.Logger;
@@ -18,7 +23,9 @@ import vproxybase.util.exception.ClosedException;
 import vproxybase.util.exception.NotFoundException;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
@@ -30,7 +37,14 @@ public class ServerGroup {
         class ServerHealthCheckHandler implements HealthCheckHandler {
             @Override
             public void up(SockAddr remote) {
-                healthy = true;
+                if (ejected) {
+                    // the server answers the probes, but the real traffic failed,
+                    // it will be checked again when the ejection ends
+                    Logger.info(LogType.HEALTH_CHECK_CHANGE,
+                        "server " + ServerHandle.this.alias + "(" + server + ") status changed to UP, but it's still ejected");
+                    return;
+                }
+                setHealthy(true);
                 hcDownReason = null;
                 Logger.info(LogType.HEALTH_CHECK_CHANGE,
                     "server " + ServerHandle.this.alias + "(" + server + ") status changed to UP");
@@ -51,7 +65,7 @@ public class ServerGroup {
 
             @Override
             public void down(SockAddr remote, String reason) {
-                healthy = false;
+                setHealthy(false);
                 Logger.info(LogType.HEALTH_CHECK_CHANGE,
                     "server " + ServerHandle.this.alias + "(" + server + ") status changed to DOWN, reason: " + reason);
 
@@ -65,6 +79,7 @@ public class ServerGroup {
             @Override
             public void upOnce(SockAddr remote, ConnectResult result) {
                 assert Logger.lowLevelDebug("up once for " + ServerHandle.this.alias + "(" + server + "), cost = " + result.cost);
+                observeLatency(result.costNanos);
                 hcCost.addLast(result.cost);
                 if (hcCost.size() > 10) {
                     hcCost.removeFirst();
@@ -115,17 +130,37 @@ public class ServerGroup {
         private ServerHandle toLogicDelete; // the server will be deleted when this server is UP, may be null
         EventLoopWrapper el;
         boolean valid = true;
-        // NOTE: healthy state is public
-        public boolean healthy = false; // considered to be unhealthy when firstly created
+        // NOTE: healthy state is public for reading, modify it with setHealthy() so that the group totals are kept
+        public volatile boolean healthy = false; // considered to be unhealthy when firstly created
+        private boolean counted = false; // whether this server is counted in the group totals, guarded by the group lock
+        private volatile long upTimestamp = 0; // when the server became UP, used by slow-start
         private final LinkedList<Long> hcCost = new LinkedList<>(); // the time cost for one healthy checking result of this endpoint
         private String hcDownReason = null; // the reason for the failed health checks
         private boolean logicDelete = false; // if true, it will not be checked for dup alias nor saved to cfg file
-        HealthCheckClient healthCheckClient;
+        HealthCheckScheduler.Subscription healthCheck;
 
         private final LongAdder fromRemoteBytes = new LongAdder();
         private final LongAdder toRemoteBytes = new LongAdder();
 
         private ConcurrentHashSet<Connection> connMap = new ConcurrentHashSet<>();
+        // same as connMap.size(), but cheaper to read on every pick
+        private final AtomicInteger connCount = new AtomicInteger(0);
+        // peak ewma of the observed latency, see observeLatency()
+        // replaced on every sample so that the picks can read it without locking, null if there's no sample
+        private volatile LatencySample latency = null;
+        // pre-established connections, one pool for each event loop
+        private final ConcurrentHashMap<SelectorEventLoop, SvrHandlePool> pools = new ConcurrentHashMap<>();
+        // passive health check (outlier detection), counters are updated on the worker loops
+        private final AtomicInteger consecutiveErrors = new AtomicInteger(0);
+        private final LongAdder windowTotal = new LongAdder();
+        private final LongAdder windowErrors = new LongAdder();
+        private volatile long windowStart = 0;
+        // ejection states, only modified on the health check event loop
+        private volatile boolean ejected = false;
+        private int ejectCount = 0; // for the exponential back-off
+        private long ejectedUntil = 0;
+        private long lastEjectEnd = 0;
+        private TimerEvent ejectTimer;
 
         public Object data; // the data field, not used by this lib
 
@@ -164,15 +199,249 @@ public class ServerGroup {
 
         @Override
         public void onConnClose(Connection conn) {
-            connMap.remove(conn);
+            if (connMap.remove(conn)) {
+                connCount.decrementAndGet();
+                totals.connections.decrementAndGet();
+                familyTotals().connections.decrementAndGet();
+            }
         }
 
         void attachConnection(Connection conn) {
-            connMap.add(conn);
+            if (connMap.add(conn)) {
+                connCount.incrementAndGet();
+                totals.connections.incrementAndGet();
+                familyTotals().connections.incrementAndGet();
+            }
+        }
+
+        private Totals familyTotals() {
+            return server.getAddress() instanceof IPv4 ? totalsIPv4 : totalsIPv6;
+        }
+
+        public void setHealthy(boolean healthy) {
+            synchronized (ServerGroup.this) {
+                if (this.healthy == healthy)
+                    return;
+                if (healthy) {
+                    upTimestamp = Config.currentTimestamp; // slow-start begins
+                }
+                this.healthy = healthy;
+                if (counted) {
+                    countHealthy(healthy ? 1 : -1);
+                }
+            }
+        }
+
+        // must be called with the group lock held
+        // servers with weight 0 take no traffic, so they are not counted
+        private void countHealthy(int delta) {
+            if (weight <= 0)
+                return;
+            Totals family = familyTotals();
+            totals.healthy += delta;
+            totals.healthyWeight += delta * weight;
+            family.healthy += delta;
+            family.healthyWeight += delta * weight;
+        }
+
+        // must be called with the group lock held
+        private void setCounted(boolean counted) {
+            if (this.counted == counted)
+                return;
+            this.counted = counted;
+            if (healthy) {
+                countHealthy(counted ? 1 : -1);
+            }
+        }
+
+        /**
+         * record a latency sample, the connect cost or time to the first response byte.<br>
+         * a sample higher than the current value replaces it immediately,
+         * a lower one is merged with a weight decaying by the time since the last sample
+         */
+        void observeLatency(long nanos) {
+            synchronized (this) {
+                long now = System.nanoTime();
+                LatencySample last = latency;
+                double ewma;
+                if (last == null || nanos > last.ewma) {
+                    ewma = nanos;
+                } else {
+                    double w = Math.exp(-(double) (now - last.stamp) / LATENCY_DECAY_NANOS);
+                    ewma = last.ewma * w + nanos * (1 - w);
+                }
+                latency = new LatencySample(ewma, now);
+            }
+        }
+
+        private boolean outlierDetectionEnabled() {
+            return outlierErrors != 0 || outlierErrorRate != 0;
+        }
+
+        private void rollOutlierWindow() {
+            long now = Config.currentTimestamp;
+            if (now - windowStart > OUTLIER_WINDOW) {
+                // a few samples might be lost when rolling concurrently, that's fine
+                windowStart = now;
+                windowTotal.reset();
+                windowErrors.reset();
+            }
+        }
+
+        /**
+         * record a success found on the data path, e.g. connection established or non-5xx response
+         */
+        void observeSuccess() {
+            if (!outlierDetectionEnabled())
+                return;
+            rollOutlierWindow();
+            windowTotal.increment();
+            if (consecutiveErrors.get() != 0) {
+                consecutiveErrors.set(0);
+            }
+        }
+
+        /**
+         * record a failure found on the data path, e.g. connect failure, reset or 5xx response.<br>
+         * the server is ejected when it reaches the consecutive errors or error rate threshold
+         */
+        void observeFailure(String reason) {
+            if (!outlierDetectionEnabled())
+                return;
+            rollOutlierWindow();
+            windowTotal.increment();
+            windowErrors.increment();
+            int errors = consecutiveErrors.incrementAndGet();
+
+            String ejectReason = null;
+            int outlierErrors = ServerGroup.this.outlierErrors;
+            int outlierErrorRate = ServerGroup.this.outlierErrorRate;
+            if (outlierErrors != 0 && errors >= outlierErrors) {
+                ejectReason = errors + " consecutive errors";
+            } else if (outlierErrorRate != 0) {
+                long total = windowTotal.sum();
+                long failed = windowErrors.sum();
+                if (total >= OUTLIER_MIN_REQUESTS && failed * 100 >= total * outlierErrorRate) {
+                    ejectReason = "error rate " + (failed * 100 / total) + "%";
+                }
+            }
+            if (ejectReason == null)
+                return;
+            // start counting again
+            consecutiveErrors.set(0);
+            windowStart = Config.currentTimestamp;
+            windowTotal.reset();
+            windowErrors.reset();
+
+            EventLoopWrapper el = this.el;
+            if (el == null)
+                return; // health check is not running, so the server cannot be restored
+            String fullReason = ejectReason + ", last error: " + reason;
+            el.getSelectorEventLoop().runOnLoop(() -> eject(fullReason));
+        }
+
+        // run on the health check event loop
+        private void eject(String reason) {
+            if (ejected || !healthy || !valid)
+                return;
+            // keep at least one server to serve the traffic
+            if (totals.healthy <= 1) {
+                Logger.warn(LogType.HEALTH_CHECK_CHANGE,
+                    "server " + alias + "(" + server + ") should be ejected because of " + reason + ", but it's the last healthy server");
+                return;
+            }
+            long now = Config.currentTimestamp;
+            if (ejectCount != 0 && now - lastEjectEnd > ejectTime(ejectCount)) {
+                ejectCount = 0; // stayed in service longer than the last ejection, reset the back-off
+            }
+            ++ejectCount;
+            int time = ejectTime(ejectCount);
+            ejected = true;
+            ejectedUntil = now + time;
+            setHealthy(false);
+            hcDownReason = "ejected: " + reason;
+            Logger.warn(LogType.HEALTH_CHECK_CHANGE,
+                "server " + alias + "(" + server + ") status changed to DOWN, ejected for " + time + "ms, reason: " + reason);
+            scheduleRestore();
+
+            // alert event
+            alertListeners(lsn -> lsn.down(this));
+            // alert global event
+            GlobalEvents.getInstance().trigger(GlobalEvents.HEALTH_CHECK,
+                new GlobalEvents.Messages.HealthCheck(this, ServerGroup.this));
+        }
+
+        private int ejectTime(int count) {
+            long time = (long) outlierEjectTime << Math.min(count - 1, 16);
+            return (int) Math.min(time, OUTLIER_MAX_EJECT_TIME);
+        }
+
+        private void scheduleRestore() {
+            if (ejectTimer != null) {
+                ejectTimer.cancel();
+                ejectTimer = null;
+            }
+            EventLoopWrapper el = this.el;
+            if (el == null)
+                return; // will be scheduled again when health check restarts
+            int delay = (int) Math.max(0, ejectedUntil - Config.currentTimestamp);
+            ejectTimer = el.getSelectorEventLoop().delay(delay, this::restore);
+        }
+
+        // run on the health check event loop
+        private void restore() {
+            ejectTimer = null;
+            if (!ejected)
+                return;
+            ejected = false;
+            lastEjectEnd = Config.currentTimestamp;
+            HealthCheckScheduler.Subscription hc = healthCheck;
+            if (hc != null && !hc.isUp()) {
+                // the active check considers it DOWN, let the check bring it UP
+                Logger.info(LogType.HEALTH_CHECK_CHANGE,
+                    "server " + alias + "(" + server + ") ejection ends, waiting for the health check");
+                return;
+            }
+            setHealthy(true);
+            hcDownReason = null;
+            Logger.info(LogType.HEALTH_CHECK_CHANGE,
+                "server " + alias + "(" + server + ") status changed to UP, ejection ends");
+
+            // alert event
+            alertListeners(lsn -> lsn.up(this));
+            // alert global event
+            GlobalEvents.getInstance().trigger(GlobalEvents.HEALTH_CHECK,
+                new GlobalEvents.Messages.HealthCheck(this, ServerGroup.this));
+        }
+
+        public boolean isEjected() {
+            return ejected;
+        }
+
+        /**
+         * @return the latency without decay, or -1 if there's no sample
+         */
+        double getSampledLatency() {
+            LatencySample sample = latency;
+            return sample == null ? -1 : sample.ewma;
+        }
+
+        /**
+         * @param fallback the latency of a server without samples
+         * @return the latency decayed towards the fallback since the last sample,
+         * so that a server which is not used for a while will be tried again, but not flooded
+         */
+        double getLatency(long now, double fallback) {
+            LatencySample sample = latency;
+            if (sample == null)
+                return fallback;
+            if (now <= sample.stamp)
+                return sample.ewma;
+            return fallback + (sample.ewma - fallback) * Math.exp(-(double) (now - sample.stamp) / LATENCY_DECAY_NANOS);
         }
 
         public int connectionCount() {
-            return connMap.size();
+            return connCount.get();
         }
 
         public void copyConnections(Collection<? super Connection> c) {
@@ -185,7 +454,15 @@ public class ServerGroup {
 
         public void setWeight(int weight) {
             boolean needReload = this.weight != weight;
-            this.weight = weight;
+            synchronized (ServerGroup.this) {
+                if (counted && healthy) {
+                    countHealthy(-1);
+                    this.weight = weight;
+                    countHealthy(1);
+                } else {
+                    this.weight = weight;
+                }
+            }
             if (needReload) {
                 resetMethodRelatedFields();
             }
@@ -195,6 +472,77 @@ public class ServerGroup {
             return weight;
         }
 
+        boolean isFastOpen() {
+            return fastOpen;
+        }
+
+        /**
+         * the weight used by the load balancing methods.
+         * it grows linearly from a floor to the configured weight
+         * during the slow-start period after the server becomes UP
+         */
+        public int getEffectiveWeight() {
+            int weight = this.weight;
+            int slowStart = ServerGroup.this.slowStart;
+            if (slowStart == 0) {
+                return weight;
+            }
+            long elapsed = Config.currentTimestamp - upTimestamp;
+            if (elapsed >= slowStart || elapsed < 0) {
+                return weight;
+            }
+            int floor = Math.max(1, weight * SLOW_START_FLOOR_PERCENT / 100);
+            if (floor >= weight) {
+                return weight;
+            }
+            return floor + (int) ((weight - floor) * elapsed / slowStart);
+        }
+
+        int poolMinIdle() {
+            return poolMinIdle;
+        }
+
+        int poolMaxIdle() {
+            return poolMaxIdle;
+        }
+
+        int poolMaxAge() {
+            return poolMaxAge;
+        }
+
+        /**
+         * retrieve the connection pool of the event loop.
+         * the pool will be created if it does not exist yet.
+         * must be called on the thread of the event loop
+         *
+         * @return the pool, or null if pooling is disabled
+         */
+        SvrHandlePool pool(NetEventLoop loop, ConnectionOpts opts) {
+            if (poolMaxIdle == 0 || !valid || !healthy) {
+                return null;
+            }
+            SelectorEventLoop sel = loop.getSelectorEventLoop();
+            SvrHandlePool pool = pools.get(sel);
+            if (pool == null) {
+                pool = new SvrHandlePool(this, loop, opts);
+                pools.put(sel, pool);
+                pool.start();
+            }
+            return pool;
+        }
+
+        void poolClosed(SvrHandlePool pool) {
+            pools.remove(pool.loop.getSelectorEventLoop(), pool);
+        }
+
+        public int pooledConnectionCount() {
+            int n = 0;
+            for (SvrHandlePool pool : pools.values()) {
+                n += pool.idleCount();
+            }
+            return n;
+        }
+
         public long getHcCost() {
             return (long) hcCost.stream().mapToLong(l -> l).average().orElse(-1);
         }
@@ -218,7 +566,6 @@ public class ServerGroup {
                 return;
             }
             el = w;
-            healthCheckClient = new HealthCheckClient(el, server, healthCheckConfig, annotatedHcConfig, healthy, handler);
             try {
                 el.attachResource(this);
             } catch (AlreadyExistException e) {
@@ -232,7 +579,11 @@ public class ServerGroup {
                 restart();
                 return;
             }
-            healthCheckClient.start();
+            // checks of the same target are shared with other groups
+            healthCheck = HealthCheckScheduler.getInstance().subscribe(el, server, healthCheckConfig, annotatedHcConfig, healthy, handler);
+            if (ejected) {
+                scheduleRestore(); // the timer on the old event loop is cancelled
+            }
             assert Logger.lowLevelDebug("health check for " +
                 ServerHandle.this.alias + "(" + server + ") " +
                 "is started on loop " + el.alias);
@@ -241,6 +592,16 @@ public class ServerGroup {
             alertListeners(lsn -> lsn.start(this));
         }
 
+        // subscribe to the health check again when the check target changes
+        void resubscribe() {
+            EventLoopWrapper el = this.el;
+            HealthCheckScheduler.Subscription old = healthCheck;
+            if (el == null || old == null)
+                return;
+            healthCheck = HealthCheckScheduler.getInstance().subscribe(el, server, healthCheckConfig, annotatedHcConfig, healthy, handler);
+            old.stop();
+        }
+
         @Override
         public String id() {
             return "HealthCheck(" +
@@ -268,16 +629,21 @@ public class ServerGroup {
             }
             el = null;
             valid = false; // it's invalid when stopped
-            if (healthCheckClient != null) {
-                healthCheckClient.stop();
+            if (ejectTimer != null) {
+                ejectTimer.cancel();
+                ejectTimer = null;
             }
-            healthCheckClient = null;
+            if (healthCheck != null) {
+                healthCheck.stop();
+            }
+            healthCheck = null;
 
             // alert event
             alertListeners(lsn -> lsn.stop(this));
         }
 
         private void alertListeners(Consumer<ServerListener> code) {
+            serversGeneration.incrementAndGet();
             for (ServerListener lsn : serverListeners) {
                 code.accept(lsn);
             }
@@ -339,17 +705,102 @@ public class ServerGroup {
     private Method method;
     private final Attach attach;
     private ArrayList<ServerHandle> servers = new ArrayList<>(0);
+    // running totals of the servers, so that picking a server does not iterate all servers
+    private final Totals totals = new Totals();
+    private final Totals totalsIPv4 = new Totals();
+    private final Totals totalsIPv6 = new Totals();
     private final CopyOnWriteArraySet<ServerListener> serverListeners = new CopyOnWriteArraySet<>();
     private Map<String, String> annotations = Collections.emptyMap();
+    private boolean fastOpen = false; // send the first bytes with SYN when connecting to the servers
+    // pre-established connections to each server, 0 for max-idle means disabled
+    private int poolMinIdle = 0;
+    private int poolMaxIdle = 0;
+    private int poolMaxAge = 0; // ms, 0 means never expire
+
+    private int slowStart = 0; // ms, 0 means disabled
+    // passive health check, 0 for both errors and error-rate means disabled
+    private int outlierErrors = 0; // consecutive errors to eject a server
+    private int outlierErrorRate = 0; // percentage of errors in a window to eject a server
+    private int outlierEjectTime = 30_000; // ms, doubled for each successive ejection
+    private static final int OUTLIER_WINDOW = 10_000; // ms
+    private static final int OUTLIER_MIN_REQUESTS = 20; // error rate is not checked with fewer requests in the window
+    private static final int OUTLIER_MAX_EJECT_TIME = 300_000; // ms
+    private static final int SLOW_START_FLOOR_PERCENT = 10;
+
+    private static final AtomicInteger annotationsGeneration = new AtomicInteger(0);
+    // increased on every server listener event and when the server list or weights change
+    private final AtomicInteger serversGeneration = new AtomicInteger(0);
+    // samples older than this are almost forgotten by the latency ewma
+    private static final double LATENCY_DECAY_NANOS = 10_000_000_000d;
+    // the latency of servers without samples when neither of the two picked servers has any
+    private static final double DEFAULT_LATENCY_NANOS = 1_000_000d;
 
     // START fields for WRR
+    // smooth weighted round robin (the nginx one):
+    // every pick adds the weight of each healthy server to its current weight,
+    // chooses the server with the max current weight, and subtracts the total weight from the chosen one.
+    // the current weights are kept per event loop, so picks on different loops never contend
     static class WRR {
-        int[] seq;
-        final AtomicInteger wrrCursor = new AtomicInteger(0);
         final ArrayList<ServerHandle> servers; // = servers;
+        private final ConcurrentHashMap<SelectorEventLoop, int[]> loopStates = new ConcurrentHashMap<>();
+        private final int[] sharedState; // for callers not on any event loop, guarded by itself
 
         WRR(List<ServerHandle> servers) {
             this.servers = new ArrayList<>(servers);
+            this.sharedState = newState();
+        }
+
+        private int[] newState() {
+            // random is for this concern:
+            // if you deploy multiple instances of vproxy
+            // with exactly the same configuration
+            // behind a (w)rr LVS or other proxy servers
+            // without the random start, first few connections
+            // will always be made to the same server
+            // which may cause some failure
+            int[] current = new int[servers.size()];
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            for (int i = 0; i < current.length; ++i) {
+                current[i] = rand.nextInt(Math.max(1, servers.get(i).weight));
+            }
+            return current;
+        }
+
+        ServerHandle next() {
+            if (servers.isEmpty())
+                return null; // return null if no elements
+            SelectorEventLoop loop = SelectorEventLoop.current();
+            if (loop == null) {
+                synchronized (sharedState) {
+                    return next(sharedState);
+                }
+            }
+            int[] current = loopStates.get(loop);
+            if (current == null) {
+                current = newState();
+                loopStates.put(loop, current); // only the loop thread accesses its own state
+            }
+            return next(current);
+        }
+
+        private ServerHandle next(int[] current) {
+            int total = 0;
+            int best = -1;
+            for (int i = 0; i < current.length; ++i) {
+                ServerHandle h = servers.get(i);
+                if (!h.healthy)
+                    continue;
+                int w = h.getEffectiveWeight();
+                current[i] += w;
+                total += w;
+                if (best == -1 || current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            if (best == -1)
+                return null; // no healthy server
+            current[best] -= total;
+            return servers.get(best);
         }
     }
 
@@ -372,27 +823,181 @@ public class ServerGroup {
     private WLC _wlcIPv6;
     // END fields for WLC
 
+    // START fields for EWMA
+    static class LatencySample {
+        final double ewma; // ns
+        final long stamp; // nanoTime of the sample
+
+        LatencySample(double ewma, long stamp) {
+            this.ewma = ewma;
+            this.stamp = stamp;
+        }
+    }
+    // END fields for EWMA
+
     // START fields for SOURCE
+    static class Totals {
+        // healthy servers with weight > 0 and the sum of their configured weights, modified with the group lock held
+        volatile int healthy = 0;
+        volatile int healthyWeight = 0;
+        // connections to all servers, including the ones being drained from unhealthy servers
+        final AtomicInteger connections = new AtomicInteger(0);
+    }
+
+    /*
+     * Maglev consistent hashing:
+     * https://research.google/pubs/pub44824/
+     *
+     * Each server has a permutation of the lookup table slots
+     * derived from its address, and the servers take turns to fill the slots
+     * in the order of their permutations, a server with higher weight takes more turns.
+     * When a server is added or removed, only about 1/N of the slots change their owner.
+     *
+     * Unhealthy servers are kept in the table, the lookup walks to the following slots,
+     * so the clients of healthy servers are never moved.
+     */
     static class SOURCE {
-        final int[] seq;
+        // primes, the table size is the first one which is at least 100 times of server count.
+        // the size must not change on every membership change, otherwise all slots are remapped,
+        // so the sizes are far apart
+        private static final int[] TABLE_SIZES = {16381, 65521, 262139, 1048573};
+        // a server may take at most this times of its fair share when using bounded load
+        private static final double LOAD_FACTOR = 1.25;
+
+        final int[] table; // slot -> index of server
         final ArrayList<ServerHandle> servers;
+        final Totals totals; // totals of the servers in the table
 
-        SOURCE(int[] seq, ArrayList<ServerHandle> servers) {
-            this.seq = seq;
+        SOURCE(ArrayList<ServerHandle> servers, Totals totals) {
             this.servers = servers;
+            this.totals = totals;
+            this.table = servers.isEmpty() ? new int[0] : populate(servers);
         }
 
-        // sdbm
-        int hash(byte[] bytes) {
-            int hash = 0;
-            for (byte aByte : bytes) {
-                hash = (aByte) + (hash << 6) + (hash << 16) - hash;
+        private static int[] populate(ArrayList<ServerHandle> servers) {
+            int n = servers.size();
+            int m = TABLE_SIZES[TABLE_SIZES.length - 1];
+            for (int size : TABLE_SIZES) {
+                if (size >= n * 100) {
+                    m = size;
+                    break;
+                }
             }
-            hash = Math.abs(hash);
-            if (hash < 0) { // Math.abs(-Integer.MAX_VALUE-1) == -Integer.MAX_VALUE-1
-                hash = 0;
+            long[] offset = new long[n];
+            long[] skip = new long[n];
+            int maxWeight = 0;
+            for (int i = 0; i < n; ++i) {
+                ServerHandle s = servers.get(i);
+                byte[] key = serverKey(s.server);
+                offset[i] = Long.remainderUnsigned(hash(key, 0xc2b2ae3d27d4eb4fL), m);
+                skip[i] = Long.remainderUnsigned(hash(key, 0x165667b19e3779f9L), m - 1) + 1;
+                maxWeight = Math.max(maxWeight, s.weight);
+            }
+
+            int[] table = new int[m];
+            Arrays.fill(table, -1);
+            long[] next = new long[n];
+            double[] credit = new double[n];
+            int filled = 0;
+            while (true) {
+                for (int i = 0; i < n; ++i) {
+                    credit[i] += (double) servers.get(i).weight / maxWeight;
+                    while (credit[i] >= 1) {
+                        credit[i] -= 1;
+                        int c;
+                        do {
+                            c = (int) ((offset[i] + next[i] * skip[i]) % m);
+                            ++next[i];
+                        } while (table[c] >= 0);
+                        table[c] = i;
+                        if (++filled == m) {
+                            return table;
+                        }
+                    }
+                }
             }
-            return hash;
+        }
+
+        private static byte[] serverKey(IPPort server) {
+            byte[] addr = server.getAddress().getAddress();
+            byte[] key = new byte[addr.length + 2];
+            System.arraycopy(addr, 0, key, 0, addr.length);
+            key[addr.length] = (byte) (server.getPort() >> 8);
+            key[addr.length + 1] = (byte) server.getPort();
+            return key;
+        }
+
+        // fnv-1a with the murmur3 finalizer, the seed makes different hash functions
+        static long hash(byte[] bytes, long seed) {
+            long h = 0xcbf29ce484222325L ^ seed;
+            for (byte b : bytes) {
+                h ^= (b & 0xff);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        int slot(byte[] source) {
+            return (int) Long.remainderUnsigned(hash(source, 0), table.length);
+        }
+
+        ServerHandle get(byte[] source) {
+            if (table.length == 0)
+                return null;
+            int slot = slot(source);
+            ServerHandle h = servers.get(table[slot]);
+            if (h.healthy)
+                return h;
+            if (totals.healthy == 0)
+                return null;
+            // use the following slots, the table is filled with permutations
+            // so the clients of this server spread to all other servers
+            // the walk is bounded in case the last healthy server goes down concurrently
+            for (int i = 1; i < table.length; ++i) {
+                h = servers.get(table[(slot + i) % table.length]);
+                if (h.healthy)
+                    return h;
+            }
+            return null;
+        }
+
+        /*
+         * Consistent hashing with bounded loads:
+         * https://arxiv.org/abs/1608.01350
+         *
+         * A server is skipped when its connection count reaches
+         * ceil(LOAD_FACTOR * (total connections + 1) * weight / total weight),
+         * then the following slots are used.
+         * The total connections and the total weight are running totals kept by the group,
+         * the weight is the configured one, and the connections include the ones to unhealthy servers.
+         * The capacities add up to more than the total connections, so at least one healthy server
+         * is under its capacity, unless the servers are in slow-start, in which case the first
+         * healthy server is used.
+         */
+        ServerHandle getBoundedLoad(byte[] source) {
+            if (table.length == 0)
+                return null;
+            int healthyWeight = totals.healthyWeight;
+            if (totals.healthy == 0 || healthyWeight <= 0)
+                return null;
+            double capPerWeight = LOAD_FACTOR * (totals.connections.get() + 1) / healthyWeight;
+            int slot = slot(source);
+            ServerHandle first = null;
+            for (int i = 0; i < table.length; ++i) {
+                ServerHandle h = servers.get(table[(slot + i) % table.length]);
+                if (!h.healthy)
+                    continue;
+                if (h.connectionCount() < Math.ceil(capPerWeight * h.getEffectiveWeight()))
+                    return h;
+                if (first == null)
+                    first = h;
+            }
+            return first;
         }
     }
 
@@ -423,8 +1028,12 @@ public class ServerGroup {
             return wrrNext();
         } else if (method == Method.wlc) {
             return wlcNext();
-        } else if (method == Method.source) {
-            return sourceHashGet(source.getAddress());
+        } else if (method == Method.p2c) {
+            return p2cNext(_wlc);
+        } else if (method == Method.ewma) {
+            return ewmaNext(_wlc);
+        } else if (method == Method.source || method == Method.sourcebl) {
+            return sourceHashGet(_source, source.getAddress());
         } else {
             Logger.shouldNotHappen("unsupported method " + method);
             // use wrr instead
@@ -437,8 +1046,12 @@ public class ServerGroup {
             return wrrNextIPv4();
         } else if (method == Method.wlc) {
             return wlcNextIPv4();
-        } else if (method == Method.source) {
-            return sourceHashGetIPv4(source.getAddress());
+        } else if (method == Method.p2c) {
+            return p2cNext(_wlcIPv4);
+        } else if (method == Method.ewma) {
+            return ewmaNext(_wlcIPv4);
+        } else if (method == Method.source || method == Method.sourcebl) {
+            return sourceHashGet(_sourceIPv4, source.getAddress());
         } else {
             Logger.shouldNotHappen("unsupported method " + method);
             // use wrr instead
@@ -451,8 +1064,12 @@ public class ServerGroup {
             return wrrNextIPv6();
         } else if (method == Method.wlc) {
             return wlcNextIPv6();
-        } else if (method == Method.source) {
-            return sourceHashGetIPv6(source.getAddress());
+        } else if (method == Method.p2c) {
+            return p2cNext(_wlcIPv6);
+        } else if (method == Method.ewma) {
+            return ewmaNext(_wlcIPv6);
+        } else if (method == Method.source || method == Method.sourcebl) {
+            return sourceHashGet(_sourceIPv6, source.getAddress());
         } else {
             Logger.shouldNotHappen("unsupported method " + method);
             // use wrr instead
@@ -460,32 +1077,16 @@ public class ServerGroup {
         }
     }
 
-    private SvrHandleConnector sourceHashGet(IP source) {
-        byte[] bytes = source.getAddress();
-        return sourceHashGet(_source, _source.hash(bytes), 0);
-    }
-
-    private SvrHandleConnector sourceHashGetIPv4(IP source) {
-        byte[] bytes = source.getAddress();
-        return sourceHashGet(_sourceIPv4, _sourceIPv4.hash(bytes), 0);
-    }
-
-    private SvrHandleConnector sourceHashGetIPv6(IP source) {
-        byte[] bytes = source.getAddress();
-        return sourceHashGet(_sourceIPv6, _sourceIPv6.hash(bytes), 0);
-    }
-
-    private SvrHandleConnector sourceHashGet(SOURCE source, int hash, int recurse) {
-        if (recurse >= source.servers.size()) // this condition also checks empty state
-            return null;
-
-        int idx = hash % source.servers.size();
-        ServerHandle h = source.servers.get(idx);
-        if (h.healthy)
-            return h.makeConnector();
-
-        // increase the "hash" by 1, which means using the next server in the list
-        return sourceHashGet(source, idx + 1, recurse + 1);
+    private SvrHandleConnector sourceHashGet(SOURCE source, IP address) {
+        if (source == null)
+            return null; // the method is being switched
+        ServerHandle h;
+        if (method == Method.sourcebl) {
+            h = source.getBoundedLoad(address.getAddress());
+        } else {
+            h = source.get(address.getAddress());
+        }
+        return h == null ? null : h.makeConnector();
     }
 
     /*
@@ -547,7 +1148,7 @@ public class ServerGroup {
         // for (m = 0; m < n; ++m) {
         { // --------- START ---------
             Sm = wlc.servers.get(m);
-            WSm = Sm.weight;
+            WSm = Sm.getEffectiveWeight();
             CSm = Sm.connectionCount();
         } // --------- END ---------
         if (!Sm.healthy) {
@@ -556,13 +1157,13 @@ public class ServerGroup {
         // if (WSm > 0) {
         for (int i = m + 1; i < n; ++i) {
             ServerHandle Si = wlc.servers.get(i);
-            WSi = Si.weight;
+            WSi = Si.getEffectiveWeight();
             CSi = Si.connectionCount();
             if (CSm * WSi > CSi * WSm && Si.healthy) {
                 m = i;
                 { // --------- START ---------
                     Sm = wlc.servers.get(m);
-                    WSm = Sm.weight;
+                    WSm = Sm.getEffectiveWeight();
                     CSm = Sm.connectionCount();
                 } // --------- END ---------
             }
@@ -573,58 +1174,130 @@ public class ServerGroup {
         // return null;
     }
 
+    /*
+     * Power of two choices:
+     * pick two random servers, and use the one with lower weighted load,
+     * which is C(Si)*W(Sj) < C(Sj)*W(Si) in the same way as WLC.
+     * It costs O(1) for each pick, and the randomness prevents
+     * the concurrent picks from all choosing the same least loaded server.
+     *
+     * p2c uses the same server lists as wlc.
+     */
+    private static final int P2C_MAX_SAMPLES = 8;
+
+    private SvrHandleConnector p2cNext(WLC wlc) {
+        return p2cNext(wlc, false);
+    }
+
+    /*
+     * Peak EWMA:
+     * pick two random servers as p2c does, and use the one with lower latency * (C(Si) + 1) / W(Si),
+     * where the latency is the peak ewma of connect costs, health check costs
+     * and time to the first response byte reported by the processors.
+     * https://github.com/twitter/finagle/blob/develop/finagle-core/src/main/scala/com/twitter/finagle/loadbalancer/PeakEwma.scala
+     *
+     * A server without samples takes the latency of the other picked server,
+     * and the samples decay towards the average of the two, so an idle or new server is tried again
+     * without taking all the traffic as it would with a latency of 0.
+     * The latency is read from an immutable snapshot, so the picks never wait for observeLatency().
+     *
+     * ewma uses the same server lists as wlc.
+     */
+    private SvrHandleConnector ewmaNext(WLC wlc) {
+        return p2cNext(wlc, true);
+    }
+
+    private SvrHandleConnector p2cNext(WLC wlc, boolean ewma) {
+        ArrayList<ServerHandle> servers = wlc.servers;
+        int n = servers.size();
+        if (n == 0)
+            return null;
+        if (n == 1) {
+            ServerHandle h = servers.get(0);
+            return h.healthy ? h.makeConnector() : null;
+        }
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        for (int i = 0; i < P2C_MAX_SAMPLES; ++i) {
+            int a = rand.nextInt(n);
+            int b = rand.nextInt(n - 1);
+            if (b >= a) {
+                ++b; // make sure two different servers are chosen
+            }
+            ServerHandle ha = servers.get(a);
+            ServerHandle hb = servers.get(b);
+            if (!ha.healthy) {
+                if (hb.healthy)
+                    return hb.makeConnector();
+                continue; // sample again
+            }
+            if (!hb.healthy) {
+                return ha.makeConnector();
+            }
+            boolean preferB = ewma ? ewmaScore(hb, ha) < ewmaScore(ha, hb)
+                : (long) ha.connectionCount() * hb.getEffectiveWeight() > (long) hb.connectionCount() * ha.getEffectiveWeight();
+            return preferB ? hb.makeConnector() : ha.makeConnector();
+        }
+        // most of the servers are unhealthy, fall back to wlc
+        return wlcNext(wlc, 0);
+    }
+
+    private static double ewmaScore(ServerHandle h, ServerHandle other) {
+        double latency = h.getSampledLatency();
+        double otherLatency = other.getSampledLatency();
+        double fallback;
+        if (latency < 0) {
+            fallback = otherLatency < 0 ? DEFAULT_LATENCY_NANOS : otherLatency;
+        } else {
+            fallback = otherLatency < 0 ? latency : (latency + otherLatency) / 2;
+        }
+        return h.getLatency(System.nanoTime(), fallback) * (h.connectionCount() + 1) / h.getEffectiveWeight();
+    }
+
     private SvrHandleConnector wrrNext() {
-        return wrrNext(this._wrr, 0);
+        return wrrNext(this._wrr);
     }
 
     private SvrHandleConnector wrrNextIPv4() {
-        return wrrNext(this._wrrIPv4, 0);
+        return wrrNext(this._wrrIPv4);
     }
 
     private SvrHandleConnector wrrNextIPv6() {
-        return wrrNext(this._wrrIPv6, 0);
+        return wrrNext(this._wrrIPv6);
     }
 
-    private SvrHandleConnector wrrNext(WRR wrr, int recursion) {
-        if (recursion > wrr.seq.length)
-            return null;
-        if (wrr.seq.length == 0)
-            return null; // return null if no elements
-
-        int idx = wrr.wrrCursor.getAndIncrement();
-        if (idx >= wrr.seq.length) {
-            idx = idx % wrr.seq.length;
-            wrr.wrrCursor.set(idx + 1);
-        }
-        int realIdx = wrr.seq[idx];
-        ServerHandle h = wrr.servers.get(realIdx);
-        if (h.healthy)
-            return h.makeConnector();
-        else
-            return wrrNext(wrr, recursion + 1);
+    private SvrHandleConnector wrrNext(WRR wrr) {
+        ServerHandle h = wrr.next();
+        return h == null ? null : h.makeConnector();
     }
 
     private void resetMethodRelatedFields() {
-        wrrReset();
-        wlcReset();
-        sourceReset();
+        resetMethodRelatedFields(method);
     }
 
-    private int gcd(int a, int b) {
-        if (a == b) return a;
-        if (a > b) return gcd(a - b, b);
-        return gcd(b - a, a);
+    private void resetMethodRelatedFields(Method method) {
+        serversGeneration.incrementAndGet();
+        wrrReset();
+        wlcReset();
+        sourceReset(method);
     }
 
-    private void sourceReset() {
-        _source = sourceReset(servers);
-        _sourceIPv4 = sourceReset(servers.stream().filter(s -> s.server.getAddress() instanceof IPv4).collect(Collectors.toList()));
-        _sourceIPv6 = sourceReset(servers.stream().filter(s -> s.server.getAddress() instanceof IPv6).collect(Collectors.toList()));
+    private void sourceReset(Method method) {
+        if (method != Method.source && method != Method.sourcebl) {
+            // the tables are large, only build them when they are used
+            _source = null;
+            _sourceIPv4 = null;
+            _sourceIPv6 = null;
+            return;
+        }
+        _source = sourceReset(servers, totals);
+        _sourceIPv4 = sourceReset(servers.stream().filter(s -> s.server.getAddress() instanceof IPv4).collect(Collectors.toList()), totalsIPv4);
+        _sourceIPv6 = sourceReset(servers.stream().filter(s -> s.server.getAddress() instanceof IPv6).collect(Collectors.toList()), totalsIPv6);
     }
 
-    private SOURCE sourceReset(List<ServerHandle> servers) {
+    private SOURCE sourceReset(List<ServerHandle> servers, Totals totals) {
         //noinspection FuseStreamOperations
         ArrayList<ServerHandle> svrs = new ArrayList<>(servers.stream().filter(s -> s.weight > 0).collect(Collectors.toList()));
+        // sort the servers to make the table stable
         svrs.sort((a, b) -> {
             byte[] ba = a.server.getAddress().getAddress();
             byte[] bb = b.server.getAddress().getAddress();
@@ -639,27 +1312,7 @@ public class ServerGroup {
             }
             return a.server.getPort() - b.server.getPort();
         });
-        if (svrs.size() == 0) {
-            return new SOURCE(new int[0], svrs);
-        }
-        int g = svrs.size() > 1
-            ? gcd(svrs.get(0).weight, svrs.get(1).weight)
-            : svrs.get(0).weight;
-        LinkedList<Integer> seqList = new LinkedList<>();
-        for (int sIdx = 0; sIdx < svrs.size(); sIdx++) {
-            ServerHandle s = svrs.get(sIdx);
-            int w = s.weight;
-            int times = w / g;
-            for (int i = 0; i < times; ++i) {
-                seqList.add(sIdx);
-            }
-        }
-        int[] seq = new int[seqList.size()];
-        int idx = 0;
-        for (Integer integer : seqList) {
-            seq[idx++] = integer;
-        }
-        return new SOURCE(seq, svrs);
+        return new SOURCE(svrs, totals);
     }
 
     private void wlcReset() {
@@ -675,105 +1328,25 @@ public class ServerGroup {
     }
 
     private void wrrReset() {
-        this._wrr = wrrReset(new WRR(this.servers.stream()
+        this._wrr = new WRR(this.servers.stream()
             .filter(s -> s.weight > 0) // only consider those weight > 0
-            .collect(Collectors.toList())));
-        this._wrrIPv4 = wrrReset(new WRR(this.servers.stream()
+            .collect(Collectors.toList()));
+        this._wrrIPv4 = new WRR(this.servers.stream()
             .filter(s -> s.weight > 0)
             .filter(s -> s.server.getAddress() instanceof IPv4)
-            .collect(Collectors.toList())));
-        this._wrrIPv6 = wrrReset(new WRR(this.servers.stream()
+            .collect(Collectors.toList()));
+        this._wrrIPv6 = new WRR(this.servers.stream()
             .filter(s -> s.weight > 0)
             .filter(s -> s.server.getAddress() instanceof IPv6)
-            .collect(Collectors.toList())));
-    }
-
-    private WRR wrrReset(WRR wrr) {
-        if (wrr.servers.isEmpty()) {
-            wrr.seq = new int[0];
-        } else {
-            // calculate the seq
-            List<Integer> listSeq = new LinkedList<>();
-            int[] weights = new int[wrr.servers.size()];
-            int[] original = new int[wrr.servers.size()];
-            // run calculation
-            int sum = 0;
-            for (int i = 0; i < wrr.servers.size(); i++) {
-                ServerHandle h = wrr.servers.get(i);
-                weights[i] = h.weight;
-                original[i] = h.weight;
-                sum += h.weight;
-            }
-            //noinspection Duplicates
-            while (true) {
-                int idx = maxIndex(weights);
-                listSeq.add(idx);
-                weights[idx] -= sum;
-                if (calculationEnd(weights)) {
-                    break;
-                }
-                for (int i = 0; i < weights.length; ++i) {
-                    weights[i] += original[i];
-                }
-                sum = sum(weights); // recalculate sum
-            }
-            int[] seq = new int[listSeq.size()];
-
-            // random is for this concern:
-            // if you deploy multiple instances of vproxy
-            // with exactly the same configuration
-            // behind a (w)rr LVS or other proxy servers
-            // without the `randStart`, first few connections
-            // will always be made to the same server
-            // which may cause some failure
-            int randStart = new Random().nextInt(seq.length);
-            // the random wll only run when updating config
-            Iterator<Integer> ite = listSeq.iterator();
-            int idx = 0;
-            while (ite.hasNext()) {
-                seq[(idx + randStart) % seq.length] = ite.next();
-                ++idx;
-            }
-            wrr.seq = seq;
-        }
-
-        return wrr;
-    }
-
-    private int sum(int[] weights) {
-        int s = 0;
-        for (int w : weights) {
-            s += w;
-        }
-        return s;
-    }
-
-    private boolean calculationEnd(int[] weights) {
-        for (int w : weights) {
-            if (w != 0)
-                return false;
-        }
-        return true;
-    }
-
-    private int maxIndex(int[] weights) {
-        int maxIdx = 0;
-        int maxVal = weights[0];
-        for (int i = 1; i < weights.length; ++i) {
-            if (weights[i] > maxVal) {
-                maxVal = weights[i];
-                maxIdx = i;
-            }
-        }
-        return maxIdx;
+            .collect(Collectors.toList()));
     }
 
-    public void setMethod(Method method) {
-        boolean needReload = this.method != method;
+    public synchronized void setMethod(Method method) {
+        if (this.method == method)
+            return;
+        // prepare the fields of the new method before it's used
+        resetMethodRelatedFields(method);
         this.method = method;
-        if (needReload) {
-            resetMethodRelatedFields();
-        }
     }
 
     public Method getMethod() {
@@ -793,6 +1366,97 @@ public class ServerGroup {
         return new HealthCheckConfig(healthCheckConfig);
     }
 
+    public void setFastOpen(boolean fastOpen) {
+        this.fastOpen = fastOpen;
+    }
+
+    public boolean isFastOpen() {
+        return fastOpen;
+    }
+
+    public void setPool(int minIdle, int maxIdle, int maxAge) {
+        if (minIdle < 0 || maxIdle < 0 || maxAge < 0)
+            throw new IllegalArgumentException("pool settings should not be negative");
+        if (minIdle > maxIdle)
+            throw new IllegalArgumentException("pool min-idle should not be greater than max-idle");
+        // existing pools will adjust themselves or close on the next sweep
+        this.poolMinIdle = minIdle;
+        this.poolMaxIdle = maxIdle;
+        this.poolMaxAge = maxAge;
+    }
+
+    public int getPoolMinIdle() {
+        return poolMinIdle;
+    }
+
+    public int getPoolMaxIdle() {
+        return poolMaxIdle;
+    }
+
+    public int getPoolMaxAge() {
+        return poolMaxAge;
+    }
+
+    /**
+     * @param slowStart the period (ms) for a server to ramp up to its full weight after it becomes UP, 0 to disable
+     */
+    public void setSlowStart(int slowStart) {
+        if (slowStart < 0)
+            throw new IllegalArgumentException("slow-start should not be negative");
+        this.slowStart = slowStart;
+    }
+
+    public int getSlowStart() {
+        return slowStart;
+    }
+
+    /**
+     * configure the passive health check, which ejects the servers failing on real traffic
+     *
+     * @param errors    consecutive errors to eject a server, 0 to disable
+     * @param errorRate percentage of errors in 10 seconds to eject a server, 0 to disable
+     * @param ejectTime ms, the first ejection time, doubled for each successive ejection
+     */
+    public void setOutlierDetection(int errors, int errorRate, int ejectTime) {
+        if (errors < 0 || errorRate < 0 || ejectTime < 0)
+            throw new IllegalArgumentException("outlier detection settings should not be negative");
+        if (errorRate > 100)
+            throw new IllegalArgumentException("outlier error rate should not be greater than 100");
+        if (ejectTime == 0 && (errors != 0 || errorRate != 0))
+            throw new IllegalArgumentException("outlier eject time should be positive");
+        this.outlierErrors = errors;
+        this.outlierErrorRate = errorRate;
+        this.outlierEjectTime = ejectTime;
+    }
+
+    public int getOutlierErrors() {
+        return outlierErrors;
+    }
+
+    public int getOutlierErrorRate() {
+        return outlierErrorRate;
+    }
+
+    public int getOutlierEjectTime() {
+        return outlierEjectTime;
+    }
+
+    /**
+     * @return a number which changes when annotations of any server group change,
+     * users may use it to check whether the data built from the annotations is outdated
+     */
+    public static int annotationsGeneration() {
+        return annotationsGeneration.get();
+    }
+
+    /**
+     * @return a number which changes when servers are added, removed, re-weighted, started, stopped or change their health,
+     * users may use it to check whether the data built from the server list is outdated
+     */
+    public int serversGeneration() {
+        return serversGeneration.get();
+    }
+
     public Map<String, String> getAnnotations() {
         return Collections.unmodifiableMap(annotations);
     }
@@ -802,13 +1466,22 @@ public class ServerGroup {
             annotations = Collections.emptyMap();
         }
         this.annotations = annotations;
+        annotationsGeneration.incrementAndGet();
 
         // set hc client annotations
+        String oldHcConfig = annotatedHcConfig.toString();
         if (annotations.isEmpty()) {
             annotatedHcConfig.clear();
         } else {
             annotatedHcConfig.set(annotations);
         }
+        if (!oldHcConfig.equals(annotatedHcConfig.toString())) {
+            // the shared checks are keyed by the annotations, so subscribe again
+            ArrayList<ServerHandle> ls = servers;
+            for (ServerHandle handle : ls) {
+                handle.resubscribe();
+            }
+        }
     }
 
     public synchronized ServerHandle add(String alias, IPPort server, int weight) throws AlreadyExistException {
@@ -890,6 +1563,7 @@ public class ServerGroup {
         ServerHandle handle = new ServerHandle(
             alias, idForServer.getAndIncrement(), hostName, server, weight, toLogicDelete);
         handle.start();
+        handle.setCounted(true);
         ArrayList<ServerHandle> newLs = new ArrayList<>(ls.size() + 1);
         newLs.addAll(ls);
         newLs.add(handle);
@@ -912,6 +1586,7 @@ public class ServerGroup {
                 // here may remove multiple servers
                 // with the same alias
                 found = true;
+                c.setCounted(false);
                 c.stop();
             } else {
                 newLs.add(c);
@@ -936,6 +1611,7 @@ public class ServerGroup {
         for (ServerHandle c : ls) {
             if (c == h) {
                 found = true;
+                c.setCounted(false);
                 c.stop();
             } else {
                 newLs.add(c);
@@ -955,6 +1631,9 @@ public class ServerGroup {
         synchronized (this) {
             ls = servers;
             servers = new ArrayList<>(0);
+            for (ServerHandle s : ls) {
+                s.setCounted(false);
+            }
             resetMethodRelatedFields();
         }
         for (ServerHandle s : ls) {
@@ -1,9 +1,14 @@
 package vproxybase.component.svrgroup;
 
+import vproxybase.component.check.HealthCheckScheduler;
 import vproxybase.connection.ConnectableConnection;
 import vproxybase.connection.Connection;
 import vproxybase.connection.ConnectionOpts;
 import vproxybase.connection.Connector;
+import vproxybase.connection.NetEventLoop;
+import vproxybase.selector.SelectorEventLoop;
+import vproxybase.util.LogType;
+import vproxybase.util.Logger;
 import vproxybase.util.RingBuffer;
 
 import java.io.IOException;
@@ -18,13 +23,72 @@ public class SvrHandleConnector extends Connector {
 
     @Override
     public ConnectableConnection connect(Connection accepted, ConnectionOpts opts, RingBuffer in, RingBuffer out) throws IOException {
-        ConnectableConnection conn = super.connect(accepted, opts, in, out);
+        return connect(accepted, null, opts, in, out);
+    }
+
+    @Override
+    public ConnectableConnection connect(Connection accepted, NetEventLoop loop, ConnectionOpts opts, RingBuffer in, RingBuffer out) throws IOException {
+        ConnectableConnection conn = null;
+        // the pool belongs to the loop which handles the connection, it can only be used on that thread
+        if (loop != null && loop.getSelectorEventLoop() == SelectorEventLoop.current()) {
+            conn = pooled(loop, opts, in, out);
+        }
+        if (conn == null) {
+            conn = super.connect(accepted, opts, in, out);
+        }
         conn.addNetFlowRecorder(serverHandle);
         serverHandle.attachConnection(conn);
         conn.addConnCloseHandler(serverHandle);
         return conn;
     }
 
+    private ConnectableConnection pooled(NetEventLoop loop, ConnectionOpts opts, RingBuffer in, RingBuffer out) {
+        SvrHandlePool pool = serverHandle.pool(loop, opts);
+        if (pool == null) {
+            return null;
+        }
+        ConnectableConnection conn = pool.poll(opts);
+        if (conn == null) {
+            return null;
+        }
+        RingBuffer oldIn = conn.getInBuffer();
+        RingBuffer oldOut = conn.getOutBuffer();
+        try {
+            conn.UNSAFE_replaceBuffer(in, out);
+        } catch (IOException e) {
+            Logger.error(LogType.IMPROPER_USE, "replacing buffers of pooled connection " + conn + " failed", e);
+            conn.close();
+            oldIn.clean();
+            oldOut.clean();
+            return null;
+        }
+        oldIn.clean();
+        oldOut.clean();
+        own(conn);
+        assert Logger.lowLevelDebug("use pooled connection " + conn);
+        return conn;
+    }
+
+    @Override
+    public boolean fastOpen() {
+        return serverHandle.isFastOpen();
+    }
+
+    @Override
+    public void observeLatency(long nanos) {
+        serverHandle.observeLatency(nanos);
+    }
+
+    @Override
+    public void observeSuccess() {
+        serverHandle.observeSuccess();
+    }
+
+    @Override
+    public void observeFailure(String reason) {
+        serverHandle.observeFailure(reason);
+    }
+
     @Override
     public boolean isValid() {
         return serverHandle.valid;
@@ -33,7 +97,11 @@ public class SvrHandleConnector extends Connector {
     @Override
     public void connectionFailed() {
         // accelerate the down process
-        serverHandle.healthCheckClient.manuallyDownOnce();
+        HealthCheckScheduler.Subscription hc = serverHandle.healthCheck;
+        if (hc != null) {
+            hc.manuallyDownOnce();
+        }
+        serverHandle.observeFailure("connect failed");
     }
 
     public String getHostName() {
@@ -0,0 +1,251 @@
+package vproxybase.component.svrgroup;
+
+import vproxybase.Config;
+import vproxybase.connection.*;
+import vproxybase.selector.PeriodicEvent;
+import vproxybase.util.LogType;
+import vproxybase.util.Logger;
+import vproxybase.util.RingBuffer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * pre-established connections to one server, kept on one event loop.<br>
+ * the connections are handed out by {@link SvrHandleConnector} instead of dialing,
+ * so the session can be built without waiting for the backend handshake.<br>
+ * all methods must be called on the event loop thread
+ */
+class SvrHandlePool implements ConnectableConnectionHandler {
+    private static final int SWEEP_INTERVAL = 1000;
+    // the connections are not expected to receive data while they are idle
+    private static final int IDLE_BUFFER_SIZE = 16;
+
+    private static class Entry {
+        final ConnectableConnection conn;
+        final long createTime;
+        final long connectStartNanos = System.nanoTime();
+        boolean taken = false; // handed out or dropped
+
+        Entry(ConnectableConnection conn, long createTime) {
+            this.conn = conn;
+            this.createTime = createTime;
+        }
+    }
+
+    private final ServerGroup.ServerHandle handle;
+    final NetEventLoop loop;
+    private ConnectionOpts opts; // opts of the latest request, used for new connections
+    private final ArrayDeque<Entry> idle = new ArrayDeque<>();
+    private int connecting = 0;
+    private int demand = 0; // connections requested since last sweep
+    private boolean refillScheduled = false;
+    private PeriodicEvent sweeper;
+    private boolean closed = false;
+
+    SvrHandlePool(ServerGroup.ServerHandle handle, NetEventLoop loop, ConnectionOpts opts) {
+        this.handle = handle;
+        this.loop = loop;
+        this.opts = opts;
+    }
+
+    void start() {
+        sweeper = loop.getSelectorEventLoop().period(SWEEP_INTERVAL, this::sweep);
+        fill(handle.poolMinIdle());
+    }
+
+    /**
+     * @param opts the options which the connection should be created with
+     * @return an established connection removed from the event loop, or null if no idle connection
+     */
+    ConnectableConnection poll(ConnectionOpts opts) {
+        if (closed) {
+            return null;
+        }
+        ++demand;
+        this.opts = opts;
+        int maxAge = handle.poolMaxAge();
+        Entry e;
+        ConnectableConnection conn = null;
+        while ((e = idle.pollFirst()) != null) {
+            if (maxAge > 0 && Config.currentTimestamp - e.createTime > maxAge) {
+                drop(e);
+                continue;
+            }
+            if (e.conn.timeout != opts.getTimeout()) {
+                // the timeout cannot be changed after the connection is created
+                drop(e);
+                continue;
+            }
+            e.taken = true;
+            loop.removeConnection(e.conn);
+            conn = e.conn;
+            break;
+        }
+        scheduleRefill();
+        return conn;
+    }
+
+    private void scheduleRefill() {
+        if (refillScheduled) {
+            return;
+        }
+        refillScheduled = true;
+        // dial out of the current event, the caller is on the hot path
+        loop.getSelectorEventLoop().nextTick(() -> {
+            refillScheduled = false;
+            if (!closed) {
+                fill(handle.poolMinIdle());
+            }
+        });
+    }
+
+    private void fill(int target) {
+        while (idle.size() + connecting < target) {
+            ConnectableConnection conn;
+            try {
+                conn = ConnectableConnection.create(handle.server, opts,
+                    RingBuffer.allocateDirect(IDLE_BUFFER_SIZE), RingBuffer.allocateDirect(IDLE_BUFFER_SIZE));
+            } catch (IOException e) {
+                Logger.error(LogType.CONN_ERROR, "creating pooled connection to " + handle.server + " failed", e);
+                return;
+            }
+            Entry entry = new Entry(conn, Config.currentTimestamp);
+            try {
+                loop.addConnectableConnection(conn, entry, this);
+            } catch (IOException e) {
+                Logger.error(LogType.EVENT_LOOP_ADD_FAIL, "adding pooled connection " + conn + " to loop failed", e);
+                conn.close();
+                releaseBuffers(conn);
+                return;
+            }
+            ++connecting;
+        }
+    }
+
+    private void sweep() {
+        if (!handle.valid || handle.poolMaxIdle() == 0) {
+            // the server is removed or the pool is disabled
+            close();
+            return;
+        }
+        if (!handle.healthy) {
+            // do not keep connections to an unhealthy server
+            closeIdle(0);
+            demand = 0;
+            return;
+        }
+        int maxAge = handle.poolMaxAge();
+        if (maxAge > 0) {
+            // the oldest connections are at the head
+            Entry e;
+            while ((e = idle.peekFirst()) != null && Config.currentTimestamp - e.createTime > maxAge) {
+                idle.pollFirst();
+                drop(e);
+            }
+        }
+        int maxIdle = handle.poolMaxIdle();
+        closeIdle(maxIdle);
+        // keep as many connections as requested in the last period, bounded by min-idle and max-idle
+        int target = Math.max(handle.poolMinIdle(), Math.min(maxIdle, demand));
+        demand = 0;
+        fill(target);
+    }
+
+    private void closeIdle(int keep) {
+        while (idle.size() > keep) {
+            drop(idle.pollFirst());
+        }
+    }
+
+    int idleCount() {
+        return idle.size();
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (sweeper != null) {
+            sweeper.cancel();
+        }
+        closeIdle(0);
+        // connecting ones will be dropped in the connected callback
+        handle.poolClosed(this);
+    }
+
+    private void drop(Entry e) {
+        if (e.taken) {
+            return;
+        }
+        e.taken = true;
+        e.conn.close();
+        releaseBuffers(e.conn);
+    }
+
+    private static void releaseBuffers(Connection conn) {
+        conn.getInBuffer().clean();
+        conn.getOutBuffer().clean();
+    }
+
+    private void failed(ConnectionHandlerContext ctx) {
+        Entry e = (Entry) ctx.attachment;
+        if (e.taken) {
+            return;
+        }
+        if (idle.remove(e)) {
+            assert Logger.lowLevelDebug("idle pooled connection " + e.conn + " is gone");
+        } else {
+            --connecting;
+        }
+        drop(e);
+    }
+
+    @Override
+    public void connected(ConnectableConnectionHandlerContext ctx) {
+        Entry e = (Entry) ctx.attachment;
+        --connecting;
+        if (closed) {
+            drop(e);
+            return;
+        }
+        assert Logger.lowLevelDebug("pooled connection " + e.conn + " established");
+        handle.observeLatency(System.nanoTime() - e.connectStartNanos);
+        idle.addLast(e);
+    }
+
+    @Override
+    public void readable(ConnectionHandlerContext ctx) {
+        // the connection is not used yet, the data cannot be delivered to anyone
+        Logger.warn(LogType.IMPROPER_USE, "pooled connection " + ctx.connection + " received data while idle, close it");
+        failed(ctx);
+    }
+
+    @Override
+    public void writable(ConnectionHandlerContext ctx) {
+        // nothing to write
+    }
+
+    @Override
+    public void exception(ConnectionHandlerContext ctx, IOException err) {
+        assert Logger.lowLevelDebug("pooled connection " + ctx.connection + " got exception: " + err);
+        failed(ctx);
+    }
+
+    @Override
+    public void remoteClosed(ConnectionHandlerContext ctx) {
+        failed(ctx);
+    }
+
+    @Override
+    public void closed(ConnectionHandlerContext ctx) {
+        failed(ctx);
+    }
+
+    @Override
+    public void removed(ConnectionHandlerContext ctx) {
+        // removed by the pool when handing out, or by the event loop when it's closing
+        failed(ctx);
+    }
+}
@@ -9,12 +9,17 @@ import vproxybase.selector.wrap.udp.UDPFDs;
 import vproxybase.util.LogType;
 import vproxybase.util.Logger;
 import vproxybase.util.RingBuffer;
+import vproxybase.util.ringbuffer.ByteBufferRingBuffer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.net.StandardSocketOptions;
 
 public class ConnectableConnection extends Connection {
     Connector connector; // maybe null, only for recording purpose, will not be used by the connection lib
+    // bytes sent with SYN, recorded when connected because net flow recorders are usually added after creation
+    int fastOpenBytes = 0;
+    final long connectStartNanos = System.nanoTime(); // for recording the connect cost
 
     public Connector getConnector() {
         return connector;
@@ -24,14 +29,49 @@ public class ConnectableConnection extends Connection {
                                                 RingBuffer inBuffer, RingBuffer outBuffer) throws IOException {
         try {
             channel.configureBlocking(false);
-            channel.connect(remote);
-            return new ConnectableConnection(channel, remote, opts, inBuffer, outBuffer);
+            int sent = 0;
+            if (opts.fastOpen && outBuffer.used() > 0 && outBuffer instanceof ByteBufferRingBuffer) {
+                FastOpenOp op = new FastOpenOp(channel, remote);
+                sent = ((ByteBufferRingBuffer) outBuffer).operateOnByteBufferWriteOut(Integer.MAX_VALUE, op);
+                if (!op.called) {
+                    channel.connect(remote);
+                }
+            } else {
+                channel.connect(remote);
+            }
+            ConnectableConnection conn = new ConnectableConnection(channel, remote, opts, inBuffer, outBuffer);
+            if (sent > 0) {
+                assert Logger.lowLevelDebug(sent + " bytes sent with SYN to " + remote);
+                conn.fastOpenBytes = sent;
+            }
+            return conn;
         } catch (IOException e) {
             channel.close();
             throw e;
         }
     }
 
+    // the buffer may call the op twice when data wraps around, only the first part is sent with SYN
+    private static class FastOpenOp implements ByteBufferRingBuffer.WriteOutOp {
+        private final SocketFD channel;
+        private final IPPort remote;
+        boolean called = false;
+
+        private FastOpenOp(SocketFD channel, IPPort remote) {
+            this.channel = channel;
+            this.remote = remote;
+        }
+
+        @Override
+        public void accept(ByteBuffer buffer) throws IOException {
+            if (called) {
+                return;
+            }
+            called = true;
+            channel.connectFastOpen(remote, buffer);
+        }
+    }
+
     public static ConnectableConnection create(IPPort remote,
                                                ConnectionOpts opts,
                                                RingBuffer inBuffer, RingBuffer outBuffer) throws IOException {
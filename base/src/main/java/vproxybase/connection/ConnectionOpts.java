@@ -4,6 +4,7 @@ import vproxybase.Config;
 
 public class ConnectionOpts {
     int timeout = Config.tcpTimeout;
+    boolean fastOpen = false; // try to send buffered out data with SYN when connecting
 
     public static ConnectionOpts getDefault() {
         return DefaultConnectionOpts.defaultConnectionOpts;
@@ -16,6 +17,15 @@ public class ConnectionOpts {
         this.timeout = timeout;
         return this;
     }
+
+    public ConnectionOpts setFastOpen(boolean fastOpen) {
+        this.fastOpen = fastOpen;
+        return this;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
 }
 
 final class DefaultConnectionOpts extends ConnectionOpts {
@@ -28,4 +38,9 @@ final class DefaultConnectionOpts extends ConnectionOpts {
     public ConnectionOpts setTimeout(int timeout) {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public ConnectionOpts setFastOpen(boolean fastOpen) {
+        throw new UnsupportedOperationException();
+    }
 }
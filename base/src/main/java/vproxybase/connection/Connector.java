@@ -27,6 +27,17 @@ public class Connector {
         return conn;
     }
 
+    // connect with the event loop which will handle the connection,
+    // the connector may use resources bound to that loop, e.g. pre-established connections
+    public ConnectableConnection connect(Connection accepted, NetEventLoop loop, ConnectionOpts opts, RingBuffer in, RingBuffer out) throws IOException {
+        return connect(accepted, opts, in, out);
+    }
+
+    // whether the first bytes should be sent with SYN when connecting
+    public boolean fastOpen() {
+        return false;
+    }
+
     public boolean isValid() {
         return true; // it's always valid for a manually created Connector
     }
@@ -36,6 +47,29 @@ public class Connector {
         // do nothing in default implementation
     }
 
+    // let user code report the latency of the remote endpoint,
+    // e.g. the connect cost or the time to the first response byte
+    public void observeLatency(@SuppressWarnings("unused") long nanos) {
+        // do nothing in default implementation
+    }
+
+    // let user code report a success of the remote endpoint found on the data path,
+    // e.g. the connection is established or a response is not an error
+    public void observeSuccess() {
+        // do nothing in default implementation
+    }
+
+    // let user code report a failure of the remote endpoint found on the data path,
+    // e.g. the connection is reset or a response is an error
+    public void observeFailure(@SuppressWarnings("unused") String reason) {
+        // do nothing in default implementation
+    }
+
+    // mark the connection as made by this connector, when it's not created by `connect()`
+    protected final void own(ConnectableConnection conn) {
+        conn.connector = this;
+    }
+
     // provide a event loop
     public NetEventLoop loop() {
         return null; // default: do not provide
@@ -0,0 +1,118 @@
+package vproxybase.connection;
+
+import vfd.ServerSocketFD;
+import vfd.SocketFD;
+import vproxybase.Config;
+import vproxybase.selector.Handler;
+import vproxybase.selector.HandlerContext;
+import vproxybase.util.LogType;
+import vproxybase.util.Logger;
+import vproxybase.util.RingBuffer;
+import vproxybase.util.Tuple;
+
+import java.io.IOException;
+
+class HandlerForTCPServer implements Handler<ServerSocketFD> {
+    static final int ACCEPT_BATCH_SIZE = 16;
+
+    @Override
+    public void accept(HandlerContext<ServerSocketFD> ctx) {
+        ServerHandlerContext sctx = (ServerHandlerContext) ctx.getAttachment();
+
+        ServerSocketFD server = ctx.getChannel();
+        SocketFD[] accepted = sctx.acceptedSockets;
+        // accept in a loop until no pending connection or the budget is used up
+        // the listening fd is level triggered, so the rest will be accepted in the next round
+        int budget = Config.acceptBudget;
+        while (budget > 0) {
+            int max = Math.min(accepted.length, budget);
+            int n;
+            try {
+                n = server.accept(accepted, max);
+            } catch (IOException e) {
+                sctx.handler.acceptFail(sctx, e);
+                return;
+            }
+            if (n == 0) {
+                assert Logger.lowLevelDebug("no socket yet, ignore this event");
+                return;
+            }
+            for (int i = 0; i < n; ++i) {
+                SocketFD sock = accepted[i];
+                accepted[i] = null;
+                handleAccepted(sctx, sock);
+            }
+            if (n < max) {
+                return; // no more pending connections
+            }
+            budget -= n;
+        }
+        assert Logger.lowLevelDebug("accept budget used up for " + sctx.server);
+    }
+
+    private void handleAccepted(ServerHandlerContext sctx, SocketFD sock) {
+        Tuple<RingBuffer, RingBuffer> ioBuffers = sctx.handler.getIOBuffers(sock);
+        if (ioBuffers == null) { // the user code may return null if refuse to accept
+            try {
+                sock.close(); // let's close the connection
+            } catch (IOException e) {
+                Logger.shouldNotHappen("close the unaccepted connection failed: " + e);
+            }
+        } else {
+            Connection conn;
+            try {
+                conn = new Connection(sock,
+                    sock.getRemoteAddress(),
+                    sock.getLocalAddress(),
+                    sctx.handler.connectionOpts(),
+                    ioBuffers.left, ioBuffers.right);
+            } catch (IOException e) {
+                if ("Invalid argument".equals(e.getMessage())) {
+                    // the connection might already closed when reaches here
+                    // the native impl will throw `Invalid argument`
+                    // in this case, no need to log an error message
+                    assert Logger.lowLevelDebug("creating Connection object for " + sock + " failed");
+                } else {
+                    Logger.error(LogType.CONN_ERROR, "creating Connection object for " + sock + " failed: " + e);
+                }
+                assert Logger.printStackTrace(e);
+                // should rollback
+                try {
+                    sock.close();
+                } catch (IOException e1) {
+                    Logger.shouldNotHappen("failed to close the sock " + sock + " after failed creating Connection object", e1);
+                }
+                return;
+            }
+            conn.addNetFlowRecorder(sctx.server);
+            sctx.handler.connection(sctx, conn);
+        }
+        // accept succeeded
+        sctx.server.incHistoryAcceptedConnectionCount();
+    }
+
+    @Override
+    public void connected(HandlerContext<ServerSocketFD> ctx) {
+        // will not fire
+        Logger.shouldNotHappen("server should not fire `connected`");
+    }
+
+    @Override
+    public void readable(HandlerContext<ServerSocketFD> ctx) {
+        // will not fire
+        Logger.shouldNotHappen("server should not fire readable");
+    }
+
+    @Override
+    public void writable(HandlerContext<ServerSocketFD> ctx) {
+        // will not fire
+        Logger.shouldNotHappen("server should not fire writable");
+    }
+
+    @Override
+    public void removed(HandlerContext<ServerSocketFD> ctx) {
+        ServerHandlerContext sctx = (ServerHandlerContext) ctx.getAttachment();
+        sctx.server._eventLoop = null;
+        sctx.handler.removed(sctx);
+    }
+}
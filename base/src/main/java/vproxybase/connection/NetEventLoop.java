@@ -136,91 +136,6 @@ public class NetEventLoop {
     }
 }
 
-class HandlerForTCPServer implements Handler<ServerSocketFD> {
-    @Override
-    public void accept(HandlerContext<ServerSocketFD> ctx) {
-        ServerHandlerContext sctx = (ServerHandlerContext) ctx.getAttachment();
-
-        ServerSocketFD server = ctx.getChannel();
-        SocketFD sock;
-        try {
-            sock = server.accept();
-        } catch (IOException e) {
-            sctx.handler.acceptFail(sctx, e);
-            return;
-        }
-        if (sock == null) {
-            assert Logger.lowLevelDebug("no socket yet, ignore this event");
-            return;
-        }
-        Tuple<RingBuffer, RingBuffer> ioBuffers = sctx.handler.getIOBuffers(sock);
-        if (ioBuffers == null) { // the user code may return null if refuse to accept
-            try {
-                sock.close(); // let's close the connection
-            } catch (IOException e) {
-                Logger.shouldNotHappen("close the unaccepted connection failed: " + e);
-            }
-        } else {
-            Connection conn;
-            try {
-                conn = new Connection(sock,
-                    sock.getRemoteAddress(),
-                    sock.getLocalAddress(),
-                    sctx.handler.connectionOpts(),
-                    ioBuffers.left, ioBuffers.right);
-            } catch (IOException e) {
-                if ("Invalid argument".equals(e.getMessage())) {
-                    // the connection might already closed when reaches here
-                    // the native impl will throw `Invalid argument`
-                    // in this case, no need to log an error message
-                    assert Logger.lowLevelDebug("creating Connection object for " + sock + " failed");
-                } else {
-                    Logger.error(LogType.CONN_ERROR, "creating Connection object for " + sock + " failed: " + e);
-                }
-                assert Logger.printStackTrace(e);
-                // should rollback
-                try {
-                    sock.close();
-                } catch (IOException e1) {
-                    Logger.shouldNotHappen("failed to close the sock " + sock + " after failed creating Connection object", e1);
-                }
-                return;
-            }
-            conn.addNetFlowRecorder(sctx.server);
-            sctx.handler.connection(sctx, conn);
-        }
-        // accept succeeded
-        sctx.server.incHistoryAcceptedConnectionCount();
-        // then, we try to accept again, in case there are pending connections
-        accept(ctx);
-    }
-
-    @Override
-    public void connected(HandlerContext<ServerSocketFD> ctx) {
-        // will not fire
-        Logger.shouldNotHappen("server should not fire `connected`");
-    }
-
-    @Override
-    public void readable(HandlerContext<ServerSocketFD> ctx) {
-        // will not fire
-        Logger.shouldNotHappen("server should not fire readable");
-    }
-
-    @Override
-    public void writable(HandlerContext<ServerSocketFD> ctx) {
-        // will not fire
-        Logger.shouldNotHappen("server should not fire writable");
-    }
-
-    @Override
-    public void removed(HandlerContext<ServerSocketFD> ctx) {
-        ServerHandlerContext sctx = (ServerHandlerContext) ctx.getAttachment();
-        sctx.server._eventLoop = null;
-        sctx.handler.removed(sctx);
-    }
-}
-
 class NetEventLoopUtils {
     private NetEventLoopUtils() {
     }
@@ -233,9 +148,14 @@ class NetEventLoopUtils {
         }
     }
 
+    // this method is called on every readable/writable event
+    // the idle timeout is tracked lazily: only the timestamp is updated here
+    // the close timer is armed once, and when it fires, it checks the timestamp
+    // and re-arms itself with the remaining time if the connection is still active
+    // so there are no timer operations for an active connection
+    // except one re-arm in each timeout period
     static void resetCloseTimeout(ConnectionHandlerContext ctx) {
         Connection conn = ctx.connection;
-        assert Logger.lowLevelDebug("reset close timeout for connection " + conn);
         conn.lastTimestamp = Config.currentTimestamp;
 
         if (conn.closeTimeout == null) {
@@ -330,7 +250,14 @@ class HandlerForConnection implements Handler<SocketFD> {
             return;
         }
         if (read == 0) {
-            Logger.shouldNotHappen("read nothing, the event should not be fired");
+            if (cctx.connection.getInBuffer().free() == 0) {
+                // the buffer may become full without storing any byte
+                // e.g. the kernel pipe of a splice buffer is full
+                assert Logger.lowLevelDebug("the inBuffer cannot store more bytes, remove READ event " + cctx.connection);
+                ctx.rmOps(EventSet.read());
+            } else {
+                Logger.shouldNotHappen("read nothing, the event should not be fired");
+            }
             return;
         }
 
@@ -448,6 +375,13 @@ class HandlerForConnectableConnection extends HandlerForConnection {
             return;
         }
         cctx.connection.regenId();
+        if (cctx.connection.connector != null) {
+            cctx.connection.connector.observeLatency(System.nanoTime() - cctx.connection.connectStartNanos);
+        }
+        if (cctx.connection.fastOpenBytes > 0) {
+            cctx.connection.incToRemoteBytes(cctx.connection.fastOpenBytes);
+            cctx.connection.fastOpenBytes = 0;
+        }
         if (!connected) {
             Logger.shouldNotHappen("the connection is not connected, should not fire the event");
         }
@@ -1,10 +1,13 @@
 package vproxybase.connection;
 
+import vfd.SocketFD;
+
 public class ServerHandlerContext {
     public final NetEventLoop eventLoop;
     public final ServerSock server;
     public final Object attachment;
     final ServerHandler handler;
+    final SocketFD[] acceptedSockets = new SocketFD[HandlerForTCPServer.ACCEPT_BATCH_SIZE]; // reused when accepting
 
     ServerHandlerContext(NetEventLoop eventLoop, ServerSock server, Object attachment, ServerHandler handler) {
         this.eventLoop = eventLoop;
@@ -97,12 +97,20 @@ public class ServerSock implements NetFlowRecorder {
     }
 
     public static class BindOptions {
+        public static final int DEFAULT_FAST_OPEN_QUEUE_LENGTH = 256;
+
         public boolean transparent = false;
+        public int fastOpen = 0; // queue length of TCP_FASTOPEN, 0 to disable
 
         public BindOptions setTransparent(boolean transparent) {
             this.transparent = transparent;
             return this;
         }
+
+        public BindOptions setFastOpen(int fastOpen) {
+            this.fastOpen = fastOpen;
+            return this;
+        }
     }
 
     public static void checkBind(IPPort bindAddress) throws IOException {
@@ -156,6 +164,14 @@ public class ServerSock implements NetFlowRecorder {
             }
             channel.setOption(SocketOptions.IP_TRANSPARENT, true);
         }
+        if (opts.fastOpen > 0) {
+            // clients can still connect without fast open, so only warn if it's not supported
+            try {
+                channel.setOption(SocketOptions.TCP_FASTOPEN, opts.fastOpen);
+            } catch (UnsupportedOperationException | IOException e) {
+                Logger.warn(LogType.SYS_ERROR, "setting TCP_FASTOPEN on " + bindAddress + " failed: " + e);
+            }
+        }
         channel.bind(bindAddress);
         try {
             return new ServerSock(channel);
@@ -203,6 +219,20 @@ public class ServerSock implements NetFlowRecorder {
         return create(fds.openServerSocketFD(loop), bindAddress, new BindOptions());
     }
 
+    /**
+     * steer new connections to listener[cpu % groupSize] of the reuseport group which this socket belongs to.
+     * the program is shared by the whole group, so it should be attached again on any listener of the group
+     * when listeners are added or closed, otherwise it keeps steering with the old group size
+     */
+    public void setReusePortCPUSteering(int groupSize) {
+        // failing to steer connections is not fatal, the kernel will fall back to hashing
+        try {
+            channel.setOption(SocketOptions.REUSEPORT_CPU_STEERING, groupSize);
+        } catch (UnsupportedOperationException | IOException e) {
+            Logger.warn(LogType.SYS_ERROR, "setting cpu steering for the reuseport group failed: " + e);
+        }
+    }
+
     private ServerSock(ServerSocketFD channel) throws IOException {
         this.channel = channel;
         bind = channel.getLocalAddress();
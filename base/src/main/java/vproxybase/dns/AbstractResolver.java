@@ -8,8 +8,7 @@ import vproxybase.util.*;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -79,8 +78,20 @@ public abstract class AbstractResolver implements Resolver {
 
     public final String alias;
     protected final NetEventLoop loop;
-    public int ttl = 60000;
+    public int ttl = 60000; // the max ttl (ms) of the records, also used when the record carries no ttl
+    public int staleTtl = 3600_000; // how long (ms) an expired record can be served when refreshing fails
+    public int negativeTtl = 300_000; // the max ttl (ms) of NXDOMAIN and NODATA answers
+    public int failureTtl = 5_000; // how long (ms) a failed resolving (e.g. SERVFAIL, timeout) is remembered
+    public int negativeCacheSize = 4096;
     final ConcurrentMap<String, Cache> cacheMap = new ConcurrentHashMap<>();
+    // the following fields are only accessed on the resolver loop
+    private final Map<String, List<ResolveTask>> resolving = new HashMap<>(); // concurrent lookups of the same host
+    private final LinkedHashMap<String, Long> negativeCache = new LinkedHashMap<>(16, 0.75f, true) { // host -> expire timestamp
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > negativeCacheSize;
+        }
+    };
     final CopyOnWriteArraySet<ResolveListener> resolveListeners = new CopyOnWriteArraySet<>();
 
     protected AbstractResolver(String alias, FDs fds) throws IOException {
@@ -99,46 +110,145 @@ public abstract class AbstractResolver implements Resolver {
         loop.getSelectorEventLoop().loop(r -> new Thread(r, alias));
     }
 
-    abstract protected void getAllByName(String domain, Callback<IP[], UnknownHostException> cb);
+    /**
+     * @param cb the addresses and the ttl in seconds, -1 if the ttl is unknown
+     */
+    abstract protected void getAllByName(String domain, Callback<Tuple<IP[], Integer>, UnknownHostException> cb);
+
+    private int cacheTtl(int recordTtl) {
+        if (recordTtl < 0) {
+            return ttl;
+        }
+        // at least 1 second to avoid resolving on every request
+        long recordTtlMs = Math.max(recordTtl, 1) * 1000L;
+        if (ttl <= 0) {
+            return (int) Math.min(Integer.MAX_VALUE, recordTtlMs);
+        }
+        return (int) Math.min(ttl, recordTtlMs);
+    }
+
+    private void record(String host, IP[] addresses, int recordTtl) {
+        Cache cache = new Cache(AbstractResolver.this, host, addresses, cacheTtl(recordTtl));
+        assert Logger.lowLevelDebug("cache recorded " + cache.host + " -> " + Arrays.toString(addresses) + ", ttl = " + cache.ttl);
+        Cache old = cacheMap.put(host, cache);
+        if (old != null) {
+            old.cancel();
+        }
+        for (ResolveListener lsn : resolveListeners) {
+            try {
+                lsn.onResolve(cache);
+            } catch (Throwable t) {
+                // we can do nothing about it
+                Logger.error(LogType.IMPROPER_USE, "onResolve() raised exception", t);
+            }
+        }
+    }
+
+    // run on the resolver loop
+    void refresh(Cache cache) {
+        if (cache.refreshing)
+            return;
+        cache.refreshing = true;
+        assert Logger.lowLevelDebug("refreshing cache " + cache.host);
+        getAllByName(cache.host, new Callback<>() {
+            @Override
+            protected void onSucceeded(Tuple<IP[], Integer> value) {
+                cache.refreshing = false;
+                if (cacheMap.get(cache.host) != cache) {
+                    return; // removed or replaced
+                }
+                if (value.left.length > 0) {
+                    record(cache.host, value.left, value.right);
+                }
+            }
+
+            @Override
+            protected void onFailed(UnknownHostException err) {
+                cache.refreshing = false;
+                // keep the old cache, it will be removed when stale ttl exceeds
+                assert Logger.lowLevelDebug("refreshing cache " + cache.host + " failed: " + err);
+            }
+        });
+    }
 
     private void doResolve(ResolveTask task) {
+        // the host might be recorded after the task is submitted
+        Cache cache = cacheMap.get(task.host);
+        if (cache != null) {
+            serve(task.host, cache, task.ipv4, task.ipv6, task.cb);
+            return;
+        }
+        Long negativeExpire = negativeCache.get(task.host);
+        if (negativeExpire != null) {
+            if (negativeExpire > FDProvider.get().currentTimeMillis()) {
+                assert Logger.lowLevelDebug("negative cache hit: " + task.host);
+                task.cb.failed(new UnknownHostException(task.host));
+                return;
+            }
+            negativeCache.remove(task.host);
+        }
+        List<ResolveTask> tasks = resolving.get(task.host);
+        if (tasks != null) {
+            // share the running lookup
+            tasks.add(task);
+            return;
+        }
+        tasks = new ArrayList<>();
+        tasks.add(task);
+        resolving.put(task.host, tasks);
+
         getAllByName(task.host, new Callback<>() {
             @Override
-            protected void onSucceeded(IP[] addresses) {
+            protected void onSucceeded(Tuple<IP[], Integer> value) {
+                List<ResolveTask> tasks = resolving.remove(task.host);
+                IP[] addresses = value.left;
                 // record
                 if (addresses.length > 0) {
-                    Cache cache = new Cache(AbstractResolver.this, task.host, addresses);
-                    assert Logger.lowLevelDebug("cache recorded " + cache.host + " -> " + Arrays.toString(addresses));
-                    cacheMap.put(task.host, cache);
-                    for (ResolveListener lsn : resolveListeners) {
-                        try {
-                            lsn.onResolve(cache);
-                        } catch (Throwable t) {
-                            // we can do nothing about it
-                            Logger.error(LogType.IMPROPER_USE, "onResolve() raised exception", t);
-                        }
-                    }
+                    record(task.host, addresses, value.right);
                 }
 
-                // filter the result
-                IP result = filter(addresses, task.ipv4, task.ipv6);
-                if (result != null) {
-                    task.cb.succeeded(result);
-                    return;
-                }
+                for (ResolveTask t : tasks) {
+                    // filter the result
+                    IP result = filter(addresses, t.ipv4, t.ipv6);
+                    if (result != null) {
+                        t.cb.succeeded(result);
+                        continue;
+                    }
 
-                // otherwise nothing can be returned
-                // we raise exception
-                task.cb.failed(new UnknownHostException(task.host));
+                    // otherwise nothing can be returned
+                    // we raise exception
+                    t.cb.failed(new UnknownHostException(t.host));
+                }
             }
 
             @Override
             protected void onFailed(UnknownHostException err) {
-                task.cb.failed(err);
+                List<ResolveTask> tasks = resolving.remove(task.host);
+                recordNegative(task.host, err);
+                for (ResolveTask t : tasks) {
+                    t.cb.failed(err);
+                }
             }
         });
     }
 
+    private void recordNegative(String host, UnknownHostException err) {
+        int ttl;
+        if (err instanceof NegativeAnswerException) {
+            int soaTtl = ((NegativeAnswerException) err).ttl;
+            if (soaTtl < 0) {
+                return; // no SOA record, do not cache, see rfc 2308
+            }
+            ttl = (int) Math.min(negativeTtl, soaTtl * 1000L);
+        } else {
+            ttl = failureTtl;
+        }
+        if (ttl <= 0)
+            return;
+        assert Logger.lowLevelDebug("negative cache recorded " + host + ", ttl = " + ttl + ", err = " + err);
+        negativeCache.put(host, FDProvider.get().currentTimeMillis() + ttl);
+    }
+
     private IP filter(IP[] addresses, boolean ipv4, boolean ipv6) {
         // get first returned ipv4 and ipv6
         IPv4 ipv4Addr = null;
@@ -194,6 +304,12 @@ public abstract class AbstractResolver implements Resolver {
                 doResolve(new ResolveTask(host, new RunOnLoopCallback<>((Callback) cb), ipv4, ipv6)));
             return;
         }
+        serve(host, r, ipv4, ipv6, cb);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void serve(String host, Cache r, boolean ipv4, boolean ipv6, Callback<? super IP, ? super UnknownHostException> cb) {
+        r.hit = true; // popular records are refreshed before expiring
         Tuple<IPv4, IPv6> tup = r.next();
         IPv4 v4 = tup.left;
         IPv6 v6 = tup.right;
@@ -250,6 +366,7 @@ public abstract class AbstractResolver implements Resolver {
         for (Cache c : cacheMap.values()) {
             c.remove();
         }
+        loop.getSelectorEventLoop().runOnLoop(negativeCache::clear);
     }
 
     @Override
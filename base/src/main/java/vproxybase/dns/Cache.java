@@ -9,26 +9,36 @@ import vproxybase.util.LogType;
 import vproxybase.util.Logger;
 import vproxybase.util.Tuple;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Cache {
+    private static final int PREFETCH_PERCENT = 90; // refresh the popular records when 90% of the ttl passed
+    private static final int STALE_RETRY = 5_000; // retry refreshing when serving stale records
+
     private AbstractResolver abstractResolver;
     public final String host;
+    private final IPv4[] v4;
+    private final IPv6[] v6;
     public final List<IPv4> ipv4;
     public final List<IPv6> ipv6;
     private final AtomicInteger idxIpv4 = new AtomicInteger(0);
     private final AtomicInteger idxIpv6 = new AtomicInteger(0);
-    final TimerEvent te;
+    TimerEvent te; // only modified on the resolver loop
     public final long timestamp;
+    public final int ttl; // ms, 0 means never expire
+    volatile boolean hit = false; // whether the cache is used after recorded
+    volatile boolean stale = false; // the ttl is exceeded, but the cache is still served
+    boolean refreshing = false; // only modified on the resolver loop
 
-    Cache(AbstractResolver abstractResolver, String host, IP[] addresses) {
+    Cache(AbstractResolver abstractResolver, String host, IP[] addresses, int ttl) {
         this.abstractResolver = abstractResolver;
         this.host = host;
-        List<IPv4> ipv4 = new LinkedList<>();
-        List<IPv6> ipv6 = new LinkedList<>();
+        List<IPv4> ipv4 = new ArrayList<>();
+        List<IPv6> ipv6 = new ArrayList<>();
         for (IP a : addresses) {
             if (a instanceof IPv4) {
                 ipv4.add((IPv4) a);
@@ -36,12 +46,15 @@ public class Cache {
                 ipv6.add((IPv6) a);
             }
         }
-        this.ipv4 = Collections.unmodifiableList(ipv4);
-        this.ipv6 = Collections.unmodifiableList(ipv6);
+        this.v4 = ipv4.toArray(new IPv4[0]);
+        this.v6 = ipv6.toArray(new IPv6[0]);
+        this.ipv4 = Collections.unmodifiableList(Arrays.asList(v4));
+        this.ipv6 = Collections.unmodifiableList(Arrays.asList(v6));
+        this.ttl = ttl;
 
-        if (abstractResolver.ttl > 0) {
-            // start a timer to clear the record
-            te = abstractResolver.loop.getSelectorEventLoop().delay(abstractResolver.ttl, Cache.this::remove);
+        if (ttl > 0) {
+            // start a timer to refresh or clear the record
+            te = abstractResolver.loop.getSelectorEventLoop().delay(prefetchDelay(), this::prefetch);
         } else {
             te = null;
         }
@@ -49,12 +62,66 @@ public class Cache {
         timestamp = FDProvider.get().currentTimeMillis();
     }
 
-    public void remove() {
+    // calculate in long, the ttl may be as large as Integer.MAX_VALUE
+    private int prefetchDelay() {
+        return (int) ((long) ttl * PREFETCH_PERCENT / 100);
+    }
+
+    private boolean isCurrent() {
+        return abstractResolver.cacheMap.get(host) == this;
+    }
+
+    private void prefetch() {
+        if (!isCurrent())
+            return;
+        te = abstractResolver.loop.getSelectorEventLoop().delay(ttl - prefetchDelay(), this::expire);
+        if (hit) {
+            // the cache is being used, refresh it before expiring
+            abstractResolver.refresh(this);
+        }
+    }
+
+    private void expire() {
+        if (!isCurrent())
+            return;
+        if (!hit || abstractResolver.staleTtl <= 0) {
+            remove();
+            return;
+        }
+        // the refreshing is not done yet or failed
+        // keep serving the stale record
+        assert Logger.lowLevelDebug("cache " + host + " is stale");
+        stale = true;
+        long staleDeadline = FDProvider.get().currentTimeMillis() + abstractResolver.staleTtl;
+        retryStale(staleDeadline);
+    }
+
+    private void retryStale(long staleDeadline) {
+        if (!isCurrent())
+            return;
+        long left = staleDeadline - FDProvider.get().currentTimeMillis();
+        if (left <= 0) {
+            Logger.warn(LogType.CONN_ERROR, "failed to refresh dns cache " + host + ", the stale record is removed");
+            remove();
+            return;
+        }
+        te = abstractResolver.loop.getSelectorEventLoop().delay((int) Math.min(left, STALE_RETRY), () -> retryStale(staleDeadline));
+        abstractResolver.refresh(this);
+    }
+
+    void cancel() {
+        TimerEvent te = this.te;
         if (te != null) {
             te.cancel();
         }
+    }
+
+    public void remove() {
+        cancel();
         assert Logger.lowLevelDebug("cache removed " + host);
-        abstractResolver.cacheMap.remove(host);
+        if (!abstractResolver.cacheMap.remove(host, this)) {
+            return; // already replaced or removed
+        }
 
         for (ResolveListener lsn : abstractResolver.resolveListeners) {
             try {
@@ -65,26 +132,18 @@ public class Cache {
         }
     }
 
+    public boolean isStale() {
+        return stale;
+    }
+
     public Tuple<IPv4, IPv6> next() {
         IPv4 v4 = null;
         IPv6 v6 = null;
-        //noinspection Duplicates
-        if (ipv4.size() != 0) {
-            int idx = idxIpv4.getAndIncrement();
-            if (idx >= ipv4.size()) {
-                idx = idx % ipv4.size();
-                idxIpv4.set(idx + 1);
-            }
-            v4 = ipv4.get(idx);
+        if (this.v4.length != 0) {
+            v4 = this.v4[Math.floorMod(idxIpv4.getAndIncrement(), this.v4.length)];
         }
-        //noinspection Duplicates
-        if (ipv6.size() != 0) {
-            int idx = idxIpv6.getAndIncrement();
-            if (idx >= ipv6.size()) {
-                idx = idx % ipv6.size();
-                idxIpv6.set(idx + 1);
-            }
-            v6 = ipv6.get(idx);
+        if (this.v6.length != 0) {
+            v6 = this.v6[Math.floorMod(idxIpv6.getAndIncrement(), this.v6.length)];
         }
         return new Tuple<>(v4, v6);
     }
@@ -94,14 +153,14 @@ public class Cache {
         StringBuilder sb = new StringBuilder();
         sb.append(host).append(" -> ipv4 [");
         boolean isFirst = true;
-        for (IPv4 i : ipv4) {
+        for (IPv4 i : v4) {
             if (isFirst) isFirst = false;
             else sb.append(",");
             sb.append(i.formatToIPString());
         }
         sb.append("] ipv6 [");
         isFirst = true;
-        for (IPv6 i : ipv6) {
+        for (IPv6 i : v6) {
             if (isFirst) isFirst = false;
             else sb.append(",");
             sb.append(i.formatToIPString());
@@ -9,6 +9,7 @@ import vproxybase.component.svrgroup.Method;
 import vproxybase.component.svrgroup.ServerGroup;
 import vproxybase.dns.rdata.A;
 import vproxybase.dns.rdata.AAAA;
+import vproxybase.dns.rdata.SOA;
 import vproxybase.selector.Handler;
 import vproxybase.selector.HandlerContext;
 import vproxybase.selector.PeriodicEvent;
@@ -22,10 +23,8 @@ import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
@@ -40,6 +39,10 @@ public class DNSClient {
     private final int maxRetry;
 
     private final Map<Integer, Request> requests = new HashMap<>();
+    private final Map<IPPort, NameServerStats> nameServerStats = new ConcurrentHashMap<>();
+    private int parallel = 1;
+    // concurrent lookups of the same (name, type) share one request
+    private final Map<String, List<Callback<Tuple<List<IP>, Integer>, UnknownHostException>>> lookups = new HashMap<>();
     private int nextId = 0;
     private ByteBuffer buffer = ByteBuffer.allocate(Config.udpMtu);
 
@@ -151,9 +154,113 @@ public class DNSClient {
         this.nameServers = nameServers;
     }
 
+    /**
+     * the statistics of a nameserver, used to rank the nameservers when querying in parallel
+     */
+    public static class NameServerStats {
+        private static final double SRTT_ALPHA = 0.3;
+
+        public final IPPort address;
+        private volatile long queries = 0;
+        private volatile long answers = 0;
+        private volatile long failures = 0; // timeout or error responses
+        private volatile int consecutiveFailures = 0;
+        private volatile double srtt = 0; // ms, smoothed round trip time
+
+        NameServerStats(IPPort address) {
+            this.address = address;
+        }
+
+        void sent() {
+            ++queries;
+        }
+
+        void answered(long rttNanos) {
+            ++answers;
+            consecutiveFailures = 0;
+            double rtt = rttNanos / 1_000_000d;
+            srtt = answers == 1 ? rtt : srtt * (1 - SRTT_ALPHA) + rtt * SRTT_ALPHA;
+        }
+
+        void failed() {
+            ++failures;
+            ++consecutiveFailures;
+        }
+
+        // lower is better, the servers never answered are tried first
+        double score(int timeout) {
+            return srtt + (double) consecutiveFailures * timeout;
+        }
+
+        public long getQueries() {
+            return queries;
+        }
+
+        public long getAnswers() {
+            return answers;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public double getSrtt() {
+            return srtt;
+        }
+
+        @Override
+        public String toString() {
+            return address.formatToIPPortString() +
+                " -> queries " + queries +
+                " answers " + answers +
+                " failures " + failures +
+                " srtt " + String.format("%.3f", srtt) + "ms";
+        }
+    }
+
+    private NameServerStats stats(IPPort address) {
+        return nameServerStats.computeIfAbsent(address, NameServerStats::new);
+    }
+
+    // the nameservers to query, ranked by the statistics when querying in parallel
+    private List<IPPort> queryOrder() {
+        List<IPPort> nameServers = this.nameServers;
+        if (parallel <= 1 || nameServers.size() <= 1) {
+            return nameServers;
+        }
+        List<IPPort> ranked = new ArrayList<>(nameServers);
+        ranked.sort(Comparator.comparingDouble(a -> stats(a).score(dnsReqTimeout)));
+        return ranked;
+    }
+
+    /**
+     * @param parallel how many nameservers are queried at the same time, the first valid answer wins.
+     *                 the nameservers are ranked by their latency and failures.
+     *                 1 means query the nameservers one by one in the configured order.
+     */
+    public void setParallel(int parallel) {
+        if (parallel < 1)
+            throw new IllegalArgumentException("parallel should be at least 1");
+        this.parallel = parallel;
+    }
+
+    public int getParallel() {
+        return parallel;
+    }
+
+    public List<NameServerStats> getNameServerStats() {
+        List<NameServerStats> ret = new ArrayList<>();
+        for (IPPort ns : nameServers) {
+            ret.add(stats(ns));
+        }
+        return ret;
+    }
+
     private class Request<RETURN, EXCEPTION extends IOException> {
         int retry = 0;
         int nameServerIndex = 0;
+        List<IPPort> order;
+        final Map<IPPort, Long> pending = new HashMap<>(); // nameserver -> nanoTime when the question is sent
         final ByteBuffer byteBufferToSend;
         final int id;
         final PeriodicEvent timer;
@@ -167,6 +274,7 @@ public class DNSClient {
                 Callback<RETURN, EXCEPTION> cb) {
             this.byteBufferToSend = ByteBuffer.wrap(reqPacket.toByteArray().toJavaArray());
             this.id = reqPacket.id;
+            this.order = queryOrder();
             this.timer = loop.period(dnsReqTimeout, () -> {
                 Request r = requests.get(id);
                 if (r == null) {
@@ -174,7 +282,7 @@ public class DNSClient {
                     release();
                     return;
                 }
-                r.request();
+                r.timeout();
             });
             this.transform = transform;
             this.retryFailErr = retryFailErr;
@@ -189,17 +297,24 @@ public class DNSClient {
             requests.remove(id);
         }
 
-        void request() {
-            // retrieve the field to local variable because it might be switched
-            List<IPPort> nameServers = DNSClient.this.nameServers;
+        void timeout() {
+            for (IPPort ns : pending.keySet()) {
+                stats(ns).failed();
+            }
+            pending.clear();
+            request();
+        }
 
+        void request() {
             assert Logger.lowLevelDebug("request() called on dns request: " + id);
-            if (nameServerIndex >= nameServers.size()) {
+            if (nameServerIndex >= order.size()) {
                 // all nameservers in the list are already tried
                 // check retry times
                 if (retry < maxRetry) {
                     ++retry;
                     nameServerIndex = 0;
+                    // the field might be switched, and the ranking might be changed
+                    order = queryOrder();
                 } else {
                     // still not found
                     release();
@@ -207,12 +322,18 @@ public class DNSClient {
                     return;
                 }
             }
-            int idx = nameServerIndex++;
-            var l4addr = nameServers.get(idx);
+            int n = Math.min(parallel, order.size() - nameServerIndex);
+            for (int i = 0; i < n; ++i) {
+                send(order.get(nameServerIndex++));
+            }
+        }
 
+        private void send(IPPort l4addr) {
             byteBufferToSend.limit(byteBufferToSend.capacity()).position(0);
             int len = byteBufferToSend.limit();
             int sent;
+            stats(l4addr).sent();
+            pending.put(l4addr, System.nanoTime());
             try {
                 sent = sock.send(byteBufferToSend, l4addr);
             } catch (IOException e) {
@@ -226,14 +347,33 @@ public class DNSClient {
             }
         }
 
-        public void response(DNSPacket packet) {
+        // try the next nameservers when no question is waiting for answers
+        private void next() {
+            if (pending.isEmpty()) {
+                request();
+            }
+        }
+
+        public void response(DNSPacket packet, IPPort remote) {
+            Long sentAt = remote == null ? null : pending.remove(remote);
             if (!packet.isResponse) {
                 Logger.error(LogType.INVALID_EXTERNAL_DATA, "the received packet is not a response packet");
-                request();
+                if (sentAt != null) {
+                    stats(remote).failed();
+                }
+                next();
                 return;
             }
             IOException[] errHolder = new IOException[]{null};
             RETURN ret = transform.apply(packet, errHolder);
+            if (errHolder[0] != null || ret != null) {
+                // got a valid answer
+                if (sentAt != null) {
+                    stats(remote).answered(System.nanoTime() - sentAt);
+                }
+            } else if (sentAt != null) {
+                stats(remote).failed();
+            }
             if (errHolder[0] != null) {
                 release();
                 //noinspection unchecked
@@ -246,7 +386,7 @@ public class DNSClient {
                 return;
             }
             // request again
-            request();
+            next();
         }
     }
 
@@ -265,10 +405,11 @@ public class DNSClient {
         public void readable(HandlerContext<DatagramFD> ctx) {
             while (true) { // read until no packet available
                 buffer.limit(buffer.capacity()).position(0);
+                IPPort remote;
                 try {
-                    ctx.getChannel().receive(buffer);
-                    // ignore the remote address
                     // any address would be fine
+                    // the remote address is only used for statistics
+                    remote = ctx.getChannel().receive(buffer);
                 } catch (IOException e) {
                     Logger.error(LogType.CONN_ERROR, "reading data from dns sock " + ctx.getChannel() + " failed", e);
                     return;
@@ -297,7 +438,7 @@ public class DNSClient {
                         assert Logger.lowLevelDebug("packet.id == " + id + " cannot be found in the requests map");
                         return;
                     }
-                    req.response(p);
+                    req.response(p, remote);
                 }
             }
         }
@@ -321,7 +462,7 @@ public class DNSClient {
         return id;
     }
 
-    private void getAllByName0(String domain, boolean ipv4, Callback<List<IP>, UnknownHostException> cb) {
+    private void getAllByName0(String domain, boolean ipv4, Callback<Tuple<List<IP>, Integer>, UnknownHostException> cb) {
         DNSPacket reqPacket = new DNSPacket();
         reqPacket.id = getNextId();
         reqPacket.isResponse = false;
@@ -338,7 +479,12 @@ public class DNSClient {
         reqPacket.questions.add(q);
         assert Logger.lowLevelDebug("is going to send packet " + reqPacket);
 
-        BiFunction<DNSPacket, IOException[], List<IP>> transform = (packet, errHolder) -> {
+        BiFunction<DNSPacket, IOException[], Tuple<List<IP>, Integer>> transform = (packet, errHolder) -> {
+            if (packet.rcode == DNSPacket.RCode.NameError) {
+                assert Logger.lowLevelDebug("the remote dns server respond with NXDOMAIN for " + domain);
+                errHolder[0] = new NegativeAnswerException(domain, negativeTtl(packet));
+                return null;
+            }
             if (packet.rcode != DNSPacket.RCode.NoError) {
                 Logger.error(LogType.INVALID_EXTERNAL_DATA, "the remote dns server respond with error: " + packet.rcode);
                 return null;
@@ -349,35 +495,104 @@ public class DNSClient {
             }
             if (packet.answers.isEmpty()) {
                 assert Logger.lowLevelDebug("nothing found, so cannot find the requested domain");
-                errHolder[0] = new UnknownHostException(domain);
+                errHolder[0] = new NegativeAnswerException(domain, negativeTtl(packet));
                 return null;
             }
             List<IP> addresses = new ArrayList<>();
+            int ttl = Integer.MAX_VALUE; // use the min ttl of the records
             for (DNSResource answer : packet.answers) {
                 if (answer.type == DNSType.A) {
                     addresses.add(((A) answer.rdata).address);
+                    ttl = Math.min(ttl, answer.ttl);
                 } else if (answer.type == DNSType.AAAA) {
                     addresses.add(((AAAA) answer.rdata).address);
+                    ttl = Math.min(ttl, answer.ttl);
                 } else {
                     assert Logger.lowLevelDebug("ignore answer with type " + answer.type);
                 }
             }
             if (addresses.isEmpty()) {
                 assert Logger.lowLevelDebug("no A or AAAA record found, so cannot find the requested domain");
-                errHolder[0] = new UnknownHostException(domain);
+                errHolder[0] = new NegativeAnswerException(domain, negativeTtl(packet));
                 return null;
             }
-            return addresses;
+            return new Tuple<>(addresses, ttl);
         };
         new Request<>(reqPacket, transform, () -> new UnknownHostException(domain), cb);
     }
 
     public void resolveIPv4(String domain, Callback<List<IP>, UnknownHostException> cb) {
-        getAllByName0(domain, true, new RunOnLoopCallback<>(cb));
+        resolve(domain, true, new AddressesCallback(cb));
     }
 
     public void resolveIPv6(String domain, Callback<List<IP>, UnknownHostException> cb) {
-        getAllByName0(domain, false, new RunOnLoopCallback<>(cb));
+        resolve(domain, false, new AddressesCallback(cb));
+    }
+
+    /**
+     * resolve A or AAAA records
+     *
+     * @param cb the addresses and the min ttl (seconds) of the records
+     */
+    public void resolve(String domain, boolean ipv4, Callback<Tuple<List<IP>, Integer>, UnknownHostException> cb) {
+        String key = (ipv4 ? "A " : "AAAA ") + domain;
+        List<Callback<Tuple<List<IP>, Integer>, UnknownHostException>> waiting = lookups.get(key);
+        if (waiting != null) {
+            assert Logger.lowLevelDebug("join the running lookup " + key);
+            waiting.add(new RunOnLoopCallback<>(cb));
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(new RunOnLoopCallback<>(cb));
+        lookups.put(key, waiting);
+        getAllByName0(domain, ipv4, new Callback<>() {
+            @Override
+            protected void onSucceeded(Tuple<List<IP>, Integer> value) {
+                var result = new Tuple<>(Collections.unmodifiableList(value.left), value.right);
+                for (var c : lookups.remove(key)) {
+                    c.succeeded(result);
+                }
+            }
+
+            @Override
+            protected void onFailed(UnknownHostException err) {
+                for (var c : lookups.remove(key)) {
+                    c.failed(err);
+                }
+            }
+        });
+    }
+
+    // rfc 2308: the ttl of a negative answer is the min of the SOA record ttl and the SOA MINIMUM field
+    private static int negativeTtl(DNSPacket packet) {
+        int ttl = -1;
+        for (DNSResource r : packet.nameServers) {
+            if (r.type == DNSType.SOA && r.rdata != null) {
+                int t = Math.min(r.ttl, ((SOA) r.rdata).minimum);
+                if (ttl == -1 || t < ttl) {
+                    ttl = t;
+                }
+            }
+        }
+        return ttl;
+    }
+
+    private static class AddressesCallback extends Callback<Tuple<List<IP>, Integer>, UnknownHostException> {
+        private final Callback<List<IP>, UnknownHostException> cb;
+
+        AddressesCallback(Callback<List<IP>, UnknownHostException> cb) {
+            this.cb = cb;
+        }
+
+        @Override
+        protected void onSucceeded(Tuple<List<IP>, Integer> value) {
+            cb.succeeded(value.left);
+        }
+
+        @Override
+        protected void onFailed(UnknownHostException err) {
+            cb.failed(err);
+        }
     }
 
     public void request(DNSPacket reqPacket, Callback<DNSPacket, IOException> cb) {
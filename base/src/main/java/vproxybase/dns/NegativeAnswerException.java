@@ -0,0 +1,15 @@
+package vproxybase.dns;
+
+import java.net.UnknownHostException;
+
+// the name does not exist (NXDOMAIN) or has no record of the requested type (NODATA)
+public class NegativeAnswerException extends UnknownHostException {
+    private static final long serialVersionUID = -3071584924739627341L;
+
+    public final int ttl; // seconds, retrieved from the SOA record, see rfc 2308. -1 means not found
+
+    public NegativeAnswerException(String host, int ttl) {
+        super(host);
+        this.ttl = ttl;
+    }
+}
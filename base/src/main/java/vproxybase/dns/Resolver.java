@@ -31,6 +31,8 @@ public interface Resolver {
 
     void copyCache(Collection<? super Cache> cacheList);
 
+    List<DNSClient.NameServerStats> getNameServerStats();
+
     static Resolver getDefault() {
         return AbstractResolver.getDefault();
     }
@@ -1,7 +1,9 @@
 package vproxybase.dns;
 
 import vfd.*;
+import vproxybase.Config;
 import vproxybase.util.Callback;
+import vproxybase.util.Tuple;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
@@ -38,6 +40,7 @@ public class VResolver extends AbstractResolver {
             sock.configureBlocking(false);
             sock.bind(new IPPort(IP.from(new byte[]{0, 0, 0, 0}), 0)); // bind any port
             client = new DNSClient(loop.getSelectorEventLoop(), sock, Resolver.getNameServers(), DNS_REQ_TIMEOUT, MAX_RETRY);
+            client.setParallel(Config.dnsParallelQueries);
         } catch (IOException e) {
             try {
                 loop.getSelectorEventLoop().close();
@@ -100,11 +103,11 @@ public class VResolver extends AbstractResolver {
     }
 
     @Override
-    protected void getAllByName(String domain, Callback<IP[], UnknownHostException> cb) {
+    protected void getAllByName(String domain, Callback<Tuple<IP[], Integer>, UnknownHostException> cb) {
         {
             IP[] result = searchInHosts(domain);
             if (result != null) {
-                cb.succeeded(result);
+                cb.succeeded(new Tuple<>(result, -1));
                 return;
             }
         }
@@ -112,32 +115,56 @@ public class VResolver extends AbstractResolver {
         List<IP> addresses = new ArrayList<>();
         final int MAX_STEP = 2;
         int[] step = {0};
-        class TmpCB extends Callback<List<IP>, UnknownHostException> {
+        int[] ttl = {-1};
+        UnknownHostException[] error = {null};
+        class TmpCB extends Callback<Tuple<List<IP>, Integer>, UnknownHostException> {
             @Override
-            protected void onSucceeded(List<IP> value) {
-                addresses.addAll(value);
+            protected void onSucceeded(Tuple<List<IP>, Integer> value) {
+                addresses.addAll(value.left);
+                if (ttl[0] == -1 || value.right < ttl[0]) {
+                    ttl[0] = value.right;
+                }
                 ++step[0];
                 if (step[0] == MAX_STEP) {
                     // should end the process
-                    cb.succeeded(listToArray(addresses));
+                    cb.succeeded(new Tuple<>(listToArray(addresses), ttl[0]));
                 }
             }
 
             @Override
             protected void onFailed(UnknownHostException err) {
                 ++step[0];
+                error[0] = mergeError(domain, error[0], err);
                 if (step[0] == MAX_STEP) {
                     // should end the process
                     if (addresses.isEmpty()) { // no process found address, so raise the exception
-                        cb.failed(err);
+                        cb.failed(error[0]);
                     } else {
-                        cb.succeeded(listToArray(addresses));
+                        cb.succeeded(new Tuple<>(listToArray(addresses), ttl[0]));
                     }
                 }
             }
         }
-        client.resolveIPv4(domain, new TmpCB());
-        client.resolveIPv6(domain, new TmpCB());
+        client.resolve(domain, true, new TmpCB());
+        client.resolve(domain, false, new TmpCB());
+    }
+
+    // the result is negative only when both are negative
+    private static UnknownHostException mergeError(String domain, UnknownHostException a, UnknownHostException b) {
+        if (a == null)
+            return b;
+        if (!(a instanceof NegativeAnswerException))
+            return a;
+        if (!(b instanceof NegativeAnswerException))
+            return b;
+        int ttlA = ((NegativeAnswerException) a).ttl;
+        int ttlB = ((NegativeAnswerException) b).ttl;
+        return new NegativeAnswerException(domain, (ttlA == -1 || ttlB == -1) ? -1 : Math.min(ttlA, ttlB));
+    }
+
+    @Override
+    public List<DNSClient.NameServerStats> getNameServerStats() {
+        return client.getNameServerStats();
     }
 
     @Override
@@ -13,6 +13,8 @@ public interface RData {
                 return new AAAA();
             case CNAME:
                 return new CNAME();
+            case SOA:
+                return new SOA();
             case TXT:
                 return new TXT();
             case SRV:
@@ -0,0 +1,109 @@
+package vproxybase.dns.rdata;
+
+/*
+ *     +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+ *     /                     MNAME                     /
+ *     /                                               /
+ *     +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+ *     /                     RNAME                     /
+ *     +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+ *     |                    SERIAL                     |
+ *     |                                               |
+ *     +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+ *     |                    REFRESH                    |
+ *     |                                               |
+ *     +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+ *     |                     RETRY                     |
+ *     |                                               |
+ *     +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+ *     |                    EXPIRE                     |
+ *     |                                               |
+ *     +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+ *     |                    MINIMUM                    |
+ *     |                                               |
+ *     +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+ */
+
+import vproxybase.dns.DNSType;
+import vproxybase.dns.Formatter;
+import vproxybase.dns.InvalidDNSPacketException;
+import vproxybase.util.ByteArray;
+
+import java.util.Objects;
+
+public class SOA implements RData {
+    public String mname;
+    public String rname;
+    public long serial;
+    public int refresh;
+    public int retry;
+    public int expire;
+    public int minimum; // used as the ttl of negative responses, see rfc 2308
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SOA soa = (SOA) o;
+        return serial == soa.serial &&
+            refresh == soa.refresh &&
+            retry == soa.retry &&
+            expire == soa.expire &&
+            minimum == soa.minimum &&
+            Objects.equals(mname, soa.mname) &&
+            Objects.equals(rname, soa.rname);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mname, rname, serial, refresh, retry, expire, minimum);
+    }
+
+    @Override
+    public String toString() {
+        return "SOA{" +
+            "mname='" + mname + '\'' +
+            ", rname='" + rname + '\'' +
+            ", serial=" + serial +
+            ", refresh=" + refresh +
+            ", retry=" + retry +
+            ", expire=" + expire +
+            ", minimum=" + minimum +
+            '}';
+    }
+
+    @Override
+    public ByteArray toByteArray() {
+        ByteArray numbers = ByteArray.allocate(20);
+        numbers.int32(0, (int) serial);
+        numbers.int32(4, refresh);
+        numbers.int32(8, retry);
+        numbers.int32(12, expire);
+        numbers.int32(16, minimum);
+        return Formatter.formatDomainName(mname).concat(Formatter.formatDomainName(rname)).concat(numbers);
+    }
+
+    @Override
+    public DNSType type() {
+        return DNSType.SOA;
+    }
+
+    @Override
+    public void fromByteArray(ByteArray data, ByteArray rawPacket) throws InvalidDNSPacketException {
+        int[] offsetHolder = {0};
+        String mname = Formatter.parseDomainName(data, rawPacket, offsetHolder);
+        int offset = offsetHolder[0];
+        String rname = Formatter.parseDomainName(data.sub(offset, data.length() - offset), rawPacket, offsetHolder);
+        offset += offsetHolder[0];
+        if (data.length() - offset != 20) {
+            throw new InvalidDNSPacketException("invalid soa rdata: mname=" + mname + ", rname=" + rname + ", data.len=" + data.length());
+        }
+        this.mname = mname;
+        this.rname = rname;
+        this.serial = data.uint32(offset);
+        this.refresh = data.int32(offset + 4);
+        this.retry = data.int32(offset + 8);
+        this.expire = data.int32(offset + 12);
+        this.minimum = data.int32(offset + 16);
+    }
+}
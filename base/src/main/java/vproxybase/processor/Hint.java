@@ -101,6 +101,21 @@ public class Hint {
             }
         }
 
+        return matchLevel(annoHost, annoPort, annoUri);
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    String getUri() {
+        return uri;
+    }
+
+    /**
+     * same as {@link #matchLevel(Map[])}, but the annotation values are already retrieved
+     */
+    int matchLevel(String annoHost, String annoPort, String annoUri) {
         if (annoHost == null && annoPort == null && annoUri == null) {
             return 0;
         }
@@ -117,7 +132,7 @@ public class Hint {
         if (annoHost != null && this.host != null) {
             if (this.host.equals(annoHost)) { // exact match
                 hostLevel = HOST_EXACT_MATCH;
-            } else if (this.host.endsWith("." + annoHost)) { // input value is a sub domain name of the hint
+            } else if (isSubDomain(this.host, annoHost)) { // input value is a sub domain name of the hint
                 hostLevel = HOST_SUFFIX_MATCH;
             } else if (annoHost.equals("*")) { // the annotation is a wildcard
                 hostLevel = HOST_WILDCARD_MATCH;
@@ -143,6 +158,12 @@ public class Hint {
         return level;
     }
 
+    // same as host.endsWith("." + domain) without creating a new string
+    private static boolean isSubDomain(String host, String domain) {
+        int dot = host.length() - domain.length() - 1;
+        return dot >= 0 && host.charAt(dot) == '.' && host.endsWith(domain);
+    }
+
     @Override
     public String toString() {
         return "Hint{" +
@@ -0,0 +1,167 @@
+package vproxybase.processor;
+
+import vproxybase.util.AnnotationKeys;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * an index for finding the item with the highest {@link Hint#matchLevel(Map[])}.<br>
+ * the hint-host values are stored in a trie of reversed chars, and the hint-uri values in a trie of chars,
+ * so only the items which may match are checked.
+ * the result is the same as checking all items one by one and taking the first one with the highest level.<br>
+ * the index is immutable, build a new one when the items change
+ */
+public class HintIndex {
+    private static final int[] NO_ITEMS = new int[0];
+    private static final char[] NO_CHARS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static class Node {
+        char[] keys = NO_CHARS; // sorted
+        Node[] children = NO_NODES;
+        int[] items = NO_ITEMS; // items whose value ends at this node
+
+        Node child(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            return idx < 0 ? null : children[idx];
+        }
+
+        Node getOrCreate(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            if (idx >= 0) {
+                return children[idx];
+            }
+            idx = -idx - 1;
+            Node n = new Node();
+            keys = insert(keys, idx, c);
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, idx);
+            newChildren[idx] = n;
+            System.arraycopy(children, idx, newChildren, idx + 1, children.length - idx);
+            children = newChildren;
+            return n;
+        }
+
+        void addItem(int item) {
+            items = Arrays.copyOf(items, items.length + 1);
+            items[items.length - 1] = item;
+        }
+
+        private static char[] insert(char[] arr, int idx, char c) {
+            char[] ret = new char[arr.length + 1];
+            System.arraycopy(arr, 0, ret, 0, idx);
+            ret[idx] = c;
+            System.arraycopy(arr, idx, ret, idx + 1, arr.length - idx);
+            return ret;
+        }
+    }
+
+    private final String[] hosts;
+    private final String[] ports;
+    private final String[] uris;
+    private final Node hostRoot = new Node();
+    private final Node uriRoot = new Node();
+    private final Node hostWildcard = new Node(); // only items are used
+    private final Node uriWildcard = new Node(); // only items are used
+
+    /**
+     * @param annotationsList annotations of each item, a value in the former map overrides the latter ones
+     */
+    public HintIndex(List<List<Map<String, String>>> annotationsList) {
+        int n = annotationsList.size();
+        hosts = new String[n];
+        ports = new String[n];
+        uris = new String[n];
+        for (int i = 0; i < n; ++i) {
+            for (Map<String, String> a : annotationsList.get(i)) {
+                if (hosts[i] == null) {
+                    hosts[i] = a.get(AnnotationKeys.ServerGroup_HintHost);
+                }
+                if (ports[i] == null) {
+                    ports[i] = a.get(AnnotationKeys.ServerGroup_HintPort);
+                }
+                if (uris[i] == null) {
+                    uris[i] = a.get(AnnotationKeys.ServerGroup_HintUri);
+                }
+            }
+            // the items with only hint-port never have a positive level, so they are not indexed
+            String host = hosts[i];
+            if (host != null) {
+                Node node = hostRoot;
+                for (int c = host.length() - 1; c >= 0; --c) {
+                    node = node.getOrCreate(host.charAt(c));
+                }
+                node.addItem(i);
+                if (host.equals("*")) {
+                    hostWildcard.addItem(i);
+                }
+            }
+            String uri = uris[i];
+            if (uri != null) {
+                Node node = uriRoot;
+                for (int c = 0; c < uri.length(); ++c) {
+                    node = node.getOrCreate(uri.charAt(c));
+                }
+                node.addItem(i);
+                if (uri.equals("*")) {
+                    uriWildcard.addItem(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return index of the matched item, or -1 if nothing matches
+     */
+    public int search(Hint hint) {
+        long best = ((long) -1 << 32); // item << 32 | level, to avoid allocating objects
+        String host = hint.getHost();
+        if (host != null) {
+            // the node of the root represents the suffix starting at `host.length()`
+            Node node = hostRoot;
+            int pos = host.length();
+            while (node != null) {
+                // exact match or sub domain
+                if (pos == 0 || host.charAt(pos - 1) == '.') {
+                    best = check(hint, node.items, best);
+                }
+                if (pos == 0) {
+                    break;
+                }
+                --pos;
+                node = node.child(host.charAt(pos));
+            }
+            best = check(hint, hostWildcard.items, best);
+        }
+        String uri = hint.getUri();
+        if (uri != null) {
+            Node node = uriRoot;
+            int pos = 0;
+            while (node != null) {
+                best = check(hint, node.items, best);
+                if (pos == uri.length()) {
+                    break;
+                }
+                node = node.child(uri.charAt(pos));
+                ++pos;
+            }
+            best = check(hint, uriWildcard.items, best);
+        }
+        return (int) (best >> 32);
+    }
+
+    private long check(Hint hint, int[] items, long best) {
+        int bestItem = (int) (best >> 32);
+        int bestLevel = (int) best;
+        for (int i : items) {
+            int level = hint.matchLevel(hosts[i], ports[i], uris[i]);
+            if (level > bestLevel || (level == bestLevel && level > 0 && i < bestItem)) {
+                bestItem = i;
+                bestLevel = level;
+            }
+        }
+        return ((long) bestItem << 32) | (bestLevel & 0xffffffffL);
+    }
+}
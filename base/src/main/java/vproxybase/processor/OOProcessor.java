@@ -52,4 +52,9 @@ public abstract class OOProcessor<CTX extends OOContext<SUB>, SUB extends OOSubC
     public ByteArray connected(CTX ctx, SUB sub) {
         return sub.connected();
     }
+
+    @Override
+    public int responseStatus(CTX ctx, SUB sub) {
+        return sub.responseStatus();
+    }
 }
@@ -25,4 +25,8 @@ public abstract class OOSubContext<CTX extends OOContext> extends Processor.SubC
     public abstract void proxyDone();
 
     public abstract ByteArray connected();
+
+    public int responseStatus() {
+        return 0; // not supported by default
+    }
 }
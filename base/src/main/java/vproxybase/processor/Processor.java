@@ -156,6 +156,20 @@ public interface Processor<CTX extends Processor.Context, SUB extends Processor.
      */
     ByteArray connected(CTX ctx, SUB sub);
 
+    /**
+     * retrieve the status of the response parsed from the backend, and reset it<br>
+     * this method will be checked after `feed` is called for a backend sub context,
+     * and the result is used for passive health checking
+     *
+     * @param ctx context
+     * @param sub backend sub context
+     * @return status code of the response (5xx are considered as server errors, like http),
+     * or 0 if no response is parsed since last call
+     */
+    default int responseStatus(CTX ctx, SUB sub) {
+        return 0;
+    }
+
     /**
      * zero copy is not free.
      * e.g. when processing http2 frames, the frame header is 9 bytes, and with uint24 payload length,
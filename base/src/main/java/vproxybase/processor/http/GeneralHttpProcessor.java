@@ -143,4 +143,11 @@ public class GeneralHttpProcessor implements Processor<GeneralHttpContext, Gener
         // if (ctx.willUseHttp2)
         return null;
     }
+
+    @Override
+    public int responseStatus(GeneralHttpContext ctx, GeneralHttpSubContext subCtx) {
+        if (ctx.useHttp) return httpProcessor.responseStatus(ctx.httpContext, subCtx.httpSubContext);
+        if (ctx.useHttp2) return http2Processor.responseStatus(ctx.http2Context, subCtx.http2SubContext);
+        return 0;
+    }
 }
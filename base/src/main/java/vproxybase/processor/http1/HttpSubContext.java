@@ -107,6 +107,9 @@ public class HttpSubContext extends OOSubContext<HttpContext> {
     // when this field is set to true, it will not be set to false again
     boolean hostHeaderRetrieved;
     boolean parserMode;
+    // status code of the response which is just parsed
+    // only set when it's a backend sub context, and reset when retrieved
+    private int responseStatus = 0;
 
     public HttpSubContext(HttpContext httpContext, int connId) {
         super(httpContext, connId);
@@ -127,6 +130,13 @@ public class HttpSubContext extends OOSubContext<HttpContext> {
         return this.req.build();
     }
 
+    @Override
+    public int responseStatus() {
+        int status = responseStatus;
+        responseStatus = 0;
+        return status;
+    }
+
     public Response getResp() {
         return this.resp.build();
     }
@@ -723,6 +733,11 @@ public class HttpSubContext extends OOSubContext<HttpContext> {
     private void state23(ByteArray data) throws Exception {
         int b = data.uint8(0);
         if (b == ' ') {
+            int status = 0;
+            for (int i = 0; i < resp.statusCode.length() && i < 3; ++i) {
+                status = status * 10 + (resp.statusCode.charAt(i) - '0');
+            }
+            responseStatus = status;
             state = 24;
         } else {
             if (b < '0' || b > '9') {
@@ -10,6 +10,7 @@ import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 
@@ -25,6 +26,17 @@ public class SelectorEventLoop {
         }
     }
 
+    // a channel removed and added again in the same round waits for the canceled key to be flushed
+    static class PendingRegister {
+        volatile EventSet ops; // modified with the channel lock held
+        final RegisterData registerData;
+
+        PendingRegister(EventSet ops, RegisterData registerData) {
+            this.ops = ops;
+            this.registerData = registerData;
+        }
+    }
+
     private static final ThreadLocal<SelectorEventLoop> loopThreadLocal = new ThreadLocal<>();
 
     public static SelectorEventLoop current() {
@@ -33,10 +45,12 @@ public class SelectorEventLoop {
 
     public final WrappedSelector selector;
     public final FDs fds;
-    private final TimeQueue<Runnable> timeQueue = new TimeQueue<>();
+    private final TimeQueue<Runnable> timeQueue;
     private final ConcurrentLinkedQueue<Runnable> runOnLoopEvents = new ConcurrentLinkedQueue<>();
     private final HandlerContext ctxReuse0 = new HandlerContext(this); // always reuse the ctx object
     private final HandlerContext ctxReuse1 = new HandlerContext(this);
+    private final DirectBufferPool bufferPool = new DirectBufferPool(this);
+    private final Map<FD, PendingRegister> pendingRegister = new ConcurrentHashMap<>();
     public volatile Thread runningThread;
 
     // these locks are a little tricky
@@ -44,9 +58,10 @@ public class SelectorEventLoop {
     private final Lock CLOSE_LOCK;
     private List<Tuple<FD, RegisterData>> THE_KEY_SET_BEFORE_SELECTOR_CLOSE;
 
-    private SelectorEventLoop(FDs fds) throws IOException {
+    private SelectorEventLoop(FDs fds, boolean timingWheel) throws IOException {
         this.selector = new WrappedSelector(fds.openSelector());
         this.fds = fds;
+        this.timeQueue = TimeQueue.create(timingWheel);
         if (VFDConfig.useFStack) {
             CLOSE_LOCK = Lock.createMock();
         } else {
@@ -62,6 +77,13 @@ public class SelectorEventLoop {
     private static volatile SelectorEventLoop theLoop = null; // this field is used when using fstack
 
     public static SelectorEventLoop open() throws IOException {
+        return open(Config.useTimingWheel);
+    }
+
+    /**
+     * @param timingWheel true to use the timing wheel for timers, false to use the priority queue
+     */
+    public static SelectorEventLoop open(boolean timingWheel) throws IOException {
         if (VFDConfig.useFStack) {
             // we use only one event loop if it's using f-stack
             // considering the program code base, it will take too much time
@@ -71,7 +93,7 @@ public class SelectorEventLoop {
             if (theLoop == null) {
                 synchronized (SelectorEventLoop.class) {
                     if (theLoop == null) {
-                        theLoop = new SelectorEventLoop(FDProvider.get().getProvided());
+                        theLoop = new SelectorEventLoop(FDProvider.get().getProvided(), timingWheel);
                     }
                 }
             }
@@ -79,7 +101,7 @@ public class SelectorEventLoop {
             // no need to consider whether the loop would be closed
             // when the loop closes, the program will exit
         }
-        return new SelectorEventLoop(FDProvider.get().getProvided());
+        return new SelectorEventLoop(FDProvider.get().getProvided(), timingWheel);
     }
 
     public static SelectorEventLoop open(FDs fds) throws IOException {
@@ -88,7 +110,7 @@ public class SelectorEventLoop {
                 throw new IllegalArgumentException("should not call SelectorEventLoop.open(fds) with the default fds impl");
             }
         }
-        return new SelectorEventLoop(fds);
+        return new SelectorEventLoop(fds, Config.useTimingWheel);
     }
 
     private void tryRunnable(Runnable r) {
@@ -125,58 +147,69 @@ public class SelectorEventLoop {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void doHandling(Iterator<SelectedEntry> keys) {
-        while (keys.hasNext()) {
-            SelectedEntry key = keys.next();
+    private void doHandling(Collection<SelectedEntry> selected) {
+        if (selected instanceof RandomAccess) {
+            // the selector may return a reused list, walk it by index so that no iterator is created
+            List<SelectedEntry> list = (List<SelectedEntry>) selected;
+            //noinspection ForLoopReplaceableByForEach
+            for (int i = 0, size = list.size(); i < size; ++i) {
+                doHandling(list.get(i));
+            }
+        } else {
+            for (SelectedEntry key : selected) {
+                doHandling(key);
+            }
+        }
+    }
 
-            RegisterData registerData = (RegisterData) key.attachment;
+    @SuppressWarnings("unchecked")
+    private void doHandling(SelectedEntry key) {
+        RegisterData registerData = (RegisterData) key.attachment;
 
-            FD channel = key.fd;
-            Handler handler = registerData.handler;
+        FD channel = key.fd;
+        Handler handler = registerData.handler;
 
-            ctxReuse0.channel = channel;
-            ctxReuse0.attachment = registerData.att;
+        ctxReuse0.channel = channel;
+        ctxReuse0.attachment = registerData.att;
 
-            if (!channel.isOpen()) {
-                if (selector.isRegistered(channel)) {
-                    Logger.error(LogType.CONN_ERROR, "channel is closed but still firing: fd = " + channel + ", event = " + key.ready + ", attachment = " + ctxReuse0.attachment);
-                } // else the channel is closed in another fd handler and removed from loop, this is ok and no need to report
-            } else {
-                EventSet readyOps = key.ready;
-                // handle read first because it's most likely to happen
-                if (readyOps.have(Event.READABLE)) {
-                    if (channel instanceof ServerSocketFD) {
-                        // OP_ACCEPT
+        if (!channel.isOpen()) {
+            if (selector.isRegistered(channel)) {
+                Logger.error(LogType.CONN_ERROR, "channel is closed but still firing: fd = " + channel + ", event = " + key.ready + ", attachment = " + ctxReuse0.attachment);
+            } // else the channel is closed in another fd handler and removed from loop, this is ok and no need to report
+        } else {
+            EventSet readyOps = key.ready;
+            // handle read first because it's most likely to happen
+            if (readyOps.have(Event.READABLE)) {
+                if (channel instanceof ServerSocketFD) {
+                    // OP_ACCEPT
+                    try {
+                        handler.accept(ctxReuse0);
+                    } catch (Throwable t) {
+                        Logger.error(LogType.IMPROPER_USE, "the accept callback got exception", t);
+                    }
+                } else {
+                    try {
+                        handler.readable(ctxReuse0);
+                    } catch (Throwable t) {
+                        Logger.error(LogType.IMPROPER_USE, "the readable callback got exception", t);
+                    }
+                }
+            }
+            // read and write may happen in the same loop round
+            if (readyOps.have(Event.WRITABLE)) {
+                if (channel instanceof SocketFD) {
+                    if (registerData.connected) {
                         try {
-                            handler.accept(ctxReuse0);
+                            handler.writable(ctxReuse0);
                         } catch (Throwable t) {
-                            Logger.error(LogType.IMPROPER_USE, "the accept callback got exception", t);
+                            Logger.error(LogType.IMPROPER_USE, "the writable callback got exception", t);
                         }
                     } else {
+                        registerData.connected = true;
                         try {
-                            handler.readable(ctxReuse0);
+                            handler.connected(ctxReuse0);
                         } catch (Throwable t) {
-                            Logger.error(LogType.IMPROPER_USE, "the readable callback got exception", t);
-                        }
-                    }
-                }
-                // read and write may happen in the same loop round
-                if (readyOps.have(Event.WRITABLE)) {
-                    if (channel instanceof SocketFD) {
-                        if (registerData.connected) {
-                            try {
-                                handler.writable(ctxReuse0);
-                            } catch (Throwable t) {
-                                Logger.error(LogType.IMPROPER_USE, "the writable callback got exception", t);
-                            }
-                        } else {
-                            registerData.connected = true;
-                            try {
-                                handler.connected(ctxReuse0);
-                            } catch (Throwable t) {
-                                Logger.error(LogType.IMPROPER_USE, "the connected callback got exception", t);
-                            }
+                            Logger.error(LogType.IMPROPER_USE, "the connected callback got exception", t);
                         }
                     }
                 }
@@ -268,8 +301,7 @@ public class SelectorEventLoop {
                 return -1; // break if it's closed
 
             if (!selected.isEmpty()) {
-                Iterator<SelectedEntry> keys = selected.iterator();
-                doHandling(keys);
+                doHandling(selected);
             }
         }
         return 0;
@@ -308,6 +340,8 @@ public class SelectorEventLoop {
         loopThreadLocal.remove(); // remove from thread local
         // do the final release
         release();
+        // free the cached buffers after the connections are released
+        bufferPool.close();
     }
 
     private boolean needWake() {
@@ -340,7 +374,12 @@ public class SelectorEventLoop {
         TimerEvent e = new TimerEvent(this);
         // timeQueue is not thread safe
         // modify it in the event loop's thread
-        nextTick(() -> e.setEvent(timeQueue.push(timeout, r)));
+        if (Thread.currentThread() == runningThread) {
+            // already on the loop thread, no need to go through the runOnLoopEvents queue
+            e.setEvent(timeQueue.push(timeout, r));
+        } else {
+            nextTick(() -> e.setEvent(timeQueue.push(timeout, r)));
+        }
         return e;
     }
 
@@ -380,12 +419,21 @@ public class SelectorEventLoop {
 
             assert Logger.lowLevelDebug("key already canceled, we register it on next tick after keys are handled");
 
+            // the channel is considered registered in the meantime,
+            // the ops are recorded and used when it's really registered
+            PendingRegister pending = new PendingRegister(ops, registerData);
+            pendingRegister.put(channel, pending);
             nextTick(() -> nextTick(() -> {
-                try {
-                    selector.register(channel, ops, registerData);
-                } catch (ClosedChannelException e1) {
-                    // will not happen, if the channel is closed, this statement will not run
-                    throw new RuntimeException(e1);
+                //noinspection SynchronizationOnLocalVariableOrMethodParameter
+                synchronized (channel) {
+                    if (!pendingRegister.remove(channel, pending))
+                        return; // removed before registering
+                    try {
+                        selector.register(channel, pending.ops, registerData);
+                    } catch (ClosedChannelException e1) {
+                        // will not happen, if the channel is closed, this statement will not run
+                        throw new RuntimeException(e1);
+                    }
                 }
             }));
             return false;
@@ -394,6 +442,16 @@ public class SelectorEventLoop {
     }
 
     private void doModify(FD fd, EventSet ops) {
+        if (!pendingRegister.isEmpty()) {
+            //noinspection SynchronizationOnLocalVariableOrMethodParameter
+            synchronized (fd) {
+                PendingRegister pending = pendingRegister.get(fd);
+                if (pending != null) {
+                    pending.ops = ops;
+                    return;
+                }
+            }
+        }
         if (selector.events(fd).equals(ops)) {
             return; // no need to update if they are the same
         }
@@ -403,6 +461,16 @@ public class SelectorEventLoop {
         }
     }
 
+    private EventSet events(FD fd) {
+        if (!pendingRegister.isEmpty()) {
+            PendingRegister pending = pendingRegister.get(fd);
+            if (pending != null) {
+                return pending.ops;
+            }
+        }
+        return selector.events(fd);
+    }
+
     @ThreadSafe
     public void modify(FD channel, EventSet ops) {
         doModify(channel, ops);
@@ -410,13 +478,13 @@ public class SelectorEventLoop {
 
     @ThreadSafe
     public void addOps(FD channel, EventSet ops) {
-        var old = selector.events(channel);
+        var old = events(channel);
         doModify(channel, old.combine(ops));
     }
 
     @ThreadSafe
     public void rmOps(FD channel, EventSet ops) {
-        var old = selector.events(channel);
+        var old = events(channel);
         doModify(channel, old.reduce(ops));
     }
 
@@ -427,26 +495,38 @@ public class SelectorEventLoop {
         // synchronize the channel
         // to prevent it being canceled from multiple threads
         //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        PendingRegister pending;
         synchronized (channel) {
-            if (!selector.isRegistered(channel))
-                return;
-            att = (RegisterData) selector.attachment(channel);
+            pending = pendingRegister.remove(channel);
+            if (pending != null) {
+                att = pending.registerData;
+            } else {
+                if (!selector.isRegistered(channel))
+                    return;
+                att = (RegisterData) selector.attachment(channel);
+            }
         }
 
-        selector.remove(channel);
-        if (needWake()) {
-            wakeup();
+        if (pending == null) { // otherwise it's not really registered yet
+            selector.remove(channel);
+            if (needWake()) {
+                wakeup();
+            }
         }
         triggerRemovedCallback(channel, att);
     }
 
     @ThreadSafe
     public EventSet getOps(FD channel) {
-        return selector.events(channel);
+        return events(channel);
     }
 
     @ThreadSafe
     public Object getAtt(FD channel) {
+        PendingRegister pending = pendingRegister.get(channel);
+        if (pending != null) {
+            return pending.registerData.att;
+        }
         return ((RegisterData) selector.attachment(channel)).att;
     }
 
@@ -462,6 +542,14 @@ public class SelectorEventLoop {
         }
     }
 
+    public DirectBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public boolean isUsingTimingWheel() {
+        return timeQueue instanceof TimingWheelTimeQueue;
+    }
+
     @ThreadSafe
     public boolean isClosed() {
         return !selector.isOpen();
@@ -27,6 +27,10 @@ public class TimerEvent {
         canceled = true;
         if (event == null)
             return;
-        eventLoop.nextTick(event::removeSelf);
+        if (Thread.currentThread() == eventLoop.runningThread) {
+            event.removeSelf(); // already on the loop thread, remove it directly
+        } else {
+            eventLoop.nextTick(event::removeSelf);
+        }
     }
 }
@@ -50,8 +50,12 @@ public class WrappedSelector implements FDSelector {
         return selector.isOpen();
     }
 
+    // return null if no virtual fd fires, to avoid allocating a set in every poll
     private Set<SelectedEntry> calcVirtual() {
-        Set<SelectedEntry> ret = new HashSet<>();
+        if (virtualSocketFDs.isEmpty()) {
+            return null;
+        }
+        Set<SelectedEntry> ret = null;
         //noinspection unused
         try (var unused = VIRTUAL_LOCK.lock()) {
             for (Map.Entry<VirtualFD, REntry> e : virtualSocketFDs.entrySet()) {
@@ -83,6 +87,9 @@ public class WrappedSelector implements FDSelector {
                     eventSet = null;
                 }
                 if (eventSet != null) {
+                    if (ret == null) {
+                        ret = new HashSet<>();
+                    }
                     ret.add(new SelectedEntry(fd, eventSet, entry.attachment));
                 }
             }
@@ -91,6 +98,9 @@ public class WrappedSelector implements FDSelector {
     }
 
     private Collection<SelectedEntry> handleRealSelect(Collection<SelectedEntry> entries) {
+        if (entries.isEmpty()) {
+            return entries;
+        }
         for (SelectedEntry entry : entries) {
             if (entry.fd instanceof WritableAware) {
                 if (entry.ready.have(Event.WRITABLE)) {
@@ -104,7 +114,7 @@ public class WrappedSelector implements FDSelector {
     @Override
     public Collection<SelectedEntry> select() throws IOException {
         var set = calcVirtual();
-        if (set.isEmpty()) {
+        if (set == null) {
             return handleRealSelect(selector.select());
         } else {
             set.addAll(handleRealSelect(selector.selectNow()));
@@ -115,6 +125,9 @@ public class WrappedSelector implements FDSelector {
     @Override
     public Collection<SelectedEntry> selectNow() throws IOException {
         var set = calcVirtual();
+        if (set == null) {
+            return handleRealSelect(selector.selectNow());
+        }
         set.addAll(handleRealSelect(selector.selectNow()));
         return set;
     }
@@ -122,7 +135,7 @@ public class WrappedSelector implements FDSelector {
     @Override
     public Collection<SelectedEntry> select(long millis) throws IOException {
         var set = calcVirtual();
-        if (set.isEmpty()) {
+        if (set == null) {
             return handleRealSelect(selector.select(millis));
         } else {
             set.addAll(handleRealSelect(selector.selectNow()));
@@ -0,0 +1,222 @@
+package vproxybase.util;
+
+import vproxybase.Config;
+import vproxybase.selector.SelectorEventLoop;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A direct buffer pool owned by a {@link SelectorEventLoop}.<br>
+ * <br>
+ * Buffers are cached by capacity and only the owner loop thread can take buffers from the pool.
+ * Buffers can be returned from any thread: when returned from the owner loop thread,
+ * they are pushed into the cache directly, otherwise they are put into a concurrent queue,
+ * which will be drained by the owner loop thread when the cache misses.
+ * This is useful when the buffers are allocated on the acceptor loop and released on the worker loop.<br>
+ * <br>
+ * The total bytes cached in the pool is limited by {@link Config#directBufferPoolMaxBytes},
+ * buffers exceeding the limit are freed directly.
+ */
+public class DirectBufferPool {
+    private final SelectorEventLoop loop;
+    private final long maxBytes;
+
+    // only accessed on the owner loop thread
+    private int[] capacities = new int[0];
+    private final ArrayList<ArrayDeque<ByteBuffer>> caches = new ArrayList<>(); // caches.get(i) holds buffers of capacities[i]
+    private long cachedBytes = 0;
+    private int cachedCount = 0;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> returnedFromOtherThreads = new ConcurrentLinkedQueue<>();
+    private final AtomicLong returnedBytesFromOtherThreads = new AtomicLong(0);
+
+    private volatile boolean closed = false;
+
+    // statistics
+    private long hit = 0; // only modified on the owner loop thread
+    private long miss = 0; // only modified on the owner loop thread
+    private final AtomicLong returned = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    public DirectBufferPool(SelectorEventLoop loop) {
+        this.loop = loop;
+        this.maxBytes = Config.directBufferPoolMaxBytes;
+    }
+
+    private boolean onLoopThread() {
+        return Thread.currentThread() == loop.runningThread;
+    }
+
+    private ArrayDeque<ByteBuffer> getCache(int cap, boolean create) {
+        // usually only a few different capacities are used
+        // so a linear search is enough
+        for (int i = 0; i < capacities.length; ++i) {
+            if (capacities[i] == cap) {
+                return caches.get(i);
+            }
+        }
+        if (!create) {
+            return null;
+        }
+        int len = capacities.length;
+        int[] newCapacities = new int[len + 1];
+        System.arraycopy(capacities, 0, newCapacities, 0, len);
+        ArrayDeque<ByteBuffer> cache = new ArrayDeque<>();
+        newCapacities[len] = cap;
+        caches.add(cache);
+        capacities = newCapacities;
+        return cache;
+    }
+
+    private ByteBuffer pollCache(int cap) {
+        ArrayDeque<ByteBuffer> cache = getCache(cap, false);
+        if (cache == null) {
+            return null;
+        }
+        ByteBuffer buf = cache.pollLast();
+        if (buf != null) {
+            cachedBytes -= cap;
+            --cachedCount;
+        }
+        return buf;
+    }
+
+    private boolean pushCache(ByteBuffer buf) {
+        int cap = buf.capacity();
+        if (cachedBytes + cap > maxBytes) {
+            return false;
+        }
+        getCache(cap, true).addLast(buf);
+        cachedBytes += cap;
+        ++cachedCount;
+        return true;
+    }
+
+    private void drainReturned() {
+        ByteBuffer buf;
+        while ((buf = returnedFromOtherThreads.poll()) != null) {
+            returnedBytesFromOtherThreads.addAndGet(-buf.capacity());
+            if (!pushCache(buf)) {
+                dropped.incrementAndGet();
+                Utils.clean(buf);
+            }
+        }
+    }
+
+    /**
+     * get a direct buffer with position = 0 and limit = capacity = cap.<br>
+     * the buffer is taken from the pool when called on the owner loop thread,
+     * otherwise a new direct buffer is allocated.
+     *
+     * @param cap capacity of the buffer
+     * @return a direct buffer
+     */
+    public ByteBuffer allocate(int cap) {
+        if (closed || !onLoopThread()) {
+            return ByteBuffer.allocateDirect(cap);
+        }
+        ByteBuffer buf = pollCache(cap);
+        if (buf == null && returnedBytesFromOtherThreads.get() != 0) {
+            drainReturned();
+            buf = pollCache(cap);
+        }
+        if (buf == null) {
+            ++miss;
+            return ByteBuffer.allocateDirect(cap);
+        }
+        ++hit;
+        buf.limit(cap).position(0);
+        return buf;
+    }
+
+    /**
+     * return the buffer into the pool.<br>
+     * PLEASE BE VERY CAREFUL: the buffer must not be used anymore after it's released
+     *
+     * @param buf the direct buffer to return
+     */
+    @ThreadSafe
+    public void release(ByteBuffer buf) {
+        if (closed) {
+            dropped.incrementAndGet();
+            Utils.clean(buf);
+            return;
+        }
+        if (onLoopThread()) {
+            if (pushCache(buf)) {
+                returned.incrementAndGet();
+            } else {
+                dropped.incrementAndGet();
+                Utils.clean(buf);
+            }
+            return;
+        }
+        int cap = buf.capacity();
+        // cachedBytes is read from another thread, it's only a rough limit
+        if (returnedBytesFromOtherThreads.addAndGet(cap) + cachedBytes > maxBytes) {
+            returnedBytesFromOtherThreads.addAndGet(-cap);
+            dropped.incrementAndGet();
+            Utils.clean(buf);
+            return;
+        }
+        returnedFromOtherThreads.add(buf);
+        returned.incrementAndGet();
+        // the buffer might be added after the pool is closed
+        // it will be freed by the gc in that case
+    }
+
+    /**
+     * free all cached buffers, should be called when the loop is stopped
+     */
+    public void close() {
+        closed = true;
+        for (ArrayDeque<ByteBuffer> cache : caches) {
+            ByteBuffer buf;
+            while ((buf = cache.poll()) != null) {
+                Utils.clean(buf);
+            }
+        }
+        cachedBytes = 0;
+        cachedCount = 0;
+        ByteBuffer buf;
+        while ((buf = returnedFromOtherThreads.poll()) != null) {
+            returnedBytesFromOtherThreads.addAndGet(-buf.capacity());
+            Utils.clean(buf);
+        }
+    }
+
+    public long getHit() {
+        return hit;
+    }
+
+    public long getMiss() {
+        return miss;
+    }
+
+    public long getReturned() {
+        return returned.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getCachedCount() {
+        return cachedCount + returnedFromOtherThreads.size();
+    }
+
+    public long getCachedBytes() {
+        return cachedBytes + returnedBytesFromOtherThreads.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hit " + getHit() + " miss " + getMiss() +
+            " returned " + getReturned() + " dropped " + getDropped() +
+            " size " + getCachedCount() + " bytes " + getCachedBytes();
+    }
+}
@@ -0,0 +1,43 @@
+package vproxybase.util;
+
+import vproxybase.Config;
+
+import java.util.PriorityQueue;
+
+public class PriorityTimeQueue<T> implements TimeQueue<T> {
+    private final PriorityQueue<TimeElem<T>> queue = new PriorityQueue<>((a, b) -> (int) (a.triggerTime - b.triggerTime));
+
+    @Override
+    public TimeElem<T> push(int timeout, T elem) {
+        TimeElem<T> event = new TimeElem<>(Config.currentTimestamp + timeout, elem, this);
+        queue.add(event);
+        return event;
+    }
+
+    @Override
+    public T pop() {
+        TimeElem<T> elem = queue.poll();
+        if (elem == null)
+            return null;
+        return elem.elem;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public int nextTime() {
+        TimeElem<T> elem = queue.peek();
+        if (elem == null)
+            return Integer.MAX_VALUE;
+        long triggerTime = elem.triggerTime;
+        return Math.max((int) (triggerTime - Config.currentTimestamp), 0);
+    }
+
+    @Override
+    public void remove(TimeElem<T> elem) {
+        queue.remove(elem);
+    }
+}
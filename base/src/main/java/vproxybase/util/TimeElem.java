@@ -5,6 +5,13 @@ public class TimeElem<T> {
     public final T elem;
     private final TimeQueue<T> queue;
 
+    // the following fields are only used by the TimingWheelTimeQueue
+    TimeElem<T> prev;
+    TimeElem<T> next;
+    TimeElem<T> head; // the sentinel of the list which contains this element, null if not in any list
+    int level; // only used by sentinels
+    int slot; // only used by sentinels
+
     TimeElem(long triggerTime, T elem, TimeQueue<T> queue) {
         this.triggerTime = triggerTime;
         this.elem = elem;
@@ -13,6 +20,6 @@ public class TimeElem<T> {
 
     // this method should always be called on the event loop
     public void removeSelf() {
-        queue.queue.remove(this);
+        queue.remove(this);
     }
 }
@@ -2,36 +2,35 @@ package vproxybase.util;
 
 import vproxybase.Config;
 
-import java.util.PriorityQueue;
-
-public class TimeQueue<T> {
-    PriorityQueue<TimeElem<T>> queue = new PriorityQueue<>((a, b) -> (int) (a.triggerTime - b.triggerTime));
-
-    public TimeElem<T> push(int timeout, T elem) {
-        TimeElem<T> event = new TimeElem<>(Config.currentTimestamp + timeout, elem, this);
-        queue.add(event);
-        return event;
+public interface TimeQueue<T> {
+    static <T> TimeQueue<T> create() {
+        return create(Config.useTimingWheel);
     }
 
-    public T pop() {
-        TimeElem<T> elem = queue.poll();
-        if (elem == null)
-            return null;
-        return elem.elem;
+    static <T> TimeQueue<T> create(boolean timingWheel) {
+        if (timingWheel) {
+            return new TimingWheelTimeQueue<>();
+        } else {
+            return new PriorityTimeQueue<>();
+        }
     }
 
-    public boolean isEmpty() {
-        return queue.isEmpty();
-    }
+    TimeElem<T> push(int timeout, T elem);
+
+    /**
+     * should only be called when {@link #nextTime()} returns 0
+     *
+     * @return the element which is already expired, or null if nothing in the queue
+     */
+    T pop();
+
+    boolean isEmpty();
 
     /**
      * @return time left to the nearest timeout, Integer.MAX_VALUE means no timer event
      */
-    public int nextTime() {
-        TimeElem<T> elem = queue.peek();
-        if (elem == null)
-            return Integer.MAX_VALUE;
-        long triggerTime = elem.triggerTime;
-        return Math.max((int) (triggerTime - Config.currentTimestamp), 0);
-    }
+    int nextTime();
+
+    // this method should always be called on the event loop
+    void remove(TimeElem<T> elem);
 }
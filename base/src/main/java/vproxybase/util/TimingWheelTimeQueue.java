@@ -0,0 +1,240 @@
+package vproxybase.util;
+
+import vproxybase.Config;
+
+/**
+ * A hierarchical timing wheel with 1ms tick.<br>
+ * <br>
+ * level 0 has 256 slots of 1ms, level 1 to 4 have 64 slots each,
+ * and each slot of level n covers the whole range of level n-1.
+ * The wheel covers 2^32 ms, elements out of range are kept in an overflow list.<br>
+ * <br>
+ * The slot of an element is calculated from its absolute trigger time,
+ * and the level is the lowest one whose window contains both the trigger time and the current tick.
+ * When the current tick reaches the start of a slot in a higher level,
+ * elements in that slot are cascaded into the lower levels.<br>
+ * <br>
+ * push and remove are O(1). Expired elements of one tick are moved into the ready list together.
+ * Empty slots are skipped using bitmaps, so the wheel does not need to walk tick by tick.
+ */
+public class TimingWheelTimeQueue<T> implements TimeQueue<T> {
+    private static final int LEVELS = 5;
+    private static final int[] SHIFT = {0, 8, 14, 20, 26, 32};
+    private static final int OVERFLOW_LEVEL = LEVELS;
+    private static final int READY_LEVEL = -1;
+
+    private final TimeElem<T>[][] wheel;
+    private final long[][] bitmaps;
+    private final TimeElem<T> overflow = newSentinel(OVERFLOW_LEVEL, 0);
+    private final TimeElem<T> ready = newSentinel(READY_LEVEL, 0);
+    private long current; // the next tick to be processed
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheelTimeQueue() {
+        wheel = (TimeElem<T>[][]) new TimeElem<?>[LEVELS][];
+        bitmaps = new long[LEVELS][];
+        for (int level = 0; level < LEVELS; ++level) {
+            int slots = 1 << (SHIFT[level + 1] - SHIFT[level]);
+            wheel[level] = (TimeElem<T>[]) new TimeElem<?>[slots];
+            for (int slot = 0; slot < slots; ++slot) {
+                wheel[level][slot] = newSentinel(level, slot);
+            }
+            bitmaps[level] = new long[(slots + 63) / 64];
+        }
+        current = Config.currentTimestamp;
+    }
+
+    private TimeElem<T> newSentinel(int level, int slot) {
+        TimeElem<T> sentinel = new TimeElem<>(-1, null, this);
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+        sentinel.level = level;
+        sentinel.slot = slot;
+        return sentinel;
+    }
+
+    private static int index(long tick, int level) {
+        return (int) ((tick >>> SHIFT[level]) & ((1L << (SHIFT[level + 1] - SHIFT[level])) - 1));
+    }
+
+    private static long windowStart(long tick, int level) {
+        return (tick >>> SHIFT[level + 1]) << SHIFT[level + 1];
+    }
+
+    private void link(TimeElem<T> head, TimeElem<T> e) {
+        e.head = head;
+        e.prev = head.prev;
+        e.next = head;
+        head.prev.next = e;
+        head.prev = e;
+        if (head.level >= 0 && head.level < LEVELS) {
+            bitmaps[head.level][head.slot >>> 6] |= 1L << (head.slot & 63);
+        }
+    }
+
+    private void unlink(TimeElem<T> e) {
+        TimeElem<T> head = e.head;
+        e.prev.next = e.next;
+        e.next.prev = e.prev;
+        e.prev = null;
+        e.next = null;
+        e.head = null;
+        if (head.next == head && head.level >= 0 && head.level < LEVELS) {
+            bitmaps[head.level][head.slot >>> 6] &= ~(1L << (head.slot & 63));
+        }
+    }
+
+    private void place(TimeElem<T> e) {
+        long t = e.triggerTime;
+        if (t < current) {
+            link(ready, e);
+            return;
+        }
+        for (int level = 0; level < LEVELS; ++level) {
+            if ((t >>> SHIFT[level + 1]) == (current >>> SHIFT[level + 1])) {
+                link(wheel[level][index(t, level)], e);
+                return;
+            }
+        }
+        link(overflow, e);
+    }
+
+    private void moveAll(TimeElem<T> head) {
+        TimeElem<T> e = head.next;
+        while (e != head) {
+            TimeElem<T> next = e.next;
+            unlink(e);
+            place(e);
+            e = next;
+        }
+    }
+
+    private static int nextSetBit(long[] bitmap, int from) {
+        int i = from >>> 6;
+        if (i >= bitmap.length) {
+            return -1;
+        }
+        long word = bitmap[i] & (-1L << (from & 63));
+        while (true) {
+            if (word != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++i == bitmap.length) {
+                return -1;
+            }
+            word = bitmap[i];
+        }
+    }
+
+    /**
+     * @return the nearest tick when some elements expire or have to be cascaded, Long.MAX_VALUE if nothing in the wheel
+     */
+    private long nextEventTick() {
+        long ret = Long.MAX_VALUE;
+        // a slot of a higher level might start at the current tick and not cascaded yet
+        // so all levels should be checked
+        for (int level = 0; level < LEVELS; ++level) {
+            int slot = nextSetBit(bitmaps[level], index(current, level));
+            if (slot != -1) {
+                long tick = windowStart(current, level) + ((long) slot << SHIFT[level]);
+                if (tick < ret) {
+                    ret = tick;
+                }
+            }
+        }
+        if (ret == Long.MAX_VALUE && overflow.next != overflow) {
+            ret = windowStart(current, LEVELS - 1) + (1L << SHIFT[LEVELS]);
+        }
+        return ret;
+    }
+
+    private void processTick() {
+        // cascade from the highest level
+        if ((current & ((1L << SHIFT[LEVELS]) - 1)) == 0) {
+            moveAll(overflow);
+        }
+        for (int level = LEVELS - 1; level > 0; --level) {
+            if ((current & ((1L << SHIFT[level]) - 1)) == 0) {
+                moveAll(wheel[level][index(current, level)]);
+            }
+        }
+        // expire the whole slot
+        TimeElem<T> head = wheel[0][index(current, 0)];
+        TimeElem<T> e = head.next;
+        while (e != head) {
+            TimeElem<T> next = e.next;
+            unlink(e);
+            link(ready, e);
+            e = next;
+        }
+    }
+
+    private void advance(long now) {
+        while (current <= now) {
+            long tick = nextEventTick();
+            if (tick > now) {
+                // nothing to do until now
+                current = now + 1;
+                return;
+            }
+            current = tick;
+            processTick();
+            ++current;
+        }
+    }
+
+    @Override
+    public TimeElem<T> push(int timeout, T elem) {
+        // the wheel never goes back, use the latest processed tick if the clock goes back
+        long now = Math.max(Config.currentTimestamp, current - 1);
+        TimeElem<T> event = new TimeElem<>(now + timeout, elem, this);
+        place(event);
+        ++size;
+        return event;
+    }
+
+    @Override
+    public T pop() {
+        if (ready.next == ready) {
+            advance(Config.currentTimestamp);
+            if (ready.next == ready) {
+                return null;
+            }
+        }
+        TimeElem<T> e = ready.next;
+        unlink(e);
+        --size;
+        return e.elem;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int nextTime() {
+        if (size == 0) {
+            return Integer.MAX_VALUE;
+        }
+        advance(Config.currentTimestamp);
+        if (ready.next != ready) {
+            return 0;
+        }
+        long tick = nextEventTick();
+        if (tick == Long.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.max(0, Math.min(tick - Config.currentTimestamp, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void remove(TimeElem<T> elem) {
+        if (elem.head == null) {
+            return; // already popped or removed
+        }
+        unlink(elem);
+        --size;
+    }
+}
@@ -1,5 +1,8 @@
 package vproxybase.util.ringbuffer;
 
+import vproxybase.Config;
+import vproxybase.selector.SelectorEventLoop;
+import vproxybase.util.DirectBufferPool;
 import vproxybase.util.Logger;
 import vproxybase.util.RingBuffer;
 import vproxybase.util.RingBufferETHandler;
@@ -8,7 +11,9 @@ import vproxybase.util.nio.ByteArrayChannel;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
@@ -33,12 +38,18 @@ import java.util.Set;
  */
 public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
     private final boolean isDirect;
-    private /*may change after defragment*/ ByteBuffer buffer;
+    private final boolean releaseWhenEmpty;
+    private /*may change when buffer is re-attached*/ DirectBufferPool pool; // null if not allocated from a pool
+    private /*may change after defragment, may be null when released*/ ByteBuffer buffer;
     private int ePos; // end pos
     private int sPos; // start pos
     private final int cap;
     private boolean ePosIsAfterSPos = true; // true then end is limit, otherwise start is limit
 
+    // views of the buffer for vectored io, re-created when the buffer changes
+    private ByteBuffer vectorsBuffer;
+    private final ByteBuffer[] vectors = new ByteBuffer[2];
+
     private boolean notFirstOperator = false;
     private boolean operating = false;
     private boolean operatingBuffer = false;
@@ -46,22 +57,49 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
     private Set<RingBufferETHandler> handlerToAdd = new HashSet<>();
     private Set<RingBufferETHandler> handlerToRemove = new HashSet<>();
 
+    /**
+     * allocate a direct ring buffer<br>
+     * the memory is borrowed from the buffer pool of current event loop if called on an event loop thread,
+     * and will be returned to the pool when {@link #clean()} is called<br>
+     * <br>
+     * when {@link Config#releaseEmptyBuffers} is enabled, the memory is not attached until it's used,
+     * and is returned to the pool whenever the buffer becomes empty on an event loop thread
+     */
     public static SimpleRingBuffer allocateDirect(int cap) {
-        return new SimpleRingBuffer(true, ByteBuffer.allocateDirect(cap), 0, 0);
+        return allocateDirect(cap, Config.releaseEmptyBuffers);
+    }
+
+    /**
+     * @param releaseWhenEmpty return the memory to the pool when the buffer becomes empty,
+     *                         and attach memory again when it's used
+     * @see #allocateDirect(int)
+     */
+    public static SimpleRingBuffer allocateDirect(int cap, boolean releaseWhenEmpty) {
+        if (releaseWhenEmpty) {
+            return new SimpleRingBuffer(true, true, null, null, cap, 0, 0);
+        }
+        SelectorEventLoop loop = SelectorEventLoop.current();
+        if (loop == null) {
+            return new SimpleRingBuffer(true, false, null, ByteBuffer.allocateDirect(cap), cap, 0, 0);
+        }
+        DirectBufferPool pool = loop.getBufferPool();
+        return new SimpleRingBuffer(true, false, pool, pool.allocate(cap), cap, 0, 0);
     }
 
     public static SimpleRingBuffer allocate(int cap) {
-        return new SimpleRingBuffer(false, ByteBuffer.allocate(cap), 0, 0);
+        return new SimpleRingBuffer(false, false, null, ByteBuffer.allocate(cap), cap, 0, 0);
     }
 
     public static SimpleRingBuffer wrap(ByteBuffer b) {
-        return new SimpleRingBuffer(false, b, b.position(), b.limit());
+        return new SimpleRingBuffer(false, false, null, b, b.capacity(), b.position(), b.limit());
     }
 
-    private SimpleRingBuffer(boolean isDirect, ByteBuffer buffer, int sPos, int ePos) {
+    private SimpleRingBuffer(boolean isDirect, boolean releaseWhenEmpty, DirectBufferPool pool, ByteBuffer buffer, int cap, int sPos, int ePos) {
         this.isDirect = isDirect;
+        this.releaseWhenEmpty = releaseWhenEmpty;
+        this.pool = pool;
         this.buffer = buffer;
-        this.cap = buffer.capacity();
+        this.cap = cap;
         this.sPos = sPos;
         this.ePos = ePos;
 
@@ -97,6 +135,10 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
      */
     @Override
     public int storeBytesFrom(ReadableByteChannel channel) throws IOException {
+        if (channel instanceof ScatteringByteChannel && ePosIsAfterSPos && sPos != 0) {
+            // the free space is split into [ePos, cap) and [0, sPos)
+            return scatteringStoreIn((ScatteringByteChannel) channel);
+        }
         return operateOnByteBufferStoreIn(b -> channel.read(b) != -1);
     }
 
@@ -109,9 +151,131 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
 
     @Override
     public int writeTo(WritableByteChannel channel, int maxBytesToWrite) throws IOException {
+        if (channel instanceof GatheringByteChannel && !ePosIsAfterSPos && ePos != 0 && maxBytesToWrite > cap - sPos) {
+            // the data is split into [sPos, cap) and [0, ePos)
+            return gatheringWriteOut((GatheringByteChannel) channel, maxBytesToWrite);
+        }
         return operateOnByteBufferWriteOut(maxBytesToWrite, channel::write);
     }
 
+    private ByteBuffer[] getVectors() {
+        if (vectorsBuffer != buffer) {
+            vectors[0] = buffer.duplicate();
+            vectors[1] = buffer.duplicate();
+            vectorsBuffer = buffer;
+        }
+        return vectors;
+    }
+
+    private void clearVectors() {
+        vectorsBuffer = null;
+        vectors[0] = null;
+        vectors[1] = null;
+    }
+
+    // read into both parts of the free space with one call
+    private int scatteringStoreIn(ScatteringByteChannel channel) throws IOException {
+        if (operatingBuffer) {
+            throw new IllegalStateException("this buffer is operating");
+        }
+        ensureBufferAvailable();
+
+        boolean firstOperator = isFirstOperate();
+        operatingBuffer = true;
+
+        boolean triggerReadable = false;
+
+        assert Logger.lowLevelNetDebug("before scattering store in, ePos=" + ePos);
+
+        try { // only use try-finally here, we do not catch
+
+            // is for triggering readable event
+            boolean triggerReadablePre = used() == 0;
+
+            ByteBuffer[] vectors = getVectors();
+            int lim = cap - ePos;
+            vectors[0].limit(cap).position(ePos);
+            vectors[1].limit(sPos).position(0);
+
+            long n = channel.read(vectors, 0, 2);
+            if (n < 0)
+                return -1; // EOF
+            int read = (int) n;
+            if (read >= lim) {
+                ePos = read - lim;
+                ePosIsAfterSPos = false;
+            } else {
+                ePos += read;
+            }
+
+            triggerReadable = triggerReadablePre && read > 0;
+            return read;
+        } finally { // do trigger here
+            assert Logger.lowLevelNetDebug("after scattering store in, ePos=" + ePos);
+
+            operatingBuffer = false;
+            if (triggerReadable) {
+                assert Logger.lowLevelNetDebug("trigger readable for " + handler.size() + " times");
+                for (RingBufferETHandler aHandler : handler) {
+                    aHandler.readableET();
+                }
+            }
+            resetFirst(firstOperator);
+        }
+    }
+
+    // write both parts of the data with one call
+    private int gatheringWriteOut(GatheringByteChannel channel, int maxBytesToWrite) throws IOException {
+        if (operatingBuffer) {
+            throw new IllegalStateException("this buffer is operating");
+        }
+        ensureBufferAvailable();
+
+        boolean firstOperator = isFirstOperate();
+        operatingBuffer = true;
+
+        boolean triggerWritable = false;
+
+        assert Logger.lowLevelNetDebug("before gathering write out, sPos=" + sPos);
+
+        try { // only use try-finally here, we do not catch
+
+            // is for triggering writable event
+            boolean triggerWritablePre = free() == 0;
+
+            ByteBuffer[] vectors = getVectors();
+            int lim = cap - sPos;
+            vectors[0].limit(cap).position(sPos);
+            vectors[1].limit(Math.min(ePos, maxBytesToWrite - lim)).position(0);
+
+            int write = (int) channel.write(vectors, 0, 2);
+            if (write >= lim) {
+                sPos = write - lim;
+                ePosIsAfterSPos = true;
+            } else {
+                sPos += write;
+            }
+
+            triggerWritable = triggerWritablePre && write > 0;
+
+            if (used() == 0) {
+                resetCursors();
+            }
+            return write;
+        } finally { // do trigger here
+            assert Logger.lowLevelNetDebug("after gathering write out, sPos=" + sPos);
+
+            operatingBuffer = false;
+            if (triggerWritable) {
+                assert Logger.lowLevelNetDebug("trigger writable for " + handler.size() + " times");
+                for (RingBufferETHandler aHandler : handler) {
+                    aHandler.writableET();
+                }
+            }
+            resetFirst(firstOperator);
+        }
+    }
+
     @Override
     public int free() {
         return cap - used();
@@ -133,12 +297,13 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
 
     @Override
     public byte[] getBytes() {
-        ensureBufferAvailable();
+        ensureNotCleaned();
 
         int len = used();
         byte[] arr = new byte[len];
         if (len == 0)
             return arr;
+        ensureBufferAvailable();
         int lim = retrieveLimit();
         buffer.limit(sPos + lim).position(sPos);
         buffer.get(arr, 0, lim);
@@ -195,21 +360,70 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
         if (cleaned)
             return;
         cleaned = true;
-        if (isDirect) {
+        if (isDirect && buffer != null) {
+            freeDirect(buffer);
+        }
+        buffer = null;
+        clearVectors();
+    }
+
+    private void freeDirect(ByteBuffer buffer) {
+        if (pool == null) {
             Utils.clean(buffer);
+        } else {
+            pool.release(buffer);
         }
     }
 
-    private void ensureBufferAvailable() {
+    private void ensureNotCleaned() {
         if (cleaned) {
             throw new IllegalStateException("this buffer is already cleaned");
         }
     }
 
+    private void ensureBufferAvailable() {
+        ensureNotCleaned();
+        if (buffer == null) {
+            attachBuffer();
+        }
+    }
+
+    private void attachBuffer() {
+        // take memory from the loop which is operating the buffer
+        SelectorEventLoop loop = SelectorEventLoop.current();
+        if (loop == null) {
+            pool = null;
+            buffer = ByteBuffer.allocateDirect(cap);
+        } else {
+            pool = loop.getBufferPool();
+            buffer = pool.allocate(cap);
+        }
+        assert Logger.lowLevelNetDebug("buffer attached");
+    }
+
+    private void releaseIfEmpty() {
+        if (!releaseWhenEmpty || buffer == null || used() != 0) {
+            return;
+        }
+        // only release on event loop threads
+        // the memory can be retrieved from the pool cheaply when the buffer is used again
+        SelectorEventLoop loop = SelectorEventLoop.current();
+        if (loop == null) {
+            return;
+        }
+        resetCursors();
+        DirectBufferPool pool = loop.getBufferPool();
+        pool.release(buffer);
+        this.pool = pool;
+        buffer = null;
+        clearVectors();
+        assert Logger.lowLevelNetDebug("buffer released because it's empty");
+    }
+
     // clear the buffer
     @Override
     public void clear() {
-        ensureBufferAvailable();
+        ensureNotCleaned();
 
         byte[] b = new byte[capacity()];
         ByteArrayChannel chnl = ByteArrayChannel.fromEmpty(b);
@@ -240,6 +454,8 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
 
         handler.removeAll(handlerToRemove);
         handler.addAll(handlerToAdd);
+
+        releaseIfEmpty();
     }
 
     @Override
@@ -430,10 +646,11 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
     public void defragment() {
         if (operating)
             throw new IllegalStateException("cannot perform defragment when it's operating");
-        ensureBufferAvailable();
+        ensureNotCleaned();
 
         if (sPos == 0)
             return; // no need to defragment if sPos is already 0
+        ensureBufferAvailable();
         // we make the code simple:
         // create a new buffer with exactly the same capacity
         // and store data into the new buffer
@@ -441,7 +658,7 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
         // then we make a swap
         ByteBuffer newBuffer;
         if (isDirect) {
-            newBuffer = ByteBuffer.allocateDirect(cap);
+            newBuffer = pool == null ? ByteBuffer.allocateDirect(cap) : pool.allocate(cap);
         } else {
             newBuffer = ByteBuffer.allocate(cap);
         }
@@ -459,7 +676,7 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
         }
 
         if (isDirect) {
-            Utils.clean(buffer); // clean the old buffer
+            freeDirect(buffer); // clean the old buffer
         }
 
         sPos = 0;
@@ -0,0 +1,216 @@
+package vproxybase.util.ringbuffer;
+
+import vfd.FD;
+import vfd.posix.PosixNetworkFD;
+import vfd.posix.SplicePipe;
+import vproxybase.util.Logger;
+import vproxybase.util.RingBuffer;
+import vproxybase.util.RingBufferETHandler;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A ring buffer backed by a kernel pipe.<br>
+ * Bytes are moved from a socket into the pipe and from the pipe into another socket using splice(2),
+ * so they never enter the user space.<br>
+ * <br>
+ * The buffer can only exchange data with posix network fds,
+ * it's used when proxying plain tcp connections directly.<br>
+ * <br>
+ * The pipe is counted by pages in kernel, so it may be full before `used` reaches `capacity`.
+ * In that case, the buffer is considered full until some bytes are retrieved.
+ */
+public class SplicePipeRingBuffer implements RingBuffer {
+    private static final int DEFAULT_PIPE_SIZE = 65536; // linux default
+
+    private final SplicePipe pipe;
+    private final int cap;
+    private int used = 0;
+    private boolean pipeFull = false;
+    private boolean cleaned = false;
+
+    private final Set<RingBufferETHandler> handler = new HashSet<>();
+    private RingBufferETHandler[] handlerArray = new RingBufferETHandler[0]; // for iterating when triggering
+
+    private SplicePipeRingBuffer(SplicePipe pipe) {
+        this.pipe = pipe;
+        this.cap = pipe.capacity;
+    }
+
+    public static boolean isSupported() {
+        return SplicePipe.isSupported();
+    }
+
+    /**
+     * @param cap expected capacity, the actual capacity might be different
+     * @return the buffer
+     * @throws IOException failed to create the pipe
+     */
+    public static SplicePipeRingBuffer allocate(int cap) throws IOException {
+        // the kernel pipe is counted by pages, and one segment occupies at least one page
+        // a small pipe can only hold a few segments, so it's never made smaller than the system default
+        return new SplicePipeRingBuffer(SplicePipe.open(cap > DEFAULT_PIPE_SIZE ? cap : 0));
+    }
+
+    private void ensureNotCleaned() {
+        if (cleaned) {
+            throw new IllegalStateException("this buffer is already cleaned");
+        }
+    }
+
+    private static PosixNetworkFD getPosixFD(Object channel) throws IOException {
+        if (channel instanceof FD) {
+            FD real = ((FD) channel).real();
+            if (real instanceof PosixNetworkFD) {
+                return (PosixNetworkFD) real;
+            }
+        }
+        throw new IOException("splice is not supported on " + channel);
+    }
+
+    @Override
+    public int storeBytesFrom(ReadableByteChannel channel) throws IOException {
+        ensureNotCleaned();
+        int free = free();
+        if (free == 0) {
+            return 0;
+        }
+        PosixNetworkFD fd = getPosixFD(channel);
+        int n = fd.spliceTo(pipe, free);
+        if (n < 0) {
+            return -1; // EOF
+        }
+        if (n == 0) {
+            if (used != 0) {
+                // the socket is readable when this method is called
+                // so nothing moved means the pipe is full
+                assert Logger.lowLevelNetDebug("the pipe is full, used = " + used + ", cap = " + cap);
+                pipeFull = true;
+            }
+            return 0;
+        }
+        boolean triggerReadable = used == 0;
+        used += n;
+        if (triggerReadable) {
+            assert Logger.lowLevelNetDebug("trigger readable for " + handlerArray.length + " times");
+            for (RingBufferETHandler h : handlerArray) {
+                h.readableET();
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public int writeTo(WritableByteChannel channel, int maxBytesToWrite) throws IOException {
+        ensureNotCleaned();
+        int len = Math.min(used, maxBytesToWrite);
+        if (len == 0) {
+            return 0;
+        }
+        PosixNetworkFD fd = getPosixFD(channel);
+        int n = fd.spliceFrom(pipe, len);
+        if (n == 0) {
+            return 0;
+        }
+        moved(n);
+        return n;
+    }
+
+    private void moved(int n) {
+        boolean triggerWritable = free() == 0;
+        used -= n;
+        pipeFull = false;
+        if (triggerWritable) {
+            assert Logger.lowLevelNetDebug("trigger writable for " + handlerArray.length + " times");
+            for (RingBufferETHandler h : handlerArray) {
+                h.writableET();
+            }
+        }
+    }
+
+    @Override
+    public int free() {
+        if (pipeFull) {
+            return 0;
+        }
+        return cap - used;
+    }
+
+    @Override
+    public int used() {
+        return used;
+    }
+
+    @Override
+    public int capacity() {
+        return cap;
+    }
+
+    @Override
+    public void addHandler(RingBufferETHandler h) {
+        if (handler.add(h)) {
+            handlerArray = handler.toArray(new RingBufferETHandler[0]);
+        }
+    }
+
+    @Override
+    public void removeHandler(RingBufferETHandler h) {
+        if (handler.remove(h)) {
+            handlerArray = handler.toArray(new RingBufferETHandler[0]);
+        }
+    }
+
+    @Override
+    public Set<RingBufferETHandler> getHandlers() {
+        return new HashSet<>(handler);
+    }
+
+    /**
+     * close the pipe<br>
+     * PLEASE BE VERY CAREFUL
+     */
+    @Override
+    public void clean() {
+        if (cleaned)
+            return;
+        cleaned = true;
+        try {
+            pipe.close();
+        } catch (IOException e) {
+            Logger.shouldNotHappen("closing the splice pipe failed: " + pipe, e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        ensureNotCleaned();
+        while (used != 0) {
+            int n;
+            try {
+                n = pipe.discard(used);
+            } catch (IOException e) {
+                Logger.shouldNotHappen("discarding bytes from the splice pipe failed: " + pipe, e);
+                return;
+            }
+            if (n == 0) {
+                Logger.shouldNotHappen("nothing discarded from the splice pipe but used = " + used + ": " + pipe);
+                return;
+            }
+            moved(n);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SplicePipeRingBuffer{" +
+            "used=" + used +
+            ", cap=" + cap +
+            ", pipeFull=" + pipeFull +
+            ", pipe=" + pipe +
+            '}';
+    }
+}
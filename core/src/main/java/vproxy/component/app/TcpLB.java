@@ -36,6 +36,7 @@ public class TcpLB {
             // it's removed, so close the listening fd
             server.close();
             servers.remove(server);
+            steerReusePortGroup();
 
             Logger.info(LogType.ALERT, "server " + server + " is removed from the acceptor group, " +
                 servers.size() + " server(s) left");
@@ -68,11 +69,15 @@ public class TcpLB {
     public final String alias;
     public final EventLoopGroup acceptorGroup;
     public final EventLoopGroup workerGroup;
+    // the group where the listening sockets are bound to
+    // it's the worker group when Config.tcpLBAcceptOnWorkers is set, otherwise the acceptor group
+    private final EventLoopGroup listenGroup;
     public final IPPort bindAddress;
     public final Upstream backend;
     private int timeout; // modifiable
     private int inBufferSize; // modifiable
     private int outBufferSize; // modifiable
+    private boolean fastOpen = false; // modifiable, only has effect on newly created listening sockets
     public final String protocol;
     public final Processor processor;
     private VSSLContext sslContext;
@@ -118,6 +123,7 @@ public class TcpLB {
         this.alias = alias;
         this.acceptorGroup = acceptorGroup;
         this.workerGroup = workerGroup;
+        this.listenGroup = Config.tcpLBAcceptOnWorkers ? workerGroup : acceptorGroup;
         this.bindAddress = bindAddress;
         this.backend = backend;
         this.timeout = timeout;
@@ -133,9 +139,9 @@ public class TcpLB {
         // if it's created, it should start to run
         // so create it in start() method
 
-        // attach to acceptorGroup
+        // attach to the group where the listening sockets are bound to
         this.attach = new LBAttach();
-        acceptorGroup.attachResource(attach);
+        listenGroup.attachResource(attach);
     }
 
     // this method can override
@@ -183,6 +189,11 @@ public class TcpLB {
         return new ProxyNetConfig()
             .setConnGen(provideConnectorGen())
             .setHandleLoopProvider(acceptLoop -> {
+                if (listenGroup == workerGroup) {
+                    // the connection is accepted on a worker loop
+                    // handle it on the same loop, so that it never crosses threads
+                    return acceptLoop;
+                }
                 // get a event loop from group
                 EventLoopWrapper w = workerGroup.next(acceptLoop);
                 if (w == null)
@@ -193,6 +204,7 @@ public class TcpLB {
             .setTimeout(timeout)
             .setInBufferSize(inBufferSize)
             .setOutBufferSize(outBufferSize)
+            .setSplice(Config.tcpSplice)
             .setServer(server)
             .setAcceptLoop(eventLoop)
             .setSslContext(sslContext);
@@ -207,7 +219,7 @@ public class TcpLB {
 
             stopped = false;
 
-            List<EventLoopWrapper> eventLoops = acceptorGroup.list();
+            List<EventLoopWrapper> eventLoops = listenGroup.list();
             if (eventLoops.isEmpty()) {
                 assert Logger.lowLevelDebug("cannot start because event loop list is empty, will start later");
                 return;
@@ -229,7 +241,11 @@ public class TcpLB {
                     continue; // ignore already bond loops
 
                 // start one server for each new event loop
-                ServerSock server = ServerSock.create(this.bindAddress);
+                ServerSock.BindOptions bindOptions = new ServerSock.BindOptions();
+                if (fastOpen) {
+                    bindOptions.setFastOpen(ServerSock.BindOptions.DEFAULT_FAST_OPEN_QUEUE_LENGTH);
+                }
+                ServerSock server = ServerSock.create(this.bindAddress, bindOptions);
                 ProxyNetConfig proxyNetConfig = getProxyNetConfig(server, w);
                 Proxy proxy = new Proxy(proxyNetConfig, proxyEventHandler);
 
@@ -245,10 +261,25 @@ public class TcpLB {
                 Logger.info(LogType.ALERT, "server " + alias + " " + bindAddress + " starts on loop: " + w.alias);
             }
 
+            steerReusePortGroup();
+
             assert Logger.lowLevelDebug("lb " + alias + " started");
         }
     }
 
+    // the cpu steering program is shared by the whole reuseport group and selects listener[cpu % group size],
+    // so attach it again with the current size whenever listeners are added or removed
+    private void steerReusePortGroup() {
+        if (!Config.reusePortCPUSteering) {
+            return;
+        }
+        int size = servers.size();
+        for (ServerSock server : servers.keySet()) {
+            server.setReusePortCPUSteering(size);
+            return; // attaching on one listener is enough
+        }
+    }
+
     public void stop() {
         assert Logger.lowLevelDebug("stop() called on lb " + alias);
         stopped = true;
@@ -271,7 +302,7 @@ public class TcpLB {
         }
 
         try {
-            acceptorGroup.detachResource(attach);
+            listenGroup.detachResource(attach);
         } catch (NotFoundException e) {
             // ignore
         }
@@ -312,6 +343,11 @@ public class TcpLB {
         }
     }
 
+    // listening sockets which are already created will not be modified
+    public void setFastOpen(boolean fastOpen) {
+        this.fastOpen = fastOpen;
+    }
+
     public void setCertKeys(VSSLContext sslContext, CertKey[] certKeys) {
         this.sslContext = sslContext;
         this.certKeys = certKeys;
@@ -331,6 +367,10 @@ public class TcpLB {
         return timeout;
     }
 
+    public boolean isFastOpen() {
+        return fastOpen;
+    }
+
     public CertKey[] getCertKeys() {
         return certKeys;
     }
@@ -191,6 +191,7 @@ class ProcessorConnectionHandler implements ConnectionHandler {
         private boolean isConnected = false;
 
         private ByteArrayChannel chnl = null;
+        private long requestSentNanos = 0; // when the frontend data is sent to this backend and no response yet
         private final BackendConnectionHandler.ByteFlow backendByteFlow = new BackendConnectionHandler.ByteFlow();
         private final BackendConnectionHandler.ByteFlow frontendByteFlow = new BackendConnectionHandler.ByteFlow();
 
@@ -199,6 +200,13 @@ class ProcessorConnectionHandler implements ConnectionHandler {
             this.conn = conn;
         }
 
+        // called when the frontend data is dispatched to this backend
+        void requestSent() {
+            if (requestSentNanos == 0) {
+                requestSentNanos = System.nanoTime();
+            }
+        }
+
         void writeToBackend(ByteArray data) {
             backendByteFlow.write(data);
             doBackendWrite();
@@ -266,6 +274,10 @@ class ProcessorConnectionHandler implements ConnectionHandler {
         @Override
         public void connected(ConnectableConnectionHandlerContext ctx) {
             isConnected = true;
+            Connector connector = conn.getConnector();
+            if (connector != null) {
+                connector.observeSuccess();
+            }
             // no need to call processor.connected(...) here, it's already called when retrieving the connection
             doBackendWrite();
         }
@@ -301,6 +313,7 @@ class ProcessorConnectionHandler implements ConnectionHandler {
                             frontendConnection.close(true);
                             return;
                         }
+                        checkResponseStatus();
                         // check data to write back
                         {
                             ByteArray writeBackBytes = processor.produce(topCtx, subCtx);
@@ -335,6 +348,7 @@ class ProcessorConnectionHandler implements ConnectionHandler {
                     frontendConnection.close();
                     return;
                 }
+                checkResponseStatus();
                 assert Logger.lowLevelDebug("the processor return a message of length " + (dataToSend == null ? "null" : dataToSend.length()));
 
                 // check data to write back
@@ -354,8 +368,31 @@ class ProcessorConnectionHandler implements ConnectionHandler {
             }
         }
 
+        // report the response status for passive health checking
+        private void checkResponseStatus() {
+            int status = processor.responseStatus(topCtx, subCtx);
+            if (status == 0)
+                return;
+            Connector connector = conn.getConnector();
+            if (connector == null)
+                return;
+            if (status >= 500) {
+                connector.observeFailure("response status " + status);
+            } else {
+                connector.observeSuccess();
+            }
+        }
+
         @Override
         public void readable(ConnectionHandlerContext ctx) {
+            if (requestSentNanos != 0) {
+                // first bytes of the response
+                Connector connector = conn.getConnector();
+                if (connector != null) {
+                    connector.observeLatency(System.nanoTime() - requestSentNanos);
+                }
+                requestSentNanos = 0;
+            }
             readBackend();
         }
 
@@ -369,6 +406,16 @@ class ProcessorConnectionHandler implements ConnectionHandler {
             Logger.error(LogType.CONN_ERROR, "got exception when handling backend connection " + conn + ", closing frontend " + frontendConnection, err);
             frontendConnection.close(true);
             closeAll();
+
+            Connector connector = conn.getConnector();
+            if (connector != null) {
+                if (isConnected) {
+                    // e.g. the connection is reset by the backend
+                    connector.observeFailure(err.toString());
+                } else {
+                    connector.connectionFailed();
+                }
+            }
         }
 
         @Override
@@ -586,6 +633,7 @@ class ProcessorConnectionHandler implements ConnectionHandler {
                     processor.proxyDone(topCtx, frontendSubCtx);
                     readFrontend(); // recursively call to read more data
                 } else {
+                    backend.requestSent();
                     backend.proxyToBackend(bytesToProxy);
                 }
             }
@@ -664,6 +712,7 @@ class ProcessorConnectionHandler implements ConnectionHandler {
                 if (bytesToSend == null || bytesToSend.length() == 0) {
                     readFrontend(); // recursively call to handle more data
                 } else {
+                    backend.requestSent();
                     backend.writeToBackend(bytesToSend);
                 }
             }
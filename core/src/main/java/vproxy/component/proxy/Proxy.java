@@ -10,6 +10,7 @@ import vproxybase.util.*;
 import vproxybase.util.ringbuffer.ByteBufferRingBuffer;
 import vproxybase.util.ringbuffer.ProxyOutputRingBuffer;
 import vproxybase.util.ringbuffer.SSLUtils;
+import vproxybase.util.ringbuffer.SplicePipeRingBuffer;
 import vproxybase.util.ringbuffer.ssl.SSL;
 import vproxybase.util.ringbuffer.ssl.SSLEngineBuilder;
 
@@ -88,32 +89,20 @@ public class Proxy {
                 return;
             }
 
-            ConnectableConnection connectableConnection;
-            try {
-                connectableConnection = connector.connect(
-                    connection,
-                    new ConnectionOpts().setTimeout(config.timeout),
-                    /*switch the two buffers to make a PROXY*/connection.getOutBuffer(), connection.getInBuffer());
-            } catch (IOException e) {
-                Logger.fatal(LogType.CONN_ERROR, "make passive connection failed, maybe provided endpoint info is invalid", e);
-                // it should not happen if user provided endpoint is valid
-                // but if it happens, we close both sides
-
-                utilCloseConnectionAndReleaseBuffers(connection);
-                connector.close();
-                return;
+            boolean fastOpen = connector.fastOpen();
+            if (fastOpen && config.sslContext == null) {
+                // the active connection is not registered yet
+                // read the bytes which already arrived, so that they can be sent with SYN
+                // tls connections are not pre-read because the handshake needs to write data back
+                preRead(connection);
             }
 
-            Session session = new Session(connection, connectableConnection);
-            ConnectableConnectionHandler handler = new SessionConnectableConnectionHandler(session);
-
             // we get a new event loop for handling
             // the event loop is provided by user
             // user may use the same loop as the acceptLoop
             //
-            // and we only register the passive connection here
-            // the active connection will be registered
-            // when the passive connection is successfully established
+            // the loop is retrieved before connecting,
+            // so that the connector may use resources bound to the loop
             NetEventLoop loop;
             {
                 NetEventLoop foo = connector.loop();
@@ -127,10 +116,41 @@ public class Proxy {
             }
             if (loop == null) {
                 // the loop not exist
-                utilCloseSessionAndReleaseBuffers(session);
-                Logger.warn(LogType.NO_EVENT_LOOP, "cannot get event loop for connectable connection " + connectableConnection);
+                utilCloseConnectionAndReleaseBuffers(connection);
+                connector.close();
+                Logger.warn(LogType.NO_EVENT_LOOP, "cannot get event loop for connection " + connection);
                 return;
             }
+
+            // connect on the handling loop,
+            // so that the connector may use resources bound to the loop, e.g. pooled connections
+            loop.getSelectorEventLoop().runOnLoop(() -> connect(loop, connection, connector, fastOpen));
+        }
+
+        private void connect(NetEventLoop loop, Connection connection, Connector connector, boolean fastOpen) {
+            ConnectableConnection connectableConnection;
+            try {
+                connectableConnection = connector.connect(
+                    connection,
+                    loop,
+                    new ConnectionOpts().setTimeout(config.timeout).setFastOpen(fastOpen),
+                    /*switch the two buffers to make a PROXY*/connection.getOutBuffer(), connection.getInBuffer());
+            } catch (IOException e) {
+                Logger.fatal(LogType.CONN_ERROR, "make passive connection failed, maybe provided endpoint info is invalid", e);
+                // it should not happen if user provided endpoint is valid
+                // but if it happens, we close both sides
+
+                utilCloseConnectionAndReleaseBuffers(connection);
+                connector.close();
+                return;
+            }
+
+            Session session = new Session(connection, connectableConnection);
+            ConnectableConnectionHandler handler = new SessionConnectableConnectionHandler(session);
+
+            // we only register the passive connection here
+            // the active connection will be registered
+            // when the passive connection is successfully established
             try {
                 loop.addConnectableConnection(connectableConnection, null, handler);
 
@@ -146,6 +166,25 @@ public class Proxy {
             }
         }
 
+        private void preRead(Connection connection) {
+            RingBuffer inBuffer = connection.getInBuffer();
+            if (inBuffer.free() == 0) {
+                return;
+            }
+            int n;
+            try {
+                n = inBuffer.storeBytesFrom(connection.channel);
+            } catch (IOException e) {
+                // the error will be raised again when the connection is handled by the event loop
+                assert Logger.lowLevelDebug("pre-reading from " + connection + " failed: " + e);
+                return;
+            }
+            if (n > 0) {
+                connection.incFromRemoteBytes(n);
+            }
+            // EOF is ignored as well, the event loop will see it again
+        }
+
         class HandlerCallback extends Callback<Connector, IOException> {
             private final NetEventLoop acceptLoop;
             private final NetEventLoop loop;
@@ -267,6 +306,13 @@ public class Proxy {
 
         @Override
         public Tuple<RingBuffer, RingBuffer> getIOBuffers(SocketFD channel) {
+            if (config.splice && config.sslContext == null && config.connGen.type() == ConnectorGen.Type.direct) {
+                Tuple<RingBuffer, RingBuffer> buffers = getSpliceBuffers();
+                if (buffers != null) {
+                    return buffers;
+                }
+                // fall back to normal buffers
+            }
             int inBufferSize, outBufferSize;
             if (config.sslContext == null) {
                 inBufferSize = config.inBufferSize;
@@ -319,6 +365,30 @@ public class Proxy {
             return new Tuple<>(pair.left, pair.right);
         }
 
+        private Tuple<RingBuffer, RingBuffer> getSpliceBuffers() {
+            if (!SplicePipeRingBuffer.isSupported()) {
+                return null;
+            }
+            // the two buffers form up a pipe pair for the session
+            // data is spliced from one socket into a pipe, then from the pipe into the other socket
+            SplicePipeRingBuffer inBuffer;
+            try {
+                inBuffer = SplicePipeRingBuffer.allocate(config.inBufferSize);
+            } catch (IOException e) {
+                Logger.error(LogType.SYS_ERROR, "creating pipe for splicing failed", e);
+                return null;
+            }
+            SplicePipeRingBuffer outBuffer;
+            try {
+                outBuffer = SplicePipeRingBuffer.allocate(config.outBufferSize);
+            } catch (IOException e) {
+                Logger.error(LogType.SYS_ERROR, "creating pipe for splicing failed", e);
+                inBuffer.clean();
+                return null;
+            }
+            return new Tuple<>(inBuffer, outBuffer);
+        }
+
         @Override
         public void removed(ServerHandlerContext ctx) {
             handler.serverRemoved(ctx.server);
@@ -418,6 +488,10 @@ public class Proxy {
         public void connected(ConnectableConnectionHandlerContext ctx) {
             assert Logger.lowLevelDebug("passive connection established: " + session);
             isConnected = true; // it's connected
+            Connector connector = ctx.connection.getConnector();
+            if (connector != null) {
+                connector.observeSuccess();
+            }
 
             // now we can add active connection into event loop
             // use event loop from context
@@ -464,6 +538,12 @@ public class Proxy {
                 if (connector != null) {
                     connector.connectionFailed();
                 }
+            } else if (session.passive == ctx.connection) {
+                // e.g. the connection is reset by the backend
+                Connector connector = ((ConnectableConnection) ctx.connection).getConnector();
+                if (connector != null) {
+                    connector.observeFailure(err.toString());
+                }
             }
         }
 
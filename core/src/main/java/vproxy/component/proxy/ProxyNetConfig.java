@@ -18,6 +18,7 @@ public class ProxyNetConfig {
 
     int inBufferSize = 128;
     int outBufferSize = 128;
+    boolean splice = false;
 
     VSSLContext sslContext = null;
     BiConsumer<SSLEngine, SSLParameters> sslEngineManipulator = null;
@@ -52,6 +53,15 @@ public class ProxyNetConfig {
         return this;
     }
 
+    /**
+     * use splice(2) to forward bytes when proxying plain tcp connections directly.
+     * only works on linux with posix fds, otherwise normal buffers will be used
+     */
+    public ProxyNetConfig setSplice(boolean splice) {
+        this.splice = splice;
+        return this;
+    }
+
     public ProxyNetConfig setTimeout(int timeout) {
         this.timeout = timeout;
         return this;
@@ -91,6 +101,10 @@ public class ProxyNetConfig {
         return outBufferSize;
     }
 
+    public boolean isSplice() {
+        return splice;
+    }
+
     public int getTimeout() {
         return timeout;
     }
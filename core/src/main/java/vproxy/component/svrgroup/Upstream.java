@@ -4,6 +4,7 @@ import vfd.IPPort;
 import vproxybase.component.svrgroup.ServerGroup;
 import vproxybase.connection.Connector;
 import vproxybase.processor.Hint;
+import vproxybase.processor.HintIndex;
 import vproxybase.util.exception.AlreadyExistException;
 import vproxybase.util.exception.NotFoundException;
 
@@ -42,6 +43,8 @@ public class Upstream {
                 annotations = Collections.emptyMap();
             }
             this.annotations = annotations;
+            _index = null; // rebuild when searching
+            generation.incrementAndGet();
         }
     }
 
@@ -55,9 +58,28 @@ public class Upstream {
         }
     }
 
+    // index for searchForGroup(hint)
+    static class Index {
+        final ArrayList<ServerGroupHandle> groups;
+        final HintIndex index;
+        final int annotationsGeneration; // ServerGroup.annotationsGeneration() when building the index
+
+        Index(ArrayList<ServerGroupHandle> groups, int annotationsGeneration) {
+            this.groups = groups;
+            this.annotationsGeneration = annotationsGeneration;
+            List<List<Map<String, String>>> annotations = new ArrayList<>(groups.size());
+            for (ServerGroupHandle h : groups) {
+                annotations.add(List.of(h.annotations, h.group.getAnnotations()));
+            }
+            this.index = new HintIndex(annotations);
+        }
+    }
+
     public final String alias;
     private ArrayList<ServerGroupHandle> serverGroupHandles = new ArrayList<>(0);
     private WRR _wrr;
+    private volatile Index _index;
+    private final AtomicInteger generation = new AtomicInteger(0);
 
     public Upstream(String alias) {
         this.alias = alias;
@@ -152,6 +174,7 @@ public class Upstream {
         newLs.add(h);
         serverGroupHandles = newLs;
         recalculateWRR();
+        generation.incrementAndGet();
         return h;
     }
 
@@ -173,6 +196,16 @@ public class Upstream {
         }
         serverGroupHandles = newLs;
         recalculateWRR();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return a number which changes when server groups are added or removed, or the annotations on them change,
+     * users may use it together with {@link ServerGroup#annotationsGeneration()}
+     * to check whether the result of {@link #searchForGroup(Hint)} is outdated
+     */
+    public int generation() {
+        return generation.get();
     }
 
     public List<ServerGroupHandle> getServerGroupHandles() {
@@ -184,17 +217,14 @@ public class Upstream {
     }
 
     public ServerGroupHandle searchForGroup(Hint hint) {
-        int level = 0;
-        ServerGroupHandle lastMax = null;
-        for (ServerGroupHandle h : serverGroupHandles) {
-            //noinspection unchecked
-            int l = hint.matchLevel(h.annotations, h.group.getAnnotations());
-            if (l > level) {
-                level = l;
-                lastMax = h;
-            }
+        Index index = _index;
+        int generation = ServerGroup.annotationsGeneration();
+        if (index == null || index.groups != serverGroupHandles || index.annotationsGeneration != generation) {
+            index = new Index(serverGroupHandles, generation);
+            _index = index;
         }
-        return lastMax;
+        int idx = index.index.search(hint);
+        return idx == -1 ? null : index.groups.get(idx);
     }
 
     public Connector next(IPPort source, Hint hint) {
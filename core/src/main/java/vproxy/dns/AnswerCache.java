@@ -0,0 +1,134 @@
+package vproxy.dns;
+
+import vproxy.component.svrgroup.Upstream;
+import vproxybase.component.svrgroup.ServerGroup;
+import vproxybase.dns.DNSType;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encoded responses of the questions answered from the rrsets, each event loop has its own cache.<br>
+ * A hit copies the encoded bytes and patches the transaction id,
+ * the address of A/AAAA answers is patched as well because the server is chosen on every query.
+ */
+public class AnswerCache {
+    private static final int MAX_ENTRIES = 4096;
+
+    // the raw bytes of the question and the flags copied into the response
+    public static class Key {
+        private final byte[] bytes;
+        private final int hash;
+
+        private Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return hash == key.hash && Arrays.equals(bytes, key.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    static class Answer {
+        final byte[] encoded;
+        final DNSType type;
+        final int addressOffset; // offset of the address in the only A/AAAA answer, -1 for SRV
+        final Upstream.ServerGroupHandle gh;
+        private final int upstreamGeneration;
+        private final int annotationsGeneration;
+        private final int serversGeneration;
+        private final int ttl;
+
+        Answer(byte[] encoded, DNSType type, int addressOffset, Upstream.ServerGroupHandle gh,
+               int upstreamGeneration, int annotationsGeneration, int serversGeneration, int ttl) {
+            this.encoded = encoded;
+            this.type = type;
+            this.addressOffset = addressOffset;
+            this.gh = gh;
+            this.upstreamGeneration = upstreamGeneration;
+            this.annotationsGeneration = annotationsGeneration;
+            this.serversGeneration = serversGeneration;
+            this.ttl = ttl;
+        }
+
+        boolean isValid(Upstream rrsets, int ttl) {
+            if (this.ttl != ttl
+                || upstreamGeneration != rrsets.generation()
+                || annotationsGeneration != ServerGroup.annotationsGeneration()) {
+                return false; // the domain may be resolved to another group
+            }
+            // A/AAAA answers choose a healthy server on every query
+            // SRV answers list all healthy servers
+            return addressOffset != -1 || serversGeneration == gh.group.serversGeneration();
+        }
+    }
+
+    private final Map<Key, Answer> answers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Answer> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * @return the key of the question, or null if the packet is not a standard query with exactly one question
+     */
+    public static Key key(byte[] packet) {
+        if (packet.length < 12 + 5) {
+            return null;
+        }
+        if ((packet[2] & 0xf8) != 0) {
+            return null; // not a query or opcode is not QUERY
+        }
+        if (packet[4] != 0 || packet[5] != 1 // qdcount
+            || packet[6] != 0 || packet[7] != 0 // ancount
+            || packet[8] != 0 || packet[9] != 0) { // nscount
+            return null;
+        }
+        int offset = 12;
+        while (packet[offset] != 0) {
+            if ((packet[offset] & 0xc0) != 0) {
+                return null; // compressed or unknown label type
+            }
+            offset += 1 + packet[offset];
+            if (offset >= packet.length) {
+                return null;
+            }
+        }
+        int end = offset + 1 + 4; // the root label, qtype and qclass
+        if (end > packet.length) {
+            return null;
+        }
+        byte[] bytes = new byte[1 + end - 12];
+        bytes[0] = (byte) (packet[2] & 0x05); // aa and rd are copied into the response
+        System.arraycopy(packet, 12, bytes, 1, end - 12);
+        return new Key(bytes);
+    }
+
+    Answer get(Key key) {
+        return answers.get(key);
+    }
+
+    void put(Key key, Answer answer) {
+        answers.put(key, answer);
+    }
+
+    void remove(Key key) {
+        answers.remove(key);
+    }
+
+    void clear() {
+        answers.clear();
+    }
+}
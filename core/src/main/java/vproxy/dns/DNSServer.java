@@ -8,6 +8,7 @@ import vproxybase.component.elgroup.EventLoopAttach;
 import vproxybase.component.elgroup.EventLoopGroup;
 import vproxybase.component.elgroup.EventLoopGroupAttach;
 import vproxybase.component.elgroup.EventLoopWrapper;
+import vproxybase.component.svrgroup.ServerGroup;
 import vproxybase.connection.Connector;
 import vproxybase.connection.NetEventLoop;
 import vproxybase.connection.Protocol;
@@ -21,6 +22,8 @@ import vproxybase.dns.rdata.SRV;
 import vproxybase.processor.Hint;
 import vproxybase.selector.Handler;
 import vproxybase.selector.HandlerContext;
+import vproxybase.selector.PeriodicEvent;
+import vproxybase.selector.SelectorEventLoop;
 import vproxybase.util.*;
 import vproxybase.util.exception.AlreadyExistException;
 import vproxybase.util.exception.ClosedException;
@@ -33,6 +36,7 @@ import java.net.SocketException;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DNSServer {
     public final String alias;
@@ -40,14 +44,12 @@ public class DNSServer {
     public final EventLoopGroup eventLoopGroup;
     public final Upstream rrsets;
     public final DNSClient client;
-    private Map<String, IP> hosts;
-    private final ByteBuffer buffer = ByteBuffer.allocate(Config.udpMtu);
     private final ConcurrentHashSet<ResolvingInfoRecorder> resolvingInfoRecorders = new ConcurrentHashSet<>();
 
     private final ELGAttach elgAttach = new ELGAttach();
-    private final ELAttach elAttach = new ELAttach();
-    protected NetEventLoop loop = null;
-    private DatagramFD sock = null;
+    // one socket bond with SO_REUSEPORT for each event loop in the group
+    private final Map<SelectorEventLoop, Worker> workers = new ConcurrentHashMap<>();
+    protected volatile NetEventLoop loop = null; // one of the loops running the dns server
     private boolean needToStart = false;
     public int ttl;
     public SecurityGroup securityGroup;
@@ -57,7 +59,6 @@ public class DNSServer {
         this.bindAddress = bindAddress;
         this.eventLoopGroup = eventLoopGroup;
         this.rrsets = rrsets;
-        this.hosts = Resolver.getHosts();
         this.client = DNSClient.getDefault();
         this.ttl = ttl;
         this.securityGroup = securityGroup;
@@ -86,7 +87,20 @@ public class DNSServer {
         }
     }
 
-    class ELAttach implements EventLoopAttach {
+    class Worker implements EventLoopAttach, Handler<DatagramFD> {
+        final EventLoopWrapper el;
+        final DatagramFD sock;
+        final ByteBuffer buffer = ByteBuffer.allocate(Config.udpMtu);
+        Map<String, IP> hosts = Resolver.getHosts();
+        final AnswerCache answers = new AnswerCache();
+        PeriodicEvent reloadHosts;
+        volatile boolean closed = false;
+
+        Worker(EventLoopWrapper el, DatagramFD sock) {
+            this.el = el;
+            this.sock = sock;
+        }
+
         @Override
         public String id() {
             return "DNSServer:" + alias;
@@ -94,15 +108,105 @@ public class DNSServer {
 
         @Override
         public void onClose() {
-            Logger.error(LogType.IMPROPER_USE, "closing event loop which runs dns-server " + alias + ", the dns-server will be stopped");
-            stop();
-            // try to start again
-            try {
-                start();
-            } catch (IOException e) {
-                Logger.error(LogType.ALERT, "restarting dns server failed, wait for further operation", e);
+            assert Logger.lowLevelDebug("the event loop " + el.alias + " which runs dns-server " + alias + " is closing");
+            removeWorker(this);
+            restart();
+        }
+
+        @Override
+        public void accept(HandlerContext<DatagramFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void connected(HandlerContext<DatagramFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void readable(HandlerContext<DatagramFD> ctx) {
+            while (true) { // read until no packet available
+                buffer.limit(buffer.capacity()).position(0);
+                IPPort remote;
+                try {
+                    remote = ctx.getChannel().receive(buffer);
+                } catch (IOException e) {
+                    if (closed) {
+                        return; // the socket is closed by the dns server from another thread
+                    }
+                    Logger.error(LogType.CONN_ERROR, "reading data from dns sock " + ctx.getChannel() + " failed", e);
+                    return;
+                }
+                if (remote == null) {
+                    return; // nothing received
+                }
+                if (!securityGroup.allow(Protocol.UDP, remote.getAddress(), remote.getPort())) {
+                    assert Logger.lowLevelDebug("remote " + remote + " rejected by security-group " + securityGroup.alias);
+                    continue;
+                }
+                int read = buffer.position();
+                if (read == 0) {
+                    return;
+                }
+                buffer.flip();
+                byte[] bytes = new byte[read];
+                buffer.get(bytes);
+                AnswerCache.Key key = AnswerCache.key(bytes);
+                if (key != null && answerFromCache(this, key, bytes, remote)) {
+                    continue;
+                }
+                ByteArray array = ByteArray.from(bytes);
+
+                List<DNSPacket> packets;
+                try {
+                    packets = Formatter.parsePackets(array);
+                } catch (InvalidDNSPacketException e) {
+                    Logger.error(LogType.INVALID_EXTERNAL_DATA, "got malformed dns packet", e);
+                    return;
+                }
+                assert Logger.lowLevelDebug("received dns packets: " + packets);
+                for (DNSPacket p : packets) {
+                    if (p.isResponse) {
+                        Logger.error(LogType.INVALID_EXTERNAL_DATA, "received dns packet response from " + remote);
+                        continue;
+                    }
+                    if (p.opcode != DNSPacket.Opcode.QUERY) {
+                        runRecursive(p, remote);
+                        continue;
+                    }
+                    handleRequest(this, p, remote, packets.size() == 1 ? key : null);
+                }
             }
         }
+
+        @Override
+        public void writable(HandlerContext<DatagramFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void removed(HandlerContext<DatagramFD> ctx) {
+            if (workers.get(el.getSelectorEventLoop()) != this) {
+                return; // removed by the dns server
+            }
+            if (el.getSelectorEventLoop().isClosed()) {
+                // the loop is closing, will be handled in onClose()
+                removeWorker(this);
+                return;
+            }
+            Logger.alert("the dns server (" + alias + ") is removed from event loop " + el.alias);
+            removeWorker(this);
+            restart();
+        }
+    }
+
+    // the event loops running the dns server, each of them has its own socket
+    public List<EventLoopWrapper> runningLoops() {
+        List<EventLoopWrapper> ret = new ArrayList<>(workers.size());
+        for (Worker w : workers.values()) {
+            ret.add(w.el);
+        }
+        return ret;
     }
 
     public void addResolvingInfoRecorder(ResolvingInfoRecorder r) {
@@ -113,7 +217,45 @@ public class DNSServer {
         resolvingInfoRecorders.remove(r);
     }
 
-    private void handleRequest(DNSPacket p, IPPort remote) {
+    private boolean answerFromCache(Worker worker, AnswerCache.Key key, byte[] request, IPPort remote) {
+        AnswerCache.Answer answer = worker.answers.get(key);
+        if (answer == null) {
+            return false;
+        }
+        if (!answer.isValid(rrsets, ttl)) {
+            assert Logger.lowLevelDebug("the cached dns answer is outdated");
+            worker.answers.remove(key);
+            return false;
+        }
+        byte[] resp = Arrays.copyOf(answer.encoded, answer.encoded.length);
+        // transaction id
+        resp[0] = request[0];
+        resp[1] = request[1];
+        if (answer.addressOffset != -1) {
+            Connector connector;
+            if (answer.type == DNSType.A) {
+                connector = answer.gh.group.nextIPv4(remote);
+            } else {
+                connector = answer.gh.group.nextIPv6(remote);
+            }
+            if (connector == null) {
+                return false; // let the normal process handle it
+            }
+            byte[] address = connector.remote.getAddress().getAddress();
+            System.arraycopy(address, 0, resp, answer.addressOffset, address.length);
+        }
+        sendBytes(worker, remote, ByteBuffer.wrap(resp));
+        return true;
+    }
+
+    private void handleRequest(Worker worker, DNSPacket p, IPPort remote, AnswerCache.Key key) {
+        // only the answers retrieved from the rrsets are cached
+        boolean cacheable = key != null && p.questions.size() == 1;
+        Upstream.ServerGroupHandle cacheGh = null;
+        int upstreamGeneration = rrsets.generation();
+        int annotationsGeneration = ServerGroup.annotationsGeneration();
+        int serversGeneration = 0;
+
         Map<String, Map<DNSType, List<Record>>> addresses = new LinkedHashMap<>();
         for (DNSQuestion q : p.questions) {
             String domain = q.qname;
@@ -124,9 +266,10 @@ public class DNSServer {
                 case SRV:
                     List<Record> records = domainMap.computeIfAbsent(q.qtype, k -> new ArrayList<>());
 
-                    IP hostResult = hosts.get(domain);
+                    IP hostResult = worker.hosts.get(domain);
                     if (hostResult != null) {
                         records.add(new Record(hostResult));
+                        cacheable = false;
                         break;
                     }
 
@@ -146,12 +289,14 @@ public class DNSServer {
                                 q.qtype == DNSType.SRV) {
                                 records.add(new Record(l3addr));
                             }
+                            cacheable = false;
                             continue;
                         } else if (domain.endsWith(".vproxy.local")) {
                             List<Record> res = runInternal(domain.substring(0, domain.length() - ".vproxy.local".length()), remote);
                             if (res != null && !res.isEmpty()) {
                                 records.addAll(res);
                             }
+                            cacheable = false;
                             // .vproxy.local. should not be requested from outside
                             continue;
                         }
@@ -164,6 +309,8 @@ public class DNSServer {
                         runRecursive(p, remote);
                         return;
                     }
+                    cacheGh = gh;
+                    serversGeneration = gh.group.serversGeneration();
                     if (q.qtype == DNSType.SRV) {
                         var servers = gh.group.getServerHandles();
                         for (var svr : servers) {
@@ -183,6 +330,7 @@ public class DNSServer {
                         }
                         if (connector == null) {
                             assert Logger.lowLevelDebug("no active server for " + domain);
+                            cacheable = false;
                             continue;
                         }
                         records.add(new Record(connector.remote));
@@ -284,7 +432,21 @@ public class DNSServer {
                 resp.additionalResources.add(r);
             }
         }
-        sendPacket(p.id, remote, resp);
+        if (!cacheable || cacheGh == null) {
+            sendPacket(p.id, remote, resp);
+            return;
+        }
+        DNSType type = p.questions.get(0).qtype;
+        byte[] encoded = resp.toByteArray().toJavaArray();
+        int addressOffset = -1;
+        if (type != DNSType.SRV) {
+            // the address of the only answer is at the end of the packet
+            addressOffset = encoded.length - (type == DNSType.A ? 4 : 16);
+        }
+        worker.answers.put(key, new AnswerCache.Answer(
+            Arrays.copyOf(encoded, encoded.length), type, addressOffset, cacheGh,
+            upstreamGeneration, annotationsGeneration, serversGeneration, ttl));
+        sendBytes(worker, remote, ByteBuffer.wrap(encoded));
     }
 
     protected IP getLocalAddressFor(IPPort remote) {
@@ -362,13 +524,37 @@ public class DNSServer {
         });
     }
 
+    // the worker of the current event loop, or any worker when called from other threads
+    // e.g. the answers of recursive lookups are sent from the dns client loop
+    private Worker currentWorker() {
+        SelectorEventLoop current = SelectorEventLoop.current();
+        if (current != null) {
+            Worker w = workers.get(current);
+            if (w != null) {
+                return w;
+            }
+        }
+        for (Worker w : workers.values()) {
+            return w;
+        }
+        return null;
+    }
+
     protected void sendPacket(int id, IPPort remote, DNSPacket p) {
+        Worker worker = currentWorker();
+        if (worker == null) {
+            assert Logger.lowLevelDebug("dns server " + alias + " is not running, drop the response to " + remote);
+            return;
+        }
         p.id = id;
-        ByteBuffer buf = ByteBuffer.wrap(p.toByteArray().toJavaArray());
+        sendBytes(worker, remote, ByteBuffer.wrap(p.toByteArray().toJavaArray()));
+    }
+
+    private void sendBytes(Worker worker, IPPort remote, ByteBuffer buf) {
         int len = buf.limit();
         int sent;
         try {
-            sent = sock.send(buf, remote);
+            sent = worker.sock.send(buf, remote);
         } catch (IOException e) {
             Logger.error(LogType.CONN_ERROR, "sending dns response packet to " + remote + " failed", e);
             return;
@@ -396,8 +582,8 @@ public class DNSServer {
         sendPacket(p.id, remote, p);
     }
 
-    public void start() throws IOException {
-        if (sock == null) { // udp sock not created yet
+    public synchronized void start() throws IOException {
+        if (workers.isEmpty()) { // udp sock not created yet
             // need to check whether it's bond
             if (Config.checkBind) {
                 ServerSock.checkBind(bindAddress);
@@ -415,114 +601,112 @@ public class DNSServer {
         }
 
         needToStart = true;
-        loop = eventLoopGroup.next();
-        if (loop == null) {
+        List<EventLoopWrapper> eventLoops = eventLoopGroup.list();
+        if (eventLoops.isEmpty()) {
             assert Logger.lowLevelDebug("no event loop in the group for now, will start later when loop available");
             return;
         }
-        if (sock != null) { // already started
-            return;
+
+        // without SO_REUSEPORT, only one socket can be bond on the address
+        boolean reusePort = ServerSock.supportReusePort();
+        for (EventLoopWrapper w : eventLoops) {
+            if (!reusePort && !workers.isEmpty()) {
+                break;
+            }
+            if (workers.containsKey(w.getSelectorEventLoop()) || w.getSelectorEventLoop().isClosed()) {
+                continue; // already started on the loop, or the loop is closing
+            }
+            startWorker(w, reusePort);
+        }
+    }
+
+    private void startWorker(EventLoopWrapper w, boolean reusePort) throws IOException {
+        DatagramFD sock = FDProvider.get().openDatagramFD();
+        Worker worker = new Worker(w, sock);
+        try {
+            sock.configureBlocking(false);
+            if (reusePort) {
+                sock.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            sock.bind(bindAddress);
+        } catch (IOException e) {
+            sock.close();
+            throw e;
         }
 
         try {
-            ((EventLoopWrapper) loop).attachResource(elAttach);
+            w.attachResource(worker);
         } catch (AlreadyExistException e) {
+            sock.close();
             Logger.shouldNotHappen("adding attachment to event loop failed", e);
             throw new IOException("adding attachment to event loop failed, should not happen, it's a bug");
         } catch (ClosedException e) {
-            throw new IOException("the event loop is already closed");
+            sock.close();
+            assert Logger.lowLevelDebug("the event loop " + w.alias + " is closed, dns server " + alias + " does not start on it");
+            return;
         }
-
-        Logger.alert("dns server " + alias + " " + bindAddress + " starts on loop " + ((EventLoopWrapper) loop).alias);
-
-        sock = FDProvider.get().openDatagramFD();
-        sock.configureBlocking(false);
-        if (ServerSock.supportReusePort()) {
-            sock.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        workers.put(w.getSelectorEventLoop(), worker);
+        try {
+            w.getSelectorEventLoop().add(sock, EventSet.read(), null, worker);
+        } catch (IOException e) {
+            removeWorker(worker);
+            throw e;
         }
-        sock.bind(bindAddress);
-        loop.getSelectorEventLoop().add(sock, EventSet.read(), null, new Handler<>() {
-            @Override
-            public void accept(HandlerContext<DatagramFD> ctx) {
-                // will not fire
-            }
-
-            @Override
-            public void connected(HandlerContext<DatagramFD> ctx) {
-                // will not fire
-            }
-
-            @Override
-            public void readable(HandlerContext<DatagramFD> ctx) {
-                while (true) { // read until no packet available
-                    buffer.limit(buffer.capacity()).position(0);
-                    IPPort remote;
-                    try {
-                        remote = ctx.getChannel().receive(buffer);
-                    } catch (IOException e) {
-                        Logger.error(LogType.CONN_ERROR, "reading data from dns sock " + ctx.getChannel() + " failed", e);
-                        return;
-                    }
-                    if (remote == null) {
-                        return; // nothing received
-                    }
-                    if (!securityGroup.allow(Protocol.UDP, remote.getAddress(), remote.getPort())) {
-                        assert Logger.lowLevelDebug("remote " + remote + " rejected by security-group " + securityGroup.alias);
-                        continue;
-                    }
-                    int read = buffer.position();
-                    if (read == 0) {
-                        return;
-                    }
-                    buffer.flip();
-                    byte[] bytes = new byte[read];
-                    buffer.get(bytes);
-                    ByteArray array = ByteArray.from(bytes);
-
-                    List<DNSPacket> packets;
-                    try {
-                        packets = Formatter.parsePackets(array);
-                    } catch (InvalidDNSPacketException e) {
-                        Logger.error(LogType.INVALID_EXTERNAL_DATA, "got malformed dns packet", e);
-                        return;
-                    }
-                    assert Logger.lowLevelDebug("received dns packets: " + packets);
-                    for (DNSPacket p : packets) {
-                        if (p.isResponse) {
-                            Logger.error(LogType.INVALID_EXTERNAL_DATA, "received dns packet response from " + remote);
-                            continue;
-                        }
-                        if (p.opcode != DNSPacket.Opcode.QUERY) {
-                            runRecursive(p, remote);
-                            continue;
-                        }
-                        handleRequest(p, remote);
-                    }
-                }
+        // start reloading hosts
+        worker.reloadHosts = w.getSelectorEventLoop().period(30_000, () -> {
+            Map<String, IP> hosts = Resolver.getHosts();
+            if (!hosts.equals(worker.hosts)) {
+                worker.hosts = hosts;
+                worker.answers.clear(); // the cached domains might be defined in hosts now
             }
+        });
+        if (loop == null) {
+            loop = w;
+        }
 
-            @Override
-            public void writable(HandlerContext<DatagramFD> ctx) {
-                // will not fire
-            }
+        Logger.alert("dns server " + alias + " " + bindAddress + " starts on loop " + w.alias);
+    }
 
-            @Override
-            public void removed(HandlerContext<DatagramFD> ctx) {
-                Logger.alert("the current dns server (" + alias + ") is removed from event loop");
-                stop();
-                try {
-                    start();
-                } catch (IOException e) {
-                    Logger.error(LogType.IMPROPER_USE, "starting dns-server (" + alias + ") failed");
-                }
-            }
-        });
+    private synchronized void removeWorker(Worker worker) {
+        if (!workers.remove(worker.el.getSelectorEventLoop(), worker)) {
+            return; // already removed
+        }
+        worker.closed = true;
+        try {
+            worker.el.detachResource(worker);
+        } catch (NotFoundException ignore) {
+        }
+        if (worker.reloadHosts != null) {
+            worker.reloadHosts.cancel();
+        }
+        try {
+            worker.el.getSelectorEventLoop().remove(worker.sock);
+        } catch (Throwable ignore) {
+        }
+        try {
+            worker.sock.close();
+        } catch (IOException ignore) {
+        }
+        if (loop == worker.el) {
+            Worker another = currentWorker();
+            loop = another == null ? null : another.el;
+        }
+        assert Logger.lowLevelDebug("dns server " + alias + " is removed from loop " + worker.el.alias);
+    }
 
-        // start reloading hosts
-        loop.getSelectorEventLoop().period(30_000, () -> hosts = Resolver.getHosts());
+    // start on the loops which are not running the dns server
+    private void restart() {
+        if (!needToStart) {
+            return;
+        }
+        try {
+            start();
+        } catch (IOException e) {
+            Logger.error(LogType.ALERT, "restarting dns server " + alias + " failed, wait for further operation", e);
+        }
     }
 
-    public void stop() {
+    public synchronized void stop() {
         if (!needToStart) {
             return;
         }
@@ -532,27 +716,10 @@ public class DNSServer {
             eventLoopGroup.detachResource(elgAttach);
         } catch (NotFoundException ignore) {
         }
-        if (loop instanceof EventLoopWrapper) {
-            try {
-                ((EventLoopWrapper) loop).detachResource(elAttach);
-            } catch (NotFoundException ignore) {
-            }
-        }
-
-        if (sock != null) {
-            if (loop != null) {
-                try {
-                    loop.getSelectorEventLoop().remove(sock);
-                } catch (Throwable ignore) {
-                }
-            }
-            try {
-                sock.close();
-            } catch (IOException ignore) {
-            }
+        for (Worker w : new ArrayList<>(workers.values())) {
+            removeWorker(w);
         }
         loop = null;
-        sock = null;
         assert Logger.lowLevelDebug("dns server " + alias + " stopped");
     }
 }
@@ -26,12 +26,13 @@ import vproxyx.websocks.relay.DomainBinder;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class AgentDNSServer extends DNSServer {
     private final Map<String, ServerGroup> serverGroups;
     private final Map<String, List<DomainChecker>> resolves;
-    private final Map<String, IP> cache = new HashMap<>();
+    private final Map<String, IP> cache = new ConcurrentHashMap<>(); // accessed from all loops of the dns server
     private final List<DomainChecker> selfDomains = new LinkedList<>();
     private final List<DomainChecker> bondDomains = new LinkedList<>();
     private final ConfigProcessor config;
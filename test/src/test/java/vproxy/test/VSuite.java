@@ -11,13 +11,26 @@ import vproxy.test.cases.*;
     TestTcpLB.class,
     TestNetMask.class,
     TestTimer.class,
+    TestTimingWheel.class,
+    TestDirectBufferPool.class,
+    TestRingBuffer.class,
+    TestSplicePipeRingBuffer.class,
+    TestFastOpen.class,
     TestResolver.class,
+    TestResolverCache.class,
+    TestDNSClient.class,
+    TestDNSServer.class,
     TestSocks5.class,
     TestConnectClient.class,
     TestSSL.class,
     TestProtocols.class,
     TestHttp1Parser.class,
     TestHealthCheck.class,
+    TestHealthCheckScheduler.class,
+    TestServerGroupMethod.class,
+    TestSvrHandlePool.class,
+    TestOutlierDetection.class,
+    TestUpstreamSearch.class,
     TestPacket.class,
     TestRouteTable.class,
     TestTCP.class,
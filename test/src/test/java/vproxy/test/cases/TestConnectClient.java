@@ -14,7 +14,15 @@ import vproxybase.selector.SelectorEventLoop;
 import vproxybase.util.BlockCallback;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.channels.InterruptedByTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -150,4 +158,167 @@ public class TestConnectClient {
             assertTrue(e instanceof InterruptedByTimeoutException);
         }
     }
+
+    // a blocking http server, serves the responses on each connection until the client closes it
+    static class HttpServer implements AutoCloseable {
+        final ServerSocket ss;
+        final AtomicInteger accepted = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        // the response is written in these parts one by one
+        final List<String> parts;
+        // close the connection after responding
+        final boolean closeAfterResponse;
+
+        HttpServer(List<String> parts, boolean closeAfterResponse) throws IOException {
+            this.parts = parts;
+            this.closeAfterResponse = closeAfterResponse;
+            ss = new ServerSocket();
+            ss.bind(new InetSocketAddress("127.0.0.1", 0));
+            Thread t = new Thread(() -> {
+                while (true) {
+                    Socket sock;
+                    try {
+                        sock = ss.accept();
+                    } catch (IOException e) {
+                        return; // closed
+                    }
+                    accepted.incrementAndGet();
+                    Thread h = new Thread(() -> serve(sock), "http-conn");
+                    h.setDaemon(true);
+                    h.start();
+                }
+            }, "http-accept");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        int port() {
+            return ss.getLocalPort();
+        }
+
+        private void serve(Socket sock) {
+            try (sock) {
+                InputStream in = sock.getInputStream();
+                OutputStream out = sock.getOutputStream();
+                while (readRequest(in)) {
+                    requests.incrementAndGet();
+                    for (int i = 0; i < parts.size(); ++i) {
+                        if (i != 0) {
+                            Thread.sleep(30);
+                        }
+                        out.write(parts.get(i).getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    }
+                    if (closeAfterResponse) {
+                        return;
+                    }
+                }
+            } catch (Exception ignore) {
+            }
+        }
+
+        // the health check request has no body
+        private static boolean readRequest(InputStream in) throws IOException {
+            int matched = 0;
+            byte[] end = "\r\n\r\n".getBytes();
+            while (matched < end.length) {
+                int b = in.read();
+                if (b == -1)
+                    return false;
+                matched = (b == end[matched]) ? matched + 1 : (b == end[0] ? 1 : 0);
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ss.close();
+        }
+    }
+
+    private static final String OK_RESP = "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok";
+
+    private void doHttpCheck(ConnectClient client) throws Exception {
+        BlockCallback<ConnectResult, IOException> cb = new BlockCallback<>();
+        // the client keeps the connection state, handle it on the loop
+        netEventLoop.getSelectorEventLoop().runOnLoop(() -> client.handle(cb));
+        cb.block();
+    }
+
+    private ConnectClient httpClient(HttpServer server) {
+        return new ConnectClient(netEventLoop,
+            new IPPort("127.0.0.1", server.port()),
+            CheckProtocol.http,
+            1000,
+            new AnnotatedHcConfig());
+    }
+
+    @Test
+    public void httpKeepAlive() throws Exception {
+        try (HttpServer server = new HttpServer(List.of(OK_RESP), false)) {
+            ConnectClient client = httpClient(server);
+            for (int i = 0; i < 3; ++i) {
+                doHttpCheck(client);
+            }
+            assertEquals(3, server.requests.get());
+            assertEquals("the connection should be reused", 1, server.accepted.get());
+            client.stop();
+        }
+    }
+
+    @Test
+    public void httpConnectionClose() throws Exception {
+        try (HttpServer server = new HttpServer(List.of(
+            "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 2\r\n\r\nok"), true)) {
+            ConnectClient client = httpClient(server);
+            for (int i = 0; i < 3; ++i) {
+                doHttpCheck(client);
+            }
+            assertEquals(3, server.requests.get());
+            assertEquals("should reconnect for each probe", 3, server.accepted.get());
+            client.stop();
+        }
+    }
+
+    @Test
+    public void httpIdleConnectionClosedByServer() throws Exception {
+        // the server closes without telling, the next probe retries with a new connection
+        try (HttpServer server = new HttpServer(List.of(OK_RESP), true)) {
+            ConnectClient client = httpClient(server);
+            doHttpCheck(client);
+            Thread.sleep(100);
+            doHttpCheck(client);
+            assertEquals(2, server.requests.get());
+            assertEquals(2, server.accepted.get());
+            client.stop();
+        }
+    }
+
+    @Test
+    public void httpSplitResponse() throws Exception {
+        try (HttpServer server = new HttpServer(List.of(
+            "HTTP/1.1 20", "0 OK\r\nContent-Le", "ngth: 2\r\n\r\no", "k"), false)) {
+            ConnectClient client = httpClient(server);
+            doHttpCheck(client);
+            doHttpCheck(client);
+            assertEquals(2, server.requests.get());
+            assertEquals("the connection should be reused after a split response", 1, server.accepted.get());
+            client.stop();
+        }
+    }
+
+    @Test
+    public void httpUnexpectedStatus() throws Exception {
+        try (HttpServer server = new HttpServer(List.of(
+            "HTTP/1.1 500 Internal Server Error\r\nContent-Length: 0\r\n\r\n"), false)) {
+            ConnectClient client = httpClient(server);
+            try {
+                doHttpCheck(client);
+                fail();
+            } catch (IOException e) {
+                assertEquals("unexpected http response status 500", e.getMessage());
+            }
+            client.stop();
+        }
+    }
 }
@@ -0,0 +1,384 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vfd.IP;
+import vfd.IPPort;
+import vproxybase.dns.*;
+import vproxybase.dns.rdata.A;
+import vproxybase.dns.rdata.SOA;
+import vproxybase.selector.SelectorEventLoop;
+import vproxybase.util.BlockCallback;
+import vproxybase.util.ByteArray;
+import vproxybase.util.Tuple;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class TestDNSClient {
+    // a nameserver answering with the configured responder
+    static class FakeNameServer implements AutoCloseable {
+        final DatagramSocket sock;
+        final AtomicInteger queries = new AtomicInteger();
+        volatile int delay = 0; // ms
+        volatile Function<DNSPacket, DNSPacket> responder; // return null to ignore the query
+
+        FakeNameServer(Function<DNSPacket, DNSPacket> responder) throws Exception {
+            this.responder = responder;
+            sock = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+            Thread t = new Thread(this::serve, "fake-nameserver");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        IPPort address() {
+            return new IPPort("127.0.0.1", sock.getLocalPort());
+        }
+
+        private void serve() {
+            byte[] buf = new byte[2048];
+            while (true) {
+                DatagramPacket p = new DatagramPacket(buf, buf.length);
+                try {
+                    sock.receive(p);
+                } catch (Exception e) {
+                    return; // closed
+                }
+                queries.incrementAndGet();
+                try {
+                    DNSPacket req = Formatter.parsePackets(ByteArray.from(Arrays.copyOf(p.getData(), p.getLength()))).get(0);
+                    DNSPacket resp = responder.apply(req);
+                    if (resp == null)
+                        continue;
+                    if (delay > 0) {
+                        Thread.sleep(delay);
+                    }
+                    byte[] bytes = resp.toByteArray().toJavaArray();
+                    sock.send(new DatagramPacket(bytes, bytes.length, p.getSocketAddress()));
+                } catch (Exception e) {
+                    if (!sock.isClosed()) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            sock.close();
+        }
+    }
+
+    private static DNSPacket response(DNSPacket req, DNSPacket.RCode rcode) {
+        DNSPacket resp = new DNSPacket();
+        resp.id = req.id;
+        resp.isResponse = true;
+        resp.opcode = DNSPacket.Opcode.QUERY;
+        resp.rd = req.rd;
+        resp.ra = true;
+        resp.rcode = rcode;
+        resp.questions.addAll(req.questions);
+        return resp;
+    }
+
+    static DNSPacket answerA(DNSPacket req, String address, int ttl) {
+        DNSPacket resp = response(req, DNSPacket.RCode.NoError);
+        A a = new A();
+        a.address = IP.fromIPv4(address);
+        DNSResource r = new DNSResource();
+        r.name = req.questions.get(0).qname;
+        r.type = DNSType.A;
+        r.clazz = DNSClass.IN;
+        r.ttl = ttl;
+        r.rdata = a;
+        resp.answers.add(r);
+        return resp;
+    }
+
+    private static DNSPacket negative(DNSPacket req, DNSPacket.RCode rcode, int soaTtl, int soaMinimum) {
+        DNSPacket resp = response(req, rcode);
+        if (soaTtl >= 0) {
+            SOA soa = new SOA();
+            soa.mname = "ns.example.com.";
+            soa.rname = "admin.example.com.";
+            soa.serial = 1;
+            soa.refresh = 7200;
+            soa.retry = 3600;
+            soa.expire = 1209600;
+            soa.minimum = soaMinimum;
+            DNSResource r = new DNSResource();
+            r.name = "example.com.";
+            r.type = DNSType.SOA;
+            r.clazz = DNSClass.IN;
+            r.ttl = soaTtl;
+            r.rdata = soa;
+            resp.nameServers.add(r);
+        }
+        return resp;
+    }
+
+    private SelectorEventLoop loop;
+    private DNSClient client;
+    private final List<FakeNameServer> servers = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        loop = SelectorEventLoop.open();
+        loop.loop(r -> new Thread(r, "dns-client-loop"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        loop.close();
+        for (FakeNameServer s : servers) {
+            s.close();
+        }
+    }
+
+    private FakeNameServer server(Function<DNSPacket, DNSPacket> responder) throws Exception {
+        FakeNameServer s = new FakeNameServer(responder);
+        servers.add(s);
+        return s;
+    }
+
+    private void client(int timeout, int maxRetry) throws Exception {
+        List<IPPort> nameServers = new ArrayList<>();
+        for (FakeNameServer s : servers) {
+            nameServers.add(s.address());
+        }
+        client = new DNSClient(loop, DNSClient.getSocketForDNS(), nameServers, timeout, maxRetry);
+    }
+
+    // the client is not thread safe, run it on its loop
+    private BlockCallback<Tuple<List<IP>, Integer>, UnknownHostException> resolve(String domain, boolean ipv4) {
+        BlockCallback<Tuple<List<IP>, Integer>, UnknownHostException> cb = new BlockCallback<>();
+        loop.runOnLoop(() -> client.resolve(domain, ipv4, cb));
+        return cb;
+    }
+
+    private NegativeAnswerException resolveNegative(String domain) throws Exception {
+        try {
+            resolve(domain, true).block();
+            fail();
+            return null;
+        } catch (NegativeAnswerException e) {
+            return e;
+        }
+    }
+
+    @Test
+    public void recordTtl() throws Exception {
+        server(req -> answerA(req, "1.2.3.4", 123));
+        client(1000, 0);
+        Tuple<List<IP>, Integer> res = resolve("a.example.com", true).block();
+        assertEquals(List.of(IP.from("1.2.3.4")), res.left);
+        assertEquals(123, res.right.intValue());
+    }
+
+    @Test
+    public void coalesce() throws Exception {
+        FakeNameServer ns = server(req -> answerA(req, "1.2.3.4", 60));
+        ns.delay = 200;
+        client(1000, 0);
+
+        List<BlockCallback<Tuple<List<IP>, Integer>, UnknownHostException>> cbs = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            cbs.add(resolve("a.example.com", true));
+        }
+        for (var cb : cbs) {
+            assertEquals(List.of(IP.from("1.2.3.4")), cb.block().left);
+        }
+        assertEquals("concurrent lookups should share one query", 1, ns.queries.get());
+
+        // a different name or type is not shared
+        var cb1 = resolve("a.example.com", true);
+        var cb2 = resolve("b.example.com", true);
+        var cb3 = resolve("a.example.com", false);
+        cb1.block();
+        cb2.block();
+        cb3.block();
+        assertEquals(4, ns.queries.get());
+    }
+
+    @Test
+    public void coalescedFailure() throws Exception {
+        FakeNameServer ns = server(req -> negative(req, DNSPacket.RCode.NameError, 60, 30));
+        ns.delay = 200;
+        client(1000, 0);
+
+        var cb1 = resolve("a.example.com", true);
+        var cb2 = resolve("a.example.com", true);
+        for (var cb : List.of(cb1, cb2)) {
+            try {
+                cb.block();
+                fail();
+            } catch (NegativeAnswerException e) {
+                assertEquals(30, e.ttl);
+            }
+        }
+        assertEquals(1, ns.queries.get());
+    }
+
+    @Test
+    public void nxdomainTtl() throws Exception {
+        int[] soa = {600, 2};
+        server(req -> negative(req, DNSPacket.RCode.NameError, soa[0], soa[1]));
+        client(1000, 0);
+
+        assertEquals("the SOA minimum is used", 2, resolveNegative("a.example.com").ttl);
+        soa[0] = 1;
+        soa[1] = 300;
+        assertEquals("the SOA ttl is used", 1, resolveNegative("a.example.com").ttl);
+        soa[0] = -1; // no SOA record
+        assertEquals(-1, resolveNegative("a.example.com").ttl);
+    }
+
+    @Test
+    public void nodata() throws Exception {
+        server(req -> negative(req, DNSPacket.RCode.NoError, 60, 10));
+        client(1000, 0);
+        assertEquals(10, resolveNegative("a.example.com").ttl);
+    }
+
+    @Test
+    public void negativeNotRetried() throws Exception {
+        FakeNameServer ns1 = server(req -> negative(req, DNSPacket.RCode.NameError, 60, 10));
+        FakeNameServer ns2 = server(req -> answerA(req, "1.2.3.4", 60));
+        client(1000, 2);
+
+        resolveNegative("a.example.com");
+        assertEquals(1, ns1.queries.get());
+        assertEquals("the negative answer is final", 0, ns2.queries.get());
+    }
+
+    @Test
+    public void serverFailureTriesNext() throws Exception {
+        FakeNameServer ns1 = server(req -> response(req, DNSPacket.RCode.ServerFailure));
+        FakeNameServer ns2 = server(req -> answerA(req, "1.2.3.4", 60));
+        client(1000, 0);
+
+        assertEquals(List.of(IP.from("1.2.3.4")), resolve("a.example.com", true).block().left);
+        assertEquals(1, ns1.queries.get());
+        assertEquals(1, ns2.queries.get());
+    }
+
+    private DNSClient.NameServerStats stats(FakeNameServer ns) {
+        for (DNSClient.NameServerStats s : client.getNameServerStats()) {
+            if (s.address.equals(ns.address())) {
+                return s;
+            }
+        }
+        fail("stats of " + ns.address() + " not found");
+        return null;
+    }
+
+    @Test
+    public void parallel() throws Exception {
+        FakeNameServer silent = server(req -> null);
+        FakeNameServer slow = server(req -> answerA(req, "2.2.2.2", 60));
+        slow.delay = 500;
+        FakeNameServer fast = server(req -> answerA(req, "3.3.3.3", 60));
+        client(2000, 0);
+        client.setParallel(3);
+
+        long start = System.currentTimeMillis();
+        assertEquals(List.of(IP.from("3.3.3.3")), resolve("a.example.com", true).block().left);
+        long cost = System.currentTimeMillis() - start;
+        assertTrue("the first answer wins, cost " + cost, cost < 400);
+        assertEquals(1, silent.queries.get());
+        assertEquals(1, slow.queries.get());
+        assertEquals(1, fast.queries.get());
+    }
+
+    @Test
+    public void sequential() throws Exception {
+        FakeNameServer silent = server(req -> null);
+        FakeNameServer fast = server(req -> answerA(req, "3.3.3.3", 60));
+        client(300, 0);
+        assertEquals(1, client.getParallel());
+
+        long start = System.currentTimeMillis();
+        assertEquals(List.of(IP.from("3.3.3.3")), resolve("a.example.com", true).block().left);
+        long cost = System.currentTimeMillis() - start;
+        assertTrue("the next nameserver is queried after timeout, cost " + cost, cost >= 250);
+        assertEquals(1, silent.queries.get());
+        assertEquals(1, fast.queries.get());
+    }
+
+    @Test
+    public void stats() throws Exception {
+        FakeNameServer silent = server(req -> null);
+        FakeNameServer slow = server(req -> answerA(req, "2.2.2.2", 60));
+        slow.delay = 100;
+        client(300, 0);
+
+        resolve("a.example.com", true).block();
+        DNSClient.NameServerStats silentStats = stats(silent);
+        assertEquals(1, silentStats.getQueries());
+        assertEquals(0, silentStats.getAnswers());
+        assertEquals("timeout is a failure", 1, silentStats.getFailures());
+        assertEquals(0, silentStats.getSrtt(), 0);
+
+        DNSClient.NameServerStats slowStats = stats(slow);
+        assertEquals(1, slowStats.getQueries());
+        assertEquals(1, slowStats.getAnswers());
+        assertEquals(0, slowStats.getFailures());
+        assertTrue("srtt " + slowStats.getSrtt(), slowStats.getSrtt() >= 90 && slowStats.getSrtt() < 300);
+
+        // smoothed with the following samples
+        slow.delay = 0;
+        client.setNameServers(List.of(slow.address()));
+        for (int i = 0; i < 3; ++i) {
+            resolve("b" + i + ".example.com", true).block();
+        }
+        double srtt = stats(slow).getSrtt();
+        assertTrue("srtt " + srtt, srtt > 5 && srtt < 90);
+        assertEquals(4, stats(slow).getAnswers());
+    }
+
+    @Test
+    public void errorResponseCountedAsFailure() throws Exception {
+        FakeNameServer failing = server(req -> response(req, DNSPacket.RCode.ServerFailure));
+        server(req -> answerA(req, "1.2.3.4", 60));
+        client(1000, 0);
+        resolve("a.example.com", true).block();
+        assertEquals(1, stats(failing).getFailures());
+        assertEquals(0, stats(failing).getAnswers());
+    }
+
+    @Test
+    public void rankedByStats() throws Exception {
+        FakeNameServer silent1 = server(req -> null);
+        FakeNameServer silent2 = server(req -> null);
+        FakeNameServer fast = server(req -> answerA(req, "3.3.3.3", 60));
+        client(300, 0);
+        client.setParallel(2);
+
+        // the first two in the configured order time out, then the third one answers
+        resolve("a.example.com", true).block();
+        assertEquals(1, stats(silent1).getFailures());
+        assertEquals(1, stats(silent2).getFailures());
+        assertEquals(1, fast.queries.get());
+
+        // the answering nameserver is now ranked first
+        long start = System.currentTimeMillis();
+        resolve("b.example.com", true).block();
+        long cost = System.currentTimeMillis() - start;
+        assertTrue("should not wait for the failed nameservers, cost " + cost, cost < 250);
+        assertEquals(2, fast.queries.get());
+        assertEquals(3, silent1.queries.get() + silent2.queries.get());
+    }
+}
@@ -0,0 +1,312 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vfd.IP;
+import vfd.IPPort;
+import vproxy.component.secure.SecurityGroup;
+import vproxy.component.svrgroup.Upstream;
+import vproxy.dns.AnswerCache;
+import vproxy.dns.DNSServer;
+import vproxybase.component.check.CheckProtocol;
+import vproxybase.component.check.HealthCheckConfig;
+import vproxybase.component.elgroup.EventLoopGroup;
+import vproxybase.component.elgroup.EventLoopWrapper;
+import vproxybase.component.svrgroup.Method;
+import vproxybase.component.svrgroup.ServerGroup;
+import vproxybase.connection.ServerSock;
+import vproxybase.dns.*;
+import vproxybase.dns.Formatter;
+import vproxybase.dns.rdata.A;
+import vproxybase.dns.rdata.AAAA;
+import vproxybase.dns.rdata.SRV;
+import vproxybase.util.AnnotationKeys;
+import vproxybase.util.ByteArray;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static vproxy.test.tool.CaseUtils.waitUntil;
+
+public class TestDNSServer {
+    private EventLoopGroup elg;
+    private Upstream rrsets;
+    private DNSServer dnsServer;
+    private IPPort bindAddress;
+
+    @Before
+    public void setUp() throws Exception {
+        elg = new EventLoopGroup("elg");
+        elg.add("el0");
+        elg.add("el1");
+        elg.add("el2");
+        rrsets = new Upstream("ups");
+        int port;
+        try (DatagramSocket s = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"))) {
+            port = s.getLocalPort();
+        }
+        bindAddress = new IPPort("127.0.0.1", port);
+        dnsServer = new DNSServer("dns0", bindAddress, elg, rrsets, 0, SecurityGroup.allowAll());
+    }
+
+    @After
+    public void tearDown() {
+        dnsServer.stop();
+        elg.close();
+    }
+
+    private Set<String> runningLoops() {
+        return dnsServer.runningLoops().stream().map(w -> w.alias).collect(Collectors.toSet());
+    }
+
+    private Set<String> expectedLoops(String... aliases) {
+        if (!ServerSock.supportReusePort()) {
+            // only one socket can be bond
+            return Set.of(aliases[0]);
+        }
+        return Set.of(aliases);
+    }
+
+    static DNSPacket query(int id, String name, DNSType type) {
+        DNSPacket p = new DNSPacket();
+        p.id = id;
+        p.isResponse = false;
+        p.opcode = DNSPacket.Opcode.QUERY;
+        p.rd = true;
+        p.rcode = DNSPacket.RCode.NoError;
+        DNSQuestion q = new DNSQuestion();
+        q.qname = name;
+        q.qtype = type;
+        q.qclass = DNSClass.IN;
+        p.questions.add(q);
+        return p;
+    }
+
+    // send the request from a new socket, the kernel picks the reuseport socket by the source port
+    static DNSPacket request(IPPort server, byte[] req) throws Exception {
+        try (DatagramSocket sock = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"))) {
+            sock.setSoTimeout(2000);
+            sock.send(new DatagramPacket(req, req.length, new InetSocketAddress(server.getAddress().toInetAddress(), server.getPort())));
+            byte[] buf = new byte[2048];
+            DatagramPacket resp = new DatagramPacket(buf, buf.length);
+            sock.receive(resp);
+            return Formatter.parsePackets(ByteArray.from(Arrays.copyOf(resp.getData(), resp.getLength()))).get(0);
+        }
+    }
+
+    // bind without SO_REUSEPORT, it fails if any socket of the dns server is still open
+    private boolean canBind() {
+        try (DatagramSocket ignore = new DatagramSocket(new InetSocketAddress(bindAddress.getAddress().toInetAddress(), bindAddress.getPort()))) {
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // every request should be answered, a leaked socket would swallow some of them
+    private void checkAllAnswered(int times) throws Exception {
+        for (int i = 0; i < times; ++i) {
+            DNSPacket resp = request(bindAddress, query(i + 1, "who.am.i.vproxy.local.", DNSType.A).toByteArray().toJavaArray());
+            assertEquals(i + 1, resp.id);
+            assertEquals(1, resp.answers.size());
+            assertEquals(IP.from("127.0.0.1"), ((A) resp.answers.get(0).rdata).address);
+        }
+    }
+
+    @Test
+    public void workerOnEveryLoop() throws Exception {
+        dnsServer.start();
+        assertEquals(expectedLoops("el0", "el1", "el2"), runningLoops());
+        checkAllAnswered(30);
+
+        // starting again does not bind more sockets
+        dnsServer.start();
+        assertEquals(expectedLoops("el0", "el1", "el2"), runningLoops());
+    }
+
+    @Test
+    public void loopRemoved() throws Exception {
+        dnsServer.start();
+        elg.remove(runningLoops().contains("el1") ? "el1" : "el0");
+        waitUntil("the worker should be removed", () -> dnsServer.runningLoops().size() == expectedLoops("el0", "el2").size());
+        Set<String> running = runningLoops();
+        if (ServerSock.supportReusePort()) {
+            assertEquals(Set.of("el0", "el2"), running);
+        } else {
+            // restarted on another loop
+            assertFalse(running.contains("el0"));
+        }
+        for (EventLoopWrapper w : dnsServer.runningLoops()) {
+            assertFalse(w.getSelectorEventLoop().isClosed());
+        }
+        checkAllAnswered(30);
+
+        // all sockets are closed when stopped, the address can be bond without SO_REUSEPORT
+        dnsServer.stop();
+        assertTrue(dnsServer.runningLoops().isEmpty());
+        // the fd is released after the loop handles the cancelled key
+        waitUntil("all sockets should be closed", this::canBind);
+    }
+
+    @Test
+    public void loopAdded() throws Exception {
+        dnsServer.start();
+        elg.add("el3");
+        assertEquals(expectedLoops("el0", "el1", "el2", "el3"), runningLoops());
+        checkAllAnswered(30);
+    }
+
+    @Test
+    public void startWithoutLoop() throws Exception {
+        EventLoopGroup empty = new EventLoopGroup("empty");
+        DNSServer server = new DNSServer("dns1", bindAddress, empty, rrsets, 0, SecurityGroup.allowAll());
+        try {
+            server.start();
+            assertTrue(server.runningLoops().isEmpty());
+            empty.add("el0");
+            assertEquals(Set.of("el0"), server.runningLoops().stream().map(w -> w.alias).collect(Collectors.toSet()));
+            checkAllAnswered(3);
+
+            // not started again after stopped
+            server.stop();
+            empty.add("el1");
+            assertTrue(server.runningLoops().isEmpty());
+        } finally {
+            server.stop();
+            empty.close();
+        }
+    }
+
+    private static byte[] queryBytes(int id, String name, DNSType type) {
+        return query(id, name, type).toByteArray().toJavaArray();
+    }
+
+    @Test
+    public void answerCacheKey() {
+        byte[] packet = queryBytes(1, "example.com.", DNSType.A);
+        AnswerCache.Key key = AnswerCache.key(packet);
+        assertNotNull(key);
+        assertEquals("the transaction id is not a part of the key", key, AnswerCache.key(queryBytes(2, "example.com.", DNSType.A)));
+        assertNotEquals(key, AnswerCache.key(queryBytes(1, "example.com.", DNSType.AAAA)));
+        assertNotEquals(key, AnswerCache.key(queryBytes(1, "example.org.", DNSType.A)));
+        DNSPacket noRecursion = query(1, "example.com.", DNSType.A);
+        noRecursion.rd = false;
+        assertNotEquals("rd is copied into the response", key, AnswerCache.key(noRecursion.toByteArray().toJavaArray()));
+
+        // truncated
+        for (int len = 0; len < packet.length; ++len) {
+            assertNull("truncated to " + len, AnswerCache.key(Arrays.copyOf(packet, len)));
+        }
+
+        // qdcount != 1
+        DNSPacket twoQuestions = query(1, "example.com.", DNSType.A);
+        twoQuestions.questions.addAll(query(1, "example.org.", DNSType.A).questions);
+        assertNull(AnswerCache.key(twoQuestions.toByteArray().toJavaArray()));
+        byte[] noQuestion = Arrays.copyOf(packet, packet.length);
+        noQuestion[5] = 0;
+        assertNull(AnswerCache.key(noQuestion));
+
+        // not a standard query
+        for (DNSPacket.Opcode opcode : DNSPacket.Opcode.values()) {
+            if (opcode == DNSPacket.Opcode.QUERY)
+                continue;
+            byte[] bytes = Arrays.copyOf(packet, packet.length);
+            bytes[2] |= (byte) (opcode.code << 3);
+            assertNull(opcode.name(), AnswerCache.key(bytes));
+        }
+        byte[] response = Arrays.copyOf(packet, packet.length);
+        response[2] |= (byte) 0x80;
+        assertNull(AnswerCache.key(response));
+
+        // compressed name: a pointer to the header
+        byte[] compressed = new byte[12 + 2 + 4];
+        System.arraycopy(packet, 0, compressed, 0, 12);
+        compressed[12] = (byte) 0xc0;
+        compressed[13] = 0;
+        System.arraycopy(packet, packet.length - 4, compressed, 14, 4);
+        assertNull(AnswerCache.key(compressed));
+    }
+
+    // a dns server on one loop, so all requests share one answer cache
+    private ServerGroup cachedRrsets() throws Exception {
+        dnsServer.stop();
+        elg.remove("el1");
+        elg.remove("el2");
+        ServerGroup sg = new ServerGroup("sg0", elg, new HealthCheckConfig(1000, 60_000, 1, 1, CheckProtocol.none), Method.wrr);
+        sg.setAnnotations(Map.of(AnnotationKeys.ServerGroup_HintHost, "example.com"));
+        for (String ip : List.of("10.0.0.1", "10.0.0.2", "fd00::1", "fd00::2")) {
+            sg.add(ip, new IPPort(ip, 80), 10).setHealthy(true);
+        }
+        rrsets.add(sg, 10);
+        dnsServer.start();
+        assertEquals(Set.of("el0"), runningLoops());
+        return sg;
+    }
+
+    @Test
+    public void answerCacheHitPatched() throws Exception {
+        cachedRrsets();
+        for (DNSType type : List.of(DNSType.A, DNSType.AAAA)) {
+            Set<IP> addresses = new HashSet<>();
+            for (int i = 0; i < 10; ++i) {
+                int id = 100 + i;
+                DNSPacket resp = request(bindAddress, queryBytes(id, "example.com.", type));
+                assertEquals("the transaction id is patched", id, resp.id);
+                assertEquals(1, resp.answers.size());
+                DNSResource r = resp.answers.get(0);
+                assertEquals(type, r.type);
+                addresses.add(type == DNSType.A ? ((A) r.rdata).address : ((AAAA) r.rdata).address);
+            }
+            if (type == DNSType.A) {
+                assertEquals("the address is patched with the chosen server", Set.of(IP.from("10.0.0.1"), IP.from("10.0.0.2")), addresses);
+            } else {
+                assertEquals("the address is patched with the chosen server", Set.of(IP.from("fd00::1"), IP.from("fd00::2")), addresses);
+            }
+        }
+
+        // the ttl change is applied
+        dnsServer.ttl = 30;
+        assertEquals(30, request(bindAddress, queryBytes(1, "example.com.", DNSType.A)).answers.get(0).ttl);
+    }
+
+    // target -> weight
+    private Map<IP, Integer> srvTargets() throws Exception {
+        DNSPacket resp = request(bindAddress, queryBytes(1, "example.com.", DNSType.SRV));
+        Map<IP, Integer> ret = new HashMap<>();
+        for (DNSResource r : resp.answers) {
+            assertEquals(DNSType.SRV, r.type);
+            SRV srv = (SRV) r.rdata;
+            ret.put(IP.from(srv.target.substring(0, srv.target.length() - 1)), srv.weight); // remove the tailing dot
+        }
+        return ret;
+    }
+
+    @Test
+    public void answerCacheSrvInvalidated() throws Exception {
+        ServerGroup sg = cachedRrsets();
+        Map<IP, Integer> expected = new HashMap<>();
+        for (String ip : new String[]{"10.0.0.1", "10.0.0.2", "fd00::1", "fd00::2"}) {
+            expected.put(IP.from(ip), 10);
+        }
+        assertEquals(expected, srvTargets());
+        assertEquals("served from the cache", expected, srvTargets());
+
+        sg.add("10.0.0.3", new IPPort("10.0.0.3", 80), 10).setHealthy(true);
+        expected.put(IP.from("10.0.0.3"), 10);
+        assertEquals("the servers generation changed", expected, srvTargets());
+
+        sg.getServerHandles().stream().filter(h -> h.alias.equals("10.0.0.1")).findFirst().orElseThrow().setWeight(5);
+        expected.put(IP.from("10.0.0.1"), 5);
+        assertEquals("the servers generation changed", expected, srvTargets());
+
+        sg.remove("10.0.0.2");
+        expected.remove(IP.from("10.0.0.2"));
+        assertEquals("the servers generation changed", expected, srvTargets());
+    }
+}
@@ -0,0 +1,132 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vproxybase.selector.SelectorEventLoop;
+import vproxybase.util.BlockCallback;
+import vproxybase.util.DirectBufferPool;
+import vproxybase.util.RingBuffer;
+import vproxybase.util.nio.ByteArrayChannel;
+import vproxybase.util.ringbuffer.SimpleRingBuffer;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TestDirectBufferPool {
+    private SelectorEventLoop loop;
+    private DirectBufferPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        loop = SelectorEventLoop.open();
+        loop.loop(r -> new Thread(r, "EventLoop"));
+        pool = loop.getBufferPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        loop.close();
+    }
+
+    interface LoopAction<T> {
+        T run() throws Exception;
+    }
+
+    private <T> T runOnLoop(LoopAction<T> f) throws Exception {
+        BlockCallback<T, Exception> cb = new BlockCallback<>();
+        loop.runOnLoop(() -> {
+            try {
+                cb.succeeded(f.run());
+            } catch (Exception e) {
+                cb.failed(e);
+            }
+        });
+        return cb.block();
+    }
+
+    @Test
+    public void reuseOnLoopThread() throws Exception {
+        SimpleRingBuffer buf = runOnLoop(() -> RingBuffer.allocateDirect(1024));
+        assertEquals(0, pool.getHit());
+        assertEquals(1, pool.getMiss());
+
+        runOnLoop(() -> {
+            buf.clean();
+            return null;
+        });
+        assertEquals(1, pool.getReturned());
+        assertEquals(1, pool.getCachedCount());
+        assertEquals(1024, pool.getCachedBytes());
+
+        SimpleRingBuffer buf2 = runOnLoop(() -> RingBuffer.allocateDirect(1024));
+        assertEquals(1, pool.getHit());
+        assertEquals(1, pool.getMiss());
+        assertEquals(0, pool.getCachedCount());
+        assertEquals(0, buf2.used());
+        assertEquals(1024, buf2.free());
+
+        // different capacity
+        runOnLoop(() -> RingBuffer.allocateDirect(2048));
+        assertEquals(1, pool.getHit());
+        assertEquals(2, pool.getMiss());
+    }
+
+    @Test
+    public void returnFromOtherThread() throws Exception {
+        SimpleRingBuffer buf = runOnLoop(() -> RingBuffer.allocateDirect(1024));
+        buf.clean(); // not on the loop thread
+        assertEquals(1, pool.getReturned());
+        assertEquals(1, pool.getCachedCount());
+
+        runOnLoop(() -> RingBuffer.allocateDirect(1024));
+        assertEquals(1, pool.getHit());
+        assertEquals(1, pool.getMiss());
+        assertEquals(0, pool.getCachedCount());
+    }
+
+    @Test
+    public void notOnLoopThread() {
+        RingBuffer.allocateDirect(1024).clean();
+        assertEquals(0, pool.getHit());
+        assertEquals(0, pool.getMiss());
+        assertEquals(0, pool.getReturned());
+    }
+
+    @Test
+    public void releaseWhenEmpty() throws Exception {
+        SimpleRingBuffer buf = runOnLoop(() -> SimpleRingBuffer.allocateDirect(1024, true));
+        // not attached yet
+        assertEquals(0, pool.getMiss());
+        assertEquals(1024, buf.free());
+
+        runOnLoop(() -> buf.storeBytesFrom(ByteArrayChannel.fromFull(new byte[]{1, 2, 3})));
+        assertEquals(1, pool.getMiss());
+        assertEquals(3, buf.used());
+        assertEquals(0, pool.getCachedCount());
+
+        byte[] b = runOnLoop(() -> {
+            ByteArrayChannel chnl = ByteArrayChannel.fromEmpty(3);
+            buf.writeTo(chnl);
+            return chnl.getBytes();
+        });
+        assertArrayEquals(new byte[]{1, 2, 3}, b);
+        // released because it's empty
+        assertEquals(0, buf.used());
+        assertEquals(1, pool.getReturned());
+        assertEquals(1, pool.getCachedCount());
+
+        // attached again
+        runOnLoop(() -> buf.storeBytesFrom(ByteArrayChannel.fromFull(new byte[]{4, 5})));
+        assertEquals(1, pool.getHit());
+        assertEquals(0, pool.getCachedCount());
+        assertArrayEquals(new byte[]{4, 5}, buf.getBytes());
+
+        runOnLoop(() -> {
+            buf.clean();
+            return null;
+        });
+        assertEquals(1, pool.getCachedCount());
+    }
+}
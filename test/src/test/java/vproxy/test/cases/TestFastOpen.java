@@ -0,0 +1,194 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vfd.FDProvider;
+import vfd.IPPort;
+import vfd.posix.Posix;
+import vfd.posix.PosixFDs;
+import vfd.posix.PosixSocketFD;
+import vproxy.component.proxy.Proxy;
+import vproxy.component.proxy.ProxyNetConfig;
+import vproxybase.connection.*;
+import vproxybase.processor.Hint;
+import vproxybase.selector.SelectorEventLoop;
+import vproxybase.util.RingBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static vproxy.test.tool.CaseUtils.TIMEOUT;
+import static vproxy.test.tool.CaseUtils.waitUntil;
+
+public class TestFastOpen {
+    private static final int BACKEND_PORT = 18095;
+    private static final int PROXY_PORT = 18096;
+
+    private SelectorEventLoop selectorEventLoop;
+    private NetEventLoop loop;
+    private ServerSocket backend;
+    private Proxy proxy;
+    private ServerSock sock;
+
+    @Before
+    public void setUp() throws Exception {
+        selectorEventLoop = SelectorEventLoop.open();
+        loop = new NetEventLoop(selectorEventLoop);
+        selectorEventLoop.loop(r -> new Thread(r, "fast-open-loop"));
+
+        backend = new ServerSocket();
+        backend.bind(new java.net.InetSocketAddress("127.0.0.1", BACKEND_PORT));
+        backend.setSoTimeout(TIMEOUT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (proxy != null) {
+            proxy.stop();
+        }
+        if (sock != null) {
+            sock.close();
+        }
+        backend.close();
+        // close on the loop thread, closing the posix selector does not wake up a blocking poll
+        selectorEventLoop.runOnLoop(() -> {
+            try {
+                selectorEventLoop.close();
+            } catch (IOException ignore) {
+            }
+        });
+
+        // the fallback test disables fast open for the whole process
+        Field f = PosixSocketFD.class.getDeclaredField("fastOpenDisabled");
+        f.setAccessible(true);
+        f.set(null, false);
+    }
+
+    private static String read(Socket socket, int len) throws IOException {
+        socket.setSoTimeout(TIMEOUT);
+        InputStream in = socket.getInputStream();
+        byte[] bytes = new byte[len];
+        int off = 0;
+        while (off < len) {
+            int n = in.read(bytes, off, len - off);
+            assertTrue(n > 0);
+            off += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void preReadBytesAreSentWhenConnecting() throws Exception {
+        CountDownLatch sent = new CountDownLatch(1);
+        int[] bufferedWhenConnecting = {-1};
+        Connector connector = new Connector(new IPPort("127.0.0.1", BACKEND_PORT)) {
+            @Override
+            public ConnectableConnection connect(Connection accepted, ConnectionOpts opts, RingBuffer in, RingBuffer out) throws IOException {
+                bufferedWhenConnecting[0] = out.used();
+                return super.connect(accepted, opts, in, out);
+            }
+
+            @Override
+            public boolean fastOpen() {
+                return true;
+            }
+        };
+        sock = ServerSock.create(new IPPort("127.0.0.1", PROXY_PORT));
+        proxy = new Proxy(new ProxyNetConfig()
+            .setAcceptLoop(loop)
+            .setServer(sock)
+            .setHandleLoopProvider(acceptLoop -> loop)
+            .setConnGen((Connection accepted, Hint hint) -> {
+                // make sure the client bytes arrived before the proxy handles the connection
+                try {
+                    assertTrue(sent.await(TIMEOUT, TimeUnit.MILLISECONDS));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return connector;
+            }), s -> {
+        });
+        proxy.handle();
+
+        try (Socket client = new Socket("127.0.0.1", PROXY_PORT)) {
+            client.getOutputStream().write("hello".getBytes());
+            sent.countDown();
+
+            try (Socket server = backend.accept()) {
+                assertEquals("hello", read(server, 5));
+                assertEquals("the client bytes should be buffered before connecting", 5, bufferedWhenConnecting[0]);
+
+                server.getOutputStream().write("world".getBytes());
+                assertEquals("world", read(client, 5));
+            }
+        }
+    }
+
+    private static Object invoke(Posix posix, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(posix, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @Test
+    public void fallBackToConnectWhenFastOpenIsDisabled() throws Exception {
+        assumeTrue("requires -Dvfd=posix", FDProvider.get().getProvided() instanceof PosixFDs);
+        Posix real = ((PosixFDs) FDProvider.get().getProvided()).posix;
+        assumeTrue("tcp fast open is not supported", real.tcpFastOpenSupported());
+
+        // behave as if the client bit of net.ipv4.tcp_fastopen is off
+        List<String> calls = new CopyOnWriteArrayList<>();
+        Posix posix = (Posix) java.lang.reflect.Proxy.newProxyInstance(Posix.class.getClassLoader(), new Class[]{Posix.class},
+            (p, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("connectFastOpen")) {
+                    calls.add(name);
+                    throw new UnsupportedOperationException("MSG_FASTOPEN is disabled");
+                }
+                if (name.startsWith("connectIPv")) {
+                    calls.add(name);
+                }
+                return invoke(real, method, args);
+            });
+
+        for (String msg : new String[]{"first", "second"}) {
+            try (PosixSocketFD fd = new PosixSocketFD(posix)) {
+                fd.configureBlocking(false);
+                ByteBuffer data = ByteBuffer.wrap(msg.getBytes());
+                assertEquals("nothing is sent with SYN", 0, fd.connectFastOpen(new IPPort("127.0.0.1", BACKEND_PORT), data));
+                assertEquals("the data should be left in the buffer", msg.length(), data.remaining());
+
+                try (Socket server = backend.accept()) {
+                    waitUntil("should be connected", () -> {
+                        try {
+                            return fd.finishConnect();
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    while (data.hasRemaining()) {
+                        fd.write(data);
+                    }
+                    assertEquals(msg, read(server, msg.length()));
+                }
+            }
+        }
+        // the second connection does not try fast open again
+        assertEquals(List.of("connectFastOpenIPv4", "connectIPv4", "connectIPv4"), calls);
+    }
+}
@@ -0,0 +1,266 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vfd.IPPort;
+import vfd.SockAddr;
+import vproxybase.component.check.AnnotatedHcConfig;
+import vproxybase.component.check.ConnectResult;
+import vproxybase.component.check.HealthCheckClient;
+import vproxybase.component.check.HealthCheckConfig;
+import vproxybase.component.check.HealthCheckHandler;
+import vproxybase.component.check.HealthCheckScheduler;
+import vproxybase.component.elgroup.EventLoopGroup;
+import vproxybase.component.elgroup.EventLoopWrapper;
+import vproxybase.selector.SelectorEventLoop;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.Assert.*;
+import static vproxy.test.tool.CaseUtils.waitUntil;
+
+public class TestHealthCheckScheduler {
+    private final HealthCheckScheduler scheduler = HealthCheckScheduler.getInstance();
+    private EventLoopGroup elg;
+    private EventLoopWrapper el0;
+    private EventLoopWrapper el1;
+    private ServerSocket backend;
+    private IPPort remote;
+    private volatile int acceptCount = 0;
+    private final List<HealthCheckScheduler.Subscription> subscriptions = new ArrayList<>();
+    private int sizeBefore;
+
+    @Before
+    public void setUp() throws Exception {
+        elg = new EventLoopGroup("elg");
+        elg.add("el0");
+        elg.add("el1");
+        el0 = elg.get("el0");
+        el1 = elg.get("el1");
+
+        backend = new ServerSocket();
+        backend.bind(new InetSocketAddress("127.0.0.1", 0));
+        remote = new IPPort("127.0.0.1", backend.getLocalPort());
+        Thread acceptThread = new Thread(() -> {
+            while (true) {
+                try {
+                    Socket s = backend.accept();
+                    ++acceptCount;
+                    s.close();
+                } catch (Exception e) {
+                    return; // closed
+                }
+            }
+        }, "backend-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        sizeBefore = scheduler.size();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (HealthCheckScheduler.Subscription sub : subscriptions) {
+            sub.stop();
+        }
+        elg.close();
+        backend.close();
+    }
+
+    private HealthCheckScheduler.Subscription subscribe(EventLoopWrapper loop, HealthCheckConfig config, boolean initialIsUp, Recorder recorder) {
+        recorder.loop = loop.getSelectorEventLoop();
+        HealthCheckScheduler.Subscription sub = scheduler.subscribe(loop, remote, config, new AnnotatedHcConfig(), initialIsUp, recorder);
+        subscriptions.add(sub);
+        return sub;
+    }
+
+    static class Recorder implements HealthCheckHandler {
+        SelectorEventLoop loop;
+        volatile int up = 0;
+        volatile int down = 0;
+        volatile int upOnce = 0;
+        volatile boolean onWrongLoop = false;
+
+        private void check() {
+            if (SelectorEventLoop.current() != loop) {
+                onWrongLoop = true;
+            }
+        }
+
+        @Override
+        public void up(SockAddr remote) {
+            check();
+            ++up;
+        }
+
+        @Override
+        public void down(SockAddr remote, String reason) {
+            check();
+            ++down;
+        }
+
+        @Override
+        public void upOnce(SockAddr remote, ConnectResult cost) {
+            check();
+            ++upOnce;
+        }
+
+        @Override
+        public void downOnce(SockAddr remote, String reason) {
+            check();
+        }
+    }
+
+    @Test
+    public void firstCheckWithinWindow() throws Exception {
+        // the next check would be one minute later
+        Recorder r = new Recorder();
+        long start = System.currentTimeMillis();
+        subscribe(el0, new HealthCheckConfig(1000, 60_000, 1, 3), false, r);
+        waitUntil("should be UP by the first check", () -> r.up == 1);
+        long cost = System.currentTimeMillis() - start;
+        assertTrue("the first check should run within one second, but cost " + cost, cost < 1500);
+        assertTrue("only the first check should have run", acceptCount <= 1);
+        assertFalse(r.onWrongLoop);
+    }
+
+    @Test
+    public void firstChecksSpread() throws Exception {
+        // the clients are not shared, each of them probes on its own
+        int n = 50;
+        AtomicLongArray upTime = new AtomicLongArray(n);
+        List<HealthCheckClient> clients = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < n; ++i) {
+            int idx = i;
+            HealthCheckClient c = new HealthCheckClient(el0, remote, new HealthCheckConfig(1000, 60_000, 1, 3), new AnnotatedHcConfig(), false, new Recorder() {
+                @Override
+                public void up(SockAddr remote) {
+                    upTime.set(idx, System.currentTimeMillis());
+                }
+            });
+            clients.add(c);
+            c.start();
+        }
+        try {
+            waitUntil("all should be UP", () -> {
+                for (int i = 0; i < n; ++i) {
+                    if (upTime.get(i) == 0)
+                        return false;
+                }
+                return true;
+            });
+        } finally {
+            for (HealthCheckClient c : clients) {
+                el0.getSelectorEventLoop().runOnLoop(c::stop);
+            }
+        }
+        long first = Long.MAX_VALUE;
+        long last = 0;
+        for (int i = 0; i < n; ++i) {
+            first = Math.min(first, upTime.get(i));
+            last = Math.max(last, upTime.get(i));
+        }
+        assertTrue("the first checks should not fire in the same instant: " + (last - first) + "ms", last - first >= 300);
+        assertTrue("the first checks should run within one second: " + (last - start) + "ms", last - start < 1500);
+    }
+
+    @Test
+    public void share() throws Exception {
+        HealthCheckConfig config = new HealthCheckConfig(1000, 200, 1, 3);
+        Recorder r0 = new Recorder();
+        Recorder r1 = new Recorder();
+        subscribe(el0, config, false, r0);
+        subscribe(el1, new HealthCheckConfig(config), false, r1);
+        assertEquals(sizeBefore + 1, scheduler.size());
+
+        waitUntil("both subscribers should be UP", () -> r0.up == 1 && r1.up == 1);
+        Thread.sleep(1000);
+        // one probe each period, the check is not duplicated for the second subscriber
+        int probes = acceptCount;
+        assertTrue("probes " + probes, probes >= 4 && probes <= 8);
+        assertTrue(r0.upOnce >= 4);
+        assertTrue(r1.upOnce >= 4);
+        // results are dispatched on each subscriber's own loop
+        assertFalse(r0.onWrongLoop);
+        assertFalse(r1.onWrongLoop);
+    }
+
+    @Test
+    public void differentConfigNotShared() throws Exception {
+        subscribe(el0, new HealthCheckConfig(1000, 200, 1, 3), false, new Recorder());
+        subscribe(el0, new HealthCheckConfig(1000, 300, 1, 3), false, new Recorder());
+        assertEquals(sizeBefore + 2, scheduler.size());
+    }
+
+    @Test
+    public void lateSubscriberGetsCurrentState() throws Exception {
+        HealthCheckConfig config = new HealthCheckConfig(1000, 60_000, 1, 3);
+        Recorder r0 = new Recorder();
+        HealthCheckScheduler.Subscription sub0 = subscribe(el0, config, false, r0);
+        waitUntil("should be UP", () -> r0.up == 1);
+        assertTrue(sub0.isUp());
+
+        // no probe is running now, the state comes from the shared check
+        Recorder r1 = new Recorder();
+        subscribe(el1, config, false, r1);
+        waitUntil("late subscriber should be told UP", () -> r1.up == 1);
+        assertFalse(r1.onWrongLoop);
+
+        // already UP, nothing to tell
+        Recorder r2 = new Recorder();
+        subscribe(el1, config, true, r2);
+        Thread.sleep(200);
+        assertEquals(0, r2.up);
+        assertEquals(0, r2.down);
+        assertEquals(1, acceptCount);
+    }
+
+    @Test
+    public void unsubscribe() throws Exception {
+        HealthCheckConfig config = new HealthCheckConfig(1000, 200, 1, 3);
+        Recorder r0 = new Recorder();
+        Recorder r1 = new Recorder();
+        HealthCheckScheduler.Subscription sub0 = subscribe(el0, config, false, r0);
+        HealthCheckScheduler.Subscription sub1 = subscribe(el1, config, false, r1);
+        waitUntil("should be UP", () -> r0.up == 1 && r1.up == 1);
+
+        sub0.stop();
+        assertEquals(sizeBefore + 1, scheduler.size());
+        int upOnce0 = r0.upOnce;
+        int upOnce1 = r1.upOnce;
+        Thread.sleep(500);
+        assertEquals("stopped subscriber should not be called", upOnce0, r0.upOnce);
+        assertTrue("the check keeps running for the other subscriber", r1.upOnce > upOnce1);
+
+        sub1.stop();
+        assertEquals(sizeBefore, scheduler.size());
+        Thread.sleep(300);
+        int probes = acceptCount;
+        Thread.sleep(500);
+        assertEquals("the check should be stopped", probes, acceptCount);
+    }
+
+    @Test
+    public void loopRemoved() throws Exception {
+        HealthCheckConfig config = new HealthCheckConfig(1000, 200, 1, 3);
+        Recorder r0 = new Recorder();
+        Recorder r1 = new Recorder();
+        // the check runs on el0, the loop of the first subscriber
+        subscribe(el0, config, false, r0);
+        subscribe(el1, config, false, r1);
+        waitUntil("should be UP", () -> r1.up == 1);
+
+        elg.remove("el0");
+        int upOnce = r1.upOnce;
+        waitUntil("the check should be moved to el1", () -> r1.upOnce > upOnce + 2);
+        assertEquals(sizeBefore + 1, scheduler.size());
+        assertFalse(r1.onWrongLoop);
+    }
+}
@@ -99,6 +99,40 @@ public class TestHttp1Parser {
         assertTrue(backend.isIdle());
     }
 
+    @Test
+    public void responseStatus() throws Exception {
+        Processor<HttpContext, HttpSubContext> p = new HttpProcessor();
+        HttpContext ctx = p.init(null);
+        HttpSubContext backend = p.initSub(ctx, 1, null);
+        backend.setParserMode();
+
+        // nothing parsed yet
+        assertEquals(0, p.responseStatus(ctx, backend));
+
+        String resp = "" +
+            "HTTP/1.1 200 OK\r\n" +
+            "Content-Length: 0\r\n" +
+            "\r\n" +
+            "HTTP/1.1 503 Service Unavailable\r\n" +
+            "Content-Length: 0\r\n" +
+            "\r\n";
+        byte[] bytes = resp.getBytes();
+        int first = resp.indexOf("HTTP/1.1 503");
+
+        for (int i = 0; i < first; ++i) {
+            backend.feed(ByteArray.from(bytes[i]));
+        }
+        // retrieved and reset for passive health check
+        assertEquals(200, p.responseStatus(ctx, backend));
+        assertEquals(0, p.responseStatus(ctx, backend));
+
+        for (int i = first; i < bytes.length; ++i) {
+            backend.feed(ByteArray.from(bytes[i]));
+        }
+        assertEquals(503, p.responseStatus(ctx, backend));
+        assertEquals(0, p.responseStatus(ctx, backend));
+    }
+
     @Test
     public void noHeaderRequest() throws Exception {
         Processor<HttpContext, HttpSubContext> p = new HttpProcessor();
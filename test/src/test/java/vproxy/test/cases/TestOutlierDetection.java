@@ -0,0 +1,160 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vfd.IPPort;
+import vproxybase.component.check.HealthCheckConfig;
+import vproxybase.component.elgroup.EventLoopGroup;
+import vproxybase.component.svrgroup.Method;
+import vproxybase.component.svrgroup.ServerGroup;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static vproxy.test.tool.CaseUtils.waitUntil;
+
+public class TestOutlierDetection {
+    private EventLoopGroup elg;
+    private ServerGroup sg;
+    private final List<ServerSocket> backends = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        elg = new EventLoopGroup("elg");
+        elg.add("el0");
+        // tcp checks against real listeners, so the servers are brought UP by the active check
+        sg = new ServerGroup("sg0", elg, new HealthCheckConfig(1000, 200, 1, 3), Method.wrr);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sg.destroy();
+        elg.close();
+        for (ServerSocket ss : backends) {
+            ss.close();
+        }
+    }
+
+    private ServerGroup.ServerHandle addServer(String alias) throws Exception {
+        ServerSocket ss = new ServerSocket();
+        ss.bind(new InetSocketAddress("127.0.0.1", 0));
+        backends.add(ss);
+        ServerGroup.ServerHandle h = sg.add(alias, new IPPort("127.0.0.1", ss.getLocalPort()), 10);
+        waitUntil(alias + " should be UP", () -> h.healthy);
+        return h;
+    }
+
+    private static void observeFailures(ServerGroup.ServerHandle h, int times) {
+        for (int i = 0; i < times; ++i) {
+            h.makeConnector().observeFailure("test");
+        }
+    }
+
+    // the ejection runs on the health check loop, wait for it
+    private static void waitEjected(ServerGroup.ServerHandle h) throws Exception {
+        waitUntil(h.alias + " should be ejected", () -> h.isEjected() && !h.healthy);
+    }
+
+    // @return how long the server stayed ejected in millis
+    private static long waitRestored(ServerGroup.ServerHandle h, long ejectedAt) throws Exception {
+        waitUntil(h.alias + " should be restored", () -> !h.isEjected() && h.healthy);
+        return System.currentTimeMillis() - ejectedAt;
+    }
+
+    @Test
+    public void threshold() throws Exception {
+        sg.setOutlierDetection(3, 0, 60_000);
+        ServerGroup.ServerHandle s1 = addServer("s1");
+        addServer("s2");
+
+        observeFailures(s1, 2);
+        // a success resets the consecutive errors
+        s1.makeConnector().observeSuccess();
+        observeFailures(s1, 2);
+        Thread.sleep(300);
+        assertTrue(s1.healthy);
+        assertFalse(s1.isEjected());
+
+        observeFailures(s1, 1);
+        waitEjected(s1);
+        // probes keep succeeding, but the server stays out until the ejection ends
+        Thread.sleep(500);
+        assertTrue(s1.isEjected());
+        assertFalse(s1.healthy);
+    }
+
+    @Test
+    public void errorRate() throws Exception {
+        sg.setOutlierDetection(0, 50, 60_000);
+        ServerGroup.ServerHandle s1 = addServer("s1");
+        addServer("s2");
+
+        // not checked with fewer than 20 requests in the window
+        for (int i = 0; i < 9; ++i) {
+            s1.makeConnector().observeSuccess();
+            observeFailures(s1, 1);
+        }
+        Thread.sleep(300);
+        assertFalse(s1.isEjected());
+
+        s1.makeConnector().observeSuccess();
+        observeFailures(s1, 1);
+        waitEjected(s1);
+    }
+
+    @Test
+    public void restoreAndBackOff() throws Exception {
+        sg.setOutlierDetection(1, 0, 300);
+        ServerGroup.ServerHandle s1 = addServer("s1");
+        addServer("s2");
+
+        observeFailures(s1, 1);
+        waitEjected(s1);
+        long first = waitRestored(s1, System.currentTimeMillis());
+        assertTrue("first ejection " + first, first < 550);
+
+        // ejected again right after restored, the eject time is doubled
+        observeFailures(s1, 1);
+        waitEjected(s1);
+        long second = waitRestored(s1, System.currentTimeMillis());
+        assertTrue("second ejection " + second, second >= 550);
+
+        // stayed in service longer than the last ejection, the back-off is reset
+        Thread.sleep(700);
+        observeFailures(s1, 1);
+        waitEjected(s1);
+        long third = waitRestored(s1, System.currentTimeMillis());
+        assertTrue("third ejection " + third, third < 550);
+    }
+
+    @Test
+    public void lastHealthyServerIsNotEjected() throws Exception {
+        sg.setOutlierDetection(1, 0, 60_000);
+        ServerGroup.ServerHandle s1 = addServer("s1");
+        ServerGroup.ServerHandle s2 = addServer("s2");
+
+        observeFailures(s1, 1);
+        waitEjected(s1);
+
+        // s2 is the only one serving traffic
+        observeFailures(s2, 5);
+        Thread.sleep(300);
+        assertTrue(s2.healthy);
+        assertFalse(s2.isEjected());
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        ServerGroup.ServerHandle s1 = addServer("s1");
+        addServer("s2");
+
+        observeFailures(s1, 100);
+        Thread.sleep(300);
+        assertTrue(s1.healthy);
+        assertFalse(s1.isEjected());
+    }
+}
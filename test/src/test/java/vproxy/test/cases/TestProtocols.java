@@ -78,8 +78,8 @@ public class TestProtocols {
         sg2.add("svr2", new IPPort(IP.from("127.0.0.1"), port2), 10);
 
         // set to up
-        sg1.getServerHandles().forEach(h -> h.healthy = true);
-        sg2.getServerHandles().forEach(h -> h.healthy = true);
+        sg1.getServerHandles().forEach(h -> h.setHealthy(true));
+        sg2.getServerHandles().forEach(h -> h.setHealthy(true));
 
         ups = new Upstream("ups0");
         ups.add(sg1, 10);
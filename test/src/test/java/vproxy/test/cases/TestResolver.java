@@ -53,6 +53,7 @@ public class TestResolver {
         packet.answers.add(getAResource());
         packet.answers.add(getAAAAResource());
         packet.nameServers.add(getCNAMEResource());
+        packet.nameServers.add(getSOAResource());
         packet.additionalResources.add(getTXTResource());
 
         ByteArray bytes = packet.toByteArray();
@@ -101,6 +102,18 @@ public class TestResolver {
         return getResource("my.dns.com.", cname);
     }
 
+    private DNSResource getSOAResource() {
+        SOA soa = new SOA();
+        soa.mname = "ns.example.com.";
+        soa.rname = "admin.example.com.";
+        soa.serial = 2020010100L;
+        soa.refresh = 7200;
+        soa.retry = 3600;
+        soa.expire = 1209600;
+        soa.minimum = 300;
+        return getResource("example.com.", soa);
+    }
+
     private DNSResource getTXTResource() {
         TXT txt = new TXT();
         txt.texts.add("abcdefghijklmn");
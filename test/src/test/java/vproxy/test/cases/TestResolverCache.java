@@ -0,0 +1,309 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vfd.FDProvider;
+import vfd.IP;
+import vproxybase.dns.AbstractResolver;
+import vproxybase.dns.Cache;
+import vproxybase.dns.DNSClient;
+import vproxybase.dns.NegativeAnswerException;
+import vproxybase.util.BlockCallback;
+import vproxybase.util.Callback;
+import vproxybase.util.Tuple;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static vproxy.test.tool.CaseUtils.waitUntil;
+
+public class TestResolverCache {
+    // answers the lookups with the configured result
+    static class ScriptedResolver extends AbstractResolver {
+        final AtomicInteger lookups = new AtomicInteger();
+        volatile IP[] addresses;
+        volatile int recordTtl; // seconds, -1 means unknown
+        volatile UnknownHostException error;
+        volatile boolean hold; // keep the lookups running until released
+        private final List<Callback<Tuple<IP[], Integer>, UnknownHostException>> held = new ArrayList<>(); // only accessed on loop
+
+        ScriptedResolver() throws IOException {
+            super("TestResolverCache", FDProvider.get().getProvided());
+        }
+
+        void answer(String address, int recordTtl) {
+            this.addresses = new IP[]{IP.from(address)};
+            this.recordTtl = recordTtl;
+            this.error = null;
+        }
+
+        void fail(UnknownHostException error) {
+            this.error = error;
+        }
+
+        void release() {
+            hold = false;
+            loop.getSelectorEventLoop().runOnLoop(() -> {
+                for (var cb : held) {
+                    reply(cb);
+                }
+                held.clear();
+            });
+        }
+
+        @Override
+        protected void getAllByName(String domain, Callback<Tuple<IP[], Integer>, UnknownHostException> cb) {
+            lookups.incrementAndGet();
+            if (hold) {
+                held.add(cb);
+                return;
+            }
+            reply(cb);
+        }
+
+        private void reply(Callback<Tuple<IP[], Integer>, UnknownHostException> cb) {
+            UnknownHostException error = this.error;
+            if (error != null) {
+                cb.failed(error);
+            } else {
+                cb.succeeded(new Tuple<>(addresses, recordTtl));
+            }
+        }
+
+        @Override
+        public List<DNSClient.NameServerStats> getNameServerStats() {
+            return Collections.emptyList();
+        }
+    }
+
+    private ScriptedResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        resolver = new ScriptedResolver();
+        resolver.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        resolver.stop();
+    }
+
+    private String resolve(String host) throws Exception {
+        BlockCallback<IP, UnknownHostException> cb = new BlockCallback<>();
+        resolver.resolveV4(host, cb);
+        return cb.block().formatToIPString();
+    }
+
+    private Cache cache() {
+        List<Cache> list = new LinkedList<>();
+        resolver.copyCache(list);
+        assertEquals(1, list.size());
+        return list.get(0);
+    }
+
+    @Test
+    public void recordTtl() throws Exception {
+        resolver.ttl = 60_000;
+
+        resolver.answer("1.1.1.1", 1);
+        assertEquals("1.1.1.1", resolve("a.example.com"));
+        assertEquals("the record ttl is used", 1000, cache().ttl);
+        // not used after recorded, so it's not prefetched or served stale
+        Thread.sleep(1200);
+        assertEquals(0, resolver.cacheCount());
+        assertEquals(1, resolver.lookups.get());
+
+        resolver.clearCache();
+        resolver.answer("1.1.1.1", 3600);
+        resolve("b.example.com");
+        assertEquals("capped by the resolver ttl", 60_000, cache().ttl);
+
+        resolver.clearCache();
+        resolver.answer("1.1.1.1", -1);
+        resolve("c.example.com");
+        assertEquals("the resolver ttl is used when the record has no ttl", 60_000, cache().ttl);
+
+        resolver.clearCache();
+        resolver.answer("1.1.1.1", 0);
+        resolve("d.example.com");
+        assertEquals("at least 1 second", 1000, cache().ttl);
+    }
+
+    @Test
+    public void hugeRecordTtl() throws Exception {
+        // no max ttl, the record ttl in ms exceeds int
+        resolver.ttl = 0;
+        resolver.answer("1.1.1.1", Integer.MAX_VALUE);
+        resolve("a.example.com");
+        assertEquals(Integer.MAX_VALUE, cache().ttl);
+        resolve("a.example.com");
+
+        Thread.sleep(300);
+        assertEquals("should not be expired or refreshed", 1, resolver.cacheCount());
+        assertEquals(1, resolver.lookups.get());
+        assertFalse(cache().isStale());
+    }
+
+    @Test
+    public void prefetch() throws Exception {
+        resolver.answer("1.1.1.1", 1);
+        assertEquals("1.1.1.1", resolve("a.example.com"));
+        // hit, so refreshed before expiring
+        assertEquals("1.1.1.1", resolve("a.example.com"));
+        Cache first = cache();
+
+        resolver.answer("2.2.2.2", 1);
+        waitUntil("should be prefetched", () -> resolver.lookups.get() == 2);
+        long elapsed = System.currentTimeMillis() - first.timestamp;
+        assertTrue("prefetched at 90% of the ttl, elapsed " + elapsed, elapsed >= 850 && elapsed < 1000);
+        waitUntil("should be replaced", () -> cache() != first);
+        assertFalse(cache().isStale());
+        assertEquals("2.2.2.2", resolve("a.example.com"));
+        assertEquals(2, resolver.lookups.get());
+    }
+
+    @Test
+    public void serveStale() throws Exception {
+        resolver.staleTtl = 1500;
+        resolver.answer("1.1.1.1", 1);
+        resolve("a.example.com");
+        resolve("a.example.com");
+
+        resolver.fail(new UnknownHostException("a.example.com"));
+        waitUntil("should be prefetched", () -> resolver.lookups.get() == 2);
+        waitUntil("should be served stale", () -> cache().isStale());
+        assertEquals("the stale record is served", "1.1.1.1", resolve("a.example.com"));
+        waitUntil("should be refreshed again when becoming stale", () -> resolver.lookups.get() == 3);
+
+        // removed when the stale ttl runs out
+        waitUntil("should be removed", () -> resolver.cacheCount() == 0);
+        try {
+            resolve("a.example.com");
+            fail();
+        } catch (UnknownHostException ignore) {
+        }
+    }
+
+    @Test
+    public void staleRefreshed() throws Exception {
+        resolver.staleTtl = 10_000;
+        resolver.answer("1.1.1.1", 1);
+        resolve("a.example.com");
+        resolve("a.example.com");
+
+        resolver.fail(new UnknownHostException("a.example.com"));
+        waitUntil("should be served stale", () -> cache().isStale());
+
+        // the next retry succeeds
+        resolver.answer("2.2.2.2", 60);
+        waitUntil("should be refreshed", () -> !cache().isStale());
+        assertEquals("2.2.2.2", resolve("a.example.com"));
+    }
+
+    @Test
+    public void staleDisabled() throws Exception {
+        resolver.staleTtl = 0;
+        resolver.answer("1.1.1.1", 1);
+        resolve("a.example.com");
+        resolve("a.example.com");
+
+        resolver.fail(new UnknownHostException("a.example.com"));
+        waitUntil("should be removed", () -> resolver.cacheCount() == 0);
+        assertEquals(2, resolver.lookups.get());
+    }
+
+    private void resolveFail(String host) throws Exception {
+        try {
+            resolve(host);
+            fail();
+        } catch (UnknownHostException ignore) {
+        }
+    }
+
+    @Test
+    public void coalesce() throws Exception {
+        resolver.answer("1.1.1.1", 60);
+        resolver.hold = true;
+        List<BlockCallback<IP, UnknownHostException>> cbs = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            BlockCallback<IP, UnknownHostException> cb = new BlockCallback<>();
+            resolver.resolveV4("a.example.com", cb);
+            cbs.add(cb);
+        }
+        waitUntil("should be looking up", () -> resolver.lookups.get() == 1);
+        Thread.sleep(100);
+        assertEquals("concurrent lookups should wait on the running one", 1, resolver.lookups.get());
+
+        resolver.release();
+        for (var cb : cbs) {
+            assertEquals("1.1.1.1", cb.block().formatToIPString());
+        }
+        assertEquals(1, resolver.lookups.get());
+    }
+
+    @Test
+    public void negativeCacheSoaTtl() throws Exception {
+        resolver.fail(new NegativeAnswerException("a.example.com", 1));
+        resolveFail("a.example.com");
+        // cached for the SOA ttl
+        resolveFail("a.example.com");
+        assertEquals(1, resolver.lookups.get());
+
+        Thread.sleep(1100);
+        resolver.answer("1.1.1.1", 60);
+        assertEquals("1.1.1.1", resolve("a.example.com"));
+        assertEquals(2, resolver.lookups.get());
+    }
+
+    @Test
+    public void negativeCacheCapped() throws Exception {
+        resolver.negativeTtl = 500;
+        resolver.fail(new NegativeAnswerException("a.example.com", 3600));
+        resolveFail("a.example.com");
+        resolveFail("a.example.com");
+        assertEquals(1, resolver.lookups.get());
+
+        Thread.sleep(600);
+        resolveFail("a.example.com");
+        assertEquals(2, resolver.lookups.get());
+    }
+
+    @Test
+    public void negativeWithoutSoaNotCached() throws Exception {
+        resolver.fail(new NegativeAnswerException("a.example.com", -1));
+        resolveFail("a.example.com");
+        resolveFail("a.example.com");
+        assertEquals(2, resolver.lookups.get());
+    }
+
+    @Test
+    public void failureCached() throws Exception {
+        resolver.failureTtl = 500;
+        resolver.fail(new UnknownHostException("a.example.com"));
+        resolveFail("a.example.com");
+        resolveFail("a.example.com");
+        assertEquals(1, resolver.lookups.get());
+
+        Thread.sleep(600);
+        resolver.answer("1.1.1.1", 60);
+        assertEquals("1.1.1.1", resolve("a.example.com"));
+        assertEquals(2, resolver.lookups.get());
+    }
+
+    @Test
+    public void clearNegativeCache() throws Exception {
+        resolver.fail(new NegativeAnswerException("a.example.com", 60));
+        resolveFail("a.example.com");
+        resolver.clearCache();
+        resolver.answer("1.1.1.1", 60);
+        assertEquals("1.1.1.1", resolve("a.example.com"));
+    }
+}
@@ -0,0 +1,141 @@
+package vproxy.test.cases;
+
+import org.junit.Test;
+import vproxybase.util.nio.ByteArrayChannel;
+import vproxybase.util.ringbuffer.SimpleRingBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+import static org.junit.Assert.*;
+
+public class TestRingBuffer {
+    // records how many times the vectored methods are called
+    static class VectoredChannel implements ScatteringByteChannel, GatheringByteChannel {
+        final ByteArrayChannel chnl;
+        int vectoredCalls = 0;
+
+        VectoredChannel(ByteArrayChannel chnl) {
+            this.chnl = chnl;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) {
+            ++vectoredCalls;
+            long total = 0;
+            for (int i = offset; i < offset + length; ++i) {
+                total += chnl.read(dsts[i]);
+            }
+            return total;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts) {
+            return read(dsts, 0, dsts.length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            return chnl.read(dst);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            ++vectoredCalls;
+            long total = 0;
+            for (int i = offset; i < offset + length; ++i) {
+                total += chnl.write(srcs[i]);
+            }
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            return chnl.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static SimpleRingBuffer wrappedBuffer() throws IOException {
+        SimpleRingBuffer buf = SimpleRingBuffer.allocateDirect(8, false);
+        buf.storeBytesFrom(ByteArrayChannel.fromFull(new byte[]{1, 2, 3, 4, 5, 6}));
+        buf.writeTo(ByteArrayChannel.fromEmpty(4));
+        // [-,-,-,-,5,6,-,-]
+        assertEquals(2, buf.used());
+        return buf;
+    }
+
+    @Test
+    public void scatteringStoreIn() throws Exception {
+        SimpleRingBuffer buf = wrappedBuffer();
+
+        VectoredChannel chnl = new VectoredChannel(ByteArrayChannel.fromFull(new byte[]{7, 8, 9, 10, 11}));
+        assertEquals(5, buf.storeBytesFrom(chnl));
+        assertEquals(1, chnl.vectoredCalls);
+        assertEquals(7, buf.used());
+        assertEquals(1, buf.free());
+        assertArrayEquals(new byte[]{5, 6, 7, 8, 9, 10, 11}, buf.getBytes());
+
+        // fill the last byte
+        chnl = new VectoredChannel(ByteArrayChannel.fromFull(new byte[]{12, 13}));
+        assertEquals(1, buf.storeBytesFrom(chnl));
+        assertEquals(0, chnl.vectoredCalls);
+        assertEquals(0, buf.free());
+        assertArrayEquals(new byte[]{5, 6, 7, 8, 9, 10, 11, 12}, buf.getBytes());
+    }
+
+    @Test
+    public void gatheringWriteOut() throws Exception {
+        SimpleRingBuffer buf = wrappedBuffer();
+        buf.storeBytesFrom(ByteArrayChannel.fromFull(new byte[]{7, 8, 9, 10, 11}));
+        // [9,10,11,-,5,6,7,8]
+
+        VectoredChannel chnl = new VectoredChannel(ByteArrayChannel.fromEmpty(6));
+        assertEquals(6, buf.writeTo(chnl));
+        assertEquals(1, chnl.vectoredCalls);
+        assertArrayEquals(new byte[]{5, 6, 7, 8, 9, 10}, chnl.chnl.getBytes());
+        assertArrayEquals(new byte[]{11}, buf.getBytes());
+
+        chnl = new VectoredChannel(ByteArrayChannel.fromEmpty(6));
+        assertEquals(1, buf.writeTo(chnl));
+        assertEquals(0, chnl.vectoredCalls);
+        assertEquals(0, buf.used());
+        assertEquals(8, buf.free());
+    }
+
+    @Test
+    public void gatheringPartialWrite() throws Exception {
+        SimpleRingBuffer buf = wrappedBuffer();
+        buf.storeBytesFrom(ByteArrayChannel.fromFull(new byte[]{7, 8, 9, 10, 11, 12}));
+        // full: [9,10,11,12,5,6,7,8]
+        assertEquals(0, buf.free());
+
+        // only the first part is written
+        VectoredChannel chnl = new VectoredChannel(ByteArrayChannel.fromEmpty(3));
+        assertEquals(3, buf.writeTo(chnl));
+        assertEquals(1, chnl.vectoredCalls);
+        assertArrayEquals(new byte[]{8, 9, 10, 11, 12}, buf.getBytes());
+
+        // limited by maxBytesToWrite
+        chnl = new VectoredChannel(ByteArrayChannel.fromEmpty(8));
+        assertEquals(3, buf.writeTo(chnl, 3));
+        assertEquals(1, chnl.vectoredCalls);
+        assertArrayEquals(new byte[]{8, 9, 10}, chnl.chnl.readableArray().toJavaArray());
+        assertArrayEquals(new byte[]{11, 12}, buf.getBytes());
+    }
+}
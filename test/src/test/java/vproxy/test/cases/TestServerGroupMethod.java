@@ -0,0 +1,383 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vfd.IP;
+import vfd.IPPort;
+import vproxybase.Config;
+import vproxybase.component.check.HealthCheckConfig;
+import vproxybase.component.elgroup.EventLoopGroup;
+import vproxybase.component.svrgroup.Method;
+import vproxybase.component.svrgroup.ServerGroup;
+import vproxybase.component.svrgroup.SvrHandleConnector;
+import vproxybase.connection.ConnectableConnection;
+import vproxybase.connection.ConnectionOpts;
+import vproxybase.util.RingBuffer;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestServerGroupMethod {
+    private static final int CLIENTS = 10000;
+
+    private EventLoopGroup eventLoopGroup;
+    private ServerGroup serverGroup;
+
+    @Before
+    public void setUp() throws Exception {
+        // no event loop, so health check will not run
+        eventLoopGroup = new EventLoopGroup("elg");
+        serverGroup = new ServerGroup("sg0", eventLoopGroup, new HealthCheckConfig(1000, 1000, 2, 3), Method.source);
+    }
+
+    @After
+    public void tearDown() {
+        serverGroup.clear();
+        eventLoopGroup.close();
+    }
+
+    private void addServer(int n, int weight) throws Exception {
+        ServerGroup.ServerHandle h = serverGroup.add("s" + n, new IPPort("10.0.0." + n, 80), weight);
+        h.setHealthy(true);
+    }
+
+    private ServerGroup.ServerHandle handle(int n) {
+        return serverGroup.getServerHandles().stream().filter(h -> h.alias.equals("s" + n)).findFirst().get();
+    }
+
+    private static IPPort client(int i) {
+        return new IPPort(IP.from(new byte[]{100, (byte) (i >> 16), (byte) (i >> 8), (byte) i}), 12345);
+    }
+
+    private Map<Integer, IPPort> route() {
+        Map<Integer, IPPort> result = new HashMap<>();
+        for (int i = 0; i < CLIENTS; ++i) {
+            SvrHandleConnector c = serverGroup.next(client(i));
+            assertNotNull(c);
+            result.put(i, c.remote);
+        }
+        return result;
+    }
+
+    private static int moved(Map<Integer, IPPort> a, Map<Integer, IPPort> b) {
+        int n = 0;
+        for (int i = 0; i < CLIENTS; ++i) {
+            if (!a.get(i).equals(b.get(i))) {
+                ++n;
+            }
+        }
+        return n;
+    }
+
+    @Test
+    public void sourceIsStable() throws Exception {
+        for (int i = 1; i <= 5; ++i) {
+            addServer(i, 10);
+        }
+        Map<Integer, IPPort> first = route();
+        assertEquals(0, moved(first, route()));
+
+        Map<IPPort, Integer> counts = new HashMap<>();
+        first.values().forEach(s -> counts.merge(s, 1, Integer::sum));
+        assertEquals(5, counts.size());
+        for (int c : counts.values()) {
+            assertTrue("the clients should be evenly distributed: " + counts, c > CLIENTS / 5 * 0.8 && c < CLIENTS / 5 * 1.2);
+        }
+    }
+
+    @Test
+    public void sourceAddAndRemove() throws Exception {
+        for (int i = 1; i <= 5; ++i) {
+            addServer(i, 10);
+        }
+        Map<Integer, IPPort> before = route();
+        addServer(6, 10);
+        Map<Integer, IPPort> after = route();
+        int moved = moved(before, after);
+        // about 1/6 of the clients should move, almost all of them to the new server
+        assertTrue("moved " + moved, moved < CLIENTS / 6 * 1.3);
+        int movedToOthers = 0;
+        for (int i = 0; i < CLIENTS; ++i) {
+            if (!before.get(i).equals(after.get(i)) && after.get(i).getAddress().getAddress()[3] != 6) {
+                ++movedToOthers;
+            }
+        }
+        assertTrue("moved to others " + movedToOthers, movedToOthers < CLIENTS / 100);
+
+        serverGroup.remove("s6");
+        assertEquals(0, moved(before, route()));
+    }
+
+    @Test
+    public void sourceUnhealthy() throws Exception {
+        for (int i = 1; i <= 5; ++i) {
+            addServer(i, 10);
+        }
+        Map<Integer, IPPort> before = route();
+        handle(3).setHealthy(false);
+        Map<Integer, IPPort> after = route();
+        for (int i = 0; i < CLIENTS; ++i) {
+            // only clients of the unhealthy server move
+            if (before.get(i).getAddress().getAddress()[3] != 3) {
+                assertEquals(before.get(i), after.get(i));
+            } else {
+                assertNotEquals(3, after.get(i).getAddress().getAddress()[3]);
+            }
+        }
+        handle(3).setHealthy(true);
+        assertEquals(0, moved(before, route()));
+
+        for (ServerGroup.ServerHandle h : serverGroup.getServerHandles()) {
+            h.setHealthy(false);
+        }
+        assertNull(serverGroup.next(client(0)));
+    }
+
+    @Test
+    public void sourceAfterSwitchingMethod() throws Exception {
+        serverGroup.setMethod(Method.wrr);
+        for (int i = 1; i <= 5; ++i) {
+            addServer(i, 10);
+        }
+        route();
+
+        serverGroup.setMethod(Method.source);
+        Map<Integer, IPPort> first = route();
+        assertEquals(0, moved(first, route()));
+        serverGroup.setMethod(Method.wrr);
+        serverGroup.setMethod(Method.source);
+        assertEquals("the table is rebuilt the same", 0, moved(first, route()));
+    }
+
+    @Test
+    public void sourceWeight() throws Exception {
+        addServer(1, 10);
+        addServer(2, 30);
+        Map<IPPort, Integer> counts = new HashMap<>();
+        route().values().forEach(s -> counts.merge(s, 1, Integer::sum));
+        int c1 = counts.get(handle(1).server);
+        int c2 = counts.get(handle(2).server);
+        assertTrue(c1 + " : " + c2, c2 > c1 * 2.5 && c2 < c1 * 3.5);
+    }
+
+    @Test
+    public void sourceBoundedLoadWithoutConnections() throws Exception {
+        for (int i = 1; i <= 5; ++i) {
+            addServer(i, 10);
+        }
+        Map<Integer, IPPort> source = route();
+        serverGroup.setMethod(Method.sourcebl);
+        // no connection is made, so nothing exceeds the bound
+        assertEquals(0, moved(source, route()));
+    }
+
+    @Test
+    public void sourceBoundedLoadSpill() throws Exception {
+        // real listeners, so that the connections are counted on the servers
+        List<ServerSocket> backends = new ArrayList<>();
+        List<ConnectableConnection> conns = new ArrayList<>();
+        try {
+            for (int i = 1; i <= 3; ++i) {
+                ServerSocket ss = new ServerSocket();
+                ss.bind(new InetSocketAddress("127.0.0.1", 0));
+                backends.add(ss);
+                ServerGroup.ServerHandle h = serverGroup.add("s" + i, new IPPort("127.0.0.1", ss.getLocalPort()), 10);
+                h.setHealthy(true);
+            }
+            serverGroup.setMethod(Method.sourcebl);
+
+            IPPort target = serverGroup.next(client(0)).remote;
+            ServerGroup.ServerHandle targetHandle = serverGroup.getServerHandles().stream()
+                .filter(h -> h.server.equals(target)).findFirst().get();
+
+            // keep connecting from the same client until the target goes over the bound
+            IPPort spilled = null;
+            for (int i = 0; i < 10; ++i) {
+                SvrHandleConnector c = serverGroup.next(client(0));
+                if (!c.remote.equals(target)) {
+                    spilled = c.remote;
+                    break;
+                }
+                conns.add(c.connect(new ConnectionOpts(), RingBuffer.allocate(16), RingBuffer.allocate(16)));
+            }
+            assertNotNull("the client should spill to another server", spilled);
+            assertNotEquals(target, spilled);
+            // the bound is ceil(1.25 * (total + 1) * 10 / 30), which is 1 when the target has the only connection
+            assertEquals(1, conns.size());
+            assertEquals(1, targetHandle.connectionCount());
+            // the spill is stable
+            assertEquals(spilled, serverGroup.next(client(0)).remote);
+            // no client is sent to the target while it's over the bound
+            for (int i = 1; i < 1000; ++i) {
+                SvrHandleConnector c = serverGroup.next(client(i));
+                assertNotEquals(target, c.remote);
+            }
+
+            // back to the target when the connections are closed
+            for (ConnectableConnection conn : conns) {
+                conn.close();
+            }
+            conns.clear();
+            assertEquals(0, targetHandle.connectionCount());
+            assertEquals(target, serverGroup.next(client(0)).remote);
+        } finally {
+            for (ConnectableConnection conn : conns) {
+                conn.close();
+            }
+            for (ServerSocket ss : backends) {
+                ss.close();
+            }
+        }
+    }
+
+    @Test
+    public void slowStart() throws Exception {
+        serverGroup.setSlowStart(10_000);
+        ServerGroup.ServerHandle h = serverGroup.add("s1", new IPPort("10.0.0.1", 80), 100);
+        // no event loop is running in this test, so the timestamp is only changed here
+        long t0 = Config.currentTimestamp;
+        try {
+            h.setHealthy(true);
+            assertEquals("the ramp starts from the floor", 10, h.getEffectiveWeight());
+            Config.currentTimestamp = t0 + 5_000;
+            assertEquals("halfway", 55, h.getEffectiveWeight());
+            Config.currentTimestamp = t0 + 10_000;
+            assertEquals("after the window", 100, h.getEffectiveWeight());
+            Config.currentTimestamp = t0 + 60_000;
+            assertEquals(100, h.getEffectiveWeight());
+
+            // down and up again
+            h.setHealthy(false);
+            Config.currentTimestamp = t0 + 70_000;
+            h.setHealthy(true);
+            assertEquals("the ramp is reset when the server is up again", 10, h.getEffectiveWeight());
+            Config.currentTimestamp = t0 + 72_500;
+            assertEquals(32, h.getEffectiveWeight());
+
+            // disabled
+            serverGroup.setSlowStart(0);
+            assertEquals(100, h.getEffectiveWeight());
+        } finally {
+            Config.currentTimestamp = System.currentTimeMillis();
+        }
+    }
+
+    @Test
+    public void p2cOnlyPicksHealthy() throws Exception {
+        serverGroup.setMethod(Method.p2c);
+        for (int i = 1; i <= 5; ++i) {
+            addServer(i, 10);
+        }
+        handle(2).setHealthy(false);
+        handle(4).setHealthy(false);
+        Map<IPPort, Integer> counts = new HashMap<>();
+        route().values().forEach(s -> counts.merge(s, 1, Integer::sum));
+        assertEquals(3, counts.size());
+        assertFalse(counts.containsKey(handle(2).server));
+        assertFalse(counts.containsKey(handle(4).server));
+
+        for (ServerGroup.ServerHandle h : serverGroup.getServerHandles()) {
+            h.setHealthy(false);
+        }
+        assertNull(serverGroup.next(client(0)));
+    }
+
+    private Map<IPPort, Integer> countRoutes() {
+        Map<IPPort, Integer> counts = new HashMap<>();
+        route().values().forEach(s -> counts.merge(s, 1, Integer::sum));
+        return counts;
+    }
+
+    @Test
+    public void ewmaSpread() throws Exception {
+        serverGroup.setMethod(Method.ewma);
+        for (int i = 1; i <= 4; ++i) {
+            addServer(i, 10);
+        }
+        // no samples at all
+        Map<IPPort, Integer> counts = countRoutes();
+        assertEquals(4, counts.size());
+        for (int c : counts.values()) {
+            assertTrue("the picks should be spread: " + counts, c > CLIENTS / 4 * 0.8 && c < CLIENTS / 4 * 1.2);
+        }
+
+        // same latency
+        for (int i = 1; i <= 4; ++i) {
+            handle(i).makeConnector().observeLatency(2_000_000);
+        }
+        counts = countRoutes();
+        assertEquals(4, counts.size());
+        for (int c : counts.values()) {
+            assertTrue("the picks should be spread: " + counts, c > CLIENTS / 4 * 0.8 && c < CLIENTS / 4 * 1.2);
+        }
+    }
+
+    @Test
+    public void ewmaSlowServerPenalised() throws Exception {
+        serverGroup.setMethod(Method.ewma);
+        for (int i = 1; i <= 3; ++i) {
+            addServer(i, 10);
+        }
+        handle(1).makeConnector().observeLatency(50_000_000);
+        handle(2).makeConnector().observeLatency(1_000_000);
+        handle(3).makeConnector().observeLatency(1_000_000);
+        Map<IPPort, Integer> counts = countRoutes();
+        assertFalse("the slow server should not be picked: " + counts, counts.containsKey(handle(1).server));
+        assertEquals(CLIENTS, counts.getOrDefault(handle(2).server, 0) + counts.getOrDefault(handle(3).server, 0));
+
+        // a higher sample takes effect immediately
+        // the slowest server loses every pair, and the fastest one wins every pair it is picked into
+        handle(2).makeConnector().observeLatency(100_000_000);
+        counts = countRoutes();
+        assertFalse("the slowest server should not be picked: " + counts, counts.containsKey(handle(2).server));
+        assertTrue(counts.toString(), counts.get(handle(3).server) > CLIENTS * 2 / 3 * 0.9);
+    }
+
+    @Test
+    public void ewmaNewServerNotFlooded() throws Exception {
+        serverGroup.setMethod(Method.ewma);
+        for (int i = 1; i <= 3; ++i) {
+            addServer(i, 10);
+            handle(i).makeConnector().observeLatency(1_000_000);
+        }
+        // the new server takes the average latency instead of 0
+        addServer(4, 10);
+        Map<IPPort, Integer> counts = countRoutes();
+        assertEquals(4, counts.size());
+        for (int c : counts.values()) {
+            assertTrue("the picks should be spread: " + counts, c > CLIENTS / 4 * 0.8 && c < CLIENTS / 4 * 1.2);
+        }
+    }
+
+    @Test
+    public void wrrWeight() throws Exception {
+        serverGroup.setMethod(Method.wrr);
+        addServer(1, 5);
+        addServer(2, 1);
+        addServer(3, 1);
+        Map<IPPort, Integer> counts = new HashMap<>();
+        route().values().forEach(s -> counts.merge(s, 1, Integer::sum));
+        // smooth wrr only deviates from the exact share by a few picks
+        assertEquals(CLIENTS * 5 / 7, counts.get(handle(1).server), 3);
+        assertEquals(CLIENTS / 7, counts.get(handle(2).server), 3);
+        assertEquals(CLIENTS / 7, counts.get(handle(3).server), 3);
+
+        handle(1).setHealthy(false);
+        counts.clear();
+        route().values().forEach(s -> counts.merge(s, 1, Integer::sum));
+        assertFalse(counts.containsKey(handle(1).server));
+        assertEquals(CLIENTS / 2, counts.get(handle(2).server), 3);
+
+        for (ServerGroup.ServerHandle h : serverGroup.getServerHandles()) {
+            h.setHealthy(false);
+        }
+        assertNull(serverGroup.next(client(0)));
+    }
+}
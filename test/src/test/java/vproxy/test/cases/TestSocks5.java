@@ -67,7 +67,7 @@ public class TestSocks5 {
         sg0.add("svr1", new IPPort("::1", 19081), 10);
         // manually set to healthy
         for (ServerGroup.ServerHandle h : sg0.getServerHandles()) {
-            h.healthy = true;
+            h.setHealthy(true);
         }
         domainDotComGroup = new ServerGroup("test-domain", elg0, new HealthCheckConfig(400, /* disable health check */24 * 60 * 60 * 1000, 2, 3), Method.wrr);
         domainDotComGroup.setAnnotations(Map.of(AnnotationKeys.ServerGroup_HintHost, "domain.com", AnnotationKeys.ServerGroup_HintPort, "80"));
@@ -75,7 +75,7 @@ public class TestSocks5 {
         domainDotComGroup.add("svr3", new IPPort("127.0.0.1", 19083), 10);
         // manually set to healthy
         for (ServerGroup.ServerHandle h : domainDotComGroup.getServerHandles()) {
-            h.healthy = true;
+            h.setHealthy(true);
         }
 
         // connection will not spread between groups
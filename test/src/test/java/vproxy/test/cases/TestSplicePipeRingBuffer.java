@@ -0,0 +1,326 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vfd.Event;
+import vfd.EventSet;
+import vfd.FDProvider;
+import vfd.IPPort;
+import vfd.ServerSocketFD;
+import vfd.SocketFD;
+import vproxybase.connection.*;
+import vproxybase.selector.SelectorEventLoop;
+import vproxybase.util.RingBuffer;
+import vproxybase.util.RingBufferETHandler;
+import vproxybase.util.Tuple;
+import vproxybase.util.ringbuffer.SplicePipeRingBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static vproxy.test.tool.CaseUtils.TIMEOUT;
+import static vproxy.test.tool.CaseUtils.waitUntil;
+
+// requires -Dvfd=posix on linux, skipped otherwise
+public class TestSplicePipeRingBuffer {
+    private static final int PORT = 18093;
+
+    static class Recorder implements RingBufferETHandler {
+        volatile int readable = 0;
+        volatile int writable = 0;
+
+        @Override
+        public void readableET() {
+            ++readable;
+        }
+
+        @Override
+        public void writableET() {
+            ++writable;
+        }
+    }
+
+    private ServerSocketFD server;
+    // bytes sent from srcClient are stored from src, and written into dst, then received by dstClient
+    private Socket srcClient;
+    private SocketFD src;
+    private Socket dstClient;
+    private SocketFD dst;
+    private SplicePipeRingBuffer buf;
+    private final Recorder recorder = new Recorder();
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue("splice is only supported with -Dvfd=posix on linux", SplicePipeRingBuffer.isSupported());
+
+        server = FDProvider.get().getProvided().openServerSocketFD();
+        server.configureBlocking(false);
+        server.bind(new IPPort("127.0.0.1", PORT));
+        srcClient = new Socket("127.0.0.1", PORT);
+        src = accept();
+        dstClient = new Socket("127.0.0.1", PORT);
+        dst = accept();
+
+        buf = SplicePipeRingBuffer.allocate(0);
+        buf.addHandler(recorder);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (buf != null) {
+            buf.clean();
+        }
+        for (AutoCloseable c : new AutoCloseable[]{srcClient, src, dstClient, dst, server}) {
+            if (c != null) {
+                c.close();
+            }
+        }
+    }
+
+    private SocketFD accept() throws Exception {
+        SocketFD[] accepted = {null};
+        waitUntil("should accept", () -> {
+            try {
+                accepted[0] = server.accept();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return accepted[0] != null;
+        });
+        accepted[0].configureBlocking(false);
+        return accepted[0];
+    }
+
+    private int store() throws Exception {
+        int[] n = {0};
+        waitUntil("should store some bytes", () -> {
+            try {
+                n[0] = buf.storeBytesFrom(src);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return n[0] != 0;
+        });
+        return n[0];
+    }
+
+    // keep sending until the buffer reports itself full
+    private void fill() throws Exception {
+        Thread writer = new Thread(() -> {
+            byte[] chunk = new byte[1024];
+            try {
+                OutputStream out = srcClient.getOutputStream();
+                while (true) {
+                    out.write(chunk);
+                }
+            } catch (IOException ignore) {
+                // closed
+            }
+        }, "splice-writer");
+        writer.setDaemon(true);
+        writer.start();
+        waitUntil("the buffer should be full", () -> {
+            try {
+                buf.storeBytesFrom(src);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return buf.free() == 0;
+        });
+    }
+
+    private String receive(int len) throws Exception {
+        dstClient.setSoTimeout(TIMEOUT);
+        InputStream in = dstClient.getInputStream();
+        byte[] bytes = new byte[len];
+        int off = 0;
+        while (off < len) {
+            int n = in.read(bytes, off, len - off);
+            assertTrue(n > 0);
+            off += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void storeThenWrite() throws Exception {
+        srcClient.getOutputStream().write("hello".getBytes());
+        assertEquals(5, store());
+        assertEquals(5, buf.used());
+        assertEquals(buf.capacity() - 5, buf.free());
+        assertEquals("readable is triggered when the buffer becomes non-empty", 1, recorder.readable);
+
+        assertEquals(5, buf.writeTo(dst, 100));
+        assertEquals(0, buf.used());
+        assertEquals("hello", receive(5));
+        assertEquals("the buffer was not full", 0, recorder.writable);
+    }
+
+    @Test
+    public void pipeFull() throws Exception {
+        fill();
+        int used = buf.used();
+        assertTrue(used > 0 && used <= buf.capacity());
+        assertEquals("nothing is stored while full", 0, buf.storeBytesFrom(src));
+        assertEquals(0, recorder.writable);
+
+        int n = buf.writeTo(dst, 4096);
+        assertTrue(n > 0);
+        assertEquals(used - n, buf.used());
+        assertEquals("writable is triggered when the buffer is no longer full", 1, recorder.writable);
+        assertTrue(buf.free() > 0);
+        assertTrue("reading resumes", store() > 0);
+    }
+
+    @Test
+    public void clear() throws Exception {
+        fill();
+        buf.clear();
+        assertEquals(0, buf.used());
+        assertEquals(buf.capacity(), buf.free());
+        assertEquals(1, recorder.writable);
+
+        // the discarded bytes are not written
+        srcClient.close();
+        assertEquals(0, buf.writeTo(dst, 4096));
+    }
+
+    @Test
+    public void eof() throws Exception {
+        srcClient.getOutputStream().write("ab".getBytes());
+        srcClient.shutdownOutput();
+        assertEquals(2, store());
+        assertEquals(-1, store());
+        assertEquals(2, buf.used());
+        assertEquals(2, buf.writeTo(dst, 100));
+        assertEquals("ab", receive(2));
+    }
+
+    @Test
+    public void readInterestDroppedWhileFull() throws Exception {
+        // the connection is handled by an event loop, which does not consume the in buffer
+        SelectorEventLoop selectorEventLoop = SelectorEventLoop.open();
+        NetEventLoop loop = new NetEventLoop(selectorEventLoop);
+        selectorEventLoop.loop(r -> new Thread(r, "splice-loop"));
+        ServerSock sock = ServerSock.create(new IPPort("127.0.0.1", PORT + 1));
+        CompletableFuture<Connection> accepted = new CompletableFuture<>();
+        Socket client = null;
+        try {
+            loop.addServer(sock, null, new ServerHandler() {
+                @Override
+                public void acceptFail(ServerHandlerContext ctx, IOException err) {
+                    accepted.completeExceptionally(err);
+                }
+
+                @Override
+                public void connection(ServerHandlerContext ctx, Connection connection) {
+                    try {
+                        ctx.eventLoop.addConnection(connection, null, new IdleConnectionHandler());
+                        accepted.complete(connection);
+                    } catch (IOException e) {
+                        accepted.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public Tuple<RingBuffer, RingBuffer> getIOBuffers(SocketFD channel) {
+                    return new Tuple<>(buf, RingBuffer.allocateDirect(16));
+                }
+
+                @Override
+                public void removed(ServerHandlerContext ctx) {
+                }
+            });
+            client = new Socket("127.0.0.1", PORT + 1);
+            Connection conn = accepted.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+            srcClient.close(); // not used
+            Socket c = client;
+            Thread writer = new Thread(() -> {
+                byte[] chunk = new byte[1024];
+                try {
+                    OutputStream out = c.getOutputStream();
+                    while (true) {
+                        out.write(chunk);
+                    }
+                } catch (IOException ignore) {
+                    // closed
+                }
+            }, "splice-writer");
+            writer.setDaemon(true);
+            writer.start();
+
+            waitUntil("READ should be removed when the buffer is full", () ->
+                buf.free() == 0 && !ops(selectorEventLoop, conn).have(Event.READABLE));
+
+            long read = conn.getFromRemoteBytes();
+            CompletableFuture<Integer> written = new CompletableFuture<>();
+            selectorEventLoop.runOnLoop(() -> {
+                try {
+                    written.complete(buf.writeTo(dst, 4096));
+                } catch (IOException e) {
+                    written.completeExceptionally(e);
+                }
+            });
+            assertTrue(written.get(TIMEOUT, TimeUnit.MILLISECONDS) > 0);
+            waitUntil("reading should resume when the buffer is writable", () -> conn.getFromRemoteBytes() > read);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+            sock.close();
+            // close on the loop thread, closing the posix selector does not wake up a blocking poll
+            selectorEventLoop.runOnLoop(() -> {
+                try {
+                    selectorEventLoop.close();
+                } catch (IOException ignore) {
+                }
+            });
+        }
+    }
+
+    private static EventSet ops(SelectorEventLoop loop, Connection conn) {
+        CompletableFuture<EventSet> f = new CompletableFuture<>();
+        loop.runOnLoop(() -> f.complete(loop.getOps(conn.channel)));
+        try {
+            return f.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static class IdleConnectionHandler implements ConnectionHandler {
+        @Override
+        public void readable(ConnectionHandlerContext ctx) {
+            // leave the bytes in the buffer
+        }
+
+        @Override
+        public void writable(ConnectionHandlerContext ctx) {
+        }
+
+        @Override
+        public void exception(ConnectionHandlerContext ctx, IOException err) {
+        }
+
+        @Override
+        public void remoteClosed(ConnectionHandlerContext ctx) {
+        }
+
+        @Override
+        public void closed(ConnectionHandlerContext ctx) {
+        }
+
+        @Override
+        public void removed(ConnectionHandlerContext ctx) {
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vfd.IP;
+import vfd.IPPort;
+import vproxy.component.app.TcpLB;
+import vproxy.component.secure.SecurityGroup;
+import vproxy.component.svrgroup.Upstream;
+import vproxybase.component.check.HealthCheckConfig;
+import vproxybase.component.elgroup.EventLoopGroup;
+import vproxybase.component.svrgroup.Method;
+import vproxybase.component.svrgroup.ServerGroup;
+import vproxybase.component.svrgroup.SvrHandleConnector;
+import vproxybase.connection.ConnectableConnection;
+import vproxybase.connection.ConnectionOpts;
+import vproxybase.connection.NetEventLoop;
+import vproxybase.selector.SelectorEventLoop;
+import vproxybase.util.RingBuffer;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static vproxy.test.tool.CaseUtils.TIMEOUT;
+import static vproxy.test.tool.CaseUtils.waitUntil;
+
+public class TestSvrHandlePool {
+    private SelectorEventLoop selectorEventLoop;
+    private NetEventLoop loop;
+    private EventLoopGroup eventLoopGroup;
+    private ServerGroup serverGroup;
+    private ServerGroup.ServerHandle handle;
+
+    private ServerSocket backend;
+    private final List<Socket> accepted = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        backend = new ServerSocket();
+        backend.bind(new InetSocketAddress("127.0.0.1", 0));
+        Thread acceptThread = new Thread(() -> {
+            while (true) {
+                Socket s;
+                try {
+                    s = backend.accept();
+                } catch (Exception e) {
+                    return; // closed
+                }
+                synchronized (accepted) {
+                    accepted.add(s);
+                }
+            }
+        }, "backend-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        selectorEventLoop = SelectorEventLoop.open();
+        loop = new NetEventLoop(selectorEventLoop);
+        selectorEventLoop.loop(r -> new Thread(r, "pool-loop"));
+
+        // no event loop, so health check will not run
+        eventLoopGroup = new EventLoopGroup("elg");
+        serverGroup = new ServerGroup("sg0", eventLoopGroup, new HealthCheckConfig(1000, 1000, 2, 3), Method.wrr);
+        handle = serverGroup.add("s0", new IPPort(IP.from("127.0.0.1"), backend.getLocalPort()), 10);
+        handle.setHealthy(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverGroup.setPool(0, 0, 0); // let the pools close themselves
+        Thread.sleep(1200);
+        serverGroup.clear();
+        eventLoopGroup.close();
+        selectorEventLoop.close();
+        backend.close();
+        synchronized (accepted) {
+            for (Socket s : accepted) {
+                s.close();
+            }
+        }
+    }
+
+    private int acceptedCount() {
+        synchronized (accepted) {
+            return accepted.size();
+        }
+    }
+
+    private Socket acceptedSocket(int i) {
+        synchronized (accepted) {
+            return accepted.get(i);
+        }
+    }
+
+    private List<Integer> acceptedRemotePorts() {
+        List<Integer> ports = new ArrayList<>();
+        synchronized (accepted) {
+            for (Socket s : accepted) {
+                ports.add(s.getPort());
+            }
+        }
+        return ports;
+    }
+
+    // connect on the pool loop, the pool can only be used on the thread of the loop
+    private ConnectableConnection connect() throws Exception {
+        SvrHandleConnector connector = serverGroup.next(new IPPort(IP.from("127.0.0.1"), 12345));
+        assertNotNull(connector);
+        CompletableFuture<ConnectableConnection> f = new CompletableFuture<>();
+        selectorEventLoop.runOnLoop(() -> {
+            try {
+                f.complete(connector.connect(null, loop, new ConnectionOpts().setTimeout(60_000),
+                    RingBuffer.allocateDirect(1024), RingBuffer.allocateDirect(1024)));
+            } catch (Throwable t) {
+                f.completeExceptionally(t);
+            }
+        });
+        return f.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private static void close(ConnectableConnection conn) {
+        conn.close();
+        conn.getInBuffer().clean();
+        conn.getOutBuffer().clean();
+    }
+
+    private static int localPort(ConnectableConnection conn) throws Exception {
+        return conn.channel.getLocalAddress().getPort();
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        serverGroup.setPool(2, 4, 0);
+
+        // the pool is created by the first request, which has to dial
+        ConnectableConnection first = connect();
+        waitUntil("pool should be filled", () -> handle.pooledConnectionCount() == 2);
+        waitUntil("backend should see the dialed and the pooled connections", () -> acceptedCount() == 3);
+        List<Integer> before = acceptedRemotePorts();
+
+        ConnectableConnection conn = connect();
+        assertTrue("the connection should come from the pool", before.contains(localPort(conn)));
+        // refilled to min-idle
+        waitUntil("pool should be refilled", () -> handle.pooledConnectionCount() == 2);
+        assertEquals(4, acceptedCount());
+
+        close(first);
+        close(conn);
+    }
+
+    @Test
+    public void idleExpiry() throws Exception {
+        serverGroup.setPool(1, 1, 500);
+
+        // the dialed connection is not needed
+        close(connect());
+        waitUntil("pool should be filled", () -> handle.pooledConnectionCount() == 1);
+        waitUntil("backend should see the dialed and the pooled connections", () -> acceptedCount() == 2);
+
+        // expired and replaced by the sweeper
+        waitUntil("expired connection should be replaced", () -> acceptedCount() == 3);
+        for (int i = 0; i < 2; ++i) {
+            Socket s = acceptedSocket(i);
+            s.setSoTimeout(TIMEOUT);
+            assertEquals("the expired connection should be closed", -1, s.getInputStream().read());
+        }
+        waitUntil("pool should keep min-idle", () -> handle.pooledConnectionCount() == 1);
+
+        ConnectableConnection conn = connect();
+        assertEquals("the new connection should be handed out", acceptedSocket(2).getPort(), localPort(conn));
+        close(conn);
+    }
+
+    @Test
+    public void evictClosed() throws Exception {
+        serverGroup.setPool(1, 1, 0);
+
+        // the dialed connection is not needed
+        close(connect());
+        waitUntil("pool should be filled", () -> handle.pooledConnectionCount() == 1);
+        waitUntil("backend should see the dialed and the pooled connections", () -> acceptedCount() == 2);
+
+        // closed by the server while idle
+        acceptedSocket(0).close();
+        acceptedSocket(1).close();
+        waitUntil("closed connection should be replaced", () -> acceptedCount() == 3);
+        waitUntil("pool should keep min-idle", () -> handle.pooledConnectionCount() == 1);
+
+        ConnectableConnection conn = connect();
+        assertEquals("the closed connection should not be handed out", acceptedSocket(2).getPort(), localPort(conn));
+        close(conn);
+    }
+
+    @Test
+    public void pooledWithSeparateAcceptor() throws Exception {
+        serverGroup.setPool(1, 1, 0);
+
+        // the connections are accepted on a loop which does not handle them
+        EventLoopGroup acceptor = new EventLoopGroup("acceptor");
+        acceptor.add("acceptor0");
+        EventLoopGroup worker = new EventLoopGroup("worker");
+        worker.add("worker0");
+        Upstream ups = new Upstream("ups0");
+        ups.add(serverGroup, 10);
+        TcpLB lb = new TcpLB("lb0", acceptor, worker, new IPPort("127.0.0.1", 18091), ups,
+            60_000, 1024, 1024, SecurityGroup.allowAll());
+        lb.start();
+        List<Socket> clients = new ArrayList<>();
+        try {
+            clients.add(sendThroughLB());
+            waitUntil("pool should be filled on the worker loop", () -> handle.pooledConnectionCount() == 1);
+            waitUntil("backend should see the dialed and the pooled connections", () -> acceptedCount() == 2);
+            List<Integer> before = acceptedRemotePorts();
+
+            clients.add(sendThroughLB());
+            waitUntil("pool should be refilled", () -> acceptedCount() == 3);
+            Socket pooled = acceptedSocket(1);
+            assertTrue(before.contains(pooled.getPort()));
+            pooled.setSoTimeout(TIMEOUT);
+            assertEquals("the session should use the pooled connection", 'a', pooled.getInputStream().read());
+        } finally {
+            for (Socket c : clients) {
+                c.close();
+            }
+            lb.destroy();
+            acceptor.close();
+            worker.close();
+        }
+    }
+
+    private static Socket sendThroughLB() throws Exception {
+        Socket sock = new Socket();
+        sock.connect(new InetSocketAddress("127.0.0.1", 18091));
+        OutputStream out = sock.getOutputStream();
+        out.write('a');
+        out.flush();
+        return sock;
+    }
+}
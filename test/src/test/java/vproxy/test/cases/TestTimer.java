@@ -3,18 +3,35 @@ package vproxy.test.cases;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 import vproxybase.selector.PeriodicEvent;
 import vproxybase.selector.SelectorEventLoop;
 import vproxybase.selector.TimerEvent;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import static org.junit.Assert.*;
 
+// run with both the priority queue and the timing wheel
+@RunWith(Parameterized.class)
 public class TestTimer {
+    @Parameterized.Parameters(name = "timingWheel={0}")
+    public static Collection<Object[]> timeQueues() {
+        return Arrays.asList(new Object[][]{{false}, {true}});
+    }
+
+    private final boolean timingWheel;
     private SelectorEventLoop loop;
 
+    public TestTimer(boolean timingWheel) {
+        this.timingWheel = timingWheel;
+    }
+
     @Before
     public void setUp() throws Exception {
-        loop = SelectorEventLoop.open();
+        loop = SelectorEventLoop.open(timingWheel);
         loop.loop(r -> new Thread(r, "EventLoop"));
     }
 
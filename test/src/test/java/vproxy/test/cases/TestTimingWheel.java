@@ -0,0 +1,56 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vproxybase.selector.SelectorEventLoop;
+import vproxybase.selector.TimerEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// the common timer cases are run with the timing wheel in TestTimer
+public class TestTimingWheel {
+    private SelectorEventLoop loop;
+
+    @Before
+    public void setUp() throws Exception {
+        loop = SelectorEventLoop.open(true);
+        loop.loop(r -> new Thread(r, "EventLoop"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        loop.close();
+    }
+
+    @Test
+    public void usingTimingWheel() {
+        assertTrue(loop.isUsingTimingWheel());
+    }
+
+    @Test
+    public void manyTimersInDifferentLevels() throws Exception {
+        // a timer is placed in the lowest level whose window contains both now and the trigger time
+        // level 0 window is 2^8 ms, level 1 is 2^14 ms, level 2 is 2^20 ms, level 3 is 2^26 ms, level 4 is 2^32 ms
+        int[] fired = new int[5];
+        List<TimerEvent> toCancel = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            loop.delay(i % 200, () -> ++fired[0]); // level 0 or 1
+            loop.delay(300 + i % 500, () -> ++fired[1]); // level 1 or 2
+            toCancel.add(loop.delay(700 + i % 100, () -> ++fired[2]));
+            loop.delay(60_000, () -> ++fired[3]); // level 2 or 3
+            loop.delay(24 * 60 * 60_000, () -> ++fired[4]); // level 4, or the overflow list
+        }
+        Thread.sleep(500);
+        toCancel.forEach(TimerEvent::cancel);
+        Thread.sleep(500);
+        assertEquals(1000, fired[0]);
+        assertEquals(1000, fired[1]);
+        assertEquals(0, fired[2]);
+        assertEquals(0, fired[3]);
+        assertEquals(0, fired[4]);
+    }
+}
@@ -0,0 +1,141 @@
+package vproxy.test.cases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vproxy.component.svrgroup.Upstream;
+import vproxybase.component.check.HealthCheckConfig;
+import vproxybase.component.elgroup.EventLoopGroup;
+import vproxybase.component.svrgroup.Method;
+import vproxybase.component.svrgroup.ServerGroup;
+import vproxybase.processor.Hint;
+import vproxybase.util.AnnotationKeys;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestUpstreamSearch {
+    private static final String[] HOSTS = {"example.com", "a.example.com", "b.a.example.com", "example.org", "com", "*", "xample.com"};
+    private static final String[] URIS = {"/", "/api", "/api/v1", "/api/v1/users", "/ap", "/static", "*"};
+    private static final String[] PORTS = {"80", "443"};
+
+    private EventLoopGroup eventLoopGroup;
+    private Upstream upstream;
+    private final List<ServerGroup> groups = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        eventLoopGroup = new EventLoopGroup("elg");
+        upstream = new Upstream("ups0");
+    }
+
+    @After
+    public void tearDown() {
+        for (ServerGroup g : groups) {
+            g.clear();
+        }
+        eventLoopGroup.close();
+    }
+
+    private ServerGroup group(String alias) throws Exception {
+        ServerGroup g = new ServerGroup(alias, eventLoopGroup, new HealthCheckConfig(1000, 1000, 2, 3), Method.wrr);
+        groups.add(g);
+        return g;
+    }
+
+    private static Map<String, String> randomAnnotations(Random rand) {
+        Map<String, String> anno = new HashMap<>();
+        if (rand.nextInt(3) == 0) {
+            anno.put(AnnotationKeys.ServerGroup_HintHost, HOSTS[rand.nextInt(HOSTS.length)]);
+        }
+        if (rand.nextInt(3) == 0) {
+            anno.put(AnnotationKeys.ServerGroup_HintUri, URIS[rand.nextInt(URIS.length)]);
+        }
+        if (rand.nextInt(4) == 0) {
+            anno.put(AnnotationKeys.ServerGroup_HintPort, PORTS[rand.nextInt(PORTS.length)]);
+        }
+        return anno;
+    }
+
+    private static Hint randomHint(Random rand) {
+        String host = rand.nextInt(5) == 0 ? null : HOSTS[rand.nextInt(HOSTS.length - 1)];
+        String uri = rand.nextInt(3) == 0 ? null : URIS[rand.nextInt(URIS.length - 1)] + (rand.nextBoolean() ? "/x" : "");
+        if (rand.nextBoolean()) {
+            return new Hint(host, uri);
+        } else {
+            return new Hint(host, Integer.parseInt(PORTS[rand.nextInt(PORTS.length)]), uri);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Upstream.ServerGroupHandle bruteForce(Hint hint) {
+        int level = 0;
+        Upstream.ServerGroupHandle lastMax = null;
+        for (Upstream.ServerGroupHandle h : upstream.getServerGroupHandles()) {
+            int l = hint.matchLevel(h.getAnnotations(), h.group.getAnnotations());
+            if (l > level) {
+                level = l;
+                lastMax = h;
+            }
+        }
+        return lastMax;
+    }
+
+    private void checkAll(Random rand) {
+        for (int i = 0; i < 2000; ++i) {
+            Hint hint = randomHint(rand);
+            assertSame("searching for " + hint, bruteForce(hint), upstream.searchForGroup(hint));
+        }
+    }
+
+    @Test
+    public void sameAsScanning() throws Exception {
+        Random rand = new Random(42);
+        List<Upstream.ServerGroupHandle> handles = new ArrayList<>();
+        for (int i = 0; i < 30; ++i) {
+            ServerGroup g = group("sg" + i);
+            g.setAnnotations(randomAnnotations(rand));
+            Upstream.ServerGroupHandle h = upstream.add(g, 10);
+            h.setAnnotations(randomAnnotations(rand));
+            handles.add(h);
+        }
+        checkAll(rand);
+
+        // modify annotations of the handles
+        for (int i = 0; i < 10; ++i) {
+            handles.get(rand.nextInt(handles.size())).setAnnotations(randomAnnotations(rand));
+        }
+        checkAll(rand);
+
+        // modify annotations of the groups
+        for (int i = 0; i < 10; ++i) {
+            handles.get(rand.nextInt(handles.size())).group.setAnnotations(randomAnnotations(rand));
+        }
+        checkAll(rand);
+
+        // remove some groups
+        for (int i = 0; i < 10; ++i) {
+            upstream.remove(handles.remove(rand.nextInt(handles.size())).group);
+        }
+        checkAll(rand);
+    }
+
+    @Test
+    public void longestMatchWins() throws Exception {
+        ServerGroup api = group("api");
+        api.setAnnotations(Map.of(AnnotationKeys.ServerGroup_HintHost, "example.com", AnnotationKeys.ServerGroup_HintUri, "/api"));
+        ServerGroup v1 = group("v1");
+        v1.setAnnotations(Map.of(AnnotationKeys.ServerGroup_HintHost, "example.com", AnnotationKeys.ServerGroup_HintUri, "/api/v1"));
+        ServerGroup any = group("any");
+        any.setAnnotations(Map.of(AnnotationKeys.ServerGroup_HintHost, "*"));
+        upstream.add(api, 10);
+        upstream.add(v1, 10);
+        upstream.add(any, 10);
+
+        assertEquals("v1", upstream.searchForGroup(new Hint("a.example.com", "/api/v1/users")).alias);
+        assertEquals("api", upstream.searchForGroup(new Hint("example.com", "/api/v2")).alias);
+        assertEquals("any", upstream.searchForGroup(new Hint("example.org", "/api/v1")).alias);
+        assertNull(upstream.searchForGroup(new Hint(null, "/static")));
+    }
+}
@@ -5,11 +5,28 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.util.Enumeration;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.fail;
 
 public class CaseUtils {
+    // milliseconds, how long to wait for an asynchronous condition
+    public static final int TIMEOUT = 10_000;
+
     private CaseUtils() {
     }
 
+    public static void waitUntil(String msg, BooleanSupplier cond) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (!cond.getAsBoolean()) {
+            if (System.currentTimeMillis() - start > TIMEOUT) {
+                fail(msg);
+            }
+            //noinspection BusyWait
+            Thread.sleep(5);
+        }
+    }
+
     public static String ipv4OtherThan127() throws SocketException {
         String address = null;
         Enumeration<NetworkInterface> nics = NetworkInterface.getNetworkInterfaces();